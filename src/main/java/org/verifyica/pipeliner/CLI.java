@@ -17,22 +17,38 @@
 package org.verifyica.pipeliner;
 
 import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.verifyica.pipeliner.engine.Cancellation;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Engine;
+import org.verifyica.pipeliner.engine.EngineException;
+import org.verifyica.pipeliner.engine.ExitException;
+import org.verifyica.pipeliner.engine.ProgramCache;
+import org.verifyica.pipeliner.engine.instructions.support.LogOptions;
 import org.verifyica.pipeliner.model.support.EnvironmentVariable;
 import org.verifyica.pipeliner.model.support.Variable;
+import org.verifyica.pipeliner.support.AsyncOutputStream;
 import org.verifyica.pipeliner.support.HumanDuration;
+import org.verifyica.pipeliner.support.ShutdownHooks;
 import org.verifyica.pipeliner.support.Stopwatch;
 
 /**
@@ -40,11 +56,36 @@ import org.verifyica.pipeliner.support.Stopwatch;
  */
 public class CLI {
 
+    /**
+     * Counter used to name the pipeline file threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
     /**
      * Console for output
      */
     private final Console console;
 
+    /**
+     * The environment variables the CLI was invoked with.
+     */
+    private final Map<String, String> environmentVariables;
+
+    /**
+     * The directory the CLI was invoked from, or null to use the current directory.
+     */
+    private final File directory;
+
+    /**
+     * The context of the pipeline executing a nested pipeline, or null if the pipeline is not nested.
+     */
+    private final Context parentContext;
+
+    /**
+     * The cancellation of the execution
+     */
+    private final Cancellation cancellation;
+
     /**
      * The command line after parsing the arguments
      */
@@ -60,17 +101,57 @@ public class CLI {
      */
     private final Map<String, String> commandLineVariables;
 
+    /**
+     * Maximum number of jobs to execute in parallel provided via the command line, or null if not provided.
+     */
+    private Integer maxParallel;
+
+    /**
+     * Maximum number of pipeline files to execute in parallel.
+     */
+    private int parallelFiles = 1;
+
+    /**
+     * Options of the step logs provided via the command line, or null if command output is not logged.
+     */
+    private LogOptions logOptions;
+
     /**
      * Main method to run the Pipeline engine
      *
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        // Create a new CLI instance
-        CLI cli = new CLI();
+        // Get the backpressure policy of the asynchronous console, if enabled
+        AsyncOutputStream.Backpressure backpressure =
+                AsyncOutputStream.Backpressure.of(System.getenv(Constants.PIPELINER_ASYNC_CONSOLE));
+
+        // If the asynchronous console is not enabled
+        if (backpressure == null) {
+            // Exit the program with the exit code of the CLI
+            System.exit(new CLI().execute(args));
+        }
 
-        // Execute the CLI with the provided arguments
-        int exitCode = cli.execute(args);
+        // Create an asynchronous output stream writing to standard output
+        AsyncOutputStream asyncOutputStream =
+                new AsyncOutputStream(System.out, AsyncOutputStream.DEFAULT_CAPACITY, backpressure);
+
+        // Write all queued output if the program is stopped
+        ShutdownHooks.runOnExit(asyncOutputStream::close);
+
+        // Replace standard output, so all output, including logging, is written in order
+        PrintStream printStream = new PrintStream(asyncOutputStream, false, Charset.defaultCharset());
+        System.setOut(printStream);
+
+        int exitCode;
+
+        try {
+            // Execute the CLI with the provided arguments
+            exitCode = new CLI(new Console(printStream), System.getenv(), null).execute(args);
+        } finally {
+            // Write all queued output, including when an exception or an ExitException stopped the CLI
+            asyncOutputStream.close();
+        }
 
         // Exit the program with the exit code
         System.exit(exitCode);
@@ -80,7 +161,66 @@ public class CLI {
      * Constructor
      */
     public CLI() {
-        this.console = new Console();
+        this(new Console(), System.getenv(), null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console the console for output
+     * @param environmentVariables the environment variables the CLI was invoked with
+     * @param directory the directory the CLI was invoked from, or null to use the current directory
+     */
+    public CLI(Console console, Map<String, String> environmentVariables, File directory) {
+        this(console, environmentVariables, directory, new Cancellation());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console the console for output
+     * @param environmentVariables the environment variables the CLI was invoked with
+     * @param directory the directory the CLI was invoked from, or null to use the current directory
+     * @param cancellation the cancellation of the execution
+     */
+    public CLI(Console console, Map<String, String> environmentVariables, File directory, Cancellation cancellation) {
+        this(console, environmentVariables, directory, null, cancellation);
+    }
+
+    /**
+     * Constructor to execute a nested pipeline in a child context of the specified context.
+     *
+     * @param parentContext the context of the pipeline executing the nested pipeline
+     */
+    public CLI(Context parentContext) {
+        this(
+                parentContext.getConsole(),
+                parentContext.getSystemEnvironmentVariables(),
+                parentContext.getDirectory(),
+                parentContext,
+                parentContext.getCancellation());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console the console for output
+     * @param environmentVariables the environment variables the CLI was invoked with
+     * @param directory the directory the CLI was invoked from, or null to use the current directory
+     * @param parentContext the context of the pipeline executing a nested pipeline, or null
+     * @param cancellation the cancellation of the execution
+     */
+    private CLI(
+            Console console,
+            Map<String, String> environmentVariables,
+            File directory,
+            Context parentContext,
+            Cancellation cancellation) {
+        this.console = console;
+        this.environmentVariables = environmentVariables;
+        this.directory = directory;
+        this.parentContext = parentContext;
+        this.cancellation = cancellation;
         this.commandLineEnvironmentVariables = new LinkedHashMap<>();
         this.commandLineVariables = new LinkedHashMap<>();
     }
@@ -92,6 +232,22 @@ public class CLI {
      * @return the exit code
      */
     public int execute(String[] args) {
+        try {
+            // Run the CLI with the provided arguments
+            return run(args);
+        } catch (ExitException e) {
+            // Return the exit code
+            return e.getExitCode();
+        }
+    }
+
+    /**
+     * Runs the CLI with the provided arguments.
+     *
+     * @param args the command line arguments
+     * @return the exit code
+     */
+    private int run(String[] args) {
         // Create a stopwatch to measure execution time
         Stopwatch stopwatch = new Stopwatch();
 
@@ -128,6 +284,21 @@ public class CLI {
         // Process variables
         processVariables();
 
+        // Process max parallel options
+        processMaxParallelOptions();
+
+        // Process parallel files options
+        processParallelFilesOptions();
+
+        // Process log options
+        processLogOptions();
+
+        // If the --daemon flag is present, and the pipeline is not nested
+        if (commandLine.hasOption("daemon") && parentContext == null) {
+            // Run the daemon until it is stopped
+            return new Daemon(console).execute();
+        }
+
         // Get the list of filenames from the command line arguments
         List<String> filenames = getFilenames();
 
@@ -140,41 +311,158 @@ public class CLI {
             return 1;
         }
 
-        // TODO handle multiple filenames
+        // If multiple filenames are provided
+        if (filenames.size() > 1) {
+            // Execute the pipeline files and return the aggregated exit code
+            return executeFiles(filenames, stopwatch);
+        }
 
-        // Get the first pipeline filename
-        File file = new File(filenames.get(0));
+        // Get the pipeline filename
+        File file = resolveFile(filenames.get(0));
 
         // Print the banner
         console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
 
         // Print the file being processed
-        console.info("file [%s]", getRelativeFilename(file));
+        console.info("file [%s]", getRelativeFilename(directory, file));
 
         // Validate the file
         validateFile(file);
 
-        // Create the context for execution
-        Context context = new Context(console);
+        // Execute the pipeline file
+        int exitCode = executeFile(console, file);
 
-        // Set environment variables from the environment
-        context.getEnvironmentVariables().putAll(System.getenv());
+        // Get the elapsed time  as human-readable duration
+        String humanDuration = HumanDuration.humanDuration(stopwatch.elapsedTime());
 
-        // TODO check/read IPC variables
+        // Create the message to print
+        String message = String.format(
+                "Pipeliner %s exit-code=[%d] duration=[%s]", Version.getVersion(), exitCode, humanDuration);
 
-        // Copy the command line environment variables to the context
-        context.getEnvironmentVariables().putAll(commandLineEnvironmentVariables);
+        if (exitCode == 0) {
+            // Print the exit code and duration
+            console.info(message);
+        } else {
+            // Print the exit code and duration
+            console.error(message);
+        }
 
-        // Copy the command line variables to the context
-        context.getVariables().putAll(commandLineVariables);
+        // Return the exit code
+        return exitCode;
+    }
 
-        // Create the engine for execution
-        Engine engine = new Engine(context);
+    /**
+     * Executes multiple pipeline files, sequentially or concurrently, each with its own context and a
+     * console prefixing each line with the filename.
+     *
+     * @param filenames the filenames
+     * @param stopwatch the stopwatch started when the CLI was executed
+     * @return the exit code of the first failed file, in command line order, or 0 if all files succeeded
+     */
+    private int executeFiles(List<String> filenames, Stopwatch stopwatch) {
+        // Print the banner
+        console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
 
-        // Execute the engine and return the exit code
-        int exitCode = engine.execute(file);
+        int count = filenames.size();
+        List<File> files = new ArrayList<>(count);
 
-        // Get the elapsed time  as human-readable duration
+        for (String filename : filenames) {
+            File file = resolveFile(filename);
+
+            // Print the file being processed
+            console.info("file [%s]", getRelativeFilename(directory, file));
+
+            // Validate the file
+            validateFile(file);
+
+            files.add(file);
+        }
+
+        int[] exitCodes = new int[count];
+        String[] humanDurations = new String[count];
+
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(count, Math.max(parallelFiles, Runtime.getRuntime().availableProcessors())), runnable -> {
+                    Thread thread = new Thread(runnable, "pipeliner-file-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        try {
+            // Parse the files in parallel, errors are reported when the file is executed
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (File file : files) {
+                futures.add(
+                        executorService.submit(() -> ProgramCache.getInstance().get(file)));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // INTENTIONALLY BLANK
+                }
+            }
+
+            // Execute the files, with at most the number of parallel files running concurrently
+            Semaphore semaphore = new Semaphore(parallelFiles);
+            futures.clear();
+
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                File file = files.get(i);
+
+                // Create a console prefixing each line with the filename
+                Console fileConsole = console.createPrefixedConsole("[" + getRelativeFilename(directory, file) + "] ");
+
+                semaphore.acquire();
+
+                futures.add(executorService.submit(() -> {
+                    Stopwatch fileStopwatch = new Stopwatch();
+                    try {
+                        exitCodes[index] = executeFile(fileConsole, file);
+                    } catch (Throwable t) {
+                        fileConsole.error("exception [%s]", t.getMessage());
+                        exitCodes[index] = 1;
+                    } finally {
+                        // Record the duration, even if the file failed with an exception
+                        humanDurations[index] = HumanDuration.humanDuration(fileStopwatch.elapsedTime());
+                        semaphore.release();
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (ExecutionException e) {
+            throw new EngineException("exception executing pipeline files", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // Print the exit code of each file
+        int exitCode = 0;
+
+        for (int i = 0; i < count; i++) {
+            String relativeFilename = getRelativeFilename(directory, files.get(i));
+
+            if (exitCodes[i] == 0) {
+                console.info("file [%s] exit-code=[%d] duration=[%s]", relativeFilename, 0, humanDurations[i]);
+            } else {
+                console.error(
+                        "file [%s] exit-code=[%d] duration=[%s]", relativeFilename, exitCodes[i], humanDurations[i]);
+
+                if (exitCode == 0) {
+                    exitCode = exitCodes[i];
+                }
+            }
+        }
+
+        // Get the elapsed time as human-readable duration
         String humanDuration = HumanDuration.humanDuration(stopwatch.elapsedTime());
 
         // Create the message to print
@@ -193,6 +481,63 @@ public class CLI {
         return exitCode;
     }
 
+    /**
+     * Executes a pipeline file in a new context.
+     *
+     * @param console the console for the context
+     * @param file the pipeline file
+     * @return the exit code
+     */
+    private int executeFile(Console console, File file) {
+        // Create the context for execution
+        Context context;
+
+        if (parentContext != null) {
+            // Create a child context, inheriting the parent's environment variables and variables
+            context = parentContext.createChild(console);
+        } else {
+            context = new Context(console);
+
+            // Set the directory relative working directories are resolved against
+            context.setDirectory(directory);
+
+            // Set the cancellation of the execution
+            context.setCancellation(cancellation);
+
+            // Set the environment variables the CLI was invoked with
+            context.setSystemEnvironmentVariables(environmentVariables);
+
+            // Set environment variables from the environment
+            context.getEnvironmentVariables().putAll(environmentVariables);
+        }
+
+        // TODO check/read IPC variables
+
+        // Copy the command line environment variables to the context
+        context.getEnvironmentVariables().putAll(commandLineEnvironmentVariables);
+
+        // Copy the command line variables to the context
+        context.getVariables().putAll(commandLineVariables);
+
+        // If the maximum number of parallel jobs was provided
+        if (maxParallel != null) {
+            // Set the maximum number of parallel jobs
+            context.setMaxParallel(maxParallel);
+        }
+
+        // If command output is logged
+        if (logOptions != null) {
+            // Set the options of the step logs
+            context.setLogOptions(logOptions);
+        }
+
+        // Create the engine for execution
+        Engine engine = new Engine(context);
+
+        // Execute the engine and return the exit code
+        return engine.execute(file);
+    }
+
     /**
      * Initialize the command line parser with the known flags and options.
      *
@@ -234,6 +579,58 @@ public class CLI {
                 .numberOfArgs(1)
                 .build());
 
+        // Add an option for the maximum number of parallel jobs
+        options.addOption(Option.builder("mp")
+                .longOpt("max-parallel")
+                .desc("maximum number of jobs and steps to execute in parallel")
+                .hasArg(true)
+                .numberOfArgs(1)
+                .build());
+
+        // Add an option for the maximum number of pipeline files to execute in parallel
+        options.addOption(Option.builder("pf")
+                .longOpt("parallel-files")
+                .desc("maximum number of pipeline files to execute in parallel")
+                .hasArg(true)
+                .numberOfArgs(1)
+                .build());
+
+        // Add an option for the step log directory
+        options.addOption(Option.builder()
+                .longOpt("log-dir")
+                .desc("directory to write the command output of each step to")
+                .hasArg(true)
+                .numberOfArgs(1)
+                .build());
+
+        // Add an option to compress the step logs
+        options.addOption(Option.builder()
+                .longOpt("log-gzip")
+                .desc("compress the step logs")
+                .build());
+
+        // Add an option for the maximum size of a step log file
+        options.addOption(Option.builder()
+                .longOpt("log-max-size")
+                .desc("maximum size of a step log file, in bytes, before rolling over to a new file")
+                .hasArg(true)
+                .numberOfArgs(1)
+                .build());
+
+        // Add an option to only print the last lines of a failed command
+        options.addOption(Option.builder()
+                .longOpt("log-tail")
+                .desc("only print the last lines of the step log when a command fails")
+                .hasArg(true)
+                .numberOfArgs(1)
+                .build());
+
+        // Add an option for daemon mode
+        options.addOption(Option.builder()
+                .longOpt("daemon")
+                .desc("run as a daemon, executing pipelines for the pipeliner script")
+                .build());
+
         // Add an option for help
         options.addOption(Option.builder("h").longOpt("help").desc("show usage").build());
 
@@ -250,7 +647,7 @@ public class CLI {
             showUsage();
 
             // Exit the program with an error code
-            System.exit(1);
+            exit(1);
         }
     }
 
@@ -264,7 +661,7 @@ public class CLI {
             console.print(Version.getVersion());
 
             // Exit the program successfully
-            System.exit(0);
+            exit(0);
         }
     }
 
@@ -278,7 +675,7 @@ public class CLI {
             console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
 
             // Exit the program successfully
-            System.exit(0);
+            exit(0);
         }
     }
 
@@ -292,7 +689,7 @@ public class CLI {
             showUsage();
 
             // Exit the program successfully
-            System.exit(0);
+            exit(0);
         }
     }
 
@@ -326,7 +723,7 @@ public class CLI {
                 console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
                 // Exit the program with an error code
-                System.exit(1);
+                exit(1);
             }
 
             String[] tokens = key.split("=", 2);
@@ -347,7 +744,7 @@ public class CLI {
                 console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
                 // Exit the program with an error code
-                System.exit(1);
+                exit(1);
             }
 
             commandLineEnvironmentVariables.put(key, value);
@@ -373,7 +770,7 @@ public class CLI {
                 console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
                 // Exit the program with an error code
-                System.exit(1);
+                exit(1);
             }
 
             String[] tokens = key.split("=", 2);
@@ -394,13 +791,158 @@ public class CLI {
                 console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
                 // Exit the program with an error code
-                System.exit(1);
+                exit(1);
             }
 
             commandLineVariables.put(key, value);
         });
     }
 
+    /**
+     * Process the command line option for the maximum number of parallel jobs.
+     */
+    private void processMaxParallelOptions() {
+        // If the -mp or --max-parallel option is not present
+        if (!commandLine.hasOption("mp")) {
+            return;
+        }
+
+        String value = commandLine.getOptionValue("mp");
+
+        try {
+            maxParallel = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            maxParallel = 0;
+        }
+
+        if (maxParallel < 1) {
+            // Print the banner
+            console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
+
+            // Print an error message for the invalid command line option
+            console.error("command line option --max-parallel [%s] is invalid", value);
+
+            // Print the exit code
+            console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
+
+            // Exit the program with an error code
+            exit(1);
+        }
+    }
+
+    /**
+     * Process the command line option for the maximum number of pipeline files to execute in parallel.
+     */
+    private void processParallelFilesOptions() {
+        // If the -pf or --parallel-files option is not present
+        if (!commandLine.hasOption("pf")) {
+            return;
+        }
+
+        String value = commandLine.getOptionValue("pf");
+
+        try {
+            parallelFiles = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            parallelFiles = 0;
+        }
+
+        if (parallelFiles < 1) {
+            // Print the banner
+            console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
+
+            // Print an error message for the invalid command line option
+            console.error("command line option --parallel-files [%s] is invalid", value);
+
+            // Print the exit code
+            console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
+
+            // Exit the program with an error code
+            exit(1);
+        }
+    }
+
+    /**
+     * Process the command line options for the step logs.
+     */
+    private void processLogOptions() {
+        // If the --log-dir option is not present
+        if (!commandLine.hasOption("log-dir")) {
+            for (String option : new String[] {"log-gzip", "log-max-size", "log-tail"}) {
+                if (commandLine.hasOption(option)) {
+                    // Print the banner
+                    console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
+
+                    // Print an error message for the command line option
+                    console.error("command line option --%s requires --log-dir", option);
+
+                    // Print the exit code
+                    console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
+
+                    // Exit the program with an error code
+                    exit(1);
+                }
+            }
+
+            return;
+        }
+
+        String directoryValue = commandLine.getOptionValue("log-dir");
+        File logDirectory = resolveFile(directoryValue);
+
+        long maxSize = 0;
+        String maxSizeValue = commandLine.getOptionValue("log-max-size");
+
+        if (maxSizeValue != null) {
+            try {
+                maxSize = Long.parseLong(maxSizeValue.trim());
+            } catch (NumberFormatException e) {
+                maxSize = 0;
+            }
+        }
+
+        int tailLines = -1;
+        String tailValue = commandLine.getOptionValue("log-tail");
+
+        if (tailValue != null) {
+            try {
+                tailLines = Integer.parseInt(tailValue.trim());
+            } catch (NumberFormatException e) {
+                tailLines = -1;
+            }
+        }
+
+        String invalidOption = null;
+        String invalidValue = null;
+
+        if (directoryValue.trim().isEmpty() || (logDirectory.exists() && !logDirectory.isDirectory())) {
+            invalidOption = "log-dir";
+            invalidValue = directoryValue;
+        } else if (maxSizeValue != null && maxSize < 1) {
+            invalidOption = "log-max-size";
+            invalidValue = maxSizeValue;
+        } else if (tailValue != null && tailLines < 0) {
+            invalidOption = "log-tail";
+            invalidValue = tailValue;
+        }
+
+        if (invalidOption != null) {
+            // Print the banner
+            console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
+
+            // Print an error message for the invalid command line option
+            console.error("command line option --%s [%s] is invalid", invalidOption, invalidValue);
+
+            // Print the exit code
+            console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
+
+            // Exit the program with an error code
+            exit(1);
+        }
+
+        logOptions = LogOptions.of(logDirectory, commandLine.hasOption("log-gzip"), maxSize, tailLines);
+    }
+
     /**
      * Get the filenames from the command line arguments.
      *
@@ -411,6 +953,23 @@ public class CLI {
         return commandLine.getArgList();
     }
 
+    /**
+     * Resolves a filename against the directory the CLI was invoked from.
+     *
+     * @param filename the filename
+     * @return the file
+     */
+    private File resolveFile(String filename) {
+        File file = new File(filename);
+
+        // If a directory is set, resolve a relative filename against it
+        if (directory != null && !file.isAbsolute()) {
+            file = new File(directory, filename);
+        }
+
+        return file;
+    }
+
     /**
      * Get the relative filename of the specified file based on the current working directory.
      *
@@ -418,8 +977,21 @@ public class CLI {
      * @return the relative filename or absolute path if the file is not in the current working directory
      */
     public static String getRelativeFilename(File file) {
+        return getRelativeFilename(null, file);
+    }
+
+    /**
+     * Get the relative filename of the specified file based on the specified directory.
+     *
+     * @param directory the directory, or null to use the current working directory
+     * @param file the file
+     * @return the relative filename or absolute path if the file is not in the directory
+     */
+    public static String getRelativeFilename(File directory, File file) {
         // Get the current working directory as an absolute path
-        Path currentWorkingDirectory = Paths.get(".").toAbsolutePath().normalize();
+        Path currentWorkingDirectory = (directory != null ? directory.toPath() : Paths.get("."))
+                .toAbsolutePath()
+                .normalize();
 
         // Get the target file's absolute path
         Path target = file.getAbsoluteFile().toPath().normalize();
@@ -449,7 +1021,7 @@ public class CLI {
             console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
             // Exit the program with an error
-            System.exit(1);
+            exit(1);
         }
 
         // Check if the file is readable
@@ -461,7 +1033,7 @@ public class CLI {
             console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
             // Exit the program with an error
-            System.exit(1);
+            exit(1);
         }
 
         // Check if the file is a regular file
@@ -473,10 +1045,19 @@ public class CLI {
             console.error("Pipeliner %s exit-code=[%d]", Version.getVersion(), 1);
 
             // Exit the program with an error
-            System.exit(1);
+            exit(1);
         }
     }
 
+    /**
+     * Stops the CLI with the specified exit code.
+     *
+     * @param exitCode the exit code
+     */
+    private static void exit(int exitCode) {
+        throw new ExitException("exit", exitCode);
+    }
+
     /**
      * Show usage information for the CLI.
      */
@@ -484,7 +1065,7 @@ public class CLI {
         console.setEnableTimestamps(false);
         console.println("Usage:");
         console.println();
-        console.println("  pipeliner [options] <pipeline-file>");
+        console.println("  pipeliner [options] <pipeline-file> [pipeline-file...]");
         console.println();
         console.println("Options:");
         console.println();
@@ -494,6 +1075,13 @@ public class CLI {
         console.println("  -h, --help                 print usage");
         console.println("  -E, --env <name>=<value>   set an environment variable");
         console.println("  -V, --with <name>=<value>  set a variable");
+        console.println("  -mp, --max-parallel <n>    maximum number of jobs and steps to execute in parallel");
+        console.println("  -pf, --parallel-files <n>  maximum number of pipeline files to execute in parallel");
+        console.println("  --log-dir <directory>      write the command output of each step to a log file");
+        console.println("  --log-gzip                 compress the step log files");
+        console.println("  --log-max-size <bytes>     roll over to a new step log file after the size");
+        console.println("  --log-tail <n>             only print the last n lines of the log of a failed step");
+        console.println("  --daemon                   run as a daemon (use the pipeliner script to connect)");
         console.println();
     }
 }
@@ -16,9 +16,15 @@
 
 package org.verifyica.pipeliner;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -27,6 +33,9 @@ import java.util.Locale;
  * <p>
  * It supports different log levels such as trace, info, warning, and error, and can optionally
  * prepend timestamps to each message.
+ * <p>
+ * Command output is written through a {@link LineWriter}, which formats lines of raw bytes into a
+ * reusable buffer, and writes the buffer with a single write, instead of formatting and flushing each line.
  */
 public class Console {
 
@@ -36,11 +45,41 @@ public class Console {
     private static final DateTimeFormatter TIMESTAMP_FORMAT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
 
+    /**
+     * The line separator bytes.
+     */
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The most recent timestamp, which is reused for the same millisecond.
+     */
+    private static volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, "");
+
     /**
      * The output stream to print to.
      */
     private final PrintStream printStream;
 
+    /**
+     * The charset of the output stream.
+     */
+    private final Charset charset;
+
+    /**
+     * The parent console a buffered console commits to, or null if not buffered.
+     */
+    private final Console parent;
+
+    /**
+     * The buffer of a buffered console, or null if not buffered.
+     */
+    private final ByteArrayOutputStream buffer;
+
+    /**
+     * The prefix printed before each message.
+     */
+    private final String prefix;
+
     /**
      * Controls what level of output is shown.
      */
@@ -55,7 +94,148 @@ public class Console {
      * Constructs a new Console that prints to {@code System.out} with default verbosity.
      */
     public Console() {
-        this.printStream = System.out;
+        this(System.out);
+    }
+
+    /**
+     * Constructs a new Console that prints to the given print stream with default verbosity.
+     *
+     * @param printStream the print stream to print to
+     */
+    public Console(PrintStream printStream) {
+        this(printStream, Charset.defaultCharset());
+    }
+
+    /**
+     * Constructs a new Console that prints to the given print stream with default verbosity.
+     *
+     * @param printStream the print stream to print to
+     * @param charset the charset of the print stream
+     */
+    public Console(PrintStream printStream, Charset charset) {
+        this.printStream = printStream;
+        this.charset = charset;
+        this.parent = null;
+        this.buffer = null;
+        this.prefix = "";
+    }
+
+    /**
+     * Constructs a new Console that prints to the given print stream, prefixing each message.
+     *
+     * @param printStream the print stream to print to
+     * @param charset the charset of the print stream
+     * @param prefix the prefix printed before each message
+     * @param verbosity the verbosity level
+     * @param enableTimestamps true to prepend timestamps, otherwise false
+     */
+    private Console(
+            PrintStream printStream, Charset charset, String prefix, Verbosity verbosity, boolean enableTimestamps) {
+        this.printStream = printStream;
+        this.charset = charset;
+        this.parent = null;
+        this.buffer = null;
+        this.prefix = prefix;
+        this.verbosity = verbosity;
+        this.enableTimestamps = enableTimestamps;
+    }
+
+    /**
+     * Constructs a new buffered Console.
+     *
+     * @param parent the parent console
+     * @param buffer the buffer
+     */
+    private Console(Console parent, ByteArrayOutputStream buffer) {
+        this.printStream = new PrintStream(buffer, false, parent.charset);
+        this.charset = parent.charset;
+        this.parent = parent;
+        this.buffer = buffer;
+        this.prefix = parent.prefix;
+        this.verbosity = parent.verbosity;
+        this.enableTimestamps = parent.enableTimestamps;
+    }
+
+    /**
+     * Creates a buffered console that inherits the verbosity and timestamp settings of this console.
+     * <p>
+     * Output is held in memory until {@link #commit()} is called, which writes it to this console
+     * as a single atomic write, so output of concurrent work is not interleaved.
+     *
+     * @return a new buffered console
+     */
+    public Console createBufferedConsole() {
+        return new Console(this, new ByteArrayOutputStream());
+    }
+
+    /**
+     * Creates a console that prints to the same print stream as this console, prefixing each message,
+     * and inherits the verbosity and timestamp settings of this console.
+     * <p>
+     * Each message is printed with a single write, so the output of consoles created for concurrent
+     * work is interleaved by line.
+     *
+     * @param prefix the prefix printed before each message
+     * @return a new prefixed console
+     */
+    public Console createPrefixedConsole(String prefix) {
+        return new Console(printStream, charset, this.prefix + prefix, verbosity, enableTimestamps);
+    }
+
+    /**
+     * Commits the buffered output to the parent console. Does nothing if the console is not buffered.
+     */
+    public void commit() {
+        if (parent == null) {
+            return;
+        }
+
+        byte[] bytes;
+
+        synchronized (this) {
+            // Flush and drain the buffer
+            printStream.flush();
+            bytes = buffer.toByteArray();
+            buffer.reset();
+        }
+
+        // Write the buffered output to the parent console
+        parent.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a line writer that prints lines of raw bytes, each prefixed with a tag, to this console.
+     *
+     * @param tag the tag printed before each line (e.g. "@output ")
+     * @return a new line writer
+     */
+    public LineWriter createLineWriter(String tag) {
+        return new LineWriter((prefix + tag).getBytes(charset));
+    }
+
+    /**
+     * Writes raw bytes as a single atomic write.
+     *
+     * @param bytes the bytes to write
+     * @param offset the offset of the bytes
+     * @param length the number of bytes
+     */
+    private void write(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+
+        if (parent != null) {
+            synchronized (this) {
+                printStream.flush();
+                buffer.write(bytes, offset, length);
+            }
+        } else {
+            synchronized (printStream) {
+                printStream.write(bytes, offset, length);
+                printStream.flush();
+            }
+        }
     }
 
     /**
@@ -184,7 +364,7 @@ public class Console {
         String timestampPrefix = enableTimestamps ? currentTimestamp() + " " : "";
 
         // Print the message with the timestamp prefix
-        printStream.printf(timestampPrefix + format + "%n", args);
+        printStream.print(timestampPrefix + prefix + String.format(format + "%n", args));
     }
 
     /**
@@ -198,7 +378,7 @@ public class Console {
         String timestampPrefix = enableTimestamps ? currentTimestamp() + " " : "";
 
         // Print the message with the timestamp prefix
-        printStream.print(timestampPrefix + object);
+        printStream.print(timestampPrefix + prefix + object);
     }
 
     /**
@@ -206,8 +386,149 @@ public class Console {
      *
      * @return the formatted timestamp string
      */
-    private String currentTimestamp() {
-        // Return the current timestamp formatted
-        return TIMESTAMP_FORMAT.format(LocalDateTime.now());
+    private static String currentTimestamp() {
+        return currentTimestampObject().text;
+    }
+
+    /**
+     * Returns the current timestamp, formatting it only once per millisecond.
+     *
+     * @return the current timestamp
+     */
+    private static Timestamp currentTimestampObject() {
+        long millis = System.currentTimeMillis();
+
+        Timestamp current = timestamp;
+
+        // If the timestamp was formatted for a different millisecond
+        if (current.millis != millis) {
+            // Format the timestamp, which is immutable, so a race only formats it more than once
+            current = new Timestamp(
+                    millis,
+                    TIMESTAMP_FORMAT.format(
+                            LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault())));
+            timestamp = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Class representing a formatted timestamp.
+     */
+    private static final class Timestamp {
+
+        /**
+         * The milliseconds since the epoch.
+         */
+        private final long millis;
+
+        /**
+         * The formatted timestamp.
+         */
+        private final String text;
+
+        /**
+         * The formatted timestamp bytes, followed by a space.
+         */
+        private final byte[] bytes;
+
+        /**
+         * Constructor
+         *
+         * @param millis the milliseconds since the epoch
+         * @param text the formatted timestamp
+         */
+        private Timestamp(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+            this.bytes = (text + " ").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Class to print lines of raw bytes to the console.
+     * <p>
+     * Lines are formatted into a reusable buffer, which is written to the console with a single write when
+     * flushed, or when the buffer is full. A line writer is not thread-safe, so each thread creates its own.
+     */
+    public final class LineWriter {
+
+        /**
+         * The size of the buffer written without waiting for a flush.
+         */
+        private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+        /**
+         * The console prefix and the tag printed before each line.
+         */
+        private final byte[] tag;
+
+        /**
+         * The buffer of formatted lines.
+         */
+        private byte[] buffer;
+
+        /**
+         * The number of bytes in the buffer.
+         */
+        private int count;
+
+        /**
+         * Constructor
+         *
+         * @param tag the console prefix and the tag printed before each line
+         */
+        private LineWriter(byte[] tag) {
+            this.tag = tag;
+            this.buffer = new byte[8192];
+        }
+
+        /**
+         * Prints a line.
+         *
+         * @param bytes the bytes of the line, without a line separator
+         * @param offset the offset of the line
+         * @param length the length of the line
+         */
+        public void println(byte[] bytes, int offset, int length) {
+            // Prepend the timestamp if timestamps are enabled
+            if (enableTimestamps) {
+                byte[] timestampBytes = currentTimestampObject().bytes;
+                append(timestampBytes, 0, timestampBytes.length);
+            }
+
+            append(tag, 0, tag.length);
+            append(bytes, offset, length);
+            append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+
+            if (count >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the buffered lines to the console.
+         */
+        public void flush() {
+            write(buffer, 0, count);
+            count = 0;
+        }
+
+        /**
+         * Appends bytes to the buffer, growing the buffer if required.
+         *
+         * @param bytes the bytes
+         * @param offset the offset of the bytes
+         * @param length the number of bytes
+         */
+        private void append(byte[] bytes, int offset, int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+            }
+
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
     }
 }
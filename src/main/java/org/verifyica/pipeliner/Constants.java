@@ -37,6 +37,9 @@ public class Constants {
     /** Constant */
     public static final String PIPELINER_TMP = "PIPELINER_TMP";
 
+    /** Constant */
+    public static final String PIPELINER_SPILL_THRESHOLD = "PIPELINER_SPILL_THRESHOLD";
+
     /** Constant */
     public static final String PIPELINER_IPC_IN = "PIPELINER_IPC_IN";
 
@@ -49,9 +52,18 @@ public class Constants {
     /** Constant */
     public static final String PIPELINER_IPC_OUT_FILE_PREFIX = "pipeliner-ipc-out-";
 
+    /** Constant */
+    public static final String PIPELINER_DAEMON_DIRECTORY = "PIPELINER_DAEMON_DIRECTORY";
+
     /** Constant */
     public static final String PIPELINER_SHUTDOWN_HOOKS_ENABLED = "PIPELINER_SHUTDOWN_HOOKS_ENABLED";
 
+    /** Constant */
+    public static final String PIPELINER_ASYNC_CONSOLE = "PIPELINER_ASYNC_CONSOLE";
+
+    /** Constant */
+    public static final String PIPELINER_SHELL_POOL = "PIPELINER_SHELL_POOL";
+
     /** Constant */
     public static final String PIPELINER_NESTED_EXECUTION = "PIPELINER_DISABLE_BANNER";
 
@@ -0,0 +1,529 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.verifyica.pipeliner.engine.Cancellation;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Daemon to execute pipelines in a warm JVM on behalf of the pipeliner script.
+ * <p>
+ * The daemon listens on a loopback socket. The port, an access token, and the daemon's process id are
+ * written to a state file in a directory only accessible by the current user, which the pipeliner script
+ * reads to connect. A client sends a request of NUL terminated fields:
+ * <pre>
+ * token, working directory, argument count, arguments..., environment variables (NAME=value)..., empty field
+ * </pre>
+ * The daemon executes the request in a new {@link CLI}, with its own console and context, and streams the
+ * output back to the client. The response ends with the token followed by the exit code, which follows
+ * the output on the same line if the output doesn't end with a newline. The client keeps the connection
+ * open until the response ends; if the connection is closed, the execution is cancelled, destroying the
+ * processes of its commands. A request with the single argument {@code --daemon-stop} stops the daemon.
+ * <p>
+ * The request must be sent within {@link #REQUEST_TIMEOUT_MILLISECONDS}, and at most
+ * {@link #MAXIMUM_SESSIONS} sessions are executed at a time.
+ */
+public class Daemon {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Daemon.class);
+
+    /**
+     * The argument of a request to stop the daemon.
+     */
+    public static final String STOP_ARGUMENT = "--daemon-stop";
+
+    /**
+     * The name of the state file in the daemon directory.
+     */
+    private static final String STATE_FILENAME = "daemon";
+
+    /**
+     * The number of random bytes of the access token.
+     */
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * The maximum time to read a request, in milliseconds.
+     */
+    private static final int REQUEST_TIMEOUT_MILLISECONDS = 10_000;
+
+    /**
+     * The maximum number of sessions executed at a time.
+     */
+    private static final int MAXIMUM_SESSIONS = 16;
+
+    /**
+     * The maximum number of accepted sessions waiting to be executed.
+     */
+    private static final int MAXIMUM_QUEUED_SESSIONS = 64;
+
+    /**
+     * Counter used to name the session threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Console for output
+     */
+    private final Console console;
+
+    /**
+     * The daemon directory.
+     */
+    private final Path directory;
+
+    /**
+     * The cancellations of the executing sessions.
+     */
+    private final Set<Cancellation> cancellations;
+
+    /**
+     * The server socket, or null if the daemon is not running.
+     */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Constructor
+     *
+     * @param console the console for output
+     */
+    public Daemon(Console console) {
+        this(console, getDirectory(System.getenv()));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console the console for output
+     * @param directory the daemon directory
+     */
+    public Daemon(Console console, Path directory) {
+        this.console = console;
+        this.directory = directory;
+        this.cancellations = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Executes the daemon until it is stopped.
+     *
+     * @return the exit code
+     */
+    public int execute() {
+        // Get the state file
+        Path stateFile = directory.resolve(STATE_FILENAME);
+
+        // Get the access token
+        String token = createToken();
+
+        // Get the process id
+        long pid = ProcessHandle.current().pid();
+
+        // Create the executor of the sessions
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAXIMUM_SESSIONS,
+                MAXIMUM_SESSIONS,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAXIMUM_QUEUED_SESSIONS),
+                runnable -> {
+                    Thread thread =
+                            new Thread(runnable, "pipeliner-daemon-session-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            this.serverSocket = serverSocket;
+
+            // Create the daemon directory, only accessible by the current user
+            Files.createDirectories(directory);
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+
+            // If another daemon is running
+            if (isRunning(stateFile)) {
+                console.error("daemon is already running [%s]", stateFile);
+                return 1;
+            }
+
+            // Write the state file atomically, only accessible by the current user
+            String state = serverSocket.getLocalPort() + " " + token + " " + pid + "\n";
+            Path temporaryStateFile = Files.createTempFile(directory, STATE_FILENAME, ".tmp");
+            Files.write(temporaryStateFile, state.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryStateFile, stateFile, StandardCopyOption.REPLACE_EXISTING);
+
+            // Delete the state file when the daemon is stopped
+            Thread shutdownHook = new Thread(() -> deleteStateFile(stateFile, state));
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+            console.info("Pipeliner %s (%s)", Version.getVersion(), Constants.PIPELINER_PROJECT_URL);
+            console.info("daemon pid=[%d] port=[%d] state=[%s]", pid, serverSocket.getLocalPort(), stateFile);
+
+            try {
+                while (!serverSocket.isClosed()) {
+                    // Accept the next session
+                    Socket socket;
+
+                    try {
+                        socket = serverSocket.accept();
+                    } catch (IOException e) {
+                        // If the daemon was stopped
+                        if (serverSocket.isClosed()) {
+                            break;
+                        }
+
+                        throw e;
+                    }
+
+                    // Execute the session, unless too many sessions are executing
+                    try {
+                        executor.execute(() -> executeSession(socket, token));
+                    } catch (RejectedExecutionException e) {
+                        LOGGER.trace("too many sessions");
+                        close(socket);
+                    }
+                }
+            } finally {
+                // Cancel the executing sessions
+                cancellations.forEach(Cancellation::cancel);
+                executor.shutdownNow();
+
+                deleteStateFile(stateFile, state);
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+
+            console.info("daemon stopped");
+
+            return 0;
+        } catch (IOException e) {
+            console.error("daemon exception [%s]", e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Stops the daemon.
+     */
+    public void stop() {
+        ServerSocket serverSocket = this.serverSocket;
+
+        if (serverSocket != null) {
+            close(serverSocket);
+        }
+    }
+
+    /**
+     * Executes a client session.
+     *
+     * @param socket the socket
+     * @param token the access token
+     */
+    private void executeSession(Socket socket, String token) {
+        try (socket) {
+            // Limit the time to read the request
+            socket.setSoTimeout(REQUEST_TIMEOUT_MILLISECONDS);
+
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            // Validate the access token, which is read with a limited length before the client is trusted
+            if (!MessageDigest.isEqual(
+                    token.getBytes(StandardCharsets.UTF_8),
+                    readField(inputStream, TOKEN_BYTES * 2).getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.trace("invalid access token");
+                return;
+            }
+
+            // Read the working directory
+            File directory = new File(readField(inputStream));
+
+            // Read the arguments
+            int argumentCount = Integer.parseInt(readField(inputStream));
+            String[] arguments = new String[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                arguments[i] = readField(inputStream);
+            }
+
+            // Read the environment variables
+            Map<String, String> environmentVariables = new HashMap<>();
+            String field;
+            while (!(field = readField(inputStream)).isEmpty()) {
+                int index = field.indexOf('=');
+                if (index > 0) {
+                    environmentVariables.put(field.substring(0, index), field.substring(index + 1));
+                }
+            }
+
+            // The request is read, so the session isn't limited in time
+            socket.setSoTimeout(0);
+
+            LOGGER.trace("session directory [%s] arguments %s", directory, List.of(arguments));
+
+            // Create a console for the session
+            PrintStream printStream =
+                    new PrintStream(new BufferedOutputStream(socket.getOutputStream()), true, StandardCharsets.UTF_8);
+            Console console = new Console(printStream, StandardCharsets.UTF_8);
+
+            // If the request stops the daemon
+            if (arguments.length == 1 && STOP_ARGUMENT.equals(arguments[0])) {
+                printStream.print(token + " 0\n");
+                printStream.flush();
+                stop();
+                return;
+            }
+
+            Cancellation cancellation = new Cancellation();
+            cancellations.add(cancellation);
+
+            // Cancel the execution if the client closes the connection
+            Thread watcher = new Thread(
+                    () -> watchSession(inputStream, cancellation),
+                    Thread.currentThread().getName() + "-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+
+            try {
+                // Execute the CLI for the session
+                int exitCode = executeCli(console, environmentVariables, directory, arguments, cancellation);
+
+                // Write the exit code
+                printStream.print(token + " " + exitCode + "\n");
+                printStream.flush();
+
+                if (printStream.checkError()) {
+                    LOGGER.trace("session client disconnected");
+                }
+            } finally {
+                cancellations.remove(cancellation);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.trace("session exception [%s]", e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for the client to close the connection, cancelling the execution of the session. The client
+     * doesn't send anything after the request, so the read only returns when the connection is closed.
+     *
+     * @param inputStream the input stream of the session
+     * @param cancellation the cancellation of the execution
+     */
+    private static void watchSession(InputStream inputStream, Cancellation cancellation) {
+        try {
+            while (inputStream.read() != -1) {
+                // INTENTIONALLY BLANK
+            }
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+
+        LOGGER.trace("session connection closed");
+
+        cancellation.cancel();
+    }
+
+    /**
+     * Executes the CLI for a session.
+     *
+     * @param console the console of the session
+     * @param environmentVariables the environment variables of the session
+     * @param directory the working directory of the session
+     * @param arguments the arguments of the session
+     * @param cancellation the cancellation of the execution
+     * @return the exit code
+     */
+    private static int executeCli(
+            Console console,
+            Map<String, String> environmentVariables,
+            File directory,
+            String[] arguments,
+            Cancellation cancellation) {
+        for (String argument : arguments) {
+            // A session can't start a daemon
+            if ("--daemon".equals(argument)) {
+                console.error("daemon is already running");
+                return 1;
+            }
+        }
+
+        try {
+            return new CLI(console, environmentVariables, directory, cancellation).execute(arguments);
+        } catch (Throwable t) {
+            console.error("exception [%s]", t.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Reads a NUL terminated UTF-8 field.
+     *
+     * @param inputStream the input stream
+     * @return the field
+     * @throws IOException if an I/O error occurs, or the stream ends before the field is terminated
+     */
+    private static String readField(InputStream inputStream) throws IOException {
+        return readField(inputStream, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a NUL terminated UTF-8 field of a limited length.
+     *
+     * @param inputStream the input stream
+     * @param maximumLength the maximum length of the field, in bytes
+     * @return the field
+     * @throws IOException if an I/O error occurs, the stream ends before the field is terminated, or the field
+     *         is longer than the maximum length
+     */
+    private static String readField(InputStream inputStream, int maximumLength) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = inputStream.read()) != 0) {
+            if (b == -1) {
+                throw new EOFException("unexpected end of request");
+            }
+            if (byteArrayOutputStream.size() == maximumLength) {
+                throw new IOException("request field too long");
+            }
+            byteArrayOutputStream.write(b);
+        }
+
+        return byteArrayOutputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the daemon directory, which is the PIPELINER_DAEMON_DIRECTORY environment variable, or
+     * {@code pipeliner-daemon-<user>} in the TMPDIR directory (default /tmp), the same as the pipeliner script.
+     *
+     * @param environmentVariables the environment variables
+     * @return the daemon directory
+     */
+    public static Path getDirectory(Map<String, String> environmentVariables) {
+        String directory = environmentVariables.get(Constants.PIPELINER_DAEMON_DIRECTORY);
+
+        if (directory == null || directory.trim().isEmpty()) {
+            String temporaryDirectory = environmentVariables.get("TMPDIR");
+
+            if (temporaryDirectory == null || temporaryDirectory.trim().isEmpty()) {
+                temporaryDirectory = "/tmp";
+            }
+
+            directory = temporaryDirectory + File.separator + "pipeliner-daemon-" + System.getProperty("user.name");
+        }
+
+        return Paths.get(directory).toAbsolutePath();
+    }
+    /**
+     * Creates a random access token.
+     *
+     * @return the access token
+     */
+    private static String createToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (byte b : bytes) {
+            stringBuilder.append(String.format("%02x", b));
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Returns true if the state file belongs to a running process.
+     *
+     * @param stateFile the state file
+     * @return true if the state file belongs to a running process, otherwise false
+     */
+    private static boolean isRunning(Path stateFile) {
+        try {
+            String[] tokens = new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8)
+                    .trim()
+                    .split(" ");
+
+            return tokens.length == 3
+                    && ProcessHandle.of(Long.parseLong(tokens[2]))
+                            .map(ProcessHandle::isAlive)
+                            .orElse(false);
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a socket, ignoring errors.
+     *
+     * @param closeable the socket
+     */
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+    }
+
+    /**
+     * Deletes the state file, if it still belongs to this daemon.
+     *
+     * @param stateFile the state file
+     * @param state the state written by this daemon
+     */
+    private static void deleteStateFile(Path stateFile, String state) {
+        try {
+            if (state.equals(new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8))) {
+                Files.delete(stateFile);
+            }
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+    }
+}
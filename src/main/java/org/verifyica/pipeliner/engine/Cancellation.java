@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.verifyica.pipeliner.engine.instructions.support.ProcessWatchdog;
+
+/**
+ * Class representing the cancellation of a pipeline execution, shared by the context and its forked contexts.
+ * <p>
+ * The processes executing commands are registered while they run, so cancelling destroys them and their
+ * descendants, and no further commands are started.
+ */
+public final class Cancellation {
+
+    /**
+     * The running processes.
+     */
+    private final Set<ProcessHandle> processHandles;
+
+    /**
+     * Flag to indicate whether the execution is cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor
+     */
+    public Cancellation() {
+        this.processHandles = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Returns true if the execution is cancelled.
+     *
+     * @return true if the execution is cancelled, otherwise false
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the execution, destroying the running processes and their descendants.
+     */
+    public void cancel() {
+        cancelled = true;
+
+        for (ProcessHandle processHandle : processHandles) {
+            ProcessWatchdog.destroyTree(processHandle);
+        }
+    }
+
+    /**
+     * Registers a running process, destroying it if the execution is already cancelled.
+     *
+     * @param processHandle the process handle
+     */
+    public void register(ProcessHandle processHandle) {
+        processHandles.add(processHandle);
+
+        // If the execution was cancelled while the process was started
+        if (cancelled) {
+            ProcessWatchdog.destroyTree(processHandle);
+        }
+    }
+
+    /**
+     * Unregisters a process that completed.
+     *
+     * @param processHandle the process handle
+     */
+    public void unregister(ProcessHandle processHandle) {
+        processHandles.remove(processHandle);
+    }
+}
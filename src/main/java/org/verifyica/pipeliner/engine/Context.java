@@ -16,14 +16,35 @@
 
 package org.verifyica.pipeliner.engine;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.verifyica.pipeliner.Console;
-import org.verifyica.pipeliner.parser.Parser;
+import org.verifyica.pipeliner.Constants;
+import org.verifyica.pipeliner.engine.instructions.support.LogOptions;
+import org.verifyica.pipeliner.engine.instructions.support.Shell;
+import org.verifyica.pipeliner.engine.instructions.support.ShellSession;
+import org.verifyica.pipeliner.engine.instructions.support.StepLog;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.parser.SymbolTable;
+import org.verifyica.pipeliner.parser.Template;
+import org.verifyica.pipeliner.support.SecretMasker;
+import org.verifyica.pipeliner.support.SpillFile;
 
 /**
  * Class representing the execution context of a pipeline, job, or step.
@@ -33,17 +54,47 @@ public class Context {
     /**
      * Default working directory for the context.
      */
-    private static final String DEFAULT_WORKING_DIRECTORY = ".";
+    private static final Template DEFAULT_WORKING_DIRECTORY = Template.compile(".");
 
     /**
      * Default shell for the context.
      */
     private static final String BASH_SHELL = "bash";
 
+    /**
+     * Default shell template for the context.
+     */
+    private static final Template DEFAULT_SHELL = Template.compile(BASH_SHELL);
+
     /**
      * Default timeout in minutes for the context.
      */
-    private static final String DEFAULT_TIMEOUT_MINUTES = "360";
+    private static final Template DEFAULT_TIMEOUT_MINUTES = Template.compile("360");
+
+    /**
+     * Persistent shell session mode.
+     */
+    private static final String PERSISTENT_SHELL_SESSION = "persistent";
+
+    /**
+     * Pattern to match the characters of a frame name that are replaced in a log file name.
+     */
+    private static final Pattern LOG_NAME_PATTERN = Pattern.compile("[^A-Za-z0-9._-]+");
+
+    /**
+     * The maximum length of a log file name, without the part number and extension.
+     */
+    private static final int MAX_LOG_NAME_LENGTH = 128;
+
+    /**
+     * The pattern separating the names of the masked variables.
+     */
+    private static final Pattern MASK_VARIABLES_SEPARATOR = Pattern.compile("[,\\s]+");
+
+    /**
+     * Default maximum number of jobs to execute in parallel.
+     */
+    private static final int DEFAULT_MAX_PARALLEL = Runtime.getRuntime().availableProcessors();
 
     /**
      * Comparator to sort variables by name in alphabetical order, then by length (longest first).
@@ -57,30 +108,203 @@ public class Context {
     private final Console console;
 
     /**
-     * The map of environment variables for the context.
+     * The scoped environment variables for the context, with a scope layer per frame.
      */
-    private final Map<String, String> environmentVariables;
+    private final ScopedMap environmentVariables;
 
     /**
-     * The map of variables for the context.
+     * The scoped variables for the context, with a scope layer per frame.
      */
-    private final Map<String, String> variables;
+    private final ScopedMap variables;
 
     /**
      * The stack of frames for the context.
      */
     private final Deque<Frame> frames;
 
+    /**
+     * The maximum number of jobs to execute in parallel.
+     */
+    private int maxParallel;
+
+    /**
+     * The permits to execute programs in parallel, shared with forked contexts, so the maximum number of
+     * parallel programs applies to nested jobs, parallel steps and matrix jobs together.
+     */
+    private ParallelPermits parallelPermits;
+
+    /**
+     * The persistent shell sessions of the context, by owning frame.
+     */
+    private final Map<Frame, ShellSession> shellSessions;
+
+    /**
+     * The options of the step logs, or null if command output is not logged.
+     */
+    private LogOptions logOptions;
+
+    /**
+     * The open step logs of the context, by owning frame.
+     */
+    private final Map<Frame, StepLog> stepLogs;
+
+    /**
+     * The resolver for variable references.
+     */
+    private final VariableResolver variableResolver;
+
+    /**
+     * The cached working directory of the current frame.
+     */
+    private final Setting<String> workingDirectorySetting;
+
+    /**
+     * The cached shell of the current frame.
+     */
+    private final Setting<Shell> shellSetting;
+
+    /**
+     * The cached timeout minutes of the current frame.
+     */
+    private final Setting<String> timeoutMinutesSetting;
+
+    /**
+     * The cached timeout minutes of the frames that set a timeout, by frame.
+     */
+    private final Map<Frame, Setting<Integer>> frameTimeoutMinutesSettings;
+
+    /**
+     * The secrets the secret masker was built from.
+     */
+    private List<String> secrets;
+
+    /**
+     * The secret masker.
+     */
+    private SecretMasker secretMasker;
+
+    /**
+     * The names of the variables and environment variables the secrets were read from, including
+     * pipeliner_mask_variables, or null if the secrets must be read again.
+     */
+    private List<String> secretsNames;
+
+    /**
+     * The unresolved values of the variables the secrets were read from, by index of the name.
+     */
+    private List<String> secretsVariableValues;
+
+    /**
+     * The values of the environment variables the secrets were read from, by index of the name.
+     */
+    private List<String> secretsEnvironmentVariableValues;
+
+    /**
+     * The resolved secrets that reference other variables, recording the variables they were resolved from.
+     */
+    private List<VariableResolver.Entry> secretsEntries;
+
+    /**
+     * The directory relative working directories are resolved against, or null to use the current directory.
+     */
+    private File directory;
+
+    /**
+     * The environment variables the pipeliner was invoked with.
+     */
+    private Map<String, String> systemEnvironmentVariables;
+
+    /**
+     * The temporary files referenced by variables, shared with forked contexts.
+     */
+    private Set<File> temporaryFiles;
+
+    /**
+     * The cancellation of the execution, shared with forked contexts and child contexts.
+     */
+    private Cancellation cancellation;
+
     /**
      * Constructor
      *
      * @param console the console
      */
     public Context(Console console) {
+        this(console, new ScopedMap(BY_ALPHA_THEN_LONGEST), new ScopedMap(BY_ALPHA_THEN_LONGEST));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console the console
+     * @param environmentVariables the scoped environment variables
+     * @param variables the scoped variables
+     */
+    private Context(Console console, ScopedMap environmentVariables, ScopedMap variables) {
         this.console = console;
-        this.environmentVariables = new TreeMap<>(BY_ALPHA_THEN_LONGEST);
-        this.variables = new TreeMap<>(BY_ALPHA_THEN_LONGEST);
+        this.environmentVariables = environmentVariables;
+        this.variables = variables;
         this.frames = new ArrayDeque<>();
+        this.maxParallel = DEFAULT_MAX_PARALLEL;
+        this.parallelPermits = createParallelPermits(DEFAULT_MAX_PARALLEL);
+        this.shellSessions = new IdentityHashMap<>();
+        this.stepLogs = new IdentityHashMap<>();
+        this.variableResolver = new VariableResolver(variables, environmentVariables);
+        this.workingDirectorySetting = new Setting<>();
+        this.shellSetting = new Setting<>();
+        this.timeoutMinutesSetting = new Setting<>();
+        this.frameTimeoutMinutesSettings = new IdentityHashMap<>();
+        this.systemEnvironmentVariables = Collections.emptyMap();
+        this.temporaryFiles = ConcurrentHashMap.newKeySet();
+        this.cancellation = new Cancellation();
+    }
+
+    /**
+     * Creates a copy of the context for concurrent execution, using the given console.
+     * <p>
+     * The scope layers of the environment variables and variables are shared copy-on-write, and the
+     * frame stack is copied, so changes made in the forked context are not visible in this context.
+     * Frames are shared and must be treated as read-only by the forked context. Persistent shell
+     * sessions are not shared, so the forked context starts its own shell sessions.
+     *
+     * @param console the console for the forked context
+     * @return a new forked context
+     */
+    public Context fork(Console console) {
+        Context context = new Context(console, environmentVariables.fork(), variables.fork());
+
+        context.frames.addAll(frames);
+        context.maxParallel = maxParallel;
+        context.parallelPermits = parallelPermits;
+        context.logOptions = logOptions;
+        context.secrets = secrets;
+        context.secretMasker = secretMasker;
+        context.directory = directory;
+        context.systemEnvironmentVariables = systemEnvironmentVariables;
+        context.temporaryFiles = temporaryFiles;
+        context.cancellation = cancellation;
+
+        return context;
+    }
+
+    /**
+     * Creates a child context to execute a nested pipeline.
+     * <p>
+     * The environment variables and variables are inherited copy-on-write, so changes made by the nested
+     * pipeline are not visible in this context. The frame stack starts empty, so the working directory, shell, and timeout
+     * settings of this context's frames don't apply to the nested pipeline. The temporary files of the
+     * nested pipeline are tracked separately, so they can be deleted when the nested pipeline completes.
+     *
+     * @param console the console for the child context
+     * @return a new child context
+     */
+    public Context createChild(Console console) {
+        Context context = fork(console);
+
+        context.frames.clear();
+        context.temporaryFiles = ConcurrentHashMap.newKeySet();
+
+        return context;
     }
 
     /**
@@ -93,9 +317,12 @@ public class Context {
     }
 
     /**
-     * Get the map of environment variables for the context.
+     * Get the scoped environment variables for the context.
+     * <p>
+     * Putting an environment variable updates the innermost scope that declares it, or the outermost
+     * scope if no scope declares it.
      *
-     * @return the map of environment variables
+     * @return the map of scoped environment variables
      */
     public Map<String, String> getEnvironmentVariables() {
         return environmentVariables;
@@ -103,6 +330,9 @@ public class Context {
 
     /**
      * Get the scoped variables for the context.
+     * <p>
+     * Putting a variable updates the innermost scope that declares it, or the outermost scope if no
+     * scope declares it.
      *
      * @return the map of scoped variables
      */
@@ -110,6 +340,86 @@ public class Context {
         return variables;
     }
 
+    /**
+     * Get the value of a variable, without resolving its references.
+     * <p>
+     * Unlike getting the value from {@link #getVariables()}, a value that was spilled to a file is read from
+     * the file.
+     *
+     * @param name the variable name
+     * @return the value, or null if the variable is not defined
+     * @throws SyntaxException if a spilled value is too large to read into memory
+     */
+    public String getVariable(String name) {
+        return variableResolver.getValue(name);
+    }
+
+    /**
+     * Get an immutable snapshot of the environment variables for the context.
+     * <p>
+     * The snapshot is reused, without copying the environment variables, until an environment variable
+     * changes.
+     *
+     * @return the snapshot of the environment variables
+     */
+    public Map<String, String> getEnvironmentVariablesSnapshot() {
+        return environmentVariables.snapshot();
+    }
+
+    /**
+     * Get the version of the environment variables for the context, which changes when an environment
+     * variable changes.
+     *
+     * @return the version of the environment variables
+     */
+    public long getEnvironmentVariablesVersion() {
+        return environmentVariables.getVersion();
+    }
+
+    /**
+     * Declare an environment variable in the scope of the current frame.
+     * The environment variable is removed when the frame is popped.
+     *
+     * @param name the environment variable name
+     * @param value the environment variable value
+     */
+    public void declareEnvironmentVariable(String name, String value) {
+        environmentVariables.declare(name, value);
+    }
+
+    /**
+     * Declare an environment variable in the scope of the current frame.
+     * The environment variable is removed when the frame is popped.
+     *
+     * @param symbol the environment variable name symbol, interned in the {@link SymbolTable}
+     * @param value the environment variable value
+     */
+    public void declareEnvironmentVariable(int symbol, String value) {
+        environmentVariables.declare(symbol, value);
+    }
+
+    /**
+     * Declare a variable in the scope of the current frame.
+     * The variable is removed when the frame is popped.
+     *
+     * @param name the variable name
+     * @param value the variable value
+     */
+    public void declareVariable(String name, String value) {
+        variables.declare(name, value);
+    }
+
+    /**
+     * Declare a variable in the scope of the current frame.
+     * The variable is removed when the frame is popped.
+     *
+     * @param symbol the variable name symbol, interned in the {@link SymbolTable}
+     * @param value the variable value
+     */
+    public void declareVariable(int symbol, String value) {
+        variables.declare(symbol, value);
+    }
+
     /**
      * Get the stack of frames for the context.
      *
@@ -119,13 +429,389 @@ public class Context {
         return frames;
     }
 
+    /**
+     * Set the maximum number of jobs to execute in parallel.
+     *
+     * @param maxParallel the maximum number of jobs to execute in parallel
+     */
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = maxParallel;
+        this.parallelPermits = createParallelPermits(maxParallel);
+    }
+
+    /**
+     * Get the maximum number of jobs to execute in parallel.
+     *
+     * @return the maximum number of jobs to execute in parallel
+     */
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    /**
+     * Get the permits to execute programs in parallel, shared by the context and its forked contexts.
+     * <p>
+     * The executing thread holds a permit, so there is one permit less than the maximum number of parallel
+     * programs. A thread waiting for parallel programs lends its permit to the first of them.
+     *
+     * @return the permits to execute programs in parallel
+     */
+    ParallelPermits getParallelPermits() {
+        return parallelPermits;
+    }
+
+    /**
+     * Set the cancellation of the execution.
+     *
+     * @param cancellation the cancellation
+     */
+    public void setCancellation(Cancellation cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Get the cancellation of the execution.
+     *
+     * @return the cancellation
+     */
+    public Cancellation getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Set the directory relative working directories are resolved against.
+     *
+     * @param directory the directory, or null to use the current directory
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the directory relative working directories are resolved against.
+     *
+     * @return the directory, or null if the current directory is used
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the environment variables the pipeliner was invoked with.
+     *
+     * @param systemEnvironmentVariables the environment variables the pipeliner was invoked with
+     */
+    public void setSystemEnvironmentVariables(Map<String, String> systemEnvironmentVariables) {
+        this.systemEnvironmentVariables = Collections.unmodifiableMap(systemEnvironmentVariables);
+    }
+
+    /**
+     * Get the environment variables the pipeliner was invoked with.
+     *
+     * @return the environment variables the pipeliner was invoked with
+     */
+    public Map<String, String> getSystemEnvironmentVariables() {
+        return systemEnvironmentVariables;
+    }
+
+    /**
+     * Get the frame owning the persistent shell session for the current frame.
+     *
+     * @return the frame owning the persistent shell session, or null if the current frame does not use a
+     *         persistent shell session
+     */
+    public Frame getShellSessionFrame() {
+        // Iterate the frames, innermost first
+        for (Frame frame : frames) {
+            // Check if the frame has a shell session mode set
+            if (frame.getShellSession() != null) {
+                return PERSISTENT_SHELL_SESSION.equals(frame.getShellSession()) ? frame : null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the map of persistent shell sessions for the context, by owning frame.
+     *
+     * @return the map of persistent shell sessions
+     */
+    public Map<Frame, ShellSession> getShellSessions() {
+        return shellSessions;
+    }
+
+    /**
+     * Close all persistent shell sessions of the context.
+     */
+    public void closeShellSessions() {
+        for (ShellSession shellSession : shellSessions.values()) {
+            shellSession.close();
+            cancellation.unregister(shellSession.toHandle());
+        }
+
+        shellSessions.clear();
+    }
+
+    /**
+     * Set the options of the step logs.
+     *
+     * @param logOptions the options of the step logs, or null to not log command output
+     */
+    public void setLogOptions(LogOptions logOptions) {
+        this.logOptions = logOptions;
+    }
+
+    /**
+     * Get the options of the step logs.
+     *
+     * @return the options of the step logs, or null if command output is not logged
+     */
+    public LogOptions getLogOptions() {
+        return logOptions;
+    }
+
+    /**
+     * Get the step log of the current frame, opening it if required.
+     * <p>
+     * The log files are named with the sequence number of the log, followed by the names of the frames,
+     * outermost first, so the log files of a pipeliner invocation are unique and sort in execution order.
+     *
+     * @return the step log of the current frame, or null if command output is not logged
+     * @throws IOException if an error occurs opening the step log
+     */
+    public StepLog getStepLog() throws IOException {
+        if (logOptions == null) {
+            return null;
+        }
+
+        Frame frame = frames.peek();
+        StepLog stepLog = stepLogs.get(frame);
+
+        if (stepLog == null) {
+            StringBuilder name = new StringBuilder(String.format("%04d", logOptions.nextSequence()));
+
+            // Iterate the frames, outermost first
+            Iterator<Frame> frameIterator = frames.descendingIterator();
+
+            while (frameIterator.hasNext()) {
+                Frame next = frameIterator.next();
+                String frameName =
+                        next.getName() != null ? next.getName() : next.getType().getValue();
+
+                name.append('-').append(LOG_NAME_PATTERN.matcher(frameName).replaceAll("_"));
+            }
+
+            // Limit the length of the name, so the log files names are valid
+            if (name.length() > MAX_LOG_NAME_LENGTH) {
+                name.setLength(MAX_LOG_NAME_LENGTH);
+            }
+
+            stepLog = StepLog.of(logOptions, name.toString());
+            stepLogs.put(frame, stepLog);
+        }
+
+        return stepLog;
+    }
+
+    /**
+     * Get the open step log of the current frame, without opening it.
+     *
+     * @return the step log of the current frame, or null if not open
+     */
+    public StepLog getOpenStepLog() {
+        return frames.isEmpty() ? null : stepLogs.get(frames.peek());
+    }
+
+    /**
+     * Close the step log owned by a frame, if any, printing the log files and the size of the log.
+     *
+     * @param frame the frame
+     */
+    public void closeStepLog(Frame frame) {
+        StepLog stepLog = stepLogs.remove(frame);
+
+        if (stepLog == null) {
+            return;
+        }
+
+        // Get the log files
+        String files = stepLog.getFiles().stream().map(File::getPath).collect(Collectors.joining(", "));
+
+        try {
+            stepLog.close();
+
+            console.info(
+                    "%s log=[%s] lines=[%d] bytes=[%d]",
+                    frame.toConsoleString(), files, stepLog.getLines(), stepLog.getBytes());
+        } catch (IOException e) {
+            console.warning("%s log=[%s] exception [%s]", frame.toConsoleString(), files, e.getMessage());
+        }
+    }
+
+    /**
+     * Close all step logs of the context.
+     */
+    public void closeStepLogs() {
+        for (Frame frame : new ArrayList<>(stepLogs.keySet())) {
+            closeStepLog(frame);
+        }
+    }
+
+    /**
+     * Get the secret masker for the values of the variables named by the pipeliner_mask_variables variable,
+     * which is a comma or whitespace separated list of variable or environment variable names.
+     * <p>
+     * The secrets are read again only when pipeliner_mask_variables, a named variable or environment variable,
+     * or a variable a secret references, changes, and the secret masker is only rebuilt if the secrets changed.
+     *
+     * @return the secret masker
+     */
+    public SecretMasker getSecretMasker() {
+        // If the variables the secrets were read from are unchanged
+        if (secretMasker != null && isSecretsValid()) {
+            return secretMasker;
+        }
+
+        List<String> resolvedSecrets = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<VariableResolver.Entry> entries = new ArrayList<>();
+        boolean valid = true;
+
+        names.add(Constants.PIPELINER_MASK_VARIABLES);
+
+        String maskVariables = getVariable(Constants.PIPELINER_MASK_VARIABLES);
+
+        if (maskVariables != null) {
+            for (String name : MASK_VARIABLES_SEPARATOR.split(maskVariables.trim())) {
+                names.add(name);
+
+                String value = getVariable(name);
+
+                if (value == null) {
+                    value = environmentVariables.get(name);
+                }
+
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+
+                resolvedSecrets.add(value);
+
+                Template template = Template.compile(value);
+
+                // Mask the value as the command sees it, if it references other variables
+                if (template.hasVariables() || template.hasEnvironmentVariables()) {
+                    try {
+                        VariableResolver.Entry entry = variableResolver.resolveEntry(template, true);
+
+                        if (!entry.getValue().equals(value)) {
+                            resolvedSecrets.add(entry.getValue());
+                        }
+
+                        entries.add(entry);
+                    } catch (SyntaxException e) {
+                        // Read the secrets again, since the variables the value references are unknown
+                        valid = false;
+                    }
+                }
+            }
+        }
+
+        // Rebuild the secret masker only if the secrets changed
+        if (secretMasker == null || !resolvedSecrets.equals(secrets)) {
+            secretMasker = SecretMasker.of(resolvedSecrets, Charset.defaultCharset());
+            secrets = resolvedSecrets;
+        }
+
+        // Record the values the secrets were read from
+        secretsNames = valid ? names : null;
+        secretsVariableValues = new ArrayList<>(names.size());
+        secretsEnvironmentVariableValues = new ArrayList<>(names.size());
+        secretsEntries = entries;
+
+        for (String name : names) {
+            secretsVariableValues.add(variables.get(name));
+            secretsEnvironmentVariableValues.add(environmentVariables.get(name));
+        }
+
+        return secretMasker;
+    }
+
+    /**
+     * Returns true if the variables and environment variables the secrets were read from are unchanged.
+     *
+     * @return true if the secrets are unchanged, otherwise false
+     */
+    private boolean isSecretsValid() {
+        if (secretsNames == null) {
+            return false;
+        }
+
+        for (int i = 0; i < secretsNames.size(); i++) {
+            String name = secretsNames.get(i);
+
+            if (!Objects.equals(variables.get(name), secretsVariableValues.get(i))
+                    || !Objects.equals(environmentVariables.get(name), secretsEnvironmentVariableValues.get(i))) {
+                return false;
+            }
+        }
+
+        for (VariableResolver.Entry entry : secretsEntries) {
+            if (!entry.isValid()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Masks a command printed to the console. If the pipeliner_mask_commands variable is true, the whole
+     * command is masked, otherwise the secrets in the command are masked.
+     *
+     * @param command the command
+     * @return the masked command
+     */
+    public String maskCommand(String command) {
+        if (Constants.TRUE.equals(getVariable(Constants.PIPELINER_MASK_COMMANDS))) {
+            return SecretMasker.MASK;
+        }
+
+        return getSecretMasker().mask(command);
+    }
+
+    /**
+     * Add a temporary file referenced by a variable, which is deleted by {@link #deleteTemporaryFiles()}.
+     *
+     * @param file the temporary file
+     */
+    public void addTemporaryFile(File file) {
+        temporaryFiles.add(file);
+    }
+
+    /**
+     * Delete the temporary files referenced by variables of the context and its forked contexts.
+     */
+    public void deleteTemporaryFiles() {
+        for (File file : temporaryFiles) {
+            SpillFile.delete(file);
+        }
+
+        temporaryFiles.clear();
+    }
+
     /**
      * Push a new frame onto the stack.
+     * The frame inherits the working directory, shell, and timeout minutes of the current frame.
      *
      * @param frame the frame to push onto the stack
      */
     public void pushFrame(Frame frame) {
+        frame.inherit(frames.peek());
         frames.push(frame);
+        environmentVariables.push();
+        variables.push();
     }
 
     /**
@@ -138,207 +824,252 @@ public class Context {
     }
 
     /**
-     * Pop the current frame from the stack.
+     * Pop the current frame from the stack, removing the variables declared in its scope.
      *
-     * @return the popped frame, or null if the stack is empty
+     * @return the popped frame
      */
     public Frame popFrame() {
-        return frames.pop();
+        Frame frame = frames.pop();
+        frameTimeoutMinutesSettings.remove(frame);
+        environmentVariables.pop();
+        variables.pop();
+        return frame;
     }
 
     /**
      * Resolve variables in the context.
-     * The maximum recursive iterations is set to 10 to prevent infinite loops.
      *
      * @param input the input string containing variables to resolve
      * @return the resolved string with variables replaced
+     * @throws SyntaxException if the variables reference each other in a cycle
      */
     public String resolveVariables(String input) {
-        final int maxIterations = 10;
-        String previous = input;
-        String resolved;
-        int iteration = 0;
-
-        do {
-            resolved = resolveVariables(previous, false);
-            if (resolved.equals(previous)) {
-                break;
-            }
-            previous = resolved;
-            iteration++;
-        } while (iteration < maxIterations);
+        return resolveVariables(Template.compile(input));
+    }
 
-        return resolved;
+    /**
+     * Resolve variables in the context.
+     * A variable whose value references other variables is resolved recursively, and its resolved value
+     * is memoized until one of the variables it references changes.
+     *
+     * @param template the template containing variables to resolve
+     * @return the resolved string with variables replaced
+     * @throws SyntaxException if the variables reference each other in a cycle
+     */
+    public String resolveVariables(Template template) {
+        return variableResolver.resolve(template, false);
     }
 
     /**
      * Resolve all variables in the context, including environment variables.
-     * The maximum recursive iterations is set to 10 to prevent infinite loops.
      *
      * @param input the input string containing variables to resolve
      * @return the resolved string with variables replaced
+     * @throws SyntaxException if the variables reference each other in a cycle
      */
     public String resolveAllVariables(String input) {
-        final int maxIterations = 10;
-        String previous = input;
-        String resolved;
-        int iteration = 0;
-
-        do {
-            resolved = resolveVariables(previous, true);
-            if (resolved.equals(previous)) {
-                break;
-            }
-            previous = resolved;
-            iteration++;
-        } while (iteration < maxIterations);
+        return resolveAllVariables(Template.compile(input));
+    }
 
-        return resolved;
+    /**
+     * Resolve all variables in the context, including environment variables.
+     * A variable or environment variable whose value references other variables is resolved recursively,
+     * and its resolved value is memoized until one of the variables it references changes.
+     *
+     * @param template the template containing variables to resolve
+     * @return the resolved string with variables replaced
+     * @throws SyntaxException if the variables reference each other in a cycle
+     */
+    public String resolveAllVariables(Template template) {
+        return variableResolver.resolve(template, true);
     }
 
     /**
-     * Retrieves the working directory from the context's frame stack.
-     * It checks each frame in reverse order to find the most recent working directory.
+     * Retrieves the effective working directory of the current frame.
+     * The resolved working directory is cached until the frame's working directory, or a variable or
+     * environment variable it references, changes.
      *
      * @return the working directory as a string
      */
     public String getWorkingDirectory() {
-        // Set the default working directory
-        String workingDirectory = DEFAULT_WORKING_DIRECTORY;
+        // Get the effective working directory of the current frame
+        Frame frame = frames.peek();
+        Template workingDirectory = frame != null && frame.getWorkingDirectory() != null
+                ? frame.getWorkingDirectory()
+                : DEFAULT_WORKING_DIRECTORY;
 
-        // Get a descending iterator for the frames
-        Iterator<Frame> frameIterator = frames.descendingIterator();
+        return resolveSetting(workingDirectorySetting, workingDirectory, resolvedWorkingDirectory -> {
+            // If a directory is set, resolve a relative working directory against it
+            if (directory != null && !new File(resolvedWorkingDirectory).isAbsolute()) {
+                return new File(directory, resolvedWorkingDirectory).getPath();
+            }
 
-        while (frameIterator.hasNext()) {
-            // Get the next frame from the iterator
-            Frame frame = frameIterator.next();
+            return resolvedWorkingDirectory;
+        });
+    }
 
-            // Check if the frame has a working directory set
-            if (frame.getWorkingDirectory() != null) {
-                // If a working directory is found, use it
-                workingDirectory = frame.getWorkingDirectory();
+    /**
+     * Retrieves the effective shell of the current frame.
+     * The decoded shell is cached until the frame's shell, or a variable or environment variable it
+     * references, changes.
+     *
+     * @return the shell, or bash if no shell is set
+     */
+    public Shell getShell() {
+        // Get the effective shell of the current frame
+        Frame frame = frames.peek();
+        Template shell = frame != null && frame.getShell() != null ? frame.getShell() : DEFAULT_SHELL;
 
-                // A working directory has been found, so break the loop
-                break;
+        return resolveSetting(shellSetting, shell, resolvedShell -> {
+            // If the shell is set to "default"
+            if ("default".equals(resolvedShell)) {
+                // Set the default shell to bash
+                resolvedShell = BASH_SHELL;
             }
-        }
 
-        // Resolve and return the working directory
-        return resolveAllVariables(workingDirectory);
+            return Shell.decode(resolvedShell);
+        });
     }
 
     /**
-     * Retrieves the shell from the context's frame stack.
-     * It checks each frame in reverse order to find the most recent shell.
+     * Retrieves the effective timeout minutes of the current frame.
+     * The resolved timeout minutes are cached until the frame's timeout minutes, or a variable or
+     * environment variable it references, changes.
      *
-     * @return the shell as a string, or "bash" if no shell is set
+     * @return the timeout minutes, defaulting to 360 minutes if not set
      */
-    public String getShell() {
-        // Set the default shell to bash
-        String shell = BASH_SHELL;
+    public String getTimeoutMinutes() {
+        // Get the effective timeout minutes of the current frame
+        Frame frame = frames.peek();
+        Template timeoutMinutes = frame != null && frame.getTimeoutMinutes() != null
+                ? frame.getTimeoutMinutes()
+                : DEFAULT_TIMEOUT_MINUTES;
 
-        // Get a descending iterator for the frames
+        return resolveSetting(timeoutMinutesSetting, timeoutMinutes, Function.identity());
+    }
+
+    /**
+     * Retrieves the deadline of a command executed in the current frame, which is the earliest deadline of
+     * the enclosing frames that set a timeout, measured from the start of each frame. If no frame sets a
+     * timeout, the deadline is the default timeout minutes from now.
+     * <p>
+     * The resolved timeout minutes of each frame are cached until the frame's timeout minutes, or a variable
+     * or environment variable it references, changes.
+     *
+     * @return the deadline
+     * @throws SyntaxException if a resolved timeout is not a number
+     */
+    public Deadline getDeadline() {
+        long now = System.nanoTime();
+        Deadline deadline = null;
+        Template parentTimeoutMinutes = null;
+
+        // Iterate the frames, outermost first
         Iterator<Frame> frameIterator = frames.descendingIterator();
 
         while (frameIterator.hasNext()) {
-            // Get the next frame from the iterator
             Frame frame = frameIterator.next();
+            Template timeoutMinutes = frame.getTimeoutMinutes();
 
-            // Check if the frame has a shell set
-            if (frame.getShell() != null) {
-                // If a shell is found, use it
-                shell = frame.getShell();
+            // If the frame set a timeout, rather than inheriting its parent's timeout
+            if (timeoutMinutes != null && timeoutMinutes != parentTimeoutMinutes) {
+                int minutes = resolveFrameTimeoutMinutes(frame, timeoutMinutes);
+                long startNanoTime = now - frame.getStopwatch().elapsedTime().toNanos();
+                Deadline frameDeadline = Deadline.of(frame, minutes, startNanoTime);
 
-                // A shell has been found, so break the loop
-                break;
+                if (deadline == null || frameDeadline.getNanoTime() - deadline.getNanoTime() < 0) {
+                    deadline = frameDeadline;
+                }
             }
-        }
 
-        // Resolve the shell variable
-        shell = resolveAllVariables(shell);
+            parentTimeoutMinutes = timeoutMinutes;
+        }
 
-        // If the shell is set to "default"
-        if ("default".equals(shell)) {
-            // Set the default shell to bash
-            shell = BASH_SHELL;
+        if (deadline == null) {
+            Frame frame = frames.peek();
+            deadline = Deadline.of(frame, resolveFrameTimeoutMinutes(frame, DEFAULT_TIMEOUT_MINUTES), now);
         }
 
-        // Resolve and return the shell
-        return shell;
+        return deadline;
     }
 
     /**
-     * Retrieves the timeout minutes from the context's frame stack.
-     * It checks each frame in reverse order to find the most recent timeout minutes.
+     * Resolves the timeout minutes of a frame, reusing the cached value of the frame.
      *
-     * @return the timeout minutes, defaulting to 360 minutes if not set
+     * @param frame the frame
+     * @param timeoutMinutes the timeout minutes template of the frame
+     * @return the timeout minutes
+     * @throws SyntaxException if the resolved timeout is not a number
      */
-    public String getTimeoutMinutes() {
-        // Set the default timeout
-        String timeoutMinutes = DEFAULT_TIMEOUT_MINUTES;
+    private int resolveFrameTimeoutMinutes(Frame frame, Template timeoutMinutes) {
+        Setting<Integer> setting = frameTimeoutMinutesSettings.computeIfAbsent(frame, f -> new Setting<>());
 
-        // Get a descending iterator for the frames
-        Iterator<Frame> frameIterator = frames.descendingIterator();
+        return resolveSetting(setting, timeoutMinutes, resolvedTimeoutMinutes -> {
+            try {
+                return Integer.parseInt(resolvedTimeoutMinutes.trim());
+            } catch (NumberFormatException e) {
+                throw new SyntaxException(frame.toConsoleString() + " \"timeout-minutes:\" value ["
+                        + resolvedTimeoutMinutes + "] is invalid");
+            }
+        });
+    }
 
-        while (frameIterator.hasNext()) {
-            // Get the next frame from the iterator
-            Frame frame = frameIterator.next();
+    /**
+     * Resolves a frame setting, reusing the cached value if the setting's template, and the variables and
+     * environment variables referenced by the template, directly or through other variables, have not changed.
+     *
+     * @param setting the cached setting
+     * @param template the template of the setting
+     * @param decoder the function to decode the resolved template
+     * @param <T> the type of the setting
+     * @return the setting
+     */
+    private <T> T resolveSetting(Setting<T> setting, Template template, Function<String, T> decoder) {
+        // If the template is unchanged, and the referenced variables are unchanged
+        if (setting.template == template && setting.entry.isValid()) {
+            return setting.value;
+        }
 
-            // Check if the frame has timeout minutes set
-            if (frame.getTimeoutMinutes() != null) {
-                // If timeout minutes are found, use them
-                timeoutMinutes = frame.getTimeoutMinutes();
+        VariableResolver.Entry entry = variableResolver.resolveEntry(template, true);
 
-                // Timeout minutes have been found, so break the loop
-                break;
-            }
-        }
+        setting.value = decoder.apply(entry.getValue());
+        setting.template = template;
+        setting.entry = entry;
 
-        // Resolve and return the timeout minutes
-        return resolveAllVariables(timeoutMinutes);
+        return setting.value;
     }
 
     /**
-     * Resolve variables in the input string.
+     * Creates the permits to execute programs in parallel.
      *
-     * @param input the input string containing variables to resolve
-     * @param resolveEnvironmentVariables whether to resolve environment variables
-     * @return the resolved string with variables replaced
+     * @param maxParallel the maximum number of programs to execute in parallel
+     * @return the permits
      */
-    private String resolveVariables(String input, boolean resolveEnvironmentVariables) {
-        StringBuilder stringBuilder = new StringBuilder();
-        Parser.Token token;
-
-        // Create a parser to tokenize the input string
-        Parser parser = new Parser(input);
-
-        // Parse the input string and iterate through the tokens
-        while ((token = parser.next()) != null) {
-            switch (token.getType()) {
-                case ENVIRONMENT_VARIABLE: {
-                    if (resolveEnvironmentVariables) {
-                        String key = token.getValue();
-                        String value = environmentVariables.getOrDefault(key, "");
-                        stringBuilder.append(value);
-                    } else {
-                        stringBuilder.append(token.getText());
-                    }
-                    break;
-                }
-                case VARIABLE: {
-                    String key = token.getValue();
-                    String value = variables.getOrDefault(key, "");
-                    stringBuilder.append(value);
-                    break;
-                }
-                case TEXT:
-                default: {
-                    stringBuilder.append(token.getText());
-                    break;
-                }
-            }
-        }
+    private static ParallelPermits createParallelPermits(int maxParallel) {
+        // The executing thread holds a permit
+        return new ParallelPermits(Math.max(0, maxParallel - 1));
+    }
+
+    /**
+     * Class representing a cached frame setting.
+     *
+     * @param <T> the type of the setting
+     */
+    private static final class Setting<T> {
+
+        /**
+         * The template the value was resolved from, or null.
+         */
+        private Template template;
+
+        /**
+         * The resolved template, recording the variables and environment variables it was resolved from.
+         */
+        private VariableResolver.Entry entry;
 
-        return stringBuilder.toString();
+        /**
+         * The value.
+         */
+        private T value;
     }
 }
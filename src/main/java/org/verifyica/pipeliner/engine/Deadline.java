@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.time.Duration;
+
+/**
+ * Class representing the deadline of a command, which is the earliest deadline of the frames enclosing the
+ * command that set a timeout.
+ */
+public final class Deadline {
+
+    /**
+     * The frame that set the timeout.
+     */
+    private final Frame frame;
+
+    /**
+     * The timeout in minutes.
+     */
+    private final int timeoutMinutes;
+
+    /**
+     * The nano time the timeout started.
+     */
+    private final long startNanoTime;
+
+    /**
+     * Constructor
+     *
+     * @param frame the frame that set the timeout
+     * @param timeoutMinutes the timeout in minutes
+     * @param startNanoTime the nano time the timeout started
+     */
+    private Deadline(Frame frame, int timeoutMinutes, long startNanoTime) {
+        this.frame = frame;
+        this.timeoutMinutes = timeoutMinutes;
+        this.startNanoTime = startNanoTime;
+    }
+
+    /**
+     * Get the frame that set the timeout.
+     *
+     * @return the frame that set the timeout
+     */
+    public Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Get the timeout in minutes.
+     *
+     * @return the timeout in minutes
+     */
+    public int getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    /**
+     * Get the nano time of the deadline.
+     *
+     * @return the nano time of the deadline
+     */
+    public long getNanoTime() {
+        return startNanoTime + Duration.ofMinutes(timeoutMinutes).toNanos();
+    }
+
+    /**
+     * Get the time remaining until the deadline.
+     *
+     * @return the time remaining in nanoseconds, which is zero or negative if the deadline has passed
+     */
+    public long getRemainingNanos() {
+        return getNanoTime() - System.nanoTime();
+    }
+
+    /**
+     * Get the time elapsed since the timeout started.
+     *
+     * @return the time elapsed since the timeout started
+     */
+    public Duration getElapsedTime() {
+        return Duration.ofNanos(System.nanoTime() - startNanoTime);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { frame [" + frame.toConsoleString() + "] timeoutMinutes [" + timeoutMinutes
+                + "] }";
+    }
+
+    /**
+     * Factory method to create a new instance of Deadline.
+     *
+     * @param frame the frame that set the timeout
+     * @param timeoutMinutes the timeout in minutes
+     * @param startNanoTime the nano time the timeout started
+     * @return a new Deadline instance
+     */
+    public static Deadline of(Frame frame, int timeoutMinutes, long startNanoTime) {
+        return new Deadline(frame, timeoutMinutes, startNanoTime);
+    }
+}
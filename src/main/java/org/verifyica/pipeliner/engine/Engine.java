@@ -18,16 +18,13 @@ package org.verifyica.pipeliner.engine;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import org.verifyica.pipeliner.Constants;
 import org.verifyica.pipeliner.Version;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.model.Pipeline;
-import org.verifyica.pipeliner.model.PipelineFactory;
 import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.support.ConditionalEvaluator;
 import org.verifyica.pipeliner.support.HumanDuration;
 import org.verifyica.pipeliner.support.Stopwatch;
 
@@ -81,14 +78,11 @@ public class Engine {
         // Create a stopwatch to measure execution time
         Stopwatch stopwatch = new Stopwatch();
 
-        Pipeline pipeline = null;
+        ProgramCache.CachedPipeline cachedPipeline;
 
         try {
-            // Create a pipeline factory
-            PipelineFactory pipelineFactory = new PipelineFactory();
-
-            // Create the pipeline from the specified filename
-            pipeline = pipelineFactory.createPipeline(file);
+            // Get the pipeline from the cache, parsing the specified file if required
+            cachedPipeline = ProgramCache.getInstance().get(file);
 
             // Get the elapsed time from the stopwatch as human-readable duration
             String humanDuration = HumanDuration.humanDuration(stopwatch.mark());
@@ -107,18 +101,12 @@ public class Engine {
         }
 
         try {
-            // Create a list to hold instructions
-            List<Instruction> instructions = new ArrayList<>();
-
-            // Create a generator to generate instructions
-            Generator generator = new Generator();
-
-            // Generate the instructions for the pipeline
-            generator.generate(pipeline, instructions::add);
+            // Get the program from the cache, generating and compiling it if required
+            Program program = cachedPipeline.getProgram();
 
             if (LOGGER.isTraceEnabled()) {
-                for (Instruction instruction : instructions) {
-                    LOGGER.trace("instruction [%s]", instruction);
+                for (int i = 0; i < program.size(); i++) {
+                    LOGGER.trace("instruction [%d] [%s]", i, program.get(i));
                 }
             }
 
@@ -130,8 +118,8 @@ public class Engine {
             // Create an interpreter to execute the instructions
             Interpreter interpreter = new Interpreter(context);
 
-            // Execute the instructions
-            interpreter.execute(instructions);
+            // Execute the program
+            interpreter.execute(program);
 
             // Return success exit code
             return 0;
@@ -161,6 +149,12 @@ public class Engine {
             // Return the exit code
             return exitCode;
         } catch (InterpreterException e) {
+            // If the instruction failed with a syntax error
+            if (e.getCause() instanceof SyntaxException) {
+                // Print the syntax error
+                context.getConsole().error(e.getCause().getMessage());
+            }
+
             // Get a descending iterator for the frames
             Iterator<Frame> frameIterator = context.getFrames().descendingIterator();
 
@@ -184,6 +178,20 @@ public class Engine {
             return exitCode;
         } catch (Throwable t) {
             throw new EngineException("engine exception", t);
+        } finally {
+            LOGGER.trace(
+                    "conditional expression cache hits [%d] misses [%d]",
+                    ConditionalEvaluator.getInstance().getCacheHits(),
+                    ConditionalEvaluator.getInstance().getCacheMisses());
+
+            // Close any persistent shell sessions left open by a failure
+            context.closeShellSessions();
+
+            // Close any step logs left open by a failure
+            context.closeStepLogs();
+
+            // Delete the files of spilled variable values
+            context.deleteTemporaryFiles();
         }
     }
 }
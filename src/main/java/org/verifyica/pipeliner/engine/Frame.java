@@ -16,6 +16,7 @@
 
 package org.verifyica.pipeliner.engine;
 
+import org.verifyica.pipeliner.parser.Template;
 import org.verifyica.pipeliner.support.Stopwatch;
 
 /**
@@ -81,17 +82,22 @@ public class Frame {
     /**
      * The working directory for the frame, e.g., "/path/to/dir"
      */
-    private String workingDirectory;
+    private Template workingDirectory;
 
     /**
      * The shell to use for executing commands in the frame, e.g., "bash", "zsh", etc.
      */
-    private String shell;
+    private Template shell;
 
     /**
      * The timeout in minutes for the frame, e.g., "30" for 30 minutes.
      */
-    private String timeoutMinutes;
+    private Template timeoutMinutes;
+
+    /**
+     * The shell session mode of the frame.
+     */
+    private String shellSession;
 
     /**
      * The stopwatch to track the execution time of the frame.
@@ -167,16 +173,16 @@ public class Frame {
      *
      * @param workingDirectory the working directory
      */
-    public void setWorkingDirectory(String workingDirectory) {
+    public void setWorkingDirectory(Template workingDirectory) {
         this.workingDirectory = workingDirectory;
     }
 
     /**
-     * Get the working directory for the frame.
+     * Get the effective working directory for the frame, set on the frame or inherited from its parent.
      *
-     * @return the working directory
+     * @return the working directory, or null if not set
      */
-    public String getWorkingDirectory() {
+    public Template getWorkingDirectory() {
         return workingDirectory;
     }
 
@@ -185,16 +191,16 @@ public class Frame {
      *
      * @param shell the shell to use, e.g., "/bin/bash", "cmd.exe"
      */
-    public void setShell(String shell) {
+    public void setShell(Template shell) {
         this.shell = shell;
     }
 
     /**
-     * Get the shell for the frame.
+     * Get the effective shell for the frame, set on the frame or inherited from its parent.
      *
-     * @return the shell to use
+     * @return the shell to use, or null if not set
      */
-    public String getShell() {
+    public Template getShell() {
         return shell;
     }
 
@@ -203,25 +209,79 @@ public class Frame {
      *
      * @param timeoutMinutes the timeout in minutes, e.g., 30
      */
-    public void setTimeoutMinutes(String timeoutMinutes) {
+    public void setTimeoutMinutes(Template timeoutMinutes) {
         this.timeoutMinutes = timeoutMinutes;
     }
 
     /**
-     * Get the timeout in minutes for the frame.
+     * Get the effective timeout in minutes for the frame, set on the frame or inherited from its parent.
      *
      * @return the timeout in minutes, or null if not set
      */
-    public String getTimeoutMinutes() {
+    public Template getTimeoutMinutes() {
         return timeoutMinutes;
     }
 
+    /**
+     * Inherit the working directory, shell, and timeout minutes of the parent frame that are not set on
+     * the frame, so the frame holds its effective settings.
+     *
+     * @param parent the parent frame, or null
+     */
+    public void inherit(Frame parent) {
+        if (parent == null) {
+            return;
+        }
+
+        if (workingDirectory == null) {
+            workingDirectory = parent.workingDirectory;
+        }
+
+        if (shell == null) {
+            shell = parent.shell;
+        }
+
+        if (timeoutMinutes == null) {
+            timeoutMinutes = parent.timeoutMinutes;
+        }
+    }
+
+    /**
+     * Set the shell session mode of the frame.
+     *
+     * @param shellSession the shell session mode
+     */
+    public void setShellSession(String shellSession) {
+        this.shellSession = shellSession;
+    }
+
+    /**
+     * Get the shell session mode of the frame.
+     *
+     * @return the shell session mode
+     */
+    public String getShellSession() {
+        return shellSession;
+    }
+
     /**
      * Returns a string representation of the frame suitable for console output.
      *
      * @return a string representation of the frame
      */
     public String toConsoleString() {
+        return toConsoleString(type, name, description);
+    }
+
+    /**
+     * Returns a string representation of a frame suitable for console output.
+     *
+     * @param type the type of the frame
+     * @param name the name of the frame
+     * @param description the description of the frame
+     * @return a string representation of the frame
+     */
+    public static String toConsoleString(Type type, String name, String description) {
         StringBuilder stringBuilder = new StringBuilder(type.getValue());
 
         if (name != null && !name.isBlank()) {
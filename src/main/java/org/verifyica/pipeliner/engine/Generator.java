@@ -16,17 +16,24 @@
 
 package org.verifyica.pipeliner.engine;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import org.verifyica.pipeliner.engine.instructions.EvaluateConditional;
 import org.verifyica.pipeliner.engine.instructions.EvaluateEnabled;
 import org.verifyica.pipeliner.engine.instructions.ExecuteCommand;
+import org.verifyica.pipeliner.engine.instructions.ExecuteJobs;
+import org.verifyica.pipeliner.engine.instructions.ExecuteParallel;
 import org.verifyica.pipeliner.engine.instructions.Exit;
 import org.verifyica.pipeliner.engine.instructions.PopFrame;
 import org.verifyica.pipeliner.engine.instructions.PrintFrameStatus;
 import org.verifyica.pipeliner.engine.instructions.PushFrame;
 import org.verifyica.pipeliner.engine.instructions.SetEnvironmentVariable;
 import org.verifyica.pipeliner.engine.instructions.SetShell;
+import org.verifyica.pipeliner.engine.instructions.SetShellSession;
+import org.verifyica.pipeliner.engine.instructions.SetTimeoutMinutes;
 import org.verifyica.pipeliner.engine.instructions.SetVariable;
 import org.verifyica.pipeliner.engine.instructions.SetWorkingDirectory;
 import org.verifyica.pipeliner.engine.instructions.directives.DirectiveGenerator;
@@ -44,11 +51,17 @@ public class Generator {
      */
     private final DirectiveGenerator directiveGenerator;
 
+    /**
+     * Optimizer for generated instructions.
+     */
+    private final Optimizer optimizer;
+
     /**
      * Constructor
      */
     public Generator() {
         this.directiveGenerator = new DirectiveGenerator();
+        this.optimizer = new Optimizer();
     }
 
     /**
@@ -75,6 +88,11 @@ public class Generator {
             instructionConsumer.accept(SetShell.of(shell));
         }
 
+        Integer timeoutMinutes = pipeline.getTimeoutMinutes();
+        if (timeoutMinutes != null) {
+            instructionConsumer.accept(SetTimeoutMinutes.of(String.valueOf(timeoutMinutes)));
+        }
+
         for (Map.Entry<String, String> entry :
                 pipeline.getEnvironmentVariables().entrySet()) {
             String key = entry.getKey();
@@ -98,14 +116,88 @@ public class Generator {
 
         instructionConsumer.accept(PrintFrameStatus.of("running"));
 
-        for (Job job : pipeline.getJobs()) {
-            generate(job, instructionConsumer);
+        // If any job declares dependencies, the jobs are executed by the job scheduler
+        if (pipeline.getJobs().stream().anyMatch(job -> !job.getNeeds().isEmpty())) {
+            instructionConsumer.accept(ExecuteJobs.of(generateScheduledJobs(pipeline.getJobs())));
+        } else {
+            for (Job job : pipeline.getJobs()) {
+                generate(job, instructionConsumer);
+            }
         }
 
         instructionConsumer.accept(PrintFrameStatus.of("success"));
         instructionConsumer.accept(PopFrame.of());
     }
 
+    /**
+     * Generates a scheduled program, with its own program, for each of the given jobs.
+     *
+     * @param jobs the jobs, in declaration order
+     * @return the list of scheduled programs
+     * @throws GeneratorException if an error occurs during generation
+     */
+    private List<ScheduledProgram> generateScheduledJobs(List<Job> jobs) throws GeneratorException {
+        // Map the job names to their indices
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            String name = jobs.get(i).getName();
+            if (name != null) {
+                indices.putIfAbsent(name, i);
+            }
+        }
+
+        List<ScheduledProgram> scheduledJobs = new ArrayList<>();
+
+        for (Job job : jobs) {
+            List<Integer> needs = new ArrayList<>();
+            for (String need : job.getNeeds()) {
+                Integer index = indices.get(need);
+                if (index == null) {
+                    throw new GeneratorException("job [" + need + "] does not exist");
+                }
+                needs.add(index);
+            }
+
+            List<Instruction> instructions = new ArrayList<>();
+            generate(job, instructions::add);
+
+            scheduledJobs.add(ScheduledProgram.of(job.getName(), compile(instructions), needs));
+        }
+
+        return scheduledJobs;
+    }
+
+    /**
+     * Generates a scheduled program, with its own program, for each of the given parallel steps.
+     *
+     * @param steps the steps, in declaration order
+     * @return the list of scheduled programs
+     * @throws GeneratorException if an error occurs during generation
+     */
+    private List<ScheduledProgram> generateScheduledSteps(List<Step> steps) throws GeneratorException {
+        List<ScheduledProgram> scheduledSteps = new ArrayList<>();
+
+        for (Step step : steps) {
+            List<Instruction> instructions = new ArrayList<>();
+            generate(step, instructions::add);
+
+            scheduledSteps.add(ScheduledProgram.of(step.getName(), compile(instructions), List.of()));
+        }
+
+        return scheduledSteps;
+    }
+
+    /**
+     * Optimizes and compiles the given instructions into a program.
+     *
+     * @param instructions the instructions
+     * @return the program
+     * @throws GeneratorException if the instructions are invalid
+     */
+    private Program compile(List<Instruction> instructions) throws GeneratorException {
+        return Program.compile(optimizer.optimize(instructions));
+    }
+
     /**
      * Generates the Intermediate Representation (IR) for the given job.
      *
@@ -114,6 +206,13 @@ public class Generator {
      * @throws GeneratorException if an error occurs during generation
      */
     private void generate(Job job, Consumer<Instruction> instructionConsumer) throws GeneratorException {
+        // If the job declares a strategy matrix, the matrix jobs are executed by the program scheduler
+        if (!job.getMatrixJobs().isEmpty()) {
+            instructionConsumer.accept(ExecuteParallel.of(
+                    generateScheduledJobs(job.getMatrixJobs()), job.getMaxParallel(), job.isFailFast()));
+            return;
+        }
+
         Frame.Type type = Frame.Type.JOB;
         String name = job.getName();
         String description = job.getDescription();
@@ -130,6 +229,16 @@ public class Generator {
             instructionConsumer.accept(SetShell.of(shell));
         }
 
+        Integer timeoutMinutes = job.getTimeoutMinutes();
+        if (timeoutMinutes != null) {
+            instructionConsumer.accept(SetTimeoutMinutes.of(String.valueOf(timeoutMinutes)));
+        }
+
+        String shellSession = job.getShellSession();
+        if (shellSession != null) {
+            instructionConsumer.accept(SetShellSession.of(shellSession));
+        }
+
         for (Map.Entry<String, String> entry : job.getEnvironmentVariables().entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue();
@@ -184,6 +293,11 @@ public class Generator {
             instructionConsumer.accept(SetShell.of(shell));
         }
 
+        Integer timeoutMinutes = step.getTimeoutMinutes();
+        if (timeoutMinutes != null) {
+            instructionConsumer.accept(SetTimeoutMinutes.of(String.valueOf(timeoutMinutes)));
+        }
+
         for (Map.Entry<String, String> entry : step.getEnvironmentVariables().entrySet()) {
             String key = entry.getKey();
             String value = entry.getValue();
@@ -206,6 +320,11 @@ public class Generator {
 
         instructionConsumer.accept(PrintFrameStatus.of("running"));
 
+        // If the step is a parallel group, its steps are executed by the program scheduler
+        if (!step.getParallelSteps().isEmpty()) {
+            instructionConsumer.accept(ExecuteParallel.of(generateScheduledSteps(step.getParallelSteps())));
+        }
+
         for (String runCommand : step.getCommands()) {
             generate(runCommand, instructionConsumer);
         }
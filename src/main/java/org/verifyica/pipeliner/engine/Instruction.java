@@ -16,8 +16,6 @@
 
 package org.verifyica.pipeliner.engine;
 
-import org.verifyica.pipeliner.support.PeekIterator;
-
 /**
  * Interface representing an instruction.
  */
@@ -27,8 +25,8 @@ public interface Instruction {
      * Execute the instruction in the given context.
      *
      * @param context the context in which to execute the instruction
-     * @param peekIterator an iterator to peek at the next instruction
+     * @param programCounter the program counter of the program being executed
      * @throws Throwable if an error occurs during execution
      */
-    void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable;
+    void execute(Context context, ProgramCounter programCounter) throws Throwable;
 }
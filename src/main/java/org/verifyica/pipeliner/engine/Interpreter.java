@@ -16,9 +16,6 @@
 
 package org.verifyica.pipeliner.engine;
 
-import java.util.List;
-import org.verifyica.pipeliner.support.PeekIterator;
-
 /**
  * Class responsible for executing the instructions.
  */
@@ -36,26 +33,23 @@ public class Interpreter {
     }
 
     /**
-     * Executes the instructions read from the BufferedReader.
+     * Executes the program.
      *
-     * @param instructions a list of instructions to execute.
+     * @param program the program to execute.
      * @throws Throwable if an error occurs during execution.
      */
-    public void execute(List<Instruction> instructions) throws Throwable {
-        // Create an iterator for the instructions
-        PeekIterator<Instruction> peekIterator = new PeekIterator<>(instructions.iterator());
+    public void execute(Program program) throws Throwable {
+        // Create a program counter for the program
+        ProgramCounter programCounter = new ProgramCounter(program);
 
         // Iterate through the instructions
-        while (peekIterator.hasNext()) {
+        while (programCounter.hasNext()) {
             // Get the next instruction
-            Instruction instruction = peekIterator.next();
-
-            // Remove the instruction
-            peekIterator.remove();
+            Instruction instruction = programCounter.next();
 
             try {
                 // Execute the instruction
-                instruction.execute(context, peekIterator);
+                instruction.execute(context, programCounter);
             } catch (ExitException e) {
                 // If a StopException is thrown, rethrow it
                 throw e;
@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.verifyica.pipeliner.engine.instructions.EvaluateConditional;
+import org.verifyica.pipeliner.engine.instructions.EvaluateEnabled;
+import org.verifyica.pipeliner.engine.instructions.ExecuteBatch;
+import org.verifyica.pipeliner.engine.instructions.ExecuteCommand;
+import org.verifyica.pipeliner.engine.instructions.PopFrame;
+import org.verifyica.pipeliner.engine.instructions.PrintDisabledFrames;
+import org.verifyica.pipeliner.engine.instructions.PrintFrameStatus;
+import org.verifyica.pipeliner.engine.instructions.PushFrame;
+import org.verifyica.pipeliner.engine.instructions.SetEnvironmentVariable;
+import org.verifyica.pipeliner.engine.instructions.SetShell;
+import org.verifyica.pipeliner.engine.instructions.SetShellSession;
+import org.verifyica.pipeliner.engine.instructions.SetTimeoutMinutes;
+import org.verifyica.pipeliner.engine.instructions.SetVariable;
+import org.verifyica.pipeliner.engine.instructions.SetWorkingDirectory;
+import org.verifyica.pipeliner.engine.instructions.directives.Print;
+import org.verifyica.pipeliner.engine.instructions.directives.PrintError;
+import org.verifyica.pipeliner.engine.instructions.directives.PrintInfo;
+import org.verifyica.pipeliner.engine.instructions.directives.PrintWarning;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.parser.Template;
+
+/**
+ * Optimizer class responsible for optimizing the generated Intermediate Representation (IR)
+ * <p>
+ * Constants are folded first. The values of variables and environment variables declared with literal
+ * values are tracked per frame, so a conditional, or a command, whose references are all known is resolved
+ * when the program is optimized. Any instruction that may set variables at runtime, such as a command writing
+ * IPC output, makes all tracked values unknown, so only values that can't have changed are folded. A frame
+ * whose "enabled:" or "if:" is known to be false is replaced by a single instruction printing its disabled
+ * status, and a conditional known to be true is removed.
+ * <p>
+ * Consecutive plain commands (commands without a capture operator) are then coalesced into a single
+ * batch, executed as one shell script. A command that references variables always starts a new batch,
+ * since its variables could be set by the IPC output of an earlier command in the batch.
+ */
+public class Optimizer {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Optimizer.class);
+
+    /**
+     * The variable reference prefix.
+     */
+    private static final String VARIABLE_PREFIX = "${{";
+
+    /**
+     * Constructor
+     */
+    public Optimizer() {
+        // INTENTIONALLY BLANK
+    }
+
+    /**
+     * Optimizes the given instructions.
+     *
+     * @param instructions the instructions to optimize
+     * @return the optimized instructions
+     */
+    public List<Instruction> optimize(List<Instruction> instructions) {
+        List<Instruction> folded = fold(instructions);
+        List<Instruction> result = new ArrayList<>(folded.size());
+        List<ExecuteCommand> batch = new ArrayList<>();
+
+        for (Instruction instruction : folded) {
+            // If the instruction is not a plain command
+            if (!(instruction instanceof ExecuteCommand) || ((ExecuteCommand) instruction).isCapture()) {
+                // End the current batch
+                flush(batch, result);
+                result.add(instruction);
+                continue;
+            }
+
+            ExecuteCommand command = (ExecuteCommand) instruction;
+
+            // A command that references variables starts a new batch
+            if (command.getCommand().hasVariables()) {
+                flush(batch, result);
+            }
+
+            batch.add(command);
+        }
+
+        flush(batch, result);
+
+        LOGGER.trace("optimized instructions [%d] -> [%d]", instructions.size(), result.size());
+
+        return result;
+    }
+
+    /**
+     * Folds the constants of the given instructions.
+     *
+     * @param instructions the instructions
+     * @return the folded instructions
+     */
+    private static List<Instruction> fold(List<Instruction> instructions) {
+        List<Instruction> result = new ArrayList<>(instructions.size());
+
+        // The indices of the open PushFrame instructions in the result, innermost last
+        List<Integer> frames = new ArrayList<>();
+
+        Constants constants = new Constants();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            Boolean enabled = null;
+
+            if (instruction instanceof PushFrame) {
+                frames.add(result.size());
+                constants.push();
+            } else if (instruction instanceof PopFrame) {
+                if (!frames.isEmpty()) {
+                    frames.remove(frames.size() - 1);
+                    constants.pop();
+                }
+            } else if (instruction instanceof SetVariable) {
+                SetVariable setVariable = (SetVariable) instruction;
+                constants.declareVariable(setVariable.getName(), setVariable.getValue());
+            } else if (instruction instanceof SetEnvironmentVariable) {
+                SetEnvironmentVariable setEnvironmentVariable = (SetEnvironmentVariable) instruction;
+                constants.declareEnvironmentVariable(
+                        setEnvironmentVariable.getName(), setEnvironmentVariable.getValue());
+            } else if (instruction instanceof EvaluateEnabled) {
+                enabled = ((EvaluateEnabled) instruction).isEnabled();
+            } else if (instruction instanceof EvaluateConditional) {
+                enabled = evaluate((EvaluateConditional) instruction, constants);
+            } else if (instruction instanceof ExecuteCommand) {
+                ExecuteCommand command = (ExecuteCommand) instruction;
+
+                // If the command's variables are known, resolve the command
+                if (command.getCommand().hasVariables()) {
+                    String resolvedCommand = constants.resolve(command.getCommand(), false);
+                    if (resolvedCommand != null) {
+                        LOGGER.trace("folded command [%s] -> [%s]", command.getLine(), resolvedCommand);
+                        instruction = command.withCommand(Template.literal(resolvedCommand));
+                    }
+                }
+
+                // The command may set any variable
+                constants.clear();
+            } else if (!isPure(instruction)) {
+                // The instruction may set any variable
+                constants.clear();
+            }
+
+            // If the frame is enabled, the instruction is not needed
+            if (Boolean.TRUE.equals(enabled)) {
+                continue;
+            }
+
+            // If the frame is disabled, and the frame only declared values before the instruction
+            if (Boolean.FALSE.equals(enabled) && !frames.isEmpty() && isFoldable(result, last(frames))) {
+                int end = getFrameEnd(instructions, i);
+
+                // Collect the frame and its nested frames
+                List<String> consoleStrings = new ArrayList<>();
+                consoleStrings.add(((PushFrame) result.get(last(frames))).toConsoleString());
+                for (int j = i + 1; j < end; j++) {
+                    if (instructions.get(j) instanceof PushFrame) {
+                        consoleStrings.add(((PushFrame) instructions.get(j)).toConsoleString());
+                    }
+                }
+
+                LOGGER.trace("folded disabled frames %s", consoleStrings);
+
+                // Replace the frame
+                result.subList(last(frames), result.size()).clear();
+                result.add(PrintDisabledFrames.of(consoleStrings));
+                frames.remove(frames.size() - 1);
+                constants.pop();
+
+                // Continue after the PopFrame
+                i = end;
+                continue;
+            }
+
+            // If the frame is disabled, but can't be folded, skip the frame at runtime
+            if (Boolean.FALSE.equals(enabled)) {
+                instruction = EvaluateEnabled.of(false);
+            }
+
+            result.add(instruction);
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluates a conditional if its references are known.
+     *
+     * @param conditional the conditional
+     * @param constants the known values
+     * @return the result of the conditional, or null if it can't be evaluated when the program is optimized
+     */
+    private static Boolean evaluate(EvaluateConditional conditional, Constants constants) {
+        // If a reference is unknown
+        if (constants.resolve(conditional.getTemplate(), true) == null) {
+            return null;
+        }
+
+        try {
+            boolean enabled = conditional.evaluate(template -> constants.resolve(template, true));
+
+            LOGGER.trace("folded conditional [%s] -> [%b]", conditional.getExpression(), enabled);
+
+            return enabled;
+        } catch (SyntaxException e) {
+            // Report the invalid expression at runtime
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the instruction doesn't set variables, other than declaring a literal value.
+     *
+     * @param instruction the instruction
+     * @return true if the instruction doesn't set variables, otherwise false
+     */
+    private static boolean isPure(Instruction instruction) {
+        return isDeclaration(instruction)
+                || instruction instanceof PrintFrameStatus
+                || instruction instanceof Print
+                || instruction instanceof PrintInfo
+                || instruction instanceof PrintWarning
+                || instruction instanceof PrintError;
+    }
+
+    /**
+     * Returns true if the instruction only declares a value of the current frame.
+     *
+     * @param instruction the instruction
+     * @return true if the instruction only declares a value of the current frame, otherwise false
+     */
+    private static boolean isDeclaration(Instruction instruction) {
+        return instruction instanceof SetVariable
+                || instruction instanceof SetEnvironmentVariable
+                || instruction instanceof SetWorkingDirectory
+                || instruction instanceof SetShell
+                || instruction instanceof SetShellSession
+                || instruction instanceof SetTimeoutMinutes;
+    }
+
+    /**
+     * Returns true if the instructions of a frame, after its PushFrame, only declare values, so the frame
+     * can be replaced without changing the output.
+     *
+     * @param result the result
+     * @param pushFrameIndex the index of the frame's PushFrame in the result
+     * @return true if the frame can be replaced, otherwise false
+     */
+    private static boolean isFoldable(List<Instruction> result, int pushFrameIndex) {
+        for (int i = pushFrameIndex + 1; i < result.size(); i++) {
+            if (!isDeclaration(result.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the index of the PopFrame of the frame enclosing an instruction.
+     *
+     * @param instructions the instructions
+     * @param index the index of the instruction
+     * @return the index of the PopFrame
+     */
+    private static int getFrameEnd(List<Instruction> instructions, int index) {
+        int depth = 0;
+
+        for (int i = index + 1; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction instanceof PushFrame) {
+                depth++;
+            } else if (instruction instanceof PopFrame) {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+
+        // The frame is unbalanced, which is reported when the program is compiled
+        return instructions.size() - 1;
+    }
+
+    /**
+     * Returns the last element of a list.
+     *
+     * @param list the list
+     * @return the last element
+     */
+    private static int last(List<Integer> list) {
+        return list.get(list.size() - 1);
+    }
+
+    /**
+     * Adds the current batch to the result, and clears the batch.
+     *
+     * @param batch the current batch
+     * @param result the result
+     */
+    private static void flush(List<ExecuteCommand> batch, List<Instruction> result) {
+        if (batch.size() == 1) {
+            result.add(batch.get(0));
+        } else if (batch.size() > 1) {
+            result.add(ExecuteBatch.of(batch));
+        }
+
+        batch.clear();
+    }
+
+    /**
+     * Class representing the values of variables and environment variables known when the program is
+     * optimized, with a scope per frame, mirroring the scopes of the context.
+     * <p>
+     * A name declared in a scope with an unknown value maps to null. A name not declared in any scope is
+     * unknown, since it may be set before the program is executed, for example on the command line.
+     */
+    private static final class Constants {
+
+        /**
+         * The variable scopes, innermost last.
+         */
+        private final List<Map<String, String>> variables = new ArrayList<>();
+
+        /**
+         * The environment variable scopes, innermost last.
+         */
+        private final List<Map<String, String>> environmentVariables = new ArrayList<>();
+
+        /**
+         * Push a new scope.
+         */
+        private void push() {
+            variables.add(new HashMap<>());
+            environmentVariables.add(new HashMap<>());
+        }
+
+        /**
+         * Pop the innermost scope.
+         */
+        private void pop() {
+            variables.remove(variables.size() - 1);
+            environmentVariables.remove(environmentVariables.size() - 1);
+        }
+
+        /**
+         * Declare a variable in the innermost scope.
+         *
+         * @param name the variable name
+         * @param value the variable value
+         */
+        private void declareVariable(String name, String value) {
+            if (!variables.isEmpty()) {
+                variables.get(variables.size() - 1).put(name, value);
+            }
+        }
+
+        /**
+         * Declare an environment variable in the innermost scope.
+         *
+         * @param name the environment variable name
+         * @param value the environment variable value
+         */
+        private void declareEnvironmentVariable(String name, String value) {
+            if (!environmentVariables.isEmpty()) {
+                environmentVariables.get(environmentVariables.size() - 1).put(name, value);
+            }
+        }
+
+        /**
+         * Make the values of all declared names unknown.
+         */
+        private void clear() {
+            for (Map<String, String> scope : variables) {
+                scope.replaceAll((name, value) -> null);
+            }
+
+            for (Map<String, String> scope : environmentVariables) {
+                scope.replaceAll((name, value) -> null);
+            }
+        }
+
+        /**
+         * Resolve a template, the same as the context would resolve it, if all its references are known.
+         *
+         * @param template the template
+         * @param resolveEnvironmentVariables whether to resolve environment variables
+         * @return the resolved string, or null if a reference is unknown
+         */
+        private String resolve(Template template, boolean resolveEnvironmentVariables) {
+            return resolve(template, resolveEnvironmentVariables, new HashSet<>());
+        }
+
+        /**
+         * Resolve a template if all its references are known.
+         *
+         * @param template the template
+         * @param resolveEnvironmentVariables whether to resolve environment variables
+         * @param path the references being resolved, to detect a cycle, which is reported at runtime
+         * @return the resolved string, or null if a reference is unknown or a cycle is found
+         */
+        private String resolve(Template template, boolean resolveEnvironmentVariables, Set<String> path) {
+            StringBuilder stringBuilder = new StringBuilder();
+
+            for (int i = 0; i < template.size(); i++) {
+                switch (template.getType(i)) {
+                    case ENVIRONMENT_VARIABLE: {
+                        if (!resolveEnvironmentVariables) {
+                            template.appendText(i, stringBuilder);
+                            break;
+                        }
+
+                        String value = get(environmentVariables, template.getValue(i));
+
+                        if (value != null && value.indexOf('$') >= 0) {
+                            String reference = "$" + template.getValue(i);
+                            value = path.add(reference) ? resolve(Template.compile(value), true, path) : null;
+                            path.remove(reference);
+                        }
+
+                        if (value == null) {
+                            return null;
+                        }
+
+                        stringBuilder.append(value);
+                        break;
+                    }
+                    case VARIABLE: {
+                        String value = get(variables, template.getValue(i));
+
+                        if (value != null
+                                && (value.contains(VARIABLE_PREFIX)
+                                        || (resolveEnvironmentVariables && value.indexOf('$') >= 0))) {
+                            String reference = "${{ " + template.getValue(i) + " }}";
+                            value = path.add(reference)
+                                    ? resolve(Template.compile(value), resolveEnvironmentVariables, path)
+                                    : null;
+                            path.remove(reference);
+                        }
+
+                        if (value == null) {
+                            return null;
+                        }
+
+                        stringBuilder.append(value);
+                        break;
+                    }
+                    case TEXT:
+                    default: {
+                        template.appendText(i, stringBuilder);
+                        break;
+                    }
+                }
+            }
+
+            return stringBuilder.toString();
+        }
+
+        /**
+         * Get the known value of a name, from the innermost scope declaring it.
+         *
+         * @param scopes the scopes
+         * @param name the name
+         * @return the value, or null if unknown
+         */
+        private static String get(List<Map<String, String>> scopes, String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                Map<String, String> scope = scopes.get(i);
+                if (scope.containsKey(name)) {
+                    return scope.get(name);
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Class representing the permits to execute programs in parallel, shared by nested schedulers.
+ * <p>
+ * A scheduler waiting for a permit also waits for its own programs to complete, so releasing a permit and
+ * completing a program both signal the same condition, and a waiting scheduler blocks instead of polling.
+ */
+final class ParallelPermits {
+
+    /**
+     * The lock guarding the available permits.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The condition signalled when a permit is released or a program completes.
+     */
+    private final Condition changed;
+
+    /**
+     * The number of available permits.
+     */
+    private int availablePermits;
+
+    /**
+     * Constructor
+     *
+     * @param permits the number of available permits
+     */
+    ParallelPermits(int permits) {
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.availablePermits = permits;
+    }
+
+    /**
+     * Get the number of available permits.
+     *
+     * @return the number of available permits
+     */
+    int availablePermits() {
+        lock.lock();
+        try {
+            return availablePermits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acquires a permit, if one is available.
+     *
+     * @return true if a permit was acquired, otherwise false
+     */
+    boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (availablePermits == 0) {
+                return false;
+            }
+
+            availablePermits--;
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases permits, signalling the waiting schedulers.
+     *
+     * @param permits the number of permits to release
+     */
+    void release(int permits) {
+        lock.lock();
+        try {
+            availablePermits += permits;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals the waiting schedulers, after a program completes.
+     */
+    void signalAll() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the condition is true. The condition is checked when a permit is released or
+     * {@link #signalAll()} is called, so any state it checks must be changed before signalling.
+     *
+     * @param condition the condition
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    void await(BooleanSupplier condition) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!condition.getAsBoolean()) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
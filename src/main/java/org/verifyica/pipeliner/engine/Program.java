@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.verifyica.pipeliner.engine.instructions.PopFrame;
+import org.verifyica.pipeliner.engine.instructions.PushFrame;
+import org.verifyica.pipeliner.support.Precondition;
+
+/**
+ * Class representing a compiled, immutable, array-backed program of instructions.
+ * <p>
+ * Frame boundaries are resolved at compile time, so every PushFrame knows the index
+ * of its matching PopFrame and every instruction knows the PushFrame of its enclosing frame.
+ */
+public final class Program {
+
+    /**
+     * Index value used when there is no matching instruction.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The instructions of the program.
+     */
+    private final Instruction[] instructions;
+
+    /**
+     * For each PushFrame index, the index of the matching PopFrame, otherwise NONE.
+     */
+    private final int[] jumpTargets;
+
+    /**
+     * For each instruction index, the index of the PushFrame of the innermost enclosing frame, otherwise NONE.
+     */
+    private final int[] enclosingFrames;
+
+    /**
+     * The indices of all PushFrame instructions in ascending order.
+     */
+    private final int[] pushFrameIndices;
+
+    /**
+     * Constructor
+     *
+     * @param instructions the instructions
+     * @param jumpTargets the jump targets
+     * @param enclosingFrames the enclosing frames
+     * @param pushFrameIndices the PushFrame indices
+     */
+    private Program(Instruction[] instructions, int[] jumpTargets, int[] enclosingFrames, int[] pushFrameIndices) {
+        this.instructions = instructions;
+        this.jumpTargets = jumpTargets;
+        this.enclosingFrames = enclosingFrames;
+        this.pushFrameIndices = pushFrameIndices;
+    }
+
+    /**
+     * Get the number of instructions in the program.
+     *
+     * @return the number of instructions
+     */
+    public int size() {
+        return instructions.length;
+    }
+
+    /**
+     * Get the instruction at the given index.
+     *
+     * @param index the index
+     * @return the instruction
+     */
+    public Instruction get(int index) {
+        return instructions[index];
+    }
+
+    /**
+     * Get an unmodifiable list view of the instructions.
+     *
+     * @return the list of instructions
+     */
+    public List<Instruction> getInstructions() {
+        return Collections.unmodifiableList(Arrays.asList(instructions));
+    }
+
+    /**
+     * Get the index of the PopFrame that closes the innermost frame enclosing the instruction at the given index.
+     *
+     * @param index the index of the instruction
+     * @return the index of the PopFrame, or -1 if the instruction is not in a frame
+     */
+    public int getFrameEnd(int index) {
+        int pushFrameIndex = enclosingFrames[index];
+        return pushFrameIndex == NONE ? NONE : jumpTargets[pushFrameIndex];
+    }
+
+    /**
+     * Get the PushFrame instructions between the given indices.
+     *
+     * @param fromIndex the start index (exclusive)
+     * @param toIndex the end index (exclusive)
+     * @return the list of PushFrame instructions in program order
+     */
+    public List<PushFrame> getPushFrames(int fromIndex, int toIndex) {
+        // Find the first PushFrame after the start index
+        int position = Arrays.binarySearch(pushFrameIndices, fromIndex + 1);
+        if (position < 0) {
+            position = -position - 1;
+        }
+
+        List<PushFrame> pushFrames = new ArrayList<>();
+
+        while (position < pushFrameIndices.length && pushFrameIndices[position] < toIndex) {
+            pushFrames.add((PushFrame) instructions[pushFrameIndices[position]]);
+            position++;
+        }
+
+        return pushFrames;
+    }
+
+    /**
+     * Compiles a list of instructions into a program, resolving the frame jump targets.
+     *
+     * @param instructions the list of instructions
+     * @return a new Program
+     * @throws GeneratorException if the frames are unbalanced
+     */
+    public static Program compile(List<Instruction> instructions) throws GeneratorException {
+        Precondition.notNull(instructions, "instructions is null");
+
+        Instruction[] array = instructions.toArray(new Instruction[0]);
+        int[] jumpTargets = new int[array.length];
+        int[] enclosingFrames = new int[array.length];
+        List<Integer> pushFrameIndices = new ArrayList<>();
+        Deque<Integer> openFrames = new ArrayDeque<>();
+
+        Arrays.fill(jumpTargets, NONE);
+
+        for (int i = 0; i < array.length; i++) {
+            Instruction instruction = array[i];
+
+            if (instruction instanceof PushFrame) {
+                // The PushFrame is part of its own frame
+                openFrames.push(i);
+                pushFrameIndices.add(i);
+                enclosingFrames[i] = i;
+            } else if (instruction instanceof PopFrame) {
+                if (openFrames.isEmpty()) {
+                    throw new GeneratorException("unbalanced frames, PopFrame at index [" + i + "]");
+                }
+
+                // The PopFrame is part of the frame it closes
+                int pushFrameIndex = openFrames.pop();
+                jumpTargets[pushFrameIndex] = i;
+                enclosingFrames[i] = pushFrameIndex;
+            } else {
+                Integer pushFrameIndex = openFrames.peek();
+                enclosingFrames[i] = pushFrameIndex != null ? pushFrameIndex : NONE;
+            }
+        }
+
+        if (!openFrames.isEmpty()) {
+            throw new GeneratorException("unbalanced frames, PushFrame at index [" + openFrames.peek() + "]");
+        }
+
+        return new Program(
+                array,
+                jumpTargets,
+                enclosingFrames,
+                pushFrameIndices.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
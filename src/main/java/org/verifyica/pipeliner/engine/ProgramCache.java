@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.model.Pipeline;
+import org.verifyica.pipeliner.model.PipelineFactory;
+import org.verifyica.pipeliner.model.SyntaxException;
+
+/**
+ * Cache of parsed pipelines and their compiled programs.
+ * <p>
+ * Entries are keyed by the canonical path of the pipeline file and the SHA-256 hash of its content, so a
+ * changed file is parsed again. The least recently used entry is evicted when the cache is full. Programs
+ * are immutable, so a cached program can be executed by multiple contexts concurrently.
+ */
+public final class ProgramCache {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgramCache.class);
+
+    /**
+     * The maximum number of entries in the cache.
+     */
+    private static final int MAXIMUM_ENTRIES = 64;
+
+    /**
+     * The entries, in least recently used order.
+     */
+    private final Map<String, CachedPipeline> entries;
+
+    /**
+     * Constructor
+     */
+    private ProgramCache() {
+        this.entries = new LinkedHashMap<String, CachedPipeline>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPipeline> eldest) {
+                return size() > MAXIMUM_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Get the cached pipeline for a pipeline file, parsing the file if it is not cached or has changed.
+     *
+     * @param file the pipeline file
+     * @return the cached pipeline
+     * @throws IOException if an I/O error occurs
+     * @throws SyntaxException if the pipeline file has a syntax error
+     */
+    public CachedPipeline get(File file) throws IOException, SyntaxException {
+        // Read the file content
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        // Get the key for the file
+        String key = file.getCanonicalPath() + "#" + sha256(bytes);
+
+        synchronized (entries) {
+            CachedPipeline cachedPipeline = entries.get(key);
+
+            if (cachedPipeline != null) {
+                LOGGER.trace("cache hit [%s]", key);
+                return cachedPipeline;
+            }
+        }
+
+        LOGGER.trace("cache miss [%s]", key);
+
+        // Parse the pipeline
+        Pipeline pipeline = new PipelineFactory()
+                .createPipeline(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+
+        synchronized (entries) {
+            // Another thread may have parsed the same file concurrently, so keep the first entry
+            return entries.computeIfAbsent(key, k -> new CachedPipeline(pipeline));
+        }
+    }
+
+    /**
+     * Get the singleton instance of ProgramCache.
+     *
+     * @return the singleton instance
+     */
+    public static ProgramCache getInstance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    /**
+     * Calculates the SHA-256 hash of the bytes.
+     *
+     * @param bytes the bytes
+     * @return the hex encoded hash
+     */
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] hashBytes = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Class representing a cached pipeline and its compiled program.
+     */
+    public static final class CachedPipeline {
+
+        /**
+         * The pipeline.
+         */
+        private final Pipeline pipeline;
+
+        /**
+         * The compiled program, or null if not generated yet.
+         */
+        private Program program;
+
+        /**
+         * Constructor
+         *
+         * @param pipeline the pipeline
+         */
+        private CachedPipeline(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        /**
+         * Get the pipeline.
+         *
+         * @return the pipeline
+         */
+        public Pipeline getPipeline() {
+            return pipeline;
+        }
+
+        /**
+         * Get the compiled program, generating it the first time.
+         *
+         * @return the compiled program
+         */
+        public synchronized Program getProgram() {
+            if (program == null) {
+                // Create a list to hold instructions
+                List<Instruction> instructions = new ArrayList<>();
+
+                // Generate the instructions for the pipeline
+                new Generator().generate(pipeline, instructions::add);
+
+                // Optimize and compile the instructions into a program
+                program = Program.compile(new Optimizer().optimize(instructions));
+            }
+
+            return program;
+        }
+    }
+
+    /** Class to hold the singleton instance */
+    private static final class SingletonHolder {
+
+        /** The singleton instance */
+        private static final ProgramCache SINGLETON = new ProgramCache();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.verifyica.pipeliner.engine.instructions.PushFrame;
+import org.verifyica.pipeliner.support.Precondition;
+
+/**
+ * Class representing the program counter used to execute a program.
+ */
+public final class ProgramCounter {
+
+    /**
+     * The program being executed.
+     */
+    private final Program program;
+
+    /**
+     * The index of the next instruction to execute.
+     */
+    private int index;
+
+    /**
+     * Constructor
+     *
+     * @param program the program to execute
+     */
+    public ProgramCounter(Program program) {
+        Precondition.notNull(program, "program is null");
+
+        this.program = program;
+    }
+
+    /**
+     * Get the program being executed.
+     *
+     * @return the program
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * Get the index of the next instruction to execute.
+     *
+     * @return the index of the next instruction
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns true if there are more instructions to execute.
+     *
+     * @return true if there are more instructions, otherwise false
+     */
+    public boolean hasNext() {
+        return index < program.size();
+    }
+
+    /**
+     * Returns the next instruction and advances the program counter.
+     *
+     * @return the next instruction
+     */
+    public Instruction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return program.get(index++);
+    }
+
+    /**
+     * Skips the remaining instructions of the frame enclosing the current instruction,
+     * positioning the program counter at the frame's PopFrame instruction.
+     *
+     * @return the list of nested PushFrame instructions that were skipped, in program order
+     */
+    public List<PushFrame> skipFrame() {
+        // The current instruction is the one most recently returned by next()
+        int current = index - 1;
+
+        // Get the index of the PopFrame of the enclosing frame
+        int frameEnd = program.getFrameEnd(current);
+
+        if (frameEnd < 0) {
+            throw new IllegalStateException("instruction at index [" + current + "] is not in a frame");
+        }
+
+        // Collect the nested frames being skipped
+        List<PushFrame> pushFrames = program.getPushFrames(current, frameEnd);
+
+        // Jump to the PopFrame
+        index = frameEnd;
+
+        return pushFrames;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.verifyica.pipeliner.Console;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.support.HumanDuration;
+import org.verifyica.pipeliner.support.Precondition;
+
+/**
+ * Class responsible for executing a dependency graph of programs (jobs or parallel steps) on a bounded worker pool.
+ * <p>
+ * Every program whose needed programs have completed successfully is dispatched, in declaration order,
+ * as long as fewer than the maximum number of parallel programs are running. Each program executes in its
+ * own forked context, seeded with the variables set by the programs it needs, and with its own console
+ * whose output is written atomically when the program completes. Once a program fails, no new programs are
+ * dispatched (unless fail fast is disabled, in which case only the programs that need it are not dispatched),
+ * running programs are allowed to complete, and the failure of the first failed program in declaration order
+ * is rethrown.
+ * <p>
+ * The maximum number of parallel programs is also shared by nested schedulers through the permits of the
+ * context, so nested jobs, parallel steps and matrix jobs don't run more programs at once than the maximum.
+ * The thread waiting for the programs lends its permit to the first running program, so a nested scheduler
+ * always makes progress, and each additional running program acquires a shared permit. While a program waits
+ * for a shared permit, the scheduler blocks until a permit is released or one of its programs completes.
+ */
+public class ProgramScheduler {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgramScheduler.class);
+
+    /**
+     * Counter used to name the worker threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * The maximum number of programs to execute in parallel.
+     */
+    private final int maxParallel;
+
+    /**
+     * Flag to indicate whether to stop dispatching programs when a program fails.
+     */
+    private final boolean failFast;
+
+    /**
+     * Constructor
+     *
+     * @param maxParallel the maximum number of programs to execute in parallel
+     */
+    public ProgramScheduler(int maxParallel) {
+        this(maxParallel, true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxParallel the maximum number of programs to execute in parallel
+     * @param failFast true to stop dispatching programs when a program fails, otherwise false
+     */
+    public ProgramScheduler(int maxParallel, boolean failFast) {
+        Precondition.isTrue(maxParallel > 0, "maxParallel must be greater than 0");
+
+        this.maxParallel = maxParallel;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Executes the programs.
+     *
+     * @param context the context of the enclosing frame
+     * @param programs the programs to execute, in declaration order
+     * @return the list of variables set or changed by each program, in declaration order
+     * @throws Throwable the exception of the first failed program in declaration order
+     */
+    public List<Map<String, String>> execute(Context context, List<ScheduledProgram> programs) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("maxParallel [%d]", maxParallel);
+        LOGGER.trace("failFast [%b]", failFast);
+
+        int count = programs.size();
+
+        if (count == 0) {
+            return List.of();
+        }
+
+        // Build the reverse dependency graph
+        int[] remainingNeeds = new int[count];
+        List<List<Integer>> dependents = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            dependents.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < count; i++) {
+            for (int need : programs.get(i).getNeeds()) {
+                remainingNeeds[i]++;
+                dependents.get(need).add(i);
+            }
+        }
+
+        // Output is only buffered if programs can actually run concurrently
+        boolean bufferOutput = maxParallel > 1 && count > 1;
+
+        boolean[] dispatched = new boolean[count];
+        Map<String, String>[] exportedVariables = newMapArray(count);
+        Throwable[] failures = new Throwable[count];
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(maxParallel, count), runnable -> {
+            Thread thread = new Thread(runnable, "pipeliner-worker-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // The indexes of the completed programs, which signal the permits when added
+        Queue<Integer> completed = new ConcurrentLinkedQueue<>();
+
+        // Get the permits shared by the nested schedulers of the context
+        ParallelPermits parallelPermits = context.getParallelPermits();
+
+        // The number of shared permits acquired, which is one less than the number of running programs
+        int permits = 0;
+
+        try {
+            int running = 0;
+            boolean stopped = false;
+
+            while (true) {
+                boolean waitingForPermit = false;
+
+                // Dispatch the ready programs in declaration order
+                for (int i = 0; !stopped && i < count && running < maxParallel; i++) {
+                    if (dispatched[i] || remainingNeeds[i] > 0) {
+                        continue;
+                    }
+
+                    // The first running program uses the permit of this thread, which waits for the programs
+                    if (running > 0) {
+                        if (!parallelPermits.tryAcquire()) {
+                            waitingForPermit = true;
+                            break;
+                        }
+
+                        permits++;
+                    }
+
+                    ScheduledProgram program = programs.get(i);
+
+                    LOGGER.trace("dispatching program [%s]", program.getName());
+
+                    // Fork the context, seeded with the variables exported by the needed programs
+                    Console console =
+                            bufferOutput ? context.getConsole().createBufferedConsole() : context.getConsole();
+                    Context programContext = context.fork(console);
+
+                    for (int need : program.getNeeds()) {
+                        programContext.getVariables().putAll(exportedVariables[need]);
+                    }
+
+                    int index = i;
+                    executorService.execute(() -> {
+                        try {
+                            new Interpreter(programContext).execute(program.getProgram());
+                            exportedVariables[index] = getExportedVariables(context, programContext);
+                        } catch (Throwable t) {
+                            failures[index] = t;
+                            printFailedFrames(context, programContext, t);
+                        } finally {
+                            try {
+                                programContext.closeShellSessions();
+                                programContext.closeStepLogs();
+                                programContext.getConsole().commit();
+                            } finally {
+                                completed.add(index);
+                                parallelPermits.signalAll();
+                            }
+                        }
+                    });
+
+                    dispatched[i] = true;
+                    running++;
+                }
+
+                if (running == 0) {
+                    break;
+                }
+
+                // Wait for a program to complete, or for a released permit if a program is waiting for one
+                boolean waitForPermit = waitingForPermit;
+                parallelPermits.await(
+                        () -> !completed.isEmpty() || (waitForPermit && parallelPermits.availablePermits() > 0));
+
+                Integer index = completed.poll();
+
+                if (index == null) {
+                    continue;
+                }
+
+                running--;
+
+                // Release a shared permit, since the remaining programs need one less
+                if (permits > 0) {
+                    parallelPermits.release(1);
+                    permits--;
+                }
+
+                if (failures[index] != null) {
+                    LOGGER.trace("program [%s] failed", programs.get(index).getName());
+
+                    // Stop dispatching new programs if fail fast
+                    stopped = failFast;
+                } else {
+                    for (int dependent : dependents.get(index)) {
+                        remainingNeeds[dependent]--;
+                    }
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+
+            // Release the shared permits still acquired if waiting for the programs failed
+            parallelPermits.release(permits);
+        }
+
+        // Rethrow the failure of the first failed program in declaration order
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        return Arrays.asList(exportedVariables);
+    }
+
+    /**
+     * Returns the variables that were set or changed by a program.
+     *
+     * @param context the context of the enclosing frame
+     * @param programContext the context of the program
+     * @return the map of variables set or changed by the program
+     */
+    private static Map<String, String> getExportedVariables(Context context, Context programContext) {
+        Map<String, String> variables = new TreeMap<>();
+
+        for (Map.Entry<String, String> entry : programContext.getVariables().entrySet()) {
+            if (!Objects.equals(context.getVariables().get(entry.getKey()), entry.getValue())) {
+                variables.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return variables;
+    }
+
+    /**
+     * Prints the status of the frames owned by a failed program.
+     *
+     * @param context the context of the enclosing frame
+     * @param programContext the context of the program
+     * @param throwable the failure
+     */
+    private static void printFailedFrames(Context context, Context programContext, Throwable throwable) {
+        // Set the status based on the exit code
+        String status = throwable instanceof ExitException && ((ExitException) throwable).getExitCode() == 0
+                ? "success"
+                : "failure";
+
+        // The frames of the enclosing context are reported by the engine
+        int inheritedFrames = context.getFrames().size();
+
+        // Get a descending iterator for the frames
+        Iterator<Frame> frameIterator = programContext.getFrames().descendingIterator();
+
+        for (int i = 0; frameIterator.hasNext(); i++) {
+            // Get the next frame from the iterator
+            Frame frame = frameIterator.next();
+
+            if (i < inheritedFrames) {
+                continue;
+            }
+
+            // Get the elapsed time from the frame's stopwatch as human-readable duration
+            String humanDuration =
+                    HumanDuration.humanDuration(frame.getStopwatch().elapsedTime());
+
+            // Print the frame information
+            programContext
+                    .getConsole()
+                    .error("%s status=[%s] duration=[%s]", frame.toConsoleString(), status, humanDuration);
+        }
+    }
+
+    /**
+     * Creates an array of maps.
+     *
+     * @param size the size of the array
+     * @return a new array of maps
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, String>[] newMapArray(int size) {
+        return (Map<String, String>[]) new Map[size];
+    }
+}
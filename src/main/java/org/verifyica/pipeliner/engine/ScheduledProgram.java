@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.List;
+
+/**
+ * Class representing a program (a job or a parallel step) scheduled for execution by the program scheduler.
+ */
+public final class ScheduledProgram {
+
+    /**
+     * The name of the program.
+     */
+    private final String name;
+
+    /**
+     * The program to execute.
+     */
+    private final Program program;
+
+    /**
+     * The indices of the programs this program needs, in declaration order.
+     */
+    private final List<Integer> needs;
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the program
+     * @param program the program to execute
+     * @param needs the indices of the programs this program needs
+     */
+    private ScheduledProgram(String name, Program program, List<Integer> needs) {
+        this.name = name;
+        this.program = program;
+        this.needs = List.copyOf(needs);
+    }
+
+    /**
+     * Get the name of the program.
+     *
+     * @return the name of the program
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the program to execute.
+     *
+     * @return the program to execute
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * Get the indices of the programs this program needs.
+     *
+     * @return the indices of the programs this program needs
+     */
+    public List<Integer> getNeeds() {
+        return needs;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " { name [" + name + "] needs " + needs + " instructions [" + program.size()
+                + "] }";
+    }
+
+    /**
+     * Factory method to create a new instance of ScheduledProgram.
+     *
+     * @param name the name of the program
+     * @param program the program to execute
+     * @param needs the indices of the programs this program needs
+     * @return a new ScheduledProgram instance
+     */
+    public static ScheduledProgram of(String name, Program program, List<Integer> needs) {
+        return new ScheduledProgram(name, program, needs);
+    }
+}
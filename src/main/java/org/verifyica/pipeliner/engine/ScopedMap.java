@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.verifyica.pipeliner.parser.SymbolTable;
+
+/**
+ * Map of variables organized as a stack of scope layers, one layer per frame above a base layer.
+ * <p>
+ * A lookup walks the layers, innermost first. A value declared in a scope is put in the innermost layer,
+ * and is dropped with the layer when the frame is popped. Any other put updates the innermost layer that
+ * defines the name, or the base layer if no layer defines it, so values set by commands outlive the frame
+ * that set them.
+ * <p>
+ * Names referenced by templates are interned in the {@link SymbolTable}, and each layer stores their values
+ * by symbol, so a lookup by symbol doesn't hash or compare names. Names that are not interned, such as the
+ * names of variables read from IPC files or of environment variables that are never referenced, are stored
+ * by name and are not interned, so they don't grow the symbol table. Each layer is sized by the names it
+ * defines. Entries are only ordered by name when the map is iterated, for example to serialize the variables.
+ * <p>
+ * Layers are copy-on-write. Forking the map shares the layers with the fork, and the first write to a
+ * shared layer copies only that layer, so forking doesn't copy inherited variables.
+ * <p>
+ * The map keeps a version, incremented when a change is visible through the map, and an immutable
+ * snapshot of the flattened layers, which is reused until the version changes.
+ */
+final class ScopedMap extends AbstractMap<String, String> {
+
+    /**
+     * The symbol table interning the names.
+     */
+    private static final SymbolTable SYMBOL_TABLE = SymbolTable.getInstance();
+
+    /**
+     * The comparator that orders the flattened entries.
+     */
+    private final Comparator<String> comparator;
+
+    /**
+     * The layers, base layer first.
+     */
+    private final List<Layer> layers;
+
+    /**
+     * The version, incremented when a change is visible through the map.
+     */
+    private long version;
+
+    /**
+     * The snapshot of the flattened layers, or null if not created yet.
+     */
+    private Map<String, String> snapshot;
+
+    /**
+     * The version of the snapshot.
+     */
+    private long snapshotVersion;
+
+    /**
+     * Constructor
+     *
+     * @param comparator the comparator that orders the flattened entries
+     */
+    ScopedMap(Comparator<String> comparator) {
+        this.comparator = comparator;
+        this.layers = new ArrayList<>();
+        this.layers.add(new Layer());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param comparator the comparator that orders the flattened entries
+     * @param layers the layers, base layer first
+     * @param version the version
+     * @param snapshot the snapshot, or null
+     * @param snapshotVersion the version of the snapshot
+     */
+    private ScopedMap(
+            Comparator<String> comparator,
+            List<Layer> layers,
+            long version,
+            Map<String, String> snapshot,
+            long snapshotVersion) {
+        this.comparator = comparator;
+        this.layers = layers;
+        this.version = version;
+        this.snapshot = snapshot;
+        this.snapshotVersion = snapshotVersion;
+    }
+
+    /**
+     * Push a new empty scope layer.
+     */
+    void push() {
+        layers.add(new Layer());
+    }
+
+    /**
+     * Pop the innermost scope layer, dropping the values declared in it.
+     * The base layer is never popped.
+     */
+    void pop() {
+        if (layers.size() > 1) {
+            Layer layer = layers.remove(layers.size() - 1);
+
+            if (layer.size() > 0) {
+                version++;
+            }
+        }
+    }
+
+    /**
+     * Declare a value in the innermost scope layer.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void declare(String key, String value) {
+        put(layers.size() - 1, SYMBOL_TABLE.lookup(key), key, value);
+    }
+
+    /**
+     * Declare a value in the innermost scope layer.
+     *
+     * @param symbol the symbol of the key
+     * @param value the value
+     */
+    void declare(int symbol, String value) {
+        put(layers.size() - 1, symbol, SYMBOL_TABLE.getName(symbol), value);
+    }
+
+    /**
+     * Creates a fork of the map sharing the layers with this map.
+     *
+     * @return the fork
+     */
+    ScopedMap fork() {
+        for (Layer layer : layers) {
+            layer.shared = true;
+        }
+
+        // The snapshot is immutable, so it is shared with the fork
+        return new ScopedMap(comparator, new ArrayList<>(layers), version, snapshot, snapshotVersion);
+    }
+
+    /**
+     * Get the version, which is incremented when a change is visible through the map.
+     *
+     * @return the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get an immutable snapshot of the flattened layers, ordered by name.
+     * The snapshot is reused until the version changes.
+     *
+     * @return the snapshot
+     */
+    Map<String, String> snapshot() {
+        if (snapshot == null || snapshotVersion != version) {
+            // Flatten the layers, base layer first, so inner values replace outer values
+            Map<String, String> flattened = new TreeMap<>(comparator);
+            for (Layer layer : layers) {
+                layer.flatten(flattened);
+            }
+
+            snapshot = Collections.unmodifiableMap(flattened);
+            snapshotVersion = version;
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Get a value by symbol.
+     *
+     * @param symbol the symbol of the key
+     * @return the value, or null if not defined
+     */
+    String get(int symbol) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            String value = layers.get(i).get(symbol);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        int symbol = SYMBOL_TABLE.lookup(key);
+        if (symbol != SymbolTable.UNDEFINED) {
+            return get(symbol);
+        }
+
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            String value = layers.get(i).get((String) key);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int symbol = SYMBOL_TABLE.lookup(key);
+
+        // Find the innermost layer that defines the key, or the base layer
+        int index = layers.size() - 1;
+        while (index > 0 && layers.get(index).get(symbol, key) == null) {
+            index--;
+        }
+
+        return put(index, symbol, key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        String name = (String) key;
+        int symbol = SYMBOL_TABLE.lookup(name);
+        String previous = get(name);
+
+        // Remove the key from every layer that defines it, so an outer value doesn't reappear
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).get(symbol, name) != null) {
+                writableLayer(i).set(symbol, name, null);
+                version++;
+            }
+        }
+
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < layers.size(); i++) {
+            layers.set(i, new Layer());
+        }
+
+        version++;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return snapshot().entrySet();
+    }
+
+    /**
+     * Puts a value in a layer.
+     *
+     * @param index the index of the layer
+     * @param symbol the symbol of the key, or {@link SymbolTable#UNDEFINED} if the key is not interned
+     * @param key the key
+     * @param value the value
+     * @return the previous value of the layer, or null
+     */
+    private String put(int index, int symbol, String key, String value) {
+        // If the layer already has the value, nothing changes
+        String previous = layers.get(index).get(symbol, key);
+        if (previous != null && previous.equals(value)) {
+            return previous;
+        }
+
+        version++;
+
+        return writableLayer(index).set(symbol, key, value);
+    }
+
+    /**
+     * Get a layer for writing, copying the layer first if it is shared.
+     *
+     * @param index the index of the layer
+     * @return the layer
+     */
+    private Layer writableLayer(int index) {
+        Layer layer = layers.get(index);
+
+        if (layer.shared) {
+            layer = layer.copy();
+            layers.set(index, layer);
+        }
+
+        return layer;
+    }
+
+    /**
+     * Class representing a scope layer.
+     * <p>
+     * A name is stored either by symbol or by name. A name stored by name before it was interned is still
+     * found by symbol, and is moved to the symbol values when it is set again.
+     */
+    private static final class Layer {
+
+        /**
+         * The values of interned names, by symbol.
+         */
+        private SymbolMap<String> symbolValues;
+
+        /**
+         * The values of names that were not interned when set, by name, or null if none.
+         */
+        private Map<String, String> nameValues;
+
+        /**
+         * Flag to indicate whether the layer is shared with a fork, and must be copied before writing.
+         */
+        private volatile boolean shared;
+
+        /**
+         * Constructor
+         */
+        private Layer() {
+            this.symbolValues = new SymbolMap<>();
+        }
+
+        /**
+         * Get the number of defined values.
+         *
+         * @return the number of defined values
+         */
+        private int size() {
+            return symbolValues.size() + (nameValues != null ? nameValues.size() : 0);
+        }
+
+        /**
+         * Get a value by symbol.
+         *
+         * @param symbol the symbol
+         * @return the value, or null if not defined
+         */
+        private String get(int symbol) {
+            String value = symbolValues.get(symbol);
+
+            // The name may have been set before it was interned
+            if (value == null && nameValues != null) {
+                value = nameValues.get(SYMBOL_TABLE.getName(symbol));
+            }
+
+            return value;
+        }
+
+        /**
+         * Get a value by name, for a name that is not interned.
+         *
+         * @param name the name
+         * @return the value, or null if not defined
+         */
+        private String get(String name) {
+            return nameValues != null ? nameValues.get(name) : null;
+        }
+
+        /**
+         * Get a value.
+         *
+         * @param symbol the symbol, or {@link SymbolTable#UNDEFINED} if the name is not interned
+         * @param name the name
+         * @return the value, or null if not defined
+         */
+        private String get(int symbol, String name) {
+            return symbol != SymbolTable.UNDEFINED ? get(symbol) : get(name);
+        }
+
+        /**
+         * Set a value.
+         *
+         * @param symbol the symbol, or {@link SymbolTable#UNDEFINED} if the name is not interned
+         * @param name the name
+         * @param value the value, or null to undefine the value
+         * @return the previous value, or null
+         */
+        private String set(int symbol, String name, String value) {
+            // Remove the value stored by name, which is replaced by the value stored by symbol
+            String previous = nameValues != null ? nameValues.remove(name) : null;
+
+            if (symbol != SymbolTable.UNDEFINED) {
+                String previousSymbolValue = symbolValues.put(symbol, value);
+                return previousSymbolValue != null ? previousSymbolValue : previous;
+            }
+
+            if (value != null) {
+                if (nameValues == null) {
+                    nameValues = new HashMap<>();
+                }
+
+                nameValues.put(name, value);
+            }
+
+            return previous;
+        }
+
+        /**
+         * Puts the values of the layer in a map, replacing the values of outer layers.
+         *
+         * @param map the map
+         */
+        private void flatten(Map<String, String> map) {
+            if (nameValues != null) {
+                map.putAll(nameValues);
+            }
+
+            for (int slot = 0; slot < symbolValues.capacity(); slot++) {
+                String value = symbolValues.getValue(slot);
+                if (value != null) {
+                    map.put(SYMBOL_TABLE.getName(symbolValues.getSymbol(slot)), value);
+                }
+            }
+        }
+
+        /**
+         * Creates a copy of the layer, which is not shared.
+         *
+         * @return the copy
+         */
+        private Layer copy() {
+            Layer layer = new Layer();
+            layer.symbolValues = symbolValues.copy();
+            layer.nameValues = nameValues != null ? new HashMap<>(nameValues) : null;
+            return layer;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.Arrays;
+
+/**
+ * Map from symbols to values, using open addressing with linear probing.
+ * <p>
+ * The capacity grows with the number of symbols in the map, not with the number of interned symbols, so a
+ * map holding a few late symbols stays small. An empty map doesn't allocate its tables.
+ *
+ * @param <V> the type of the values
+ */
+final class SymbolMap<V> {
+
+    /**
+     * The symbol of an empty slot.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The tables of an empty map.
+     */
+    private static final int[] EMPTY_SYMBOLS = new int[0];
+
+    /**
+     * The minimum capacity of a non-empty map.
+     */
+    private static final int MINIMUM_CAPACITY = 8;
+
+    /**
+     * The symbol of each slot, or {@link #EMPTY}.
+     */
+    private int[] symbols;
+
+    /**
+     * The value of each slot.
+     */
+    private Object[] values;
+
+    /**
+     * The number of symbols.
+     */
+    private int size;
+
+    /**
+     * Constructor
+     */
+    SymbolMap() {
+        this.symbols = EMPTY_SYMBOLS;
+        this.values = new Object[0];
+    }
+
+    /**
+     * Get the number of symbols.
+     *
+     * @return the number of symbols
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of a symbol.
+     *
+     * @param symbol the symbol
+     * @return the value, or null if the symbol is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V get(int symbol) {
+        if (size == 0) {
+            return null;
+        }
+
+        int mask = symbols.length - 1;
+
+        for (int slot = slot(symbol, mask); ; slot = (slot + 1) & mask) {
+            int current = symbols[slot];
+
+            if (current == symbol) {
+                return (V) values[slot];
+            }
+
+            if (current == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Puts the value of a symbol.
+     *
+     * @param symbol the symbol
+     * @param value the value, or null to remove the symbol
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(int symbol, V value) {
+        if (value == null) {
+            return remove(symbol);
+        }
+
+        // Keep the load factor at most 3/4
+        if ((size + 1) * 4 > symbols.length * 3) {
+            resize(Math.max(MINIMUM_CAPACITY, symbols.length * 2));
+        }
+
+        int mask = symbols.length - 1;
+        int slot = slot(symbol, mask);
+
+        while (symbols[slot] != EMPTY) {
+            if (symbols[slot] == symbol) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        symbols[slot] = symbol;
+        values[slot] = value;
+        size++;
+
+        return null;
+    }
+
+    /**
+     * Removes a symbol.
+     *
+     * @param symbol the symbol
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int symbol) {
+        if (size == 0) {
+            return null;
+        }
+
+        int mask = symbols.length - 1;
+        int slot = slot(symbol, mask);
+
+        while (symbols[slot] != symbol) {
+            if (symbols[slot] == EMPTY) {
+                return null;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        V previous = (V) values[slot];
+
+        // Shift the following symbols of the probe sequence back, so lookups don't stop at the removed slot
+        int next = slot;
+
+        while (true) {
+            next = (next + 1) & mask;
+
+            if (symbols[next] == EMPTY) {
+                break;
+            }
+
+            int home = slot(symbols[next], mask);
+
+            // If the symbol's home slot is cyclically after the removed slot, the symbol stays in place
+            boolean stays = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+
+            if (!stays) {
+                symbols[slot] = symbols[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+
+        symbols[slot] = EMPTY;
+        values[slot] = null;
+        size--;
+
+        return previous;
+    }
+
+    /**
+     * Get the number of slots, to iterate the map with {@link #getSymbol(int)} and {@link #getValue(int)}.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return symbols.length;
+    }
+
+    /**
+     * Get the symbol of a slot.
+     *
+     * @param slot the slot
+     * @return the symbol, or -1 if the slot is empty
+     */
+    int getSymbol(int slot) {
+        return symbols[slot];
+    }
+
+    /**
+     * Get the value of a slot.
+     *
+     * @param slot the slot
+     * @return the value, or null if the slot is empty
+     */
+    @SuppressWarnings("unchecked")
+    V getValue(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * Creates a copy of the map.
+     *
+     * @return the copy
+     */
+    SymbolMap<V> copy() {
+        SymbolMap<V> symbolMap = new SymbolMap<>();
+        symbolMap.symbols = size == 0 ? EMPTY_SYMBOLS : symbols.clone();
+        symbolMap.values = size == 0 ? new Object[0] : values.clone();
+        symbolMap.size = size;
+        return symbolMap;
+    }
+
+    /**
+     * Resizes the tables, putting the symbols again.
+     *
+     * @param capacity the new capacity, which is a power of two
+     */
+    private void resize(int capacity) {
+        int[] oldSymbols = symbols;
+        Object[] oldValues = values;
+
+        symbols = new int[capacity];
+        values = new Object[capacity];
+        Arrays.fill(symbols, EMPTY);
+
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldSymbols.length; i++) {
+            if (oldSymbols[i] != EMPTY) {
+                int slot = slot(oldSymbols[i], mask);
+
+                while (symbols[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+
+                symbols[slot] = oldSymbols[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Get the home slot of a symbol.
+     *
+     * @param symbol the symbol
+     * @param mask the mask of the capacity
+     * @return the home slot
+     */
+    private static int slot(int symbol, int mask) {
+        int hash = symbol * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
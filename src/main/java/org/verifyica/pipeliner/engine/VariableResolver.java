@@ -0,0 +1,519 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.verifyica.pipeliner.Constants;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.parser.SymbolTable;
+import org.verifyica.pipeliner.parser.Template;
+import org.verifyica.pipeliner.support.SpillFile;
+
+/**
+ * Resolver for variable and environment variable references.
+ * <p>
+ * The values of variables and environment variables form a reference graph, which is walked lazily,
+ * depth first, when a reference is resolved. The fully resolved value of each variable is memoized, along
+ * with the values of all the variables it was resolved from, so the memoized value is reused until one of
+ * those inputs changes. A reference cycle is reported as a {@link SyntaxException} naming the cycle.
+ * <p>
+ * References are looked up by the symbols interned when the templates were compiled, and the memoized
+ * values are stored in a {@link SymbolMap} by symbol. A variable whose value was spilled to a {@link SpillFile}
+ * is read from the file when it is resolved, up to {@link SpillFile#MAXIMUM_RESOLVED_SIZE} bytes, and the last
+ * spilled value read is reused.
+ */
+final class VariableResolver {
+
+    /**
+     * The variable reference prefix.
+     */
+    private static final String VARIABLE_PREFIX = "${{";
+
+    /**
+     * The symbol table interning the names.
+     */
+    private static final SymbolTable SYMBOL_TABLE = SymbolTable.getInstance();
+
+    /**
+     * The map of variables.
+     */
+    private final ScopedMap variables;
+
+    /**
+     * The map of environment variables.
+     */
+    private final ScopedMap environmentVariables;
+
+    /**
+     * The memoized variables, resolved without environment variables, by symbol.
+     */
+    private final SymbolMap<Entry> variableEntries;
+
+    /**
+     * The memoized variables, resolved with environment variables, by symbol.
+     */
+    private final SymbolMap<Entry> allVariableEntries;
+
+    /**
+     * The memoized environment variables, by symbol.
+     */
+    private final SymbolMap<Entry> environmentVariableEntries;
+
+    /**
+     * The references currently being resolved, outermost first.
+     */
+    private final List<String> path;
+
+    /**
+     * The builder reused to resolve templates.
+     */
+    private final StringBuilder stringBuilder;
+
+    /**
+     * The reference of the last spill file read, or null.
+     */
+    private String spillReference;
+
+    /**
+     * The value of the last spill file read, or null.
+     */
+    private String spillValue;
+
+    /**
+     * Flag to indicate whether the value of the last spill file read has variable references.
+     */
+    private boolean spillHasVariables;
+
+    /**
+     * Flag to indicate whether the value of the last spill file read has environment variable references.
+     */
+    private boolean spillHasEnvironmentVariables;
+
+    /**
+     * Constructor
+     *
+     * @param variables the map of variables
+     * @param environmentVariables the map of environment variables
+     */
+    VariableResolver(ScopedMap variables, ScopedMap environmentVariables) {
+        this.variables = variables;
+        this.environmentVariables = environmentVariables;
+        this.variableEntries = new SymbolMap<>();
+        this.allVariableEntries = new SymbolMap<>();
+        this.environmentVariableEntries = new SymbolMap<>();
+        this.path = new ArrayList<>();
+        this.stringBuilder = new StringBuilder();
+    }
+
+    /**
+     * Resolve the references in a template.
+     *
+     * @param template the template
+     * @param resolveEnvironmentVariables whether to resolve environment variables
+     * @return the resolved string
+     * @throws SyntaxException if a reference cycle is found
+     */
+    String resolve(Template template, boolean resolveEnvironmentVariables) {
+        // If the template has nothing to resolve
+        if (!template.hasVariables() && !(resolveEnvironmentVariables && template.hasEnvironmentVariables())) {
+            return template.getInput();
+        }
+
+        path.clear();
+        stringBuilder.setLength(0);
+
+        append(template, resolveEnvironmentVariables, stringBuilder, null);
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Resolve the references in a template, recording the variables and environment variables the resolved
+     * value depends on, so a cached value can be reused until one of them changes.
+     *
+     * @param template the template
+     * @param resolveEnvironmentVariables whether to resolve environment variables
+     * @return the entry of the resolved value
+     * @throws SyntaxException if a reference cycle is found
+     */
+    Entry resolveEntry(Template template, boolean resolveEnvironmentVariables) {
+        Inputs inputs = new Inputs();
+
+        // If the template has nothing to resolve
+        if (!template.hasVariables() && !(resolveEnvironmentVariables && template.hasEnvironmentVariables())) {
+            return new Entry(template.getInput(), inputs);
+        }
+
+        path.clear();
+
+        StringBuilder stringBuilder = new StringBuilder(template.getInput().length());
+
+        append(template, resolveEnvironmentVariables, stringBuilder, inputs);
+
+        return new Entry(stringBuilder.toString(), inputs);
+    }
+
+    /**
+     * Appends the resolved segments of a template.
+     *
+     * @param template the template
+     * @param resolveEnvironmentVariables whether to resolve environment variables
+     * @param stringBuilder the builder to append to
+     * @param inputs the inputs to record the references to, or null
+     */
+    private void append(
+            Template template, boolean resolveEnvironmentVariables, StringBuilder stringBuilder, Inputs inputs) {
+        for (int i = 0; i < template.size(); i++) {
+            switch (template.getType(i)) {
+                case ENVIRONMENT_VARIABLE: {
+                    if (resolveEnvironmentVariables) {
+                        stringBuilder.append(resolveEnvironmentVariable(template.getSymbol(i), inputs));
+                    } else {
+                        template.appendText(i, stringBuilder);
+                    }
+                    break;
+                }
+                case VARIABLE: {
+                    stringBuilder.append(resolveVariable(template.getSymbol(i), resolveEnvironmentVariables, inputs));
+                    break;
+                }
+                case TEXT:
+                default: {
+                    template.appendText(i, stringBuilder);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve a variable.
+     *
+     * @param symbol the variable symbol
+     * @param resolveEnvironmentVariables whether to resolve environment variables
+     * @param inputs the inputs to record the variable's inputs to, or null
+     * @return the resolved value
+     */
+    private String resolveVariable(int symbol, boolean resolveEnvironmentVariables, Inputs inputs) {
+        // Get the value, which may be a spill file reference
+        String reference = variables.get(symbol);
+
+        String value;
+        boolean hasReferences;
+
+        if (SpillFile.isReference(reference)) {
+            // Read the spill file, reusing the references found when the file was read
+            value = readSpillFile(SYMBOL_TABLE.getName(symbol), reference);
+            hasReferences = spillHasVariables || (resolveEnvironmentVariables && spillHasEnvironmentVariables);
+        } else {
+            value = reference;
+            hasReferences = value != null
+                    && (value.contains(VARIABLE_PREFIX) || (resolveEnvironmentVariables && value.indexOf('$') >= 0));
+        }
+
+        // If the value doesn't reference other variables
+        if (!hasReferences) {
+            if (inputs != null) {
+                inputs.addVariable(symbol, reference);
+            }
+
+            return value != null ? value : "";
+        }
+
+        // Get the memoized entry
+        SymbolMap<Entry> entries = resolveEnvironmentVariables ? allVariableEntries : variableEntries;
+        Entry entry = entries.get(symbol);
+
+        // If the entry is missing or one of its inputs changed
+        if (entry == null || !entry.isValid()) {
+            entry = compute("${{ " + SYMBOL_TABLE.getName(symbol) + " }}", value, resolveEnvironmentVariables);
+            entry.inputs.addVariable(symbol, reference);
+            entries.put(symbol, entry);
+        }
+
+        if (inputs != null) {
+            inputs.addAll(entry.inputs);
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Resolve an environment variable.
+     *
+     * @param symbol the environment variable symbol
+     * @param inputs the inputs to record the environment variable's inputs to, or null
+     * @return the resolved value
+     */
+    private String resolveEnvironmentVariable(int symbol, Inputs inputs) {
+        // Get the value
+        String value = environmentVariables.get(symbol);
+
+        // If the value doesn't reference other variables
+        if (value == null || value.indexOf('$') < 0) {
+            if (inputs != null) {
+                inputs.addEnvironmentVariable(symbol, value);
+            }
+
+            return value != null ? value : "";
+        }
+
+        // Get the memoized entry
+        Entry entry = environmentVariableEntries.get(symbol);
+
+        // If the entry is missing or one of its inputs changed
+        if (entry == null || !entry.isValid()) {
+            entry = compute("$" + SYMBOL_TABLE.getName(symbol), value, true);
+            entry.inputs.addEnvironmentVariable(symbol, value);
+            environmentVariableEntries.put(symbol, entry);
+        }
+
+        if (inputs != null) {
+            inputs.addAll(entry.inputs);
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Get the unresolved value of a variable, reading the spill file if the value was spilled.
+     *
+     * @param name the variable name
+     * @return the value, or null if the variable is not defined
+     * @throws SyntaxException if the spilled value is too large to read into memory
+     */
+    String getValue(String name) {
+        String reference = variables.get(name);
+
+        return SpillFile.isReference(reference) ? readSpillFile(name, reference) : reference;
+    }
+
+    /**
+     * Reads the value of a spilled variable. The value of the last spill file read is reused, since spill files
+     * are never modified, so a variable referenced repeatedly is only read once.
+     *
+     * @param name the variable name
+     * @param reference the spill file reference
+     * @return the value
+     * @throws SyntaxException if the spilled value is too large to read into memory
+     */
+    private String readSpillFile(String name, String reference) {
+        if (reference.equals(spillReference)) {
+            return spillValue;
+        }
+
+        long size = SpillFile.size(reference);
+
+        if (size > SpillFile.MAXIMUM_RESOLVED_SIZE) {
+            throw new SyntaxException("variable [" + name + "] value size [" + size
+                    + "] bytes exceeds the maximum size [" + SpillFile.MAXIMUM_RESOLVED_SIZE
+                    + "] bytes of a resolved variable, read the variable from the $" + Constants.PIPELINER_IPC_IN
+                    + " file instead");
+        }
+
+        // Drop the previous value before reading the next value
+        spillReference = null;
+        spillValue = null;
+
+        String value = SpillFile.resolve(reference);
+
+        spillReference = reference;
+        spillValue = value;
+        spillHasVariables = value.contains(VARIABLE_PREFIX);
+        spillHasEnvironmentVariables = value.indexOf('$') >= 0;
+
+        return value;
+    }
+
+    /**
+     * Computes the resolved value of a variable or environment variable.
+     *
+     * @param reference the reference being resolved, used to report a cycle
+     * @param value the unresolved value
+     * @param resolveEnvironmentVariables whether to resolve environment variables
+     * @return the entry
+     * @throws SyntaxException if a reference cycle is found
+     */
+    private Entry compute(String reference, String value, boolean resolveEnvironmentVariables) {
+        // If the reference is already being resolved
+        int index = path.indexOf(reference);
+        if (index >= 0) {
+            List<String> cycle = new ArrayList<>(path.subList(index, path.size()));
+            cycle.add(reference);
+
+            throw new SyntaxException("variable reference cycle [" + String.join(" -> ", cycle) + "]");
+        }
+
+        path.add(reference);
+
+        Inputs inputs = new Inputs();
+        StringBuilder stringBuilder = new StringBuilder(value.length());
+
+        append(Template.compile(value), resolveEnvironmentVariables, stringBuilder, inputs);
+
+        path.remove(path.size() - 1);
+
+        return new Entry(stringBuilder.toString(), inputs);
+    }
+
+    /**
+     * Class representing the inputs a value was resolved from.
+     */
+    private static final class Inputs {
+
+        /**
+         * The variable symbols.
+         */
+        private int[] variableSymbols = new int[4];
+
+        /**
+         * The variable values when resolved, by index.
+         */
+        private String[] variableValues = new String[4];
+
+        /**
+         * The number of variables.
+         */
+        private int variableCount;
+
+        /**
+         * The environment variable symbols.
+         */
+        private int[] environmentVariableSymbols = new int[4];
+
+        /**
+         * The environment variable values when resolved, by index.
+         */
+        private String[] environmentVariableValues = new String[4];
+
+        /**
+         * The number of environment variables.
+         */
+        private int environmentVariableCount;
+
+        /**
+         * Adds a variable.
+         *
+         * @param symbol the variable symbol
+         * @param value the variable value when resolved
+         */
+        private void addVariable(int symbol, String value) {
+            if (variableCount == variableSymbols.length) {
+                variableSymbols = Arrays.copyOf(variableSymbols, variableCount * 2);
+                variableValues = Arrays.copyOf(variableValues, variableCount * 2);
+            }
+
+            variableSymbols[variableCount] = symbol;
+            variableValues[variableCount] = value;
+            variableCount++;
+        }
+
+        /**
+         * Adds an environment variable.
+         *
+         * @param symbol the environment variable symbol
+         * @param value the environment variable value when resolved
+         */
+        private void addEnvironmentVariable(int symbol, String value) {
+            if (environmentVariableCount == environmentVariableSymbols.length) {
+                environmentVariableSymbols = Arrays.copyOf(environmentVariableSymbols, environmentVariableCount * 2);
+                environmentVariableValues = Arrays.copyOf(environmentVariableValues, environmentVariableCount * 2);
+            }
+
+            environmentVariableSymbols[environmentVariableCount] = symbol;
+            environmentVariableValues[environmentVariableCount] = value;
+            environmentVariableCount++;
+        }
+
+        /**
+         * Adds all the inputs of other inputs.
+         *
+         * @param inputs the other inputs
+         */
+        private void addAll(Inputs inputs) {
+            for (int i = 0; i < inputs.variableCount; i++) {
+                addVariable(inputs.variableSymbols[i], inputs.variableValues[i]);
+            }
+
+            for (int i = 0; i < inputs.environmentVariableCount; i++) {
+                addEnvironmentVariable(inputs.environmentVariableSymbols[i], inputs.environmentVariableValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Class representing a memoized value.
+     */
+    final class Entry {
+
+        /**
+         * The resolved value.
+         */
+        private final String value;
+
+        /**
+         * The inputs the value was resolved from.
+         */
+        private final Inputs inputs;
+
+        /**
+         * Constructor
+         *
+         * @param value the resolved value
+         * @param inputs the inputs the value was resolved from
+         */
+        private Entry(String value, Inputs inputs) {
+            this.value = value;
+            this.inputs = inputs;
+        }
+
+        /**
+         * Get the resolved value.
+         *
+         * @return the resolved value
+         */
+        String getValue() {
+            return value;
+        }
+
+        /**
+         * Returns true if none of the inputs changed since the value was resolved.
+         *
+         * @return true if none of the inputs changed, otherwise false
+         */
+        boolean isValid() {
+            for (int i = 0; i < inputs.variableCount; i++) {
+                if (!Objects.equals(variables.get(inputs.variableSymbols[i]), inputs.variableValues[i])) {
+                    return false;
+                }
+            }
+
+            for (int i = 0; i < inputs.environmentVariableCount; i++) {
+                if (!Objects.equals(
+                        environmentVariables.get(inputs.environmentVariableSymbols[i]),
+                        inputs.environmentVariableValues[i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -16,16 +16,30 @@
 
 package org.verifyica.pipeliner.engine.instructions;
 
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import org.verifyica.pipeliner.engine.Context;
-import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.parser.Parser;
+import org.verifyica.pipeliner.parser.Template;
 import org.verifyica.pipeliner.support.ConditionalEvaluator;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
- * Instruction to set the type of the current frame
+ * Instruction to evaluate the conditional of the current frame
+ * <p>
+ * If every variable reference of the conditional is a complete string literal, such as
+ * <code>"${{ jdk }}" == "21"</code>, each literal is replaced by a bound JEXL variable, so the expression text
+ * is the same for every evaluation, and is only compiled once, whatever the values of the variables. Otherwise,
+ * the variables are resolved into the expression text.
  */
 public class EvaluateConditional implements Instruction {
 
@@ -39,6 +53,26 @@ public class EvaluateConditional implements Instruction {
      */
     private final String expression;
 
+    /**
+     * The compiled expression
+     */
+    private final Template template;
+
+    /**
+     * The prefix of the names of bound variables
+     */
+    private static final String BINDING_PREFIX = "__pipeliner_";
+
+    /**
+     * The expression with bound variables, or null if the variables are resolved into the expression text
+     */
+    private final String boundExpression;
+
+    /**
+     * The variable references bound to the bound variables, in order
+     */
+    private final Template[] bindings;
+
     /**
      * Constructor
      *
@@ -46,60 +80,142 @@ public class EvaluateConditional implements Instruction {
      */
     private EvaluateConditional(String expression) {
         this.expression = expression.trim();
-    }
+        this.template = Template.compile(this.expression);
 
-    @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
-        LOGGER.trace("execute()");
-        LOGGER.trace("expression = [%s]", expression);
+        StringBuilder stringBuilder = new StringBuilder();
+        List<Template> references = new ArrayList<>();
 
-        // Resolve all variables in the expression
-        String resolvedExpression = context.resolveAllVariables(expression);
+        // The quote of the string literal being scanned, or 0 if not in a string literal
+        char quote = 0;
 
-        LOGGER.trace("resolvedExpression = [%s]", resolvedExpression);
+        // The index of the opening quote of the string literal being scanned
+        int quoteIndex = -1;
 
-        // Evaluate the resolved expression
-        boolean enabled = ConditionalEvaluator.getInstance().evaluate(resolvedExpression);
+        for (int i = 0; i < template.size() && references != null; i++) {
+            String text = template.getText(i);
 
-        LOGGER.trace("enabled = [%s]", enabled);
+            if (template.getType(i) != Parser.Token.Type.TEXT) {
+                // If the reference is not a complete string literal, the expression can't be bound
+                if (quote == 0
+                        || quoteIndex != stringBuilder.length() - 1
+                        || i + 1 >= template.size()
+                        || template.getType(i + 1) != Parser.Token.Type.TEXT
+                        || template.getText(i + 1).charAt(0) != quote) {
+                    references = null;
+                    break;
+                }
 
-        if (!enabled) {
-            Frame currentFrame = context.getFrame();
+                // Replace the string literal with a bound variable, and skip the closing quote
+                stringBuilder.setLength(quoteIndex);
+                stringBuilder.append(BINDING_PREFIX).append(references.size());
+                references.add(Template.compile(text));
+                quote = 0;
+                text = template.getText(++i).substring(1);
+            }
 
-            context.getConsole().println("%s status=[%s]", currentFrame.toConsoleString(), "disabled");
+            for (int j = 0; j < text.length(); j++) {
+                char c = text.charAt(j);
+
+                if (quote == 0 && (c == '"' || c == '\'')) {
+                    quote = c;
+                    quoteIndex = stringBuilder.length();
+                } else if (quote != 0 && c == '\\' && j + 1 < text.length()) {
+                    stringBuilder.append(c);
+                    c = text.charAt(++j);
+                } else if (quote != 0 && c == quote) {
+                    quote = 0;
+                }
 
-            int depth = 0;
+                stringBuilder.append(c);
+            }
+        }
 
-            while (peekIterator.hasNext()) {
-                Instruction instruction = peekIterator.peek();
+        if (references != null && !references.isEmpty()) {
+            this.boundExpression = stringBuilder.toString();
+            this.bindings = references.toArray(new Template[0]);
+        } else {
+            this.boundExpression = null;
+            this.bindings = null;
+        }
+    }
 
-                if (instruction instanceof PushFrame) {
-                    PushFrame nestedFrame = (PushFrame) instruction;
+    /**
+     * Get the expression to evaluate.
+     *
+     * @return the expression to evaluate
+     */
+    public String getExpression() {
+        return expression;
+    }
 
-                    // Manually print the disabled status of the nested frame
-                    Frame.Type type = nestedFrame.getType();
-                    String name = nestedFrame.getName();
-                    String description = nestedFrame.getDescription();
+    /**
+     * Get the compiled expression.
+     *
+     * @return the compiled expression
+     */
+    public Template getTemplate() {
+        return template;
+    }
 
-                    Frame frame = new Frame(type);
-                    frame.setName(name);
-                    frame.setDescription(description);
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("expression = [%s]", expression);
 
-                    context.getConsole().println("@info %s status=[%s]", frame.toConsoleString(), "disabled");
+        // Evaluate the expression, resolving all variables
+        boolean enabled = evaluate(context::resolveAllVariables);
 
-                    depth++;
-                } else if (instruction instanceof PopFrame) {
-                    if (depth == 0) {
-                        break;
-                    }
-                    depth--;
-                }
+        LOGGER.trace("enabled = [%s]", enabled);
 
-                peekIterator.next();
+        if (!enabled) {
+            // Print the disabled status of the current frame
+            context.getConsole()
+                    .println("@info %s status=[%s]", context.getFrame().toConsoleString(), "disabled");
+
+            // Skip to the end of the current frame
+            for (PushFrame pushFrame : programCounter.skipFrame()) {
+                // Print the disabled status of the nested frame
+                context.getConsole().println("@info %s status=[%s]", pushFrame.toConsoleString(), "disabled");
             }
         }
     }
 
+    /**
+     * Evaluates the expression.
+     *
+     * @param resolver the function to resolve all variables of a template
+     * @return the result of the expression
+     * @throws SyntaxException if the expression is invalid
+     */
+    public boolean evaluate(Function<Template, String> resolver) throws SyntaxException {
+        // If the variables are resolved into the expression text
+        if (boundExpression == null) {
+            // Resolve all variables in the expression
+            String resolvedExpression = resolver.apply(template);
+
+            LOGGER.trace("resolvedExpression = [%s]", resolvedExpression);
+
+            // Evaluate the resolved expression
+            return ConditionalEvaluator.getInstance().evaluate(resolvedExpression);
+        }
+
+        // Resolve the bound variables
+        Map<String, Object> variables = new HashMap<>(bindings.length * 2);
+        for (int i = 0; i < bindings.length; i++) {
+            variables.put(BINDING_PREFIX + i, resolver.apply(bindings[i]));
+        }
+
+        LOGGER.trace("boundExpression = [%s] variables = %s", boundExpression, variables);
+
+        try {
+            // Evaluate the bound expression
+            return ConditionalEvaluator.getInstance().evaluate(boundExpression, variables);
+        } catch (SyntaxException e) {
+            // Report the resolved expression, the same as if the variables were resolved into the expression text
+            throw new SyntaxException(format("invalid expression [%s]", resolver.apply(template)));
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getName() + " { expression [" + expression + "] }";
@@ -17,11 +17,10 @@
 package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
-import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to set if the current frame is enabled or not.
@@ -47,44 +46,29 @@ public class EvaluateEnabled implements Instruction {
         this.enabled = enabled;
     }
 
+    /**
+     * Returns the enabled state for the current frame.
+     *
+     * @return the enabled state for the current frame
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("enabled = [%s]", enabled);
 
         if (!enabled) {
-            Frame currentFrame = context.getFrame();
-
-            context.getConsole().println("%s status=[%s]", currentFrame.toConsoleString(), "disabled");
-
-            int depth = 0;
-
-            while (peekIterator.hasNext()) {
-                Instruction instruction = peekIterator.peek();
-
-                if (instruction instanceof PushFrame) {
-                    PushFrame nestedFrame = (PushFrame) instruction;
-
-                    // Manually print the disabled status of the nested frame
-                    Frame.Type type = nestedFrame.getType();
-                    String name = nestedFrame.getName();
-                    String description = nestedFrame.getDescription();
-
-                    Frame frame = new Frame(type);
-                    frame.setName(name);
-                    frame.setDescription(description);
-
-                    context.getConsole().println("%s status=[%s]", frame.toConsoleString(), "disabled");
-
-                    depth++;
-                } else if (instruction instanceof PopFrame) {
-                    if (depth == 0) {
-                        break;
-                    }
-                    depth--;
-                }
-
-                peekIterator.next();
+            // Print the disabled status of the current frame
+            context.getConsole()
+                    .println("@info %s status=[%s]", context.getFrame().toConsoleString(), "disabled");
+
+            // Skip to the end of the current frame
+            for (PushFrame pushFrame : programCounter.skipFrame()) {
+                // Print the disabled status of the nested frame
+                context.getConsole().println("@info %s status=[%s]", pushFrame.toConsoleString(), "disabled");
             }
         }
     }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.verifyica.pipeliner.Constants;
+import org.verifyica.pipeliner.Verbosity;
+import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.InterpreterException;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.engine.instructions.support.OutputConsumer;
+import org.verifyica.pipeliner.engine.instructions.support.OutputPump;
+import org.verifyica.pipeliner.engine.instructions.support.Shell;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.support.Ipc;
+import org.verifyica.pipeliner.support.IpcException;
+
+/**
+ * Instruction to execute a batch of consecutive plain commands as a single shell script.
+ * <p>
+ * Each command is executed in its own subshell, so commands are isolated from each other the same as
+ * when each command is executed in its own process. Before each command, the script prints a marker line,
+ * which is used to print the command, so a failure is attributed to the exact command. After each successful
+ * command, the command's IPC output is appended to the IPC input, so later commands see the variables set by
+ * earlier commands, and to a batch output file, which is read after the script completes, so the variables
+ * written to the IPC input are not read back. Only the first command of a batch may reference variables,
+ * since the variables referenced by later commands could depend on the IPC output of earlier commands.
+ * <p>
+ * When a marker line is read, the variables in the batch output file are set in the context, so secrets set
+ * or named by earlier commands are masked in the output of later commands.
+ * <p>
+ * If the shell is not POSIX compatible, the commands are executed individually.
+ */
+public class ExecuteBatch implements Instruction {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteBatch.class);
+
+    /**
+     * The commands to execute, in order.
+     */
+    private final List<ExecuteCommand> commands;
+
+    /**
+     * Constructor
+     *
+     * @param commands the commands to execute
+     */
+    private ExecuteBatch(List<ExecuteCommand> commands) {
+        this.commands = List.copyOf(commands);
+    }
+
+    /**
+     * Get the commands to execute.
+     *
+     * @return the commands to execute
+     */
+    public List<ExecuteCommand> getCommands() {
+        return commands;
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("commands = [%d]", commands.size());
+
+        // If the shell is not POSIX compatible
+        if (!Shell.isPosix(context.getShell())) {
+            // Execute the commands individually
+            for (ExecuteCommand command : commands) {
+                command.execute(context, programCounter);
+            }
+
+            return;
+        }
+
+        // Get the verbosity level
+        Verbosity verbosity = context.getConsole().getVerbosity();
+
+        // The marker printed before each command
+        String marker = "__PIPELINER_BATCH_" + UUID.randomUUID().toString().replace("-", "") + "__";
+
+        // IPC file for input (pipeliner to command)
+        File ipcInFile = null;
+
+        // IPC file for output (command to pipeliner)
+        File ipcOutFile = null;
+
+        // IPC file for the accumulated output of the successful commands
+        File ipcBatchFile = null;
+
+        try {
+            // Create the IPC environment variables, which override the context's environment variables
+            Map<String, String> ipcEnvironmentVariables = new HashMap<>(4);
+
+            // Create the IPC in file (pipeliner to command)
+            ipcInFile = Ipc.createFile(Constants.PIPELINER_IPC_IN_FILE_PREFIX);
+
+            // Create the IPC out file (command to pipeliner)
+            ipcOutFile = Ipc.createFile(Constants.PIPELINER_IPC_OUT_FILE_PREFIX);
+
+            // Set the IPC environment variable
+            ipcEnvironmentVariables.put(Constants.PIPELINER_IPC_IN, ipcInFile.getAbsolutePath());
+
+            // Set the IPC environment variable
+            ipcEnvironmentVariables.put(Constants.PIPELINER_IPC_OUT, ipcOutFile.getAbsolutePath());
+
+            // Create the IPC batch file (accumulated command output)
+            ipcBatchFile = Ipc.createFile(Constants.PIPELINER_IPC_OUT_FILE_PREFIX);
+
+            // Build the script
+            StringBuilder script = new StringBuilder();
+
+            for (int i = 0; i < commands.size(); i++) {
+                // Resolve variables in the command
+                String resolvedCommand =
+                        context.resolveVariables(commands.get(i).getCommand());
+
+                script.append("printf '%s %d\\n' ")
+                        .append(Shell.quote(marker))
+                        .append(' ')
+                        .append(i)
+                        .append('\n');
+                script.append("( eval ").append(Shell.quote(resolvedCommand)).append(" )\n");
+                script.append("__pipeliner_exit_code=$?\n");
+                script.append("if [ \"$__pipeliner_exit_code\" -ne 0 ]; then exit \"$__pipeliner_exit_code\"; fi\n");
+                script.append(
+                        "cat \"$" + Constants.PIPELINER_IPC_OUT + "\" >> \"$" + Constants.PIPELINER_IPC_IN + "\"\n");
+                script.append("cat \"$" + Constants.PIPELINER_IPC_OUT + "\" >> ")
+                        .append(Shell.quote(ipcBatchFile.getAbsolutePath()))
+                        .append('\n');
+                script.append(": > \"$" + Constants.PIPELINER_IPC_OUT + "\"\n");
+            }
+
+            LOGGER.trace("script [%s]", script);
+
+            // Write the variables to the IPC in file (pipeliner to command)
+            Ipc.write(ipcInFile, context.getVariables());
+
+            // The index of the command currently executing
+            int[] index = {-1};
+
+            // The marker bytes, to find the marker in the output lines
+            byte[] markerBytes = marker.getBytes(StandardCharsets.US_ASCII);
+
+            // The batch IPC file, read by the consumer
+            File finalIpcBatchFile = ipcBatchFile;
+
+            // The length of the batch IPC file when it was last read
+            long[] ipcBatchFileLength = {0};
+
+            // Create a consumer to print the output lines to the context's console and the step log
+            OutputConsumer[] output = {ExecuteCommand.createOutputConsumer(context)};
+
+            // Create a consumer for the output lines
+            OutputConsumer outputConsumer = new OutputConsumer() {
+
+                @Override
+                public void accept(byte[] bytes, int offset, int length) throws IOException {
+                    int markerIndex = OutputPump.indexOf(bytes, offset, length, markerBytes);
+
+                    if (markerIndex < 0) {
+                        // Print the line
+                        output[0].accept(bytes, offset, length);
+                        return;
+                    }
+
+                    // Output without a trailing newline precedes the marker on the same line
+                    if (markerIndex > offset) {
+                        output[0].accept(bytes, offset, markerIndex - offset);
+                    }
+
+                    // Write the output of the previous command before printing the next command
+                    output[0].flush();
+
+                    // If the previous commands wrote variables, set them, and mask the secrets they set
+                    if (finalIpcBatchFile.length() != ipcBatchFileLength[0]) {
+                        ipcBatchFileLength[0] = finalIpcBatchFile.length();
+                        try {
+                            context.getVariables().putAll(Ipc.read(finalIpcBatchFile));
+                        } catch (IpcException e) {
+                            throw new IOException(e.getMessage(), e);
+                        }
+                        output[0] = ExecuteCommand.createOutputConsumer(context);
+                    }
+
+                    // Get the index of the next command
+                    int indexStart = markerIndex + markerBytes.length;
+                    index[0] = Integer.parseInt(
+                            new String(bytes, indexStart, offset + length - indexStart, StandardCharsets.US_ASCII)
+                                    .trim());
+
+                    // If the verbosity is normal
+                    if (verbosity.isNormal()) {
+                        // Print the command
+                        context.getConsole()
+                                .println(
+                                        "@command %s",
+                                        context.maskCommand(
+                                                commands.get(index[0]).getLine()));
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    output[0].flush();
+                }
+            };
+
+            // Execute the script
+            int exitCode = ExecuteCommand.execute(context, script.toString(), ipcEnvironmentVariables, outputConsumer);
+
+            // Read the variables from the IPC batch file, which is the IPC output of the successful commands
+            Map<String, String> ipcVariables = Ipc.read(ipcBatchFile);
+
+            // Set the variables in the context
+            context.getVariables().putAll(ipcVariables);
+
+            // If the exit code is not zero
+            if (exitCode != 0) {
+                // Attribute the failure to the command that was executing
+                ExecuteCommand command = commands.get(Math.max(index[0], 0));
+
+                LOGGER.trace("command [%s] exit code [%d]", command.getLine(), exitCode);
+
+                // Print the last lines of the step log, if the output was not printed
+                ExecuteCommand.printTail(context);
+
+                throw new InterpreterException(
+                        "exception executing instruction",
+                        command,
+                        new RuntimeException(format("exit code [%d]", exitCode)));
+            }
+        } finally {
+            // Delete the IPC batch file (accumulated command output)
+            Ipc.delete(ipcBatchFile);
+
+            // Delete the IPC out file (pipeliner to command)
+            Ipc.delete(ipcOutFile);
+
+            // Delete the IPC in file (command to pipeliner)
+            Ipc.delete(ipcInFile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { commands " + commands + " }";
+    }
+
+    /**
+     * Factory method to create a new instance of ExecuteBatch.
+     *
+     * @param commands the commands to execute, in order
+     * @return a new ExecuteBatch instance
+     */
+    public static ExecuteBatch of(List<ExecuteCommand> commands) {
+        return new ExecuteBatch(commands);
+    }
+}
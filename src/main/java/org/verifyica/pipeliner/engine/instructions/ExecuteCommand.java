@@ -18,23 +18,39 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import static java.lang.String.format;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.verifyica.pipeliner.Console;
 import org.verifyica.pipeliner.Constants;
 import org.verifyica.pipeliner.Verbosity;
 import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Deadline;
+import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.engine.instructions.support.CaptureBuffer;
+import org.verifyica.pipeliner.engine.instructions.support.LogOptions;
+import org.verifyica.pipeliner.engine.instructions.support.OutputConsumer;
+import org.verifyica.pipeliner.engine.instructions.support.OutputPump;
+import org.verifyica.pipeliner.engine.instructions.support.ProcessWatchdog;
 import org.verifyica.pipeliner.engine.instructions.support.Shell;
+import org.verifyica.pipeliner.engine.instructions.support.ShellLauncher;
+import org.verifyica.pipeliner.engine.instructions.support.ShellSession;
+import org.verifyica.pipeliner.engine.instructions.support.StepLog;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.parser.Template;
+import org.verifyica.pipeliner.support.HumanDuration;
 import org.verifyica.pipeliner.support.Ipc;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.support.SecretMasker;
+import org.verifyica.pipeliner.support.SpillFile;
 
 /**
  * Instruction to execute a command using the context's current frame.
@@ -62,6 +78,21 @@ public class ExecuteCommand implements Instruction {
      */
     private final String line;
 
+    /**
+     * The capture operator ("--capture" or "--capture:append"), or null if not capturing.
+     */
+    private final String captureOperator;
+
+    /**
+     * The capture variable name, or null if not capturing.
+     */
+    private final String captureVariable;
+
+    /**
+     * The compiled command, without the capture operator.
+     */
+    private final Template command;
+
     /**
      * Constructor
      *
@@ -69,26 +100,20 @@ public class ExecuteCommand implements Instruction {
      */
     private ExecuteCommand(String line) {
         this.line = line.trim();
-    }
 
-    @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
-        LOGGER.trace("execute()");
-        LOGGER.trace("line [%s]", line);
-
-        String workingCommand = line;
+        String workingCommand = this.line;
         String captureOperator = null;
         String captureVariable = null;
 
         // Check if the command starts with "--capture" and a variable
-        Matcher captureMatcher = CAPTURE_PATTERN.matcher(line);
+        Matcher captureMatcher = CAPTURE_PATTERN.matcher(this.line);
         if (captureMatcher.matches()) {
             captureOperator = "--capture";
             captureVariable = captureMatcher.group(1);
             workingCommand = captureMatcher.group(2);
         } else {
             // Check if the command starts with the "--capture:append" operator and a variable
-            captureMatcher = CAPTURE_APPEND_PATTERN.matcher(line);
+            captureMatcher = CAPTURE_APPEND_PATTERN.matcher(this.line);
             if (captureMatcher.matches()) {
                 captureOperator = "--capture:append";
                 captureVariable = captureMatcher.group(1);
@@ -96,22 +121,84 @@ public class ExecuteCommand implements Instruction {
             }
         }
 
+        this.captureOperator = captureOperator;
+        this.captureVariable = captureVariable;
+        this.command = Template.compile(workingCommand);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param line the instruction line
+     * @param captureOperator the capture operator, or null if not capturing
+     * @param captureVariable the capture variable name, or null if not capturing
+     * @param command the compiled command, without the capture operator
+     */
+    private ExecuteCommand(String line, String captureOperator, String captureVariable, Template command) {
+        this.line = line;
+        this.captureOperator = captureOperator;
+        this.captureVariable = captureVariable;
+        this.command = command;
+    }
+
+    /**
+     * Get the instruction line.
+     *
+     * @return the instruction line
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Get the compiled command, without the capture operator.
+     *
+     * @return the compiled command
+     */
+    public Template getCommand() {
+        return command;
+    }
+
+    /**
+     * Creates a copy of the instruction executing another command, with the same instruction line and
+     * capture operator. Used to replace the command with a command resolved when the program is optimized.
+     *
+     * @param command the compiled command, without the capture operator
+     * @return a new ExecuteCommand instance
+     */
+    public ExecuteCommand withCommand(Template command) {
+        return new ExecuteCommand(line, captureOperator, captureVariable, command);
+    }
+
+    /**
+     * Returns true if the instruction line uses a capture operator.
+     *
+     * @return true if the instruction line uses a capture operator, otherwise false
+     */
+    public boolean isCapture() {
+        return line.startsWith("--capture");
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("line [%s]", line);
         LOGGER.trace("captureOperator [%s]", captureOperator);
         LOGGER.trace("captureVariable [%s]", captureVariable);
-        LOGGER.trace("workingCommand [%s]", workingCommand);
+        LOGGER.trace("command [%s]", command);
 
         // Resolve variables in the command
-        String resolvedCommand = context.resolveVariables(workingCommand);
+        String resolvedCommand = context.resolveVariables(command);
 
         // Execute the command
-        execute(context, peekIterator, line, resolvedCommand, captureOperator, captureVariable);
+        execute(context, programCounter, line, resolvedCommand, captureOperator, captureVariable);
     }
 
     /**
      * Executes the command in the context's current frame.
      *
      * @param context the context
-     * @param peekIterator the iterator for instructions
+     * @param programCounter the program counter
      * @param command the command
      * @param resolveCommand the resolved command
      * @param captureOperator the capture operator ("--capture" or "--capture:append"), or null if not capturing
@@ -120,7 +207,7 @@ public class ExecuteCommand implements Instruction {
      */
     private void execute(
             Context context,
-            PeekIterator<Instruction> peekIterator,
+            ProgramCounter programCounter,
             String command,
             String resolveCommand,
             String captureOperator,
@@ -139,20 +226,11 @@ public class ExecuteCommand implements Instruction {
             // If the verbosity is normal
             if (verbosity.isNormal()) {
                 // Print the command
-                context.getConsole().println("@command %s", command);
+                context.getConsole().println("@command %s", context.maskCommand(command));
             }
 
-            // Get the shell
-            String shell = context.getShell();
-
-            // Get the working directory
-            String workingDirectory = context.getWorkingDirectory();
-
-            // Get the timeout minutes
-            int timeoutMinutes = Integer.parseInt(context.getTimeoutMinutes());
-
-            // Create a copy of the environment variables
-            Map<String, String> environmentVariables = new HashMap<>(context.getEnvironmentVariables());
+            // Create the IPC environment variables, which override the context's environment variables
+            Map<String, String> ipcEnvironmentVariables = new HashMap<>(4);
 
             // Create the IPC in file (pipeliner to command)
             ipcInFile = Ipc.createFile(Constants.PIPELINER_IPC_IN_FILE_PREFIX);
@@ -161,108 +239,62 @@ public class ExecuteCommand implements Instruction {
             ipcOutFile = Ipc.createFile(Constants.PIPELINER_IPC_OUT_FILE_PREFIX);
 
             // Set the IPC environment variable
-            environmentVariables.put(Constants.PIPELINER_IPC_IN, ipcInFile.getAbsolutePath());
+            ipcEnvironmentVariables.put(Constants.PIPELINER_IPC_IN, ipcInFile.getAbsolutePath());
 
             // Set the IPC environment variable
-            environmentVariables.put(Constants.PIPELINER_IPC_OUT, ipcOutFile.getAbsolutePath());
+            ipcEnvironmentVariables.put(Constants.PIPELINER_IPC_OUT, ipcOutFile.getAbsolutePath());
 
             // Write the variables to the IPC in file (pipeliner to command)
             Ipc.write(ipcInFile, context.getVariables());
 
-            // Build the command parts for the ProcessBuilder
-            String[] commandParts = Shell.getProcessBuilderCommandArguments(Shell.decode(shell), resolveCommand);
-
-            // Create a ProcessBuilder with the command parts
-            ProcessBuilder processBuilder = new ProcessBuilder(commandParts);
-
-            // Set the working directory
-            processBuilder.directory(new File(workingDirectory));
+            // Create a buffer to capture the output if capturing, appending to the existing value if required
+            CaptureBuffer captureBuffer = null;
 
-            // Redirect error stream to the output stream
-            processBuilder.redirectErrorStream(true);
-
-            // Set the environment variables for the process
-            processBuilder.environment().putAll(environmentVariables);
+            if ("--capture".equals(captureOperator)) {
+                captureBuffer = createCaptureBuffer(context, "");
+            } else if ("--capture:append".equals(captureOperator)) {
+                captureBuffer =
+                        createCaptureBuffer(context, context.getVariables().getOrDefault(captureVariable, ""));
+            }
 
-            // Start the process
-            Process process = processBuilder.start();
+            CaptureBuffer finalCaptureBuffer = captureBuffer;
 
-            // Create a StringBuilder to capture the output if capturing
-            StringBuilder captureBuilder = new StringBuilder();
+            // Create a consumer for the output lines
+            OutputConsumer outputConsumer;
 
-            // While reading the process output
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
+            if (finalCaptureBuffer != null) {
+                // Append each line to the capture buffer
+                outputConsumer = (bytes, offset, length) ->
+                        finalCaptureBuffer.append(new String(bytes, offset, length, Charset.defaultCharset()));
+            } else {
+                // Not capturing, so print each line to the context's console and the step log
+                outputConsumer = createOutputConsumer(context);
+            }
 
-                // Read each line of the process output
-                while ((line = reader.readLine()) != null) {
-                    // If capturing
-                    if (captureOperator != null) {
-                        // If the capture builder is not empty
-                        if (captureBuilder.length() > 0) {
-                            // Append a new line before the next line
-                            captureBuilder.append(System.lineSeparator());
-                        }
+            // Execute the command
+            int exitCode;
+            String capturedOutput = null;
 
-                        // Append the line to the capture builder
-                        captureBuilder.append(line);
-                    } else {
-                        // Not capturing, so just print the line
+            try {
+                exitCode = execute(context, resolveCommand, ipcEnvironmentVariables, outputConsumer);
+            } finally {
+                if (captureBuffer != null) {
+                    // Get the captured output, with trailing newlines removed and newlines escaped
+                    capturedOutput = captureBuffer.close();
 
-                        // Print the line to the context's print stream
-                        context.getConsole().println("@output %s", line);
+                    // If the captured output was spilled to a file, delete the file when the pipeline completes
+                    if (captureBuffer.getFile() != null) {
+                        context.addTemporaryFile(captureBuffer.getFile());
                     }
                 }
             }
 
-            /*
-            if (captureOperator == null && verbosity.isNormal()) {
-                // If there was no output and verbosity is normal, print a message
-                context.getConsole().println("@output ((no output))");
-            }
-            */
-
-            // Wait for the process to finish, with a timeout
-            boolean finished = process.waitFor(timeoutMinutes, TimeUnit.MINUTES);
-
-            // If the process did finish within the timeout
-            if (!finished) {
-                // If the process did not finish within the timeout, destroy it forcibly
-                process.destroyForcibly();
-
-                // Throw a runtime exception indicating the timeout
-                throw new RuntimeException(format("process timed out after [%d] minute(s)", timeoutMinutes));
-            }
-
             // If capturing output
-            if (captureOperator != null) {
-                // Get the captured output as a string and remove any trailing newlines
-                String capturedOutput = captureBuilder.toString().replaceAll("[\r\n]+$", "");
-
-                // Escape any carriage returns and newlines in the captured output
-                capturedOutput = capturedOutput.replace("\r", "\\r").replace("\n", "\\n");
-
-                // If the capture operator is "--capture", set the variable to the captured output
-                if ("--capture".equals(captureOperator)) {
-                    // Set the variable
-                    SetVariable.of(captureVariable, capturedOutput).execute(context, peekIterator);
-                } else if ("--capture:append".equals(captureOperator)) {
-                    // The capture operator is "--capture:append"
-
-                    // Get the existing value of the variable, or an empty string if not set
-                    String value = context.getVariables().getOrDefault(captureVariable, "");
-
-                    // Append the captured output to the existing value
-                    value += capturedOutput;
-
-                    // Set the variable with the appended value
-                    SetVariable.of(captureVariable, value).execute(context, peekIterator);
-                }
+            if (captureBuffer != null) {
+                // Set the variable to the captured output, which includes the existing value if appending
+                context.getVariables().put(captureVariable, capturedOutput);
             }
 
-            // Get the exit code of the process
-            int exitCode = process.exitValue();
-
             // If the exit code is zero
             if (exitCode == 0) {
                 // Read the variables from the IPC out file
@@ -274,8 +306,11 @@ public class ExecuteCommand implements Instruction {
 
             // If the exit code is not zero
             if (exitCode != 0) {
+                // Print the last lines of the step log, if the output was not printed
+                printTail(context);
+
                 // If the process exited with a non-zero exit value, throw an exception
-                throw new RuntimeException(format("exit code [%d]", process.exitValue()));
+                throw new RuntimeException(format("exit code [%d]", exitCode));
             }
 
         } finally {
@@ -287,6 +322,362 @@ public class ExecuteCommand implements Instruction {
         }
     }
 
+    /**
+     * Creates a capture buffer, which spills the captured output to a file under the context's
+     * PIPELINER_TMP directory once it exceeds the PIPELINER_SPILL_THRESHOLD characters.
+     *
+     * @param context the context
+     * @param value the value to append the captured output to
+     * @return the capture buffer
+     * @throws IOException if an error occurs spilling the value
+     */
+    private static CaptureBuffer createCaptureBuffer(Context context, String value) throws IOException {
+        // Get the threshold, using the default if not set or invalid
+        long threshold = SpillFile.DEFAULT_THRESHOLD;
+        String thresholdValue = context.getEnvironmentVariables().get(Constants.PIPELINER_SPILL_THRESHOLD);
+
+        if (thresholdValue != null) {
+            try {
+                threshold = Long.parseLong(thresholdValue.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.trace("invalid %s [%s]", Constants.PIPELINER_SPILL_THRESHOLD, thresholdValue);
+            }
+        }
+
+        // Get the directory, using the system's temporary directory if not set
+        File directory = null;
+        String tmp = context.getEnvironmentVariables().get(Constants.PIPELINER_TMP);
+
+        if (tmp != null && new File(tmp).isDirectory()) {
+            directory = new File(tmp);
+        }
+
+        return new CaptureBuffer(value, threshold, directory);
+    }
+
+    /**
+     * Executes a resolved command using the context's current frame shell, working directory and timeout,
+     * either in the frame's persistent shell session or in a new process.
+     * <p>
+     * The command's environment is the context's environment variables snapshot, which is reused until
+     * an environment variable changes, overlaid with the given environment variables.
+     * <p>
+     * The command is stopped at the earliest deadline of the frames that set a timeout, even while its
+     * output is streaming, and the frame that timed out is reported with its elapsed time.
+     *
+     * @param context the context
+     * @param resolveCommand the resolved command
+     * @param overlayEnvironmentVariables the environment variables that override the context's environment
+     *        variables
+     * @param outputConsumer the consumer of the output lines
+     * @return the exit code of the command
+     * @throws Throwable if an error occurs during execution
+     */
+    static int execute(
+            Context context,
+            String resolveCommand,
+            Map<String, String> overlayEnvironmentVariables,
+            OutputConsumer outputConsumer)
+            throws Throwable {
+        // If the execution was cancelled, don't start the command
+        if (context.getCancellation().isCancelled()) {
+            throw new RuntimeException("execution cancelled");
+        }
+
+        // Get the environment variables snapshot
+        Map<String, String> environmentVariables = context.getEnvironmentVariablesSnapshot();
+
+        // Get the shell
+        Shell shell = context.getShell();
+
+        // Get the working directory
+        String workingDirectory = context.getWorkingDirectory();
+
+        // Get the deadline of the command
+        Deadline deadline = context.getDeadline();
+
+        // If the deadline has already passed
+        if (deadline.getRemainingNanos() <= 0) {
+            throw timeoutException(context, deadline);
+        }
+
+        // Get the persistent shell session of the current frame, if any
+        Frame shellSessionFrame = context.getShellSessionFrame();
+        ShellSession shellSession = getShellSession(context, shellSessionFrame, shell);
+
+        if (shellSession != null) {
+            try {
+                // Execute the command in the persistent shell session
+                return shellSession.execute(
+                        workingDirectory,
+                        environmentVariables,
+                        overlayEnvironmentVariables,
+                        resolveCommand,
+                        deadline.getRemainingNanos(),
+                        outputConsumer);
+            } catch (TimeoutException e) {
+                // The shell session was destroyed, so remove it
+                context.getShellSessions().remove(shellSessionFrame);
+
+                throw timeoutException(context, deadline);
+            }
+        }
+
+        // Get the number of idle shells to keep
+        int shellPoolSize = getShellPoolSize(context);
+
+        Process process = null;
+
+        // If idle shells are enabled, execute the command in an idle shell
+        if (shellPoolSize > 0) {
+            process = ShellLauncher.getInstance()
+                    .launch(
+                            shell,
+                            shellPoolSize,
+                            workingDirectory,
+                            environmentVariables,
+                            overlayEnvironmentVariables,
+                            resolveCommand);
+        }
+
+        // If the command wasn't launched in an idle shell, execute the command in a new process
+        if (process == null) {
+            process = startProcess(
+                    shell, workingDirectory, environmentVariables, overlayEnvironmentVariables, resolveCommand);
+        }
+
+        // Register the process, so it is destroyed if the execution is cancelled
+        context.getCancellation().register(process.toHandle());
+
+        // Watch the process, destroying the process and its descendants at the deadline
+        try (ProcessWatchdog.Watch watch =
+                ProcessWatchdog.getInstance().watch(process.toHandle(), deadline.getRemainingNanos())) {
+            // Pump the lines of the process output to the consumer
+            try (InputStream inputStream = process.getInputStream()) {
+                OutputPump.pump(inputStream, outputConsumer);
+            }
+
+            // Wait for the process to finish, which the watchdog enforces
+            int exitCode = process.waitFor();
+
+            // If the process was destroyed at the deadline
+            if (watch.isExpired()) {
+                throw timeoutException(context, deadline);
+            }
+
+            // Return the exit code of the process
+            return exitCode;
+        } catch (Throwable t) {
+            // Don't leave the process running, for example if the output consumer failed
+            if (process.isAlive()) {
+                ProcessWatchdog.destroyTree(process.toHandle());
+            }
+
+            throw t;
+        } finally {
+            context.getCancellation().unregister(process.toHandle());
+        }
+    }
+
+    /**
+     * Creates a consumer printing the output lines to the context's console, and writing them to the step
+     * log of the current frame if command output is logged. If only the last lines of a failed command are
+     * printed, the output lines are only written to the step log. Secrets are masked before the output
+     * lines are printed or logged.
+     *
+     * @param context the context
+     * @return the consumer of the output lines
+     * @throws IOException if an error occurs opening the step log
+     */
+    static OutputConsumer createOutputConsumer(Context context) throws IOException {
+        // Get the step log of the current frame, if command output is logged
+        StepLog stepLog = context.getStepLog();
+
+        // Create a writer to print the output lines, unless only the step log is written
+        Console.LineWriter lineWriter =
+                stepLog == null || context.getLogOptions().isConsoleOutput()
+                        ? context.getConsole().createLineWriter("@output ")
+                        : null;
+
+        // Get the secret masker, or null if there are no secrets
+        SecretMasker secretMasker = context.getSecretMasker();
+        SecretMasker finalSecretMasker = secretMasker.isEmpty() ? null : secretMasker;
+
+        return new OutputConsumer() {
+
+            @Override
+            public void accept(byte[] bytes, int offset, int length) throws IOException {
+                if (finalSecretMasker != null) {
+                    byte[] maskedBytes = finalSecretMasker.mask(bytes, offset, length);
+
+                    // If the line contains a secret, use the masked line
+                    if (maskedBytes != null) {
+                        bytes = maskedBytes;
+                        offset = 0;
+                        length = maskedBytes.length;
+                    }
+                }
+
+                if (stepLog != null) {
+                    stepLog.append(bytes, offset, length);
+                }
+
+                if (lineWriter != null) {
+                    lineWriter.println(bytes, offset, length);
+                }
+            }
+
+            @Override
+            public void flush() {
+                if (lineWriter != null) {
+                    lineWriter.flush();
+                }
+            }
+        };
+    }
+
+    /**
+     * Prints the last lines of the step log of the current frame, if the output lines were only written to
+     * the step log.
+     *
+     * @param context the context
+     */
+    static void printTail(Context context) {
+        LogOptions logOptions = context.getLogOptions();
+        StepLog stepLog = context.getOpenStepLog();
+
+        if (logOptions == null || logOptions.isConsoleOutput() || stepLog == null) {
+            return;
+        }
+
+        Console.LineWriter lineWriter = context.getConsole().createLineWriter("@output ");
+
+        for (byte[] line : stepLog.getTail()) {
+            lineWriter.println(line, 0, line.length);
+        }
+
+        lineWriter.flush();
+    }
+
+    /**
+     * Get the number of idle shells to keep per shell from the context's PIPELINER_SHELL_POOL environment
+     * variable.
+     *
+     * @param context the context
+     * @return the number of idle shells, or 0 if idle shells are disabled
+     */
+    private static int getShellPoolSize(Context context) {
+        String value = context.getEnvironmentVariables().get(Constants.PIPELINER_SHELL_POOL);
+
+        if (value != null) {
+            try {
+                return Math.max(0, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.trace("invalid %s [%s]", Constants.PIPELINER_SHELL_POOL, value);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Starts the command in a new process.
+     *
+     * @param shell the shell
+     * @param workingDirectory the working directory
+     * @param environmentVariables the environment variables
+     * @param overlayEnvironmentVariables the environment variables that override the environment variables
+     * @param resolveCommand the resolved command
+     * @return the process
+     * @throws IOException if an error occurs starting the process
+     */
+    private static Process startProcess(
+            Shell shell,
+            String workingDirectory,
+            Map<String, String> environmentVariables,
+            Map<String, String> overlayEnvironmentVariables,
+            String resolveCommand)
+            throws IOException {
+        // Build the command parts for the ProcessBuilder
+        String[] commandParts = Shell.getProcessBuilderCommandArguments(shell, resolveCommand);
+
+        // Create a ProcessBuilder with the command parts
+        ProcessBuilder processBuilder = new ProcessBuilder(commandParts);
+
+        // Set the working directory
+        processBuilder.directory(new File(workingDirectory));
+
+        // Redirect error stream to the output stream
+        processBuilder.redirectErrorStream(true);
+
+        // Set the environment variables for the process, which are exactly the context's environment variables
+        processBuilder.environment().clear();
+        processBuilder.environment().putAll(environmentVariables);
+        processBuilder.environment().putAll(overlayEnvironmentVariables);
+
+        // Start the process
+        return processBuilder.start();
+    }
+
+    /**
+     * Reports a timeout, printing the frame that timed out with its elapsed time.
+     *
+     * @param context the context
+     * @param deadline the deadline that expired
+     * @return the exception to throw
+     */
+    private static RuntimeException timeoutException(Context context, Deadline deadline) {
+        Frame frame = deadline.getFrame() != null ? deadline.getFrame() : context.getFrame();
+
+        // Print the last lines of the step log, if the output was not printed
+        printTail(context);
+
+        // Get the elapsed time of the timeout as human-readable duration
+        String humanDuration = HumanDuration.humanDuration(deadline.getElapsedTime());
+
+        // Print the frame that timed out
+        context.getConsole()
+                .error(
+                        "%s timed out after [%d] minute(s) elapsed=[%s]",
+                        frame.toConsoleString(), deadline.getTimeoutMinutes(), humanDuration);
+
+        return new RuntimeException(format("process timed out after [%d] minute(s)", deadline.getTimeoutMinutes()));
+    }
+
+    /**
+     * Returns the persistent shell session for the frame, starting it if required.
+     *
+     * @param context the context
+     * @param shellSessionFrame the frame owning the persistent shell session, or null
+     * @param shell the shell of the command
+     * @return the persistent shell session, or null if the command should be executed in a new process
+     * @throws Throwable if an error occurs starting the shell session
+     */
+    private static ShellSession getShellSession(Context context, Frame shellSessionFrame, Shell shell)
+            throws Throwable {
+        // If the frame doesn't use a persistent shell session, or the shell doesn't support one
+        if (shellSessionFrame == null || !Shell.isPosix(shell)) {
+            return null;
+        }
+
+        // Get the existing shell session
+        ShellSession shellSession = context.getShellSessions().get(shellSessionFrame);
+
+        if (shellSession == null) {
+            // Start a new shell session
+            shellSession = ShellSession.start(shell, context.getEnvironmentVariablesSnapshot());
+            context.getShellSessions().put(shellSessionFrame, shellSession);
+
+            // Register the shell process, so it is destroyed if the execution is cancelled
+            context.getCancellation().register(shellSession.toHandle());
+        } else if (shellSession.getShell() != shell) {
+            // The command uses a different shell, so it is executed in a new process
+            return null;
+        }
+
+        return shellSession;
+    }
+
     @Override
     public String toString() {
         return getClass().getName() + " { line [" + line + "] }";
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions;
+
+import java.util.List;
+import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.engine.ProgramScheduler;
+import org.verifyica.pipeliner.engine.ScheduledProgram;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Instruction to execute a dependency graph of jobs using the program scheduler.
+ */
+public class ExecuteJobs implements Instruction {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteJobs.class);
+
+    /**
+     * The jobs to execute, in declaration order.
+     */
+    private final List<ScheduledProgram> jobs;
+
+    /**
+     * Constructor
+     *
+     * @param jobs the jobs to execute
+     */
+    private ExecuteJobs(List<ScheduledProgram> jobs) {
+        this.jobs = List.copyOf(jobs);
+    }
+
+    /**
+     * Get the jobs to execute.
+     *
+     * @return the jobs to execute
+     */
+    public List<ScheduledProgram> getJobs() {
+        return jobs;
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("jobs = [%d]", jobs.size());
+
+        // Execute the jobs
+        new ProgramScheduler(context.getMaxParallel()).execute(context, jobs);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { jobs " + jobs + " }";
+    }
+
+    /**
+     * Factory method to create a new instance of ExecuteJobs.
+     *
+     * @param jobs the jobs to execute, in declaration order
+     * @return a new ExecuteJobs instance
+     */
+    public static ExecuteJobs of(List<ScheduledProgram> jobs) {
+        return new ExecuteJobs(jobs);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions;
+
+import java.util.List;
+import java.util.Map;
+import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.engine.ProgramScheduler;
+import org.verifyica.pipeliner.engine.ScheduledProgram;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Instruction to execute a group of steps, or the jobs of a strategy matrix, in parallel using the program scheduler.
+ * <p>
+ * Each program executes in its own forked context. When all programs complete successfully, the variables
+ * set or changed by each program are merged back into the context in declaration order, so a later
+ * program's value wins, the same as if the programs had executed sequentially.
+ */
+public class ExecuteParallel implements Instruction {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteParallel.class);
+
+    /**
+     * The programs to execute, in declaration order.
+     */
+    private final List<ScheduledProgram> programs;
+
+    /**
+     * The maximum number of programs to execute in parallel, or null to use the context's value.
+     */
+    private final Integer maxParallel;
+
+    /**
+     * Flag to indicate whether to stop dispatching programs when a program fails.
+     */
+    private final boolean failFast;
+
+    /**
+     * Constructor
+     *
+     * @param programs the programs to execute
+     * @param maxParallel the maximum number of programs to execute in parallel, or null
+     * @param failFast true to stop dispatching programs when a program fails, otherwise false
+     */
+    private ExecuteParallel(List<ScheduledProgram> programs, Integer maxParallel, boolean failFast) {
+        this.programs = List.copyOf(programs);
+        this.maxParallel = maxParallel;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Get the programs to execute.
+     *
+     * @return the programs to execute
+     */
+    public List<ScheduledProgram> getPrograms() {
+        return programs;
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("programs = [%d]", programs.size());
+
+        // Execute the programs
+        List<Map<String, String>> exportedVariables = new ProgramScheduler(
+                        maxParallel != null ? maxParallel : context.getMaxParallel(), failFast)
+                .execute(context, programs);
+
+        // Merge the variables set by the programs back into the context, in declaration order
+        for (Map<String, String> variables : exportedVariables) {
+            context.getVariables().putAll(variables);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { programs " + programs + " maxParallel [" + maxParallel + "] failFast ["
+                + failFast + "] }";
+    }
+
+    /**
+     * Factory method to create a new instance of ExecuteParallel.
+     *
+     * @param programs the programs to execute, in declaration order
+     * @return a new ExecuteParallel instance
+     */
+    public static ExecuteParallel of(List<ScheduledProgram> programs) {
+        return new ExecuteParallel(programs, null, true);
+    }
+
+    /**
+     * Factory method to create a new instance of ExecuteParallel.
+     *
+     * @param programs the programs to execute, in declaration order
+     * @param maxParallel the maximum number of programs to execute in parallel, or null to use the context's value
+     * @param failFast true to stop dispatching programs when a program fails, otherwise false
+     * @return a new ExecuteParallel instance
+     */
+    public static ExecuteParallel of(List<ScheduledProgram> programs, Integer maxParallel, boolean failFast) {
+        return new ExecuteParallel(programs, maxParallel, failFast);
+    }
+}
@@ -20,9 +20,9 @@ import org.verifyica.pipeliner.Verbosity;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.ExitException;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to stop pipeline execution.
@@ -49,7 +49,7 @@ public class Exit implements Instruction {
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("line [%s]", line);
 
@@ -59,7 +59,7 @@ public class Exit implements Instruction {
         // If verbosity is normal
         if (verbosity.isNormal()) {
             // Print the line to the console
-            context.getConsole().println("@command %s", line);
+            context.getConsole().println("@command %s", context.maskCommand(line));
         }
 
         try {
@@ -17,10 +17,12 @@
 package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.engine.instructions.support.ShellSession;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to pop the top frame from the context's stack.
@@ -40,11 +42,21 @@ public class PopFrame implements Instruction {
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
 
         // Pop the current frame from the context's stack
-        context.popFrame();
+        Frame frame = context.popFrame();
+
+        // Close the persistent shell session owned by the frame, if any
+        ShellSession shellSession = context.getShellSessions().remove(frame);
+        if (shellSession != null) {
+            shellSession.close();
+            context.getCancellation().unregister(shellSession.toHandle());
+        }
+
+        // Close the step log owned by the frame, if any
+        context.closeStepLog(frame);
     }
 
     @Override
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions;
+
+import java.util.List;
+import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Instruction to print the disabled status of a frame, and its nested frames, that is statically disabled.
+ * <p>
+ * Replaces the instructions of a frame whose "enabled:" or "if:" is known to be false when the program is
+ * optimized, so the frame is not pushed.
+ */
+public class PrintDisabledFrames implements Instruction {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrintDisabledFrames.class);
+
+    /**
+     * The console strings of the frame and its nested frames, in program order.
+     */
+    private final List<String> consoleStrings;
+
+    /**
+     * Constructor
+     *
+     * @param consoleStrings the console strings of the frame and its nested frames
+     */
+    private PrintDisabledFrames(List<String> consoleStrings) {
+        this.consoleStrings = List.copyOf(consoleStrings);
+    }
+
+    /**
+     * Get the console strings of the frame and its nested frames.
+     *
+     * @return the console strings of the frame and its nested frames, in program order
+     */
+    public List<String> getConsoleStrings() {
+        return consoleStrings;
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+
+        for (String consoleString : consoleStrings) {
+            // Print the disabled status of the frame
+            context.getConsole().println("@info %s status=[%s]", consoleString, "disabled");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { frames " + consoleStrings + " }";
+    }
+
+    /**
+     * Factory method to create a new instance of PrintDisabledFrames.
+     *
+     * @param consoleStrings the console strings of the frame and its nested frames, in program order
+     * @return a new PrintDisabledFrames instance
+     */
+    public static PrintDisabledFrames of(List<String> consoleStrings) {
+        return new PrintDisabledFrames(consoleStrings);
+    }
+}
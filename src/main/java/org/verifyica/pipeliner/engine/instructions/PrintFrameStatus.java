@@ -19,10 +19,10 @@ package org.verifyica.pipeliner.engine.instructions;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
 import org.verifyica.pipeliner.support.HumanDuration;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to print the current frame's status.
@@ -49,7 +49,7 @@ public class PrintFrameStatus implements Instruction {
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("status = [%s]", status);
 
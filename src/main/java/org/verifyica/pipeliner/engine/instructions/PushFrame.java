@@ -19,9 +19,9 @@ package org.verifyica.pipeliner.engine.instructions;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Frame;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to push a new frame onto the context's stack.
@@ -48,6 +48,11 @@ public class PushFrame implements Instruction {
      */
     private final String description;
 
+    /**
+     * The console string of the frame to push, precomputed for printing the status of skipped frames.
+     */
+    private final String consoleString;
+
     /**
      * Constructor
      *
@@ -59,6 +64,7 @@ public class PushFrame implements Instruction {
         this.type = type;
         this.name = name;
         this.description = description;
+        this.consoleString = Frame.toConsoleString(type, name, description);
     }
 
     /**
@@ -88,8 +94,17 @@ public class PushFrame implements Instruction {
         return description;
     }
 
+    /**
+     * Returns a string representation of the frame suitable for console output.
+     *
+     * @return a string representation of the frame
+     */
+    public String toConsoleString() {
+        return consoleString;
+    }
+
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("type = [%s]", type);
         LOGGER.trace("name = [%s]", name);
@@ -18,9 +18,9 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 
 /**
  * Instruction to remove an environment variable
@@ -47,7 +47,7 @@ public class RemoveEnvironmentVariable implements Instruction {
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("name = [%s]", name);
 
@@ -18,15 +18,17 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.parser.SymbolTable;
 
 /**
- * Instruction to set an environment variable in the context.
+ * Instruction to declare an environment variable in the scope of the current frame.
  */
 public class SetEnvironmentVariable implements Instruction {
 
     private final String name;
     private final String value;
+    private final int symbol;
 
     /**
      * Constructor
@@ -37,12 +39,31 @@ public class SetEnvironmentVariable implements Instruction {
     private SetEnvironmentVariable(String name, String value) {
         this.name = name;
         this.value = value;
+        this.symbol = SymbolTable.getInstance().intern(name);
+    }
+
+    /**
+     * Get the environment variable name.
+     *
+     * @return the environment variable name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the environment variable value.
+     *
+     * @return the environment variable value
+     */
+    public String getValue() {
+        return value;
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
-        // Put the environment variable in the context
-        context.getEnvironmentVariables().put(name, value);
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        // Declare the environment variable in the scope of the current frame
+        context.declareEnvironmentVariable(symbol, value);
     }
 
     @Override
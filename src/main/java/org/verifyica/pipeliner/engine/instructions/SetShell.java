@@ -18,9 +18,10 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 
 /**
  * Instruction to set the shell of the current frame
@@ -35,7 +36,7 @@ public class SetShell implements Instruction {
     /**
      * The shell to set for the current frame.
      */
-    private final String shell;
+    private final Template shell;
 
     /**
      * Constructor
@@ -43,11 +44,11 @@ public class SetShell implements Instruction {
      * @param shell the shell to set for the current frame
      */
     private SetShell(String shell) {
-        this.shell = shell;
+        this.shell = Template.compile(shell);
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("shell = [%s]", shell);
 
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions;
+
+import org.verifyica.pipeliner.engine.Context;
+import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Instruction to set the shell session mode of the current frame
+ */
+public class SetShellSession implements Instruction {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SetShellSession.class);
+
+    /**
+     * The shell session mode to set for the current frame.
+     */
+    private final String shellSession;
+
+    /**
+     * Constructor
+     *
+     * @param shellSession the shell session mode to set for the current frame
+     */
+    private SetShellSession(String shellSession) {
+        this.shellSession = shellSession;
+    }
+
+    @Override
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
+        LOGGER.trace("execute()");
+        LOGGER.trace("shellSession = [%s]", shellSession);
+
+        // Set the shell session mode of the current frame
+        context.getFrame().setShellSession(shellSession);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { shellSession [" + shellSession + "] }";
+    }
+
+    /**
+     * Factory method to create a new instance of SetShellSession.
+     *
+     * @param shellSession the shell session mode to set for the current frame
+     * @return a new SetShellSession instance
+     */
+    public static SetShellSession of(String shellSession) {
+        return new SetShellSession(shellSession);
+    }
+}
@@ -18,9 +18,10 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 
 /**
  * Instruction to set the timeout in minutes of the current frame
@@ -35,7 +36,7 @@ public class SetTimeoutMinutes implements Instruction {
     /**
      * The timeout in minutes to set for the current frame.
      */
-    private final String timeoutMinutes;
+    private final Template timeoutMinutes;
 
     /**
      * Constructor
@@ -43,11 +44,11 @@ public class SetTimeoutMinutes implements Instruction {
      * @param timeoutMinutes the timeout in minutes to set for the current frame
      */
     private SetTimeoutMinutes(String timeoutMinutes) {
-        this.timeoutMinutes = timeoutMinutes;
+        this.timeoutMinutes = Template.compile(timeoutMinutes);
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("timeoutMinutes = [%s]", timeoutMinutes);
 
@@ -18,12 +18,13 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.SymbolTable;
 
 /**
- * Instruction to set a variable in the context.
+ * Instruction to declare a variable in the scope of the current frame.
  */
 public class SetVariable implements Instruction {
 
@@ -42,6 +43,11 @@ public class SetVariable implements Instruction {
      */
     private final String value;
 
+    /**
+     * The variable name symbol, interned when the instruction is generated.
+     */
+    private final int symbol;
+
     /**
      * Constructor
      *
@@ -51,16 +57,35 @@ public class SetVariable implements Instruction {
     private SetVariable(String name, String value) {
         this.name = name;
         this.value = value;
+        this.symbol = SymbolTable.getInstance().intern(name);
+    }
+
+    /**
+     * Get the variable name.
+     *
+     * @return the variable name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the variable value.
+     *
+     * @return the variable value
+     */
+    public String getValue() {
+        return value;
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("name = [%s]", name);
         LOGGER.trace("value = [%s]", value);
 
-        // Put the variable in the context
-        context.getVariables().put(name, value);
+        // Declare the variable in the scope of the current frame
+        context.declareVariable(symbol, value);
     }
 
     @Override
@@ -18,9 +18,10 @@ package org.verifyica.pipeliner.engine.instructions;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 
 /**
  * Instruction to set the working directory of the current frame.
@@ -35,7 +36,7 @@ public class SetWorkingDirectory implements Instruction {
     /**
      * The working directory to set for the current frame.
      */
-    private final String workingDirectory;
+    private final Template workingDirectory;
 
     /**
      * Constructor
@@ -43,11 +44,11 @@ public class SetWorkingDirectory implements Instruction {
      * @param workingDirectory the working directory to set for the current frame
      */
     private SetWorkingDirectory(String workingDirectory) {
-        this.workingDirectory = workingDirectory;
+        this.workingDirectory = Template.compile(workingDirectory);
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("workingDirectory = [%s]", workingDirectory);
 
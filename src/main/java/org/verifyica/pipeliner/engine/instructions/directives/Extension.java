@@ -19,17 +19,17 @@ package org.verifyica.pipeliner.engine.instructions.directives;
 import static java.lang.String.format;
 
 import java.util.List;
-import java.util.UUID;
 import org.verifyica.pipeliner.Verbosity;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.engine.instructions.ExecuteCommand;
 import org.verifyica.pipeliner.engine.instructions.RemoveVariable;
 import org.verifyica.pipeliner.engine.instructions.SetWorkingDirectory;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
 import org.verifyica.pipeliner.model.SyntaxException;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 import org.verifyica.pipeliner.support.QuotedStringTokenizer;
 
 /**
@@ -47,11 +47,22 @@ public class Extension implements Instruction {
      */
     public static final String PREFIX = "--extension";
 
+    /**
+     * The temporary variable holding the extension directory, which is a fixed name, so executing
+     * extensions doesn't intern a new symbol for each execution
+     */
+    private static final String TEMPORARY_VARIABLE_NAME = "pipeliner_extension_directory";
+
     /**
      * The instruction line
      */
     private final String line;
 
+    /**
+     * The compiled instruction line
+     */
+    private final Template template;
+
     /**
      * Constructor
      *
@@ -59,10 +70,11 @@ public class Extension implements Instruction {
      */
     private Extension(String line) {
         this.line = line;
+        this.template = Template.compile(this.line);
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("line [%s]", line);
 
@@ -72,14 +84,14 @@ public class Extension implements Instruction {
         // If the verbosity level is normal
         if (verbosity.isNormal()) {
             // Print the line to the console
-            context.getConsole().println("@command %s", line);
+            context.getConsole().println("@command %s", context.maskCommand(line));
         }
 
         // Set the verbosity level to quieter
         context.getConsole().setVerbosity(Verbosity.NONE);
 
         // Resolve the line
-        String resolvedLine = context.resolveAllVariables(line);
+        String resolvedLine = context.resolveAllVariables(template);
 
         List<String> tokens = QuotedStringTokenizer.tokenize(resolvedLine);
 
@@ -109,7 +121,7 @@ public class Extension implements Instruction {
 
                 // Create and execute the ShaChecksum instruction
                 ShaChecksum.of("--checksum " + filename + " " + expectedChecksum)
-                        .execute(context, peekIterator);
+                        .execute(context, programCounter);
             } finally {
                 // Restore the original verbosity level
                 context.getConsole().setVerbosity(verbosity);
@@ -121,8 +133,8 @@ public class Extension implements Instruction {
         // Create a safe filename by escaping double quotes
         String safeFilename = filename.replace("\"", "\\\"");
 
-        // Create a temporary variable name
-        String temporaryVariableName = UUID.randomUUID().toString().replaceAll("-", "");
+        // Get the temporary variable name
+        String temporaryVariableName = TEMPORARY_VARIABLE_NAME;
 
         // Get the working directory
         String workingDirectory = context.getWorkingDirectory();
@@ -132,11 +144,11 @@ public class Extension implements Instruction {
 
             // Create a temporary directory
             ExecuteCommand.of(format("--capture ${{ %s }} mktemp -d", temporaryVariableName))
-                    .execute(context, peekIterator);
+                    .execute(context, programCounter);
 
             // Change the permissions of the temporary directory
             ExecuteCommand.of(format("chmod go-rwx ${{ %s }}", temporaryVariableName))
-                    .execute(context, peekIterator);
+                    .execute(context, programCounter);
 
             // Get the lowercase filename
             String filenameLowerCase = filename.toLowerCase();
@@ -146,39 +158,39 @@ public class Extension implements Instruction {
             if (filenameLowerCase.endsWith(".tar.gz")) {
                 // Extract file into the temporary directory
                 ExecuteCommand.of(format("tar -xf \"%s\" -C ${{ %s }}", safeFilename, temporaryVariableName))
-                        .execute(context, peekIterator);
+                        .execute(context, programCounter);
             } else if (filenameLowerCase.endsWith(".tar.xz")) {
                 // Extract the tar.xz file into the temporary directory
                 ExecuteCommand.of(format("tar -xJf \"%s\" -C ${{ %s }}", safeFilename, temporaryVariableName))
-                        .execute(context, peekIterator);
+                        .execute(context, programCounter);
             } else if (filenameLowerCase.endsWith(".tar.bz2")) {
                 // Extract the tar.bz2 file into the temporary directory
                 ExecuteCommand.of(format("tar -xjf \"%s\" -C ${{ %s }}", safeFilename, temporaryVariableName))
-                        .execute(context, peekIterator);
+                        .execute(context, programCounter);
             } else {
                 // Unzip the file into the temporary directory
                 ExecuteCommand.of(format("unzip -q \"%s\" -d ${{ %s }}", safeFilename, temporaryVariableName))
-                        .execute(context, peekIterator);
+                        .execute(context, programCounter);
             }
 
             // Set the permissions on the run script
             ExecuteCommand.of(format("chmod +x ${{ %s }}/run.sh", temporaryVariableName))
-                    .execute(context, peekIterator);
+                    .execute(context, programCounter);
 
             // Set the working directory to the temporary directory
-            SetWorkingDirectory.of(format("${{ %s }}", temporaryVariableName)).execute(context, peekIterator);
+            SetWorkingDirectory.of(format("${{ %s }}", temporaryVariableName)).execute(context, programCounter);
 
             // Run the extension script
-            ExecuteCommand.of("./run.sh").execute(context, peekIterator);
+            ExecuteCommand.of("./run.sh").execute(context, programCounter);
         } finally {
             // Remove the temporary directory
-            ExecuteCommand.of(format("rm -rf ${{ %s }}", temporaryVariableName)).execute(context, peekIterator);
+            ExecuteCommand.of(format("rm -rf ${{ %s }}", temporaryVariableName)).execute(context, programCounter);
 
             // Remove the temporary variable
-            RemoveVariable.of(temporaryVariableName).execute(context, peekIterator);
+            RemoveVariable.of(temporaryVariableName).execute(context, programCounter);
 
             // Restore the original working directory
-            SetWorkingDirectory.of(workingDirectory).execute(context, peekIterator);
+            SetWorkingDirectory.of(workingDirectory).execute(context, programCounter);
 
             // Restore the verbosity level
             context.getConsole().setVerbosity(verbosity);
@@ -20,14 +20,18 @@ import org.verifyica.pipeliner.CLI;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.EngineException;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
 import org.verifyica.pipeliner.support.Precondition;
 import org.verifyica.pipeliner.support.QuotedStringTokenizer;
 
 /**
- * Instruction to execute a pipeline.
+ * Instruction to execute a nested pipeline.
+ * <p>
+ * The nested pipeline is executed in the same JVM, in a child context inheriting the context's
+ * environment variables and variables. Parsed pipelines and their programs are cached, so executing
+ * the same nested pipeline repeatedly doesn't parse it again.
  */
 public class Pipeline implements Instruction {
 
@@ -53,19 +57,22 @@ public class Pipeline implements Instruction {
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("line = [%s]", line);
 
         Precondition.notNull(context, "context is null");
-        Precondition.notNull(peekIterator, "peekIterator is null");
+        Precondition.notNull(programCounter, "programCounter is null");
 
         String line = this.line.substring((PREFIX + " ").length()).trim();
 
         LOGGER.trace("line [%s]", line);
 
+        // Create a CLI to execute the nested pipeline in a child context of the context
+        CLI cli = new CLI(context);
+
         // Execute the engine and return the exit code
-        int exitCode = new CLI().execute(QuotedStringTokenizer.tokenize(line).toArray(new String[0]));
+        int exitCode = cli.execute(QuotedStringTokenizer.tokenize(line).toArray(new String[0]));
 
         if (exitCode != 0) {
             throw new EngineException("execution failed");
@@ -18,9 +18,10 @@ package org.verifyica.pipeliner.engine.instructions.directives;
 
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 
 /**
  * Instruction to print an info message.
@@ -42,6 +43,11 @@ public class PrintInfo implements Instruction {
      */
     private final String line;
 
+    /**
+     * The compiled message
+     */
+    private final Template message;
+
     /**
      * Constructor
      *
@@ -49,16 +55,15 @@ public class PrintInfo implements Instruction {
      */
     private PrintInfo(String line) {
         this.line = line;
+
+        // Remove the prefix
+        this.message = Template.compile(line.substring((PREFIX + " ").length()).trim());
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace("line [%s]", line);
-
-        // Remove the prefix
-        String message = line.substring((PREFIX + " ").length()).trim();
-
         LOGGER.trace("message [%s]", message);
 
         // Resolve variables in the message and replace escaped dollar signs
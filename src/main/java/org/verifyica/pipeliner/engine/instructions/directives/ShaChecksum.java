@@ -21,10 +21,11 @@ import java.nio.file.Paths;
 import java.util.List;
 import org.verifyica.pipeliner.engine.Context;
 import org.verifyica.pipeliner.engine.Instruction;
+import org.verifyica.pipeliner.engine.ProgramCounter;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
 import org.verifyica.pipeliner.model.SyntaxException;
-import org.verifyica.pipeliner.support.PeekIterator;
+import org.verifyica.pipeliner.parser.Template;
 import org.verifyica.pipeliner.support.QuotedStringTokenizer;
 
 /**
@@ -47,6 +48,11 @@ public class ShaChecksum implements Instruction {
      */
     private final String line;
 
+    /**
+     * The compiled instruction line
+     */
+    private final Template template;
+
     /**
      * Constructor
      *
@@ -54,19 +60,20 @@ public class ShaChecksum implements Instruction {
      */
     private ShaChecksum(String line) {
         this.line = line.trim();
+        this.template = Template.compile(this.line);
     }
 
     @Override
-    public void execute(Context context, PeekIterator<Instruction> peekIterator) throws Throwable {
+    public void execute(Context context, ProgramCounter programCounter) throws Throwable {
         LOGGER.trace("execute()");
         LOGGER.trace(line);
 
         if (context.getConsole().getVerbosity().isNormal()) {
-            context.getConsole().println("@command %s", line);
+            context.getConsole().println("@command %s", context.maskCommand(line));
         }
 
         // Resolve the line
-        String resolvedLine = context.resolveAllVariables(line);
+        String resolvedLine = context.resolveAllVariables(template);
 
         LOGGER.trace("resolvedLine [%s]", resolvedLine);
 
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import org.verifyica.pipeliner.support.SpillFile;
+
+/**
+ * Buffer accumulating the captured output of a command as a variable value.
+ * <p>
+ * Lines are joined with the line separator, trailing line separators are removed, and carriage returns
+ * and newlines are escaped, as the output is appended, so the output is never held twice. Once the value
+ * exceeds the threshold, the buffered value is written to a {@link SpillFile}, and the rest of the output is
+ * streamed to the file, so the memory used is bounded regardless of the size of the output.
+ */
+public final class CaptureBuffer {
+
+    /**
+     * The line separator joining the lines.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The threshold, in characters, above which the value is spilled to a file.
+     */
+    private final long threshold;
+
+    /**
+     * The directory of the spill file, or null to use the system's temporary directory.
+     */
+    private final File directory;
+
+    /**
+     * The buffered value, until the value is spilled.
+     */
+    private final StringBuilder stringBuilder;
+
+    /**
+     * The trailing carriage returns and newlines, which are only appended if followed by other characters.
+     */
+    private final StringBuilder pending;
+
+    /**
+     * Flag to indicate whether a non-empty line was appended, so following lines are preceded by a line
+     * separator.
+     */
+    private boolean started;
+
+    /**
+     * The spill file, or null if the value is not spilled.
+     */
+    private File file;
+
+    /**
+     * The writer of the spill file, or null if the value is not spilled or the buffer is closed.
+     */
+    private Writer writer;
+
+    /**
+     * Constructor
+     *
+     * @param value the value to append the output to, which may be a spill file reference
+     * @param threshold the threshold, in characters, above which the value is spilled to a file
+     * @param directory the directory of the spill file, or null to use the system's temporary directory
+     * @throws IOException if an error occurs spilling the value
+     */
+    public CaptureBuffer(String value, long threshold, File directory) throws IOException {
+        this.threshold = threshold;
+        this.directory = directory;
+        this.stringBuilder = new StringBuilder();
+        this.pending = new StringBuilder();
+
+        if (SpillFile.isReference(value)) {
+            // Copy the spilled value to a new spill file, since spill files are never modified
+            spill();
+            SpillFile.copy(value, writer);
+        } else {
+            write(value);
+        }
+    }
+
+    /**
+     * Appends a line of output.
+     *
+     * @param line the line
+     * @throws IOException if an error occurs spilling the value
+     */
+    public void append(String line) throws IOException {
+        if (started) {
+            escape(LINE_SEPARATOR);
+        }
+
+        if (!line.isEmpty()) {
+            started = true;
+            escape(line);
+        }
+    }
+
+    /**
+     * Returns the spill file, which must be deleted when the value is no longer used.
+     *
+     * @return the spill file, or null if the value is not spilled
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Closes the buffer, and returns the value.
+     *
+     * @return the value, or a reference to the spill file if the value is spilled
+     * @throws IOException if an error occurs closing the spill file
+     */
+    public String close() throws IOException {
+        if (file == null) {
+            return stringBuilder.toString();
+        }
+
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+
+        return SpillFile.reference(file);
+    }
+
+    /**
+     * Appends a string, deferring the trailing carriage returns and newlines, and escaping them once
+     * followed by other characters.
+     *
+     * @param string the string
+     * @throws IOException if an error occurs spilling the value
+     */
+    private void escape(String string) throws IOException {
+        int start = 0;
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+
+            if (c == '\r' || c == '\n') {
+                if (pending.length() == 0) {
+                    write(string, start, i);
+                }
+                pending.append(c == '\r' ? "\\r" : "\\n");
+            } else if (pending.length() > 0) {
+                write(pending);
+                pending.setLength(0);
+                start = i;
+            }
+        }
+
+        if (pending.length() == 0) {
+            write(string, start, string.length());
+        }
+    }
+
+    /**
+     * Writes characters to the value.
+     *
+     * @param charSequence the characters
+     * @throws IOException if an error occurs spilling the value
+     */
+    private void write(CharSequence charSequence) throws IOException {
+        write(charSequence, 0, charSequence.length());
+    }
+
+    /**
+     * Writes characters to the value, spilling the value if it exceeds the threshold.
+     *
+     * @param charSequence the characters
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @throws IOException if an error occurs spilling the value
+     */
+    private void write(CharSequence charSequence, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+
+        if (writer != null) {
+            writer.append(charSequence, start, end);
+            return;
+        }
+
+        stringBuilder.append(charSequence, start, end);
+
+        if (stringBuilder.length() > threshold) {
+            spill();
+        }
+    }
+
+    /**
+     * Spills the buffered value to a new spill file.
+     *
+     * @throws IOException if an error occurs creating the spill file
+     */
+    private void spill() throws IOException {
+        file = SpillFile.createFile(directory);
+        writer = SpillFile.newWriter(file);
+        writer.append(stringBuilder);
+
+        stringBuilder.setLength(0);
+        stringBuilder.trimToSize();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class representing the options of the step logs, shared by the contexts of a pipeliner invocation.
+ * <p>
+ * Each step's command output is written to its own log file in the log directory, optionally compressed,
+ * and rolled over to a new file when the file exceeds the maximum size. If tail lines are set, the command
+ * output is only written to the log files, and the last lines of a failed command are printed.
+ */
+public final class LogOptions {
+
+    /**
+     * The log directory.
+     */
+    private final File directory;
+
+    /**
+     * Flag to indicate whether the log files are compressed.
+     */
+    private final boolean gzip;
+
+    /**
+     * The maximum size of a log file, in uncompressed bytes, or 0 for no maximum.
+     */
+    private final long maxSize;
+
+    /**
+     * The number of lines printed when a command fails, or -1 to print all output.
+     */
+    private final int tailLines;
+
+    /**
+     * The sequence numbering the step logs, so log files are unique and ordered.
+     */
+    private final AtomicInteger sequence;
+
+    /**
+     * Constructor
+     *
+     * @param directory the log directory
+     * @param gzip true to compress the log files
+     * @param maxSize the maximum size of a log file, in uncompressed bytes, or 0 for no maximum
+     * @param tailLines the number of lines printed when a command fails, or -1 to print all output
+     */
+    private LogOptions(File directory, boolean gzip, long maxSize, int tailLines) {
+        this.directory = directory;
+        this.gzip = gzip;
+        this.maxSize = maxSize;
+        this.tailLines = tailLines;
+        this.sequence = new AtomicInteger();
+    }
+
+    /**
+     * Get the log directory.
+     *
+     * @return the log directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns true if the log files are compressed.
+     *
+     * @return true if the log files are compressed, otherwise false
+     */
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * Get the maximum size of a log file, in uncompressed bytes.
+     *
+     * @return the maximum size of a log file, or 0 for no maximum
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns true if all command output is printed, in addition to being written to the log files.
+     *
+     * @return true if all command output is printed, otherwise false
+     */
+    public boolean isConsoleOutput() {
+        return tailLines < 0;
+    }
+
+    /**
+     * Get the number of lines printed when a command fails.
+     *
+     * @return the number of lines printed when a command fails, or -1 if all output is printed
+     */
+    public int getTailLines() {
+        return tailLines;
+    }
+
+    /**
+     * Get the next number of the step log sequence.
+     *
+     * @return the next number
+     */
+    public int nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + " { directory [" + directory + "] gzip [" + gzip + "] maxSize [" + maxSize
+                + "] tailLines [" + tailLines + "] }";
+    }
+
+    /**
+     * Factory method to create a new instance of LogOptions.
+     *
+     * @param directory the log directory
+     * @param gzip true to compress the log files
+     * @param maxSize the maximum size of a log file, in uncompressed bytes, or 0 for no maximum
+     * @param tailLines the number of lines printed when a command fails, or -1 to print all output
+     * @return a new LogOptions instance
+     */
+    public static LogOptions of(File directory, boolean gzip, long maxSize, int tailLines) {
+        return new LogOptions(directory, gzip, maxSize, tailLines);
+    }
+}
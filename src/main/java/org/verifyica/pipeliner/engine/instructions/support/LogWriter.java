@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Writer executing the file writes of the step logs on a single background thread, in submission order.
+ * <p>
+ * The queue of writes is bounded, so a producer waits when the disk can't keep up, rather than buffering
+ * an unbounded amount of output in memory.
+ */
+public final class LogWriter {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogWriter.class);
+
+    /**
+     * The capacity of the queue of writes.
+     */
+    private static final int CAPACITY = 64;
+
+    /**
+     * The queue of writes.
+     */
+    private final BlockingQueue<Runnable> queue;
+
+    /**
+     * Constructor
+     */
+    private LogWriter() {
+        this.queue = new ArrayBlockingQueue<>(CAPACITY);
+
+        Thread thread = new Thread(this::run, "pipeliner-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a write, waiting if the queue of writes is full.
+     *
+     * @param write the write
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void submit(Runnable write) throws InterruptedIOException {
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted submitting log write");
+        }
+    }
+
+    /**
+     * Executes the writes.
+     */
+    private void run() {
+        while (true) {
+            try {
+                queue.take().run();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.trace("log write failed [%s]", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to get the singleton instance of LogWriter.
+     *
+     * @return the singleton instance
+     */
+    public static LogWriter getInstance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    /**
+     * Class to hold the singleton instance
+     */
+    private static final class SingletonHolder {
+
+        /**
+         * The singleton instance
+         */
+        private static final LogWriter SINGLETON = new LogWriter();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+/**
+ * Consumer of the output lines of a command, as raw bytes.
+ * <p>
+ * Lines are passed without their line terminator, in a buffer that is reused, so a consumer must copy
+ * any bytes it keeps. {@link #flush()} is called when no more output is immediately available.
+ */
+@FunctionalInterface
+public interface OutputConsumer {
+
+    /**
+     * Consumes a line.
+     *
+     * @param bytes the buffer containing the line
+     * @param offset the offset of the line
+     * @param length the length of the line
+     * @throws IOException if an I/O error occurs
+     */
+    void accept(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Consumes a line.
+     *
+     * @param line the line
+     * @throws IOException if an I/O error occurs
+     */
+    default void accept(String line) throws IOException {
+        byte[] bytes = line.getBytes(Charset.defaultCharset());
+        accept(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Called when no more output is immediately available, so buffered lines should be written.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    default void flush() throws IOException {
+        // INTENTIONALLY BLANK
+    }
+
+    /**
+     * Creates an output consumer that decodes each line, using the default charset, for a line consumer.
+     *
+     * @param lineConsumer the line consumer
+     * @return a new output consumer
+     */
+    static OutputConsumer of(Consumer<String> lineConsumer) {
+        return new OutputConsumer() {
+
+            @Override
+            public void accept(byte[] bytes, int offset, int length) {
+                lineConsumer.accept(new String(bytes, offset, length, Charset.defaultCharset()));
+            }
+
+            @Override
+            public void accept(String line) {
+                lineConsumer.accept(line);
+            }
+        };
+    }
+}
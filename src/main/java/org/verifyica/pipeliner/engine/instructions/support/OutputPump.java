@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Class to pump the output of a command, as raw bytes, to an {@link OutputConsumer}.
+ * <p>
+ * The output is read into a large reusable buffer, and lines are found by scanning the buffer for line
+ * terminators, so lines are neither decoded nor copied, unless a line spans two reads. A line is terminated
+ * by a line feed, a carriage return, or a carriage return followed by a line feed, the same as
+ * {@link java.io.BufferedReader#readLine()}. The consumer is flushed after each read, so output is written in
+ * bulk while it is streaming, without delaying it. The read buffer is reused by each thread, so commands
+ * executed in sequence don't allocate a new buffer.
+ */
+public final class OutputPump {
+
+    /**
+     * The size of the read buffer.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The read buffer of each thread.
+     */
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    /**
+     * Constructor
+     */
+    private OutputPump() {
+        // INTENTIONALLY BLANK
+    }
+
+    /**
+     * Pumps the lines of an input stream to an output consumer, until the end of the stream.
+     * The output consumer must not pump another input stream on the same thread.
+     *
+     * @param inputStream the input stream
+     * @param outputConsumer the output consumer
+     * @throws IOException if an I/O error occurs
+     */
+    public static void pump(InputStream inputStream, OutputConsumer outputConsumer) throws IOException {
+        byte[] buffer = BUFFERS.get();
+
+        // The start of a line that spans reads
+        byte[] carry = new byte[256];
+        int carryLength = 0;
+
+        // Flag to indicate whether the previous line was terminated by a carriage return
+        boolean skipLineFeed = false;
+
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            int start = 0;
+
+            for (int i = 0; i < count; i++) {
+                byte b = buffer[i];
+
+                // A line feed following a carriage return terminates the same line
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (b == '\n') {
+                        start = i + 1;
+                        continue;
+                    }
+                }
+
+                if (b != '\n' && b != '\r') {
+                    continue;
+                }
+
+                if (carryLength == 0) {
+                    outputConsumer.accept(buffer, start, i - start);
+                } else {
+                    carry = append(carry, carryLength, buffer, start, i - start);
+                    outputConsumer.accept(carry, 0, carryLength + i - start);
+                    carryLength = 0;
+                }
+
+                skipLineFeed = b == '\r';
+                start = i + 1;
+            }
+
+            // Keep the start of the unterminated line
+            if (start < count) {
+                carry = append(carry, carryLength, buffer, start, count - start);
+                carryLength += count - start;
+            }
+
+            outputConsumer.flush();
+        }
+
+        // The last line may not be terminated
+        if (carryLength > 0) {
+            outputConsumer.accept(carry, 0, carryLength);
+            outputConsumer.flush();
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of a pattern in a range of bytes.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @param pattern the pattern
+     * @return the index of the pattern, or -1 if not found
+     */
+    public static int indexOf(byte[] bytes, int offset, int length, byte[] pattern) {
+        int last = offset + length - pattern.length;
+
+        for (int i = offset; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Appends bytes to a buffer, growing the buffer if required.
+     *
+     * @param buffer the buffer
+     * @param count the number of bytes in the buffer
+     * @param bytes the bytes to append
+     * @param offset the offset of the bytes to append
+     * @param length the number of bytes to append
+     * @return the buffer, which is a new buffer if the buffer was grown
+     */
+    private static byte[] append(byte[] buffer, int count, byte[] bytes, int offset, int length) {
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+        }
+
+        System.arraycopy(bytes, offset, buffer, count, length);
+
+        return buffer;
+    }
+}
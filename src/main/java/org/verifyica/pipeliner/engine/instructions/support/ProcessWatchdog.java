@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Watchdog enforcing the deadlines of running processes.
+ * <p>
+ * A single shared scheduler thread tracks the deadlines of all running processes. When a deadline expires,
+ * the process and all its descendants are destroyed, which closes the process output, so a process that
+ * keeps its output open, or a descendant that inherited it, can't block the thread reading the output.
+ */
+public final class ProcessWatchdog {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessWatchdog.class);
+
+    /**
+     * The scheduler tracking the deadlines.
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Constructor
+     */
+    private ProcessWatchdog() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "pipeliner-process-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Remove cancelled deadlines, since most processes complete before their deadline
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Watches a process, destroying the process and its descendants if it is still running at the deadline.
+     *
+     * @param processHandle the process handle
+     * @param timeoutNanos the time until the deadline, in nanoseconds
+     * @return the watch, which must be closed when the process completes
+     */
+    public Watch watch(ProcessHandle processHandle, long timeoutNanos) {
+        Watch watch = new Watch(processHandle);
+        watch.future = scheduler.schedule(watch::expire, Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    /**
+     * Destroys a process and all its descendants.
+     *
+     * @param processHandle the process handle
+     */
+    public static void destroyTree(ProcessHandle processHandle) {
+        // Get the descendants before destroying the process, since they are reparented when it exits
+        List<ProcessHandle> descendants = processHandle.descendants().collect(Collectors.toList());
+
+        processHandle.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Method to get the singleton instance of ProcessWatchdog.
+     *
+     * @return the singleton instance
+     */
+    public static ProcessWatchdog getInstance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    /**
+     * Class representing the watch of a process.
+     */
+    public static final class Watch implements AutoCloseable {
+
+        /**
+         * The process handle.
+         */
+        private final ProcessHandle processHandle;
+
+        /**
+         * The scheduled expiry.
+         */
+        private volatile ScheduledFuture<?> future;
+
+        /**
+         * Flag to indicate whether the deadline expired while the process was running.
+         */
+        private volatile boolean expired;
+
+        /**
+         * Constructor
+         *
+         * @param processHandle the process handle
+         */
+        private Watch(ProcessHandle processHandle) {
+            this.processHandle = processHandle;
+        }
+
+        /**
+         * Returns true if the deadline expired while the process was running, so the process was destroyed.
+         *
+         * @return true if the deadline expired, otherwise false
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        /**
+         * Stops watching the process.
+         */
+        @Override
+        public void close() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Destroys the process and its descendants, if the process is still running.
+         */
+        private void expire() {
+            if (!processHandle.isAlive()) {
+                return;
+            }
+
+            LOGGER.trace("process [%d] deadline expired", processHandle.pid());
+
+            expired = true;
+            destroyTree(processHandle);
+        }
+    }
+
+    /**
+     * Class to hold the singleton instance
+     */
+    private static final class SingletonHolder {
+
+        /**
+         * The singleton instance
+         */
+        private static final ProcessWatchdog SINGLETON = new ProcessWatchdog();
+    }
+}
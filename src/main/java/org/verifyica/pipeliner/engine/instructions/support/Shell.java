@@ -162,6 +162,95 @@ public enum Shell {
         }
     }
 
+    /**
+     * Method to determine if a shell is POSIX compatible, supporting persistent shell sessions and batched commands
+     *
+     * @param shell the shell
+     * @return true if the shell is POSIX compatible, otherwise false
+     */
+    public static boolean isPosix(Shell shell) {
+        switch (shell) {
+            case DEFAULT:
+            case BASH:
+            case SH:
+            case ZSH:
+            case KSH:
+            case DASH: {
+                return true;
+            }
+            default: {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Method to get the command tokens to start a persistent shell session that reads commands from standard input
+     *
+     * @param shell the shell
+     * @return an array of command line tokens
+     */
+    public static String[] getSessionProcessBuilderCommandArguments(Shell shell) {
+        switch (shell) {
+            case DEFAULT:
+            case BASH: {
+                return new String[] {"bash", "--noprofile", "--norc", "-s"};
+            }
+            case SH: {
+                return new String[] {"sh", "-s"};
+            }
+            case ZSH: {
+                return new String[] {"zsh", "--no-rcs", "-s"};
+            }
+            case KSH: {
+                return new String[] {"ksh", "-s"};
+            }
+            case DASH: {
+                return new String[] {"dash", "-s"};
+            }
+            default: {
+                throw new IllegalArgumentException("shell [" + shell + "] does not support a persistent session");
+            }
+        }
+    }
+
+    /**
+     * Method to get the shell options applied to each command executed in a persistent shell session,
+     * equivalent to the options used by {@link #getProcessBuilderCommandArguments(Shell, String)}
+     *
+     * @param shell the shell
+     * @return the shell options command
+     */
+    public static String getSessionOptions(Shell shell) {
+        switch (shell) {
+            case DEFAULT:
+            case BASH: {
+                return "set -eo pipefail";
+            }
+            case SH:
+            case DASH: {
+                return "set -e";
+            }
+            case ZSH:
+            case KSH: {
+                return "set -o pipefail";
+            }
+            default: {
+                throw new IllegalArgumentException("shell [" + shell + "] does not support a persistent session");
+            }
+        }
+    }
+
+    /**
+     * Method to quote a string as a single-quoted POSIX shell word
+     *
+     * @param string the string
+     * @return the quoted string
+     */
+    public static String quote(String string) {
+        return "'" + string.replace("'", "'\\''") + "'";
+    }
+
     /**
      * Method to split a command into an array of command tokens
      *
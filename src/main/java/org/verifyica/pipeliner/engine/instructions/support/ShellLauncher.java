@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+import org.verifyica.pipeliner.support.ShutdownHooks;
+
+/**
+ * Launcher keeping a pool of idle, pre-started shell processes per shell.
+ * <p>
+ * Each idle shell is started with the same shell options as a command executed in a new process, and
+ * waits for a script on its standard input. Launching a command writes a script, which sets the
+ * environment variables, changes to the working directory and evaluates the command, and closes the
+ * standard input, so the command starts without the latency of starting a process. The command's
+ * standard input is /dev/null. The pool is refilled asynchronously by a single background thread.
+ * <p>
+ * Idle shells are started with an empty environment, and the script sets all the environment variables of
+ * the command, so an idle shell never holds the environment variables of another command, or of the
+ * process that started it, and can be used by any command.
+ * <p>
+ * A command is not launched, so it is executed in a new process, if the shell is not POSIX compatible,
+ * if the working directory doesn't exist, if no idle shell is available, or if an environment variable is
+ * not a valid shell name or is reserved by the shell.
+ */
+public final class ShellLauncher {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShellLauncher.class);
+
+    /**
+     * The command executed by an idle shell, which reads the script line by line with a builtin, rather
+     * than forking a process to read it, until the standard input is closed. If the standard input is closed
+     * without a script, the shell exits.
+     */
+    private static final String BOOTSTRAP = "__pipeliner_script=\n"
+            + "while IFS= read -r __pipeliner_line; do __pipeliner_script=\"$__pipeliner_script$__pipeliner_line\n\"; done\n"
+            + "exec < /dev/null\n"
+            + "eval \"$__pipeliner_script\"\n";
+
+    /**
+     * The pattern of a valid environment variable name.
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /**
+     * The environment variables that can't be set by a script, since they are read-only, or are only read by
+     * the shell when it starts, or change how the shell parses the command.
+     */
+    private static final Set<String> RESERVED_NAMES =
+            Set.of("BASHOPTS", "BASH_ENV", "BASH_VERSINFO", "ENV", "EUID", "IFS", "PPID", "SHELLOPTS", "UID");
+
+    /**
+     * The idle shells, by shell.
+     */
+    private final Map<Shell, Queue<IdleShell>> idleShells;
+
+    /**
+     * The executor refilling the pools.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * Constructor
+     */
+    private ShellLauncher() {
+        this.idleShells = new ConcurrentHashMap<>();
+        this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeliner-shell-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Stop the idle shells on exit
+        ShutdownHooks.runOnExit(this::close);
+    }
+
+    /**
+     * Launches a command in an idle shell, and refills the pool of the shell asynchronously.
+     *
+     * @param shell the shell
+     * @param poolSize the number of idle shells to keep
+     * @param workingDirectory the working directory
+     * @param environmentVariables the environment variables
+     * @param overlayEnvironmentVariables the environment variables that override the environment variables
+     * @param command the resolved command
+     * @return the process executing the command, or null if the command can't be launched in an idle shell
+     */
+    public Process launch(
+            Shell shell,
+            int poolSize,
+            String workingDirectory,
+            Map<String, String> environmentVariables,
+            Map<String, String> overlayEnvironmentVariables,
+            String command) {
+        if (poolSize <= 0 || !Shell.isPosix(shell) || !new File(workingDirectory).isDirectory()) {
+            return null;
+        }
+
+        String script = buildScript(workingDirectory, environmentVariables, overlayEnvironmentVariables, command);
+
+        // If an environment variable can't be set by the script
+        if (script == null) {
+            return null;
+        }
+
+        Queue<IdleShell> queue = idleShells.computeIfAbsent(shell, key -> new ConcurrentLinkedQueue<>());
+
+        // Take an idle shell, discarding any shell that exited
+        IdleShell idleShell;
+        do {
+            idleShell = queue.poll();
+        } while (idleShell != null && !idleShell.process.isAlive());
+
+        // Refill the pool
+        refill(shell, poolSize);
+
+        if (idleShell == null) {
+            LOGGER.trace("no idle shell [%s]", shell);
+            return null;
+        }
+
+        // Write the script, closing the standard input so the shell evaluates it
+        try (OutputStream outputStream = idleShell.process.getOutputStream()) {
+            outputStream.write(script.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.trace("idle shell [%s] failed [%s]", shell, e.getMessage());
+            idleShell.process.destroyForcibly();
+            return null;
+        }
+
+        return idleShell.process;
+    }
+
+    /**
+     * Get the number of idle shells of a shell.
+     *
+     * @param shell the shell
+     * @return the number of idle shells
+     */
+    public int getIdleCount(Shell shell) {
+        Queue<IdleShell> queue = idleShells.get(shell);
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Refills the pool of a shell asynchronously.
+     *
+     * @param shell the shell
+     * @param poolSize the number of idle shells to keep
+     */
+    public void refill(Shell shell, int poolSize) {
+        Queue<IdleShell> queue = idleShells.computeIfAbsent(shell, key -> new ConcurrentLinkedQueue<>());
+
+        executorService.execute(() -> {
+            while (queue.size() < poolSize) {
+                try {
+                    queue.add(start(shell));
+                } catch (IOException e) {
+                    LOGGER.trace("failed to start idle shell [%s] [%s]", shell, e.getMessage());
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the idle shells.
+     */
+    public void close() {
+        for (Queue<IdleShell> queue : idleShells.values()) {
+            IdleShell idleShell;
+            while ((idleShell = queue.poll()) != null) {
+                // Closing the standard input without a script exits the shell
+                try {
+                    idleShell.process.getOutputStream().close();
+                } catch (IOException e) {
+                    idleShell.process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts an idle shell, with an empty environment.
+     *
+     * @param shell the shell
+     * @return the idle shell
+     * @throws IOException if an error occurs starting the process
+     */
+    private static IdleShell start(Shell shell) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(Shell.getProcessBuilderCommandArguments(shell, BOOTSTRAP));
+
+        // Redirect error stream to the output stream
+        processBuilder.redirectErrorStream(true);
+
+        // Don't inherit the environment variables, which are set by the script
+        processBuilder.environment().clear();
+
+        return new IdleShell(processBuilder.start());
+    }
+
+    /**
+     * Builds the script to execute a command in an idle shell.
+     *
+     * @param workingDirectory the working directory
+     * @param environmentVariables the environment variables
+     * @param overlayEnvironmentVariables the environment variables that override the environment variables
+     * @param command the resolved command
+     * @return the script, or null if an environment variable can't be set by a script
+     */
+    private static String buildScript(
+            String workingDirectory,
+            Map<String, String> environmentVariables,
+            Map<String, String> overlayEnvironmentVariables,
+            String command) {
+        StringBuilder script = new StringBuilder();
+
+        script.append("unset __pipeliner_script __pipeliner_line\n");
+
+        // Set the environment variables, since the idle shell was started with an empty environment
+        for (Map.Entry<String, String> entry : environmentVariables.entrySet()) {
+            if (!overlayEnvironmentVariables.containsKey(entry.getKey())
+                    && !appendExport(script, entry.getKey(), entry.getValue())) {
+                return null;
+            }
+        }
+
+        for (Map.Entry<String, String> entry : overlayEnvironmentVariables.entrySet()) {
+            if (!appendExport(script, entry.getKey(), entry.getValue())) {
+                return null;
+            }
+        }
+
+        script.append("cd -- ")
+                .append(Shell.quote(new File(workingDirectory).getAbsolutePath()))
+                .append(" || exit 1\n");
+
+        // Changing the directory sets OLDPWD, which a new process doesn't have unless it is inherited
+        String oldPwd = overlayEnvironmentVariables.getOrDefault("OLDPWD", environmentVariables.get("OLDPWD"));
+        if (oldPwd != null) {
+            script.append("export OLDPWD=").append(Shell.quote(oldPwd)).append('\n');
+        } else {
+            script.append("unset OLDPWD\n");
+        }
+
+        script.append("eval ").append(Shell.quote(command)).append('\n');
+
+        return script.toString();
+    }
+
+    /**
+     * Appends the export of an environment variable to a script.
+     *
+     * @param script the script
+     * @param name the name
+     * @param value the value
+     * @return true if the environment variable can be set by a script, otherwise false
+     */
+    private static boolean appendExport(StringBuilder script, String name, String value) {
+        if (!canSet(name)) {
+            return false;
+        }
+
+        script.append("export ")
+                .append(name)
+                .append('=')
+                .append(Shell.quote(value))
+                .append('\n');
+
+        return true;
+    }
+
+    /**
+     * Returns true if an environment variable can be set by a script.
+     *
+     * @param name the name
+     * @return true if the environment variable can be set by a script, otherwise false
+     */
+    private static boolean canSet(String name) {
+        if (!NAME_PATTERN.matcher(name).matches() || RESERVED_NAMES.contains(name)) {
+            LOGGER.trace("environment variable [%s] can't be set by a script", name);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Method to get the singleton instance of ShellLauncher.
+     *
+     * @return the singleton instance
+     */
+    public static ShellLauncher getInstance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    /**
+     * Class representing an idle shell.
+     */
+    private static final class IdleShell {
+
+        /**
+         * The process.
+         */
+        private final Process process;
+
+        /**
+         * Constructor
+         *
+         * @param process the process
+         */
+        private IdleShell(Process process) {
+            this.process = process;
+        }
+    }
+
+    /**
+     * Class to hold the singleton instance
+     */
+    private static final class SingletonHolder {
+
+        /**
+         * The singleton instance
+         */
+        private static final ShellLauncher SINGLETON = new ShellLauncher();
+    }
+}
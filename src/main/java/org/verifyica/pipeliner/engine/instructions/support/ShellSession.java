@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.verifyica.pipeliner.logger.Logger;
+import org.verifyica.pipeliner.logger.LoggerFactory;
+
+/**
+ * Class to implement a persistent shell session.
+ * <p>
+ * A single long-lived shell process reads commands from its standard input. Each command is executed
+ * in a subshell, with the working directory, environment variables and shell options of the command,
+ * so commands are isolated from each other the same as when each command is executed in its own process.
+ * After each command, the shell prints a sentinel marker with the exit code, which marks the end of the
+ * command's output. The output is read as raw bytes by an {@link OutputPump}, and the sentinel marker is
+ * found by scanning the bytes, so the output is not decoded.
+ */
+public final class ShellSession implements AutoCloseable {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShellSession.class);
+
+    /**
+     * Pattern to match valid shell environment variable names.
+     */
+    private static final Pattern ENVIRONMENT_VARIABLE_NAME_PATTERN = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]*$");
+
+    /**
+     * Counter used to name the reader threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Marker queued when the shell's output stream is closed.
+     */
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    /**
+     * The time to wait for the shell process to exit when the session is closed.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * The shell.
+     */
+    private final Shell shell;
+
+    /**
+     * The shell process.
+     */
+    private final Process process;
+
+    /**
+     * The writer for the shell's standard input.
+     */
+    private final Writer writer;
+
+    /**
+     * The queue of output lines read from the shell.
+     */
+    private final BlockingQueue<byte[]> lines;
+
+    /**
+     * The environment variables the shell process was started with.
+     */
+    private final Map<String, String> environmentVariables;
+
+    /**
+     * The sentinel marker printed after each command.
+     */
+    private final String sentinel;
+
+    /**
+     * The bytes of the sentinel marker.
+     */
+    private final byte[] sentinelBytes;
+
+    /**
+     * The environment variables the export script was built for, or null.
+     */
+    private Map<String, String> exportedEnvironmentVariables;
+
+    /**
+     * The script to export the environment variables that differ from the shell process' environment.
+     */
+    private String exportScript;
+
+    /**
+     * Flag to indicate whether the session is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param shell the shell
+     * @param process the shell process
+     * @param environmentVariables the environment variables the shell process was started with
+     */
+    private ShellSession(Shell shell, Process process, Map<String, String> environmentVariables) {
+        this.shell = shell;
+        this.process = process;
+        this.writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        this.lines = new LinkedBlockingQueue<>();
+        this.environmentVariables = environmentVariables;
+        this.sentinel = "__PIPELINER_SENTINEL_" + UUID.randomUUID().toString().replace("-", "") + "__";
+        this.sentinelBytes = sentinel.getBytes(StandardCharsets.US_ASCII);
+
+        Thread thread = new Thread(this::readLines, "pipeliner-shell-session-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the shell.
+     *
+     * @return the shell
+     */
+    public Shell getShell() {
+        return shell;
+    }
+
+    /**
+     * Get the process handle of the shell.
+     *
+     * @return the process handle of the shell
+     */
+    public ProcessHandle toHandle() {
+        return process.toHandle();
+    }
+
+    /**
+     * Returns true if the session is closed.
+     *
+     * @return true if the session is closed, otherwise false
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Executes a command in the session.
+     *
+     * @param workingDirectory the working directory of the command
+     * @param environmentVariables the immutable environment variables of the command
+     * @param overlayEnvironmentVariables the environment variables of the command that override the
+     *        environment variables
+     * @param command the command
+     * @param timeoutNanos the time until the deadline of the command, in nanoseconds
+     * @param outputConsumer the consumer of the command's output lines
+     * @return the exit code of the command
+     * @throws IOException if the shell session has terminated
+     * @throws TimeoutException if the command did not complete within the timeout, the session is closed
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public int execute(
+            String workingDirectory,
+            Map<String, String> environmentVariables,
+            Map<String, String> overlayEnvironmentVariables,
+            String command,
+            long timeoutNanos,
+            OutputConsumer outputConsumer)
+            throws IOException, TimeoutException, InterruptedException {
+        if (closed) {
+            throw new IOException("shell session is closed");
+        }
+
+        File directory = new File(workingDirectory).getAbsoluteFile();
+        if (!directory.isDirectory()) {
+            throw new IOException("working directory [" + workingDirectory + "] does not exist");
+        }
+
+        // Build the script to execute the command in a subshell
+        StringBuilder script = new StringBuilder();
+        script.append("(\n");
+        script.append(Shell.getSessionOptions(shell)).append('\n');
+        script.append("cd -- ").append(Shell.quote(directory.getPath())).append('\n');
+        appendEnvironmentVariables(script, environmentVariables, overlayEnvironmentVariables);
+        script.append("eval ").append(Shell.quote(command)).append('\n');
+        script.append(") < /dev/null\n");
+        script.append("printf '%s %d\\n' ").append(Shell.quote(sentinel)).append(" \"$?\"\n");
+
+        LOGGER.trace("script [%s]", script);
+
+        // Write the script to the shell
+        writer.write(script.toString());
+        writer.flush();
+
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        while (true) {
+            // Wait for the next line of output
+            byte[] line = lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+            if (line == null) {
+                // The command did not complete within the timeout
+                outputConsumer.flush();
+                close(true);
+                throw new TimeoutException("command timed out");
+            }
+
+            if (line == END_OF_STREAM) {
+                outputConsumer.flush();
+                close(true);
+                throw new IOException("shell session terminated unexpectedly");
+            }
+
+            int index = OutputPump.indexOf(line, 0, line.length, sentinelBytes);
+
+            if (index < 0) {
+                outputConsumer.accept(line, 0, line.length);
+
+                // If no more output is queued, write the consumed lines
+                if (lines.isEmpty()) {
+                    outputConsumer.flush();
+                }
+
+                continue;
+            }
+
+            // Output without a trailing newline precedes the sentinel on the same line
+            if (index > 0) {
+                outputConsumer.accept(line, 0, index);
+            }
+
+            outputConsumer.flush();
+
+            int exitCodeIndex = index + sentinelBytes.length;
+
+            return Integer.parseInt(
+                    new String(line, exitCodeIndex, line.length - exitCodeIndex, StandardCharsets.US_ASCII).trim());
+        }
+    }
+
+    @Override
+    public void close() {
+        close(false);
+    }
+
+    /**
+     * Closes the session.
+     *
+     * @param force true to destroy the shell process, and its descendants, immediately
+     */
+    private void close(boolean force) {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        LOGGER.trace("closing shell session force [%b]", force);
+
+        if (!force) {
+            try {
+                // Closing standard input causes the shell to exit
+                writer.close();
+
+                if (process.waitFor(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    return;
+                }
+            } catch (IOException e) {
+                // INTENTIONALLY BLANK
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ProcessWatchdog.destroyTree(process.toHandle());
+    }
+
+    /**
+     * Reads the shell's output lines into the queue, as raw bytes.
+     */
+    private void readLines() {
+        try (InputStream inputStream = process.getInputStream()) {
+            OutputPump.pump(
+                    inputStream,
+                    (bytes, offset, length) -> lines.add(Arrays.copyOfRange(bytes, offset, offset + length)));
+        } catch (IOException e) {
+            LOGGER.trace("exception reading shell session output [%s]", e.getMessage());
+        } finally {
+            lines.add(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Appends the commands to set the environment variables that differ from the shell process' environment.
+     * The commands for the immutable environment variables are reused while the same environment variables
+     * are passed.
+     *
+     * @param script the script
+     * @param environmentVariables the immutable environment variables of the command
+     * @param overlayEnvironmentVariables the environment variables of the command that override the
+     *        environment variables
+     */
+    private void appendEnvironmentVariables(
+            StringBuilder script,
+            Map<String, String> environmentVariables,
+            Map<String, String> overlayEnvironmentVariables) {
+        // If the environment variables changed since the export script was built
+        if (environmentVariables != exportedEnvironmentVariables) {
+            StringBuilder exportScript = new StringBuilder();
+
+            for (Map.Entry<String, String> entry : environmentVariables.entrySet()) {
+                String name = entry.getKey();
+
+                if (ENVIRONMENT_VARIABLE_NAME_PATTERN.matcher(name).matches()
+                        && !Objects.equals(this.environmentVariables.get(name), entry.getValue())) {
+                    appendExport(exportScript, name, entry.getValue());
+                }
+            }
+
+            for (String name : this.environmentVariables.keySet()) {
+                if (ENVIRONMENT_VARIABLE_NAME_PATTERN.matcher(name).matches()
+                        && !environmentVariables.containsKey(name)) {
+                    exportScript.append("unset ").append(name).append('\n');
+                }
+            }
+
+            this.exportScript = exportScript.toString();
+            this.exportedEnvironmentVariables = environmentVariables;
+        }
+
+        script.append(exportScript);
+
+        for (Map.Entry<String, String> entry : overlayEnvironmentVariables.entrySet()) {
+            appendExport(script, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Appends the command to export an environment variable.
+     *
+     * @param script the script
+     * @param name the environment variable name
+     * @param value the environment variable value
+     */
+    private static void appendExport(StringBuilder script, String name, String value) {
+        script.append("export ")
+                .append(name)
+                .append('=')
+                .append(Shell.quote(value))
+                .append('\n');
+    }
+
+    /**
+     * Starts a new shell session.
+     *
+     * @param shell the shell
+     * @param environmentVariables the environment variables
+     * @return a new ShellSession instance
+     * @throws IOException if the shell process could not be started
+     */
+    public static ShellSession start(Shell shell, Map<String, String> environmentVariables) throws IOException {
+        LOGGER.trace("starting shell session shell [%s]", shell);
+
+        // Create a ProcessBuilder with the session command parts
+        ProcessBuilder processBuilder = new ProcessBuilder(Shell.getSessionProcessBuilderCommandArguments(shell));
+
+        // Redirect error stream to the output stream
+        processBuilder.redirectErrorStream(true);
+
+        // Set the environment variables for the process, which are exactly the context's environment variables
+        processBuilder.environment().clear();
+        processBuilder.environment().putAll(environmentVariables);
+
+        return new ShellSession(shell, processBuilder.start(), new HashMap<>(processBuilder.environment()));
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine.instructions.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log of the output lines of a step's commands.
+ * <p>
+ * Writes the output lines of a step's commands to log files. Lines are collected in a buffer, which is
+ * handed to the {@link LogWriter} thread when full, so commands don't wait for the file writes. The
+ * writes use a {@link FileChannel}, through a streaming gzip compressor if compression is enabled.
+ * When a file would exceed the maximum size, the log rolls over to a new file, named with the part number.
+ * The last lines are kept, so they can be printed if a command fails.
+ */
+public final class StepLog {
+
+    /**
+     * The size of the buffer handed to the writer thread.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The log directory.
+     */
+    private final File directory;
+
+    /**
+     * The name of the log files, without the part number and extension.
+     */
+    private final String name;
+
+    /**
+     * Flag to indicate whether the log files are compressed.
+     */
+    private final boolean gzip;
+
+    /**
+     * The maximum size of a log file, in uncompressed bytes, or 0 for no maximum.
+     */
+    private final long maxSize;
+
+    /**
+     * The number of last lines to keep.
+     */
+    private final int tailLines;
+
+    /**
+     * The last lines.
+     */
+    private final ArrayDeque<byte[]> tail;
+
+    /**
+     * The log files, in order.
+     */
+    private final List<File> files;
+
+    /**
+     * The buffer of lines not handed to the writer thread yet.
+     */
+    private byte[] buffer;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int position;
+
+    /**
+     * The number of lines.
+     */
+    private long lineCount;
+
+    /**
+     * The number of bytes.
+     */
+    private long byteCount;
+
+    /**
+     * The number of bytes of the current log file.
+     */
+    private long fileByteCount;
+
+    /**
+     * The channel of the current log file, only accessed by the writer thread.
+     */
+    private FileChannel fileChannel;
+
+    /**
+     * The compressor of the current log file, or null if not compressed, only accessed by the writer thread.
+     */
+    private OutputStream outputStream;
+
+    /**
+     * The first exception of the writer thread, or null.
+     */
+    private volatile IOException exception;
+
+    /**
+     * Constructor
+     *
+     * @param directory the log directory
+     * @param name the name of the log files, without the part number and extension
+     * @param gzip true to compress the log files
+     * @param maxSize the maximum size of a log file, in uncompressed bytes, or 0 for no maximum
+     * @param tailLines the number of last lines to keep
+     */
+    private StepLog(File directory, String name, boolean gzip, long maxSize, int tailLines) {
+        this.directory = directory;
+        this.name = name;
+        this.gzip = gzip;
+        this.maxSize = maxSize;
+        this.tailLines = Math.max(0, tailLines);
+        this.tail = new ArrayDeque<>(this.tailLines);
+        this.files = new ArrayList<>();
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Appends a line, without the line terminator.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the line
+     * @param length the length of the line
+     * @throws IOException if the thread is interrupted while waiting for the writer thread
+     */
+    public void append(byte[] bytes, int offset, int length) throws IOException {
+        // If the line would exceed the maximum size of the current log file, roll over to a new file
+        if (maxSize > 0 && fileByteCount > 0 && fileByteCount + length + 1 > maxSize) {
+            flushBuffer();
+            submitClose();
+            submitOpen();
+        }
+
+        // If the line doesn't fit in the buffer, hand the buffer to the writer thread
+        if (position + length + 1 > buffer.length) {
+            flushBuffer();
+
+            // A line longer than the buffer is handed to the writer thread in its own buffer
+            if (length + 1 > buffer.length) {
+                buffer = new byte[length + 1];
+            }
+        }
+
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+        buffer[position++] = '\n';
+
+        lineCount++;
+        byteCount += length + 1;
+        fileByteCount += length + 1;
+
+        // Keep the last lines
+        if (tailLines > 0) {
+            if (tail.size() == tailLines) {
+                tail.removeFirst();
+            }
+
+            byte[] line = new byte[length];
+            System.arraycopy(bytes, offset, line, 0, length);
+            tail.addLast(line);
+        }
+    }
+
+    /**
+     * Get the last lines, without line terminators.
+     *
+     * @return the last lines
+     */
+    public List<byte[]> getTail() {
+        return new ArrayList<>(tail);
+    }
+
+    /**
+     * Get the number of lines.
+     *
+     * @return the number of lines
+     */
+    public long getLines() {
+        return lineCount;
+    }
+
+    /**
+     * Get the number of bytes, before compression.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return byteCount;
+    }
+
+    /**
+     * Get the log files, in order.
+     *
+     * @return the log files
+     */
+    public List<File> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Closes the log, waiting until all lines are written.
+     *
+     * @throws IOException if an error occurs writing the log files
+     */
+    public void close() throws IOException {
+        flushBuffer();
+        submitClose();
+
+        // Wait until the writer thread executed the writes
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        LogWriter.getInstance().submit(countDownLatch::countDown);
+
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted closing log");
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Hands the buffer to the writer thread.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the writer thread
+     */
+    private void flushBuffer() throws InterruptedIOException {
+        if (position == 0) {
+            return;
+        }
+
+        byte[] writeBuffer = buffer;
+        int writeLength = position;
+
+        // The writer thread owns the buffer, so use a new buffer
+        buffer = new byte[BUFFER_SIZE];
+        position = 0;
+
+        LogWriter.getInstance().submit(() -> write(writeBuffer, writeLength));
+    }
+
+    /**
+     * Submits opening the next log file.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the writer thread
+     */
+    private void submitOpen() throws InterruptedIOException {
+        String extension = gzip ? ".log.gz" : ".log";
+        File file = new File(directory, files.isEmpty() ? name + extension : name + "." + files.size() + extension);
+
+        files.add(file);
+        fileByteCount = 0;
+
+        LogWriter.getInstance().submit(() -> open(file));
+    }
+
+    /**
+     * Submits closing the current log file.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the writer thread
+     */
+    private void submitClose() throws InterruptedIOException {
+        LogWriter.getInstance().submit(this::closeFile);
+    }
+
+    /**
+     * Opens a log file, on the writer thread.
+     *
+     * @param file the log file
+     */
+    private void open(File file) {
+        if (exception != null) {
+            return;
+        }
+
+        try {
+            fileChannel = FileChannel.open(
+                    file.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+
+            if (gzip) {
+                outputStream = new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            exception = e;
+        }
+    }
+
+    /**
+     * Writes bytes to the current log file, on the writer thread.
+     *
+     * @param bytes the bytes
+     * @param length the number of bytes
+     */
+    private void write(byte[] bytes, int length) {
+        if (exception != null) {
+            return;
+        }
+
+        try {
+            if (outputStream != null) {
+                outputStream.write(bytes, 0, length);
+            } else {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, 0, length);
+                while (byteBuffer.hasRemaining()) {
+                    fileChannel.write(byteBuffer);
+                }
+            }
+        } catch (IOException e) {
+            exception = e;
+        }
+    }
+
+    /**
+     * Closes the current log file, on the writer thread.
+     */
+    private void closeFile() {
+        try {
+            if (outputStream != null) {
+                // Closing the compressor writes the trailer and closes the channel
+                outputStream.close();
+            } else if (fileChannel != null) {
+                fileChannel.close();
+            }
+        } catch (IOException e) {
+            if (exception == null) {
+                exception = e;
+            }
+        } finally {
+            outputStream = null;
+            fileChannel = null;
+        }
+    }
+
+    /**
+     * Factory method to create a new instance of StepLog, creating the log directory if required.
+     *
+     * @param logOptions the log options
+     * @param name the name of the log files, without the part number and extension
+     * @return a new StepLog instance
+     * @throws IOException if an error occurs creating the log directory
+     */
+    public static StepLog of(LogOptions logOptions, String name) throws IOException {
+        File directory = logOptions.getDirectory();
+
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("can't create log directory [" + directory + "]");
+        }
+
+        StepLog stepLog = new StepLog(
+                directory,
+                name,
+                logOptions.isGzip(),
+                logOptions.getMaxSize(),
+                logOptions.isConsoleOutput() ? 0 : logOptions.getTailLines());
+
+        stepLog.submitOpen();
+
+        return stepLog;
+    }
+}
@@ -17,19 +17,37 @@
 package org.verifyica.pipeliner.model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /** Class to implement Job */
 public class Job extends Node {
 
     private final List<Step> steps;
 
+    private final List<String> needs;
+
+    private final Map<String, List<String>> matrix;
+
+    private Integer maxParallel;
+
+    private boolean failFast;
+
+    private final List<Job> matrixJobs;
+
+    private String shellSession;
+
     /**
      * Constructor
      */
     public Job() {
         super(Type.JOB);
         steps = new ArrayList<>();
+        needs = new ArrayList<>();
+        matrix = new LinkedHashMap<>();
+        failFast = true;
+        matrixJobs = new ArrayList<>();
     }
 
     /**
@@ -52,4 +70,121 @@ public class Job extends Node {
     public List<Step> getSteps() {
         return steps;
     }
+
+    /**
+     * Method to set the list of job names this job needs
+     *
+     * @param needs the list of job names
+     */
+    public void setNeeds(List<String> needs) {
+        if (needs != null) {
+            this.needs.clear();
+            this.needs.addAll(needs);
+        }
+    }
+
+    /**
+     * Method to get the list of job names this job needs
+     *
+     * @return the list of job names
+     */
+    public List<String> getNeeds() {
+        return needs;
+    }
+
+    /**
+     * Method to set the strategy matrix
+     *
+     * @param matrix the map of matrix variable names to their values
+     */
+    public void setMatrix(Map<String, List<String>> matrix) {
+        if (matrix != null) {
+            this.matrix.clear();
+            this.matrix.putAll(matrix);
+        }
+    }
+
+    /**
+     * Method to get the strategy matrix
+     *
+     * @return the map of matrix variable names to their values
+     */
+    public Map<String, List<String>> getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * Method to set the maximum number of matrix jobs to execute in parallel
+     *
+     * @param maxParallel the maximum number of matrix jobs to execute in parallel
+     */
+    public void setMaxParallel(Integer maxParallel) {
+        this.maxParallel = maxParallel;
+    }
+
+    /**
+     * Method to get the maximum number of matrix jobs to execute in parallel
+     *
+     * @return the maximum number of matrix jobs to execute in parallel, or null if not set
+     */
+    public Integer getMaxParallel() {
+        return maxParallel;
+    }
+
+    /**
+     * Method to set fail fast
+     *
+     * @param failFast true if matrix jobs that have not started should be cancelled when a matrix job fails
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Method to get fail fast
+     *
+     * @return true if matrix jobs that have not started should be cancelled when a matrix job fails
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Method to set the list of jobs expanded from the strategy matrix
+     *
+     * @param matrixJobs the list of jobs, one per matrix combination
+     */
+    public void setMatrixJobs(List<Job> matrixJobs) {
+        if (matrixJobs != null) {
+            this.matrixJobs.clear();
+            this.matrixJobs.addAll(matrixJobs);
+        }
+    }
+
+    /**
+     * Method to get the list of jobs expanded from the strategy matrix
+     *
+     * @return the list of jobs, one per matrix combination
+     */
+    public List<Job> getMatrixJobs() {
+        return matrixJobs;
+    }
+
+    /**
+     * Method to set the shell session mode
+     *
+     * @param shellSession the shell session mode ("default" or "persistent")
+     */
+    public void setShellSession(String shellSession) {
+        this.shellSession = shellSession;
+    }
+
+    /**
+     * Method to get the shell session mode
+     *
+     * @return the shell session mode, or null if not set
+     */
+    public String getShellSession() {
+        return shellSession;
+    }
 }
@@ -23,7 +23,11 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -55,6 +59,11 @@ public class PipelineFactory {
      */
     private static final Set<String> YAML_FALSE_VALUES = Set.of("false", "no", "0", "off");
 
+    /**
+     * Constant for valid shell session values.
+     */
+    private static final Set<String> SHELL_SESSION_VALUES = Set.of("default", "persistent");
+
     /**
      * Set of reserved environment variable names that should not be used in the pipeline.
      */
@@ -195,22 +204,300 @@ public class PipelineFactory {
                         return (List<Object>) oo;
                     })
                     .ifPresent(s -> {
-                        buildSteps(s, job);
+                        job.setSteps(buildSteps(s));
+                    });
+
+            MapSupport.ifPresent(jobMap, "needs")
+                    .map(oo -> {
+                        if (oo instanceof String) {
+                            String value = (String) oo;
+                            if (value.isBlank()) {
+                                return new ArrayList<>();
+                            } else {
+                                return List.of(value.trim());
+                            }
+                        }
+                        return oo;
+                    })
+                    .map(oo -> {
+                        if (!(oo instanceof List)) {
+                            throw new SyntaxException(job.getType().getValue() + " \"needs:\" is not a list");
+                        }
+                        return (List<Object>) oo;
+                    })
+                    .ifPresent(n -> {
+                        List<String> needs = new ArrayList<>();
+                        for (Object oo : n) {
+                            if (!(oo instanceof String) || ((String) oo).isBlank()) {
+                                throw new SyntaxException(
+                                        job.getType().getValue() + " \"needs:\" value [" + oo + "] is invalid");
+                            }
+                            needs.add(((String) oo).trim());
+                        }
+                        job.setNeeds(needs);
                     });
 
+            MapSupport.ifPresent(jobMap, "shell-session")
+                    .map(oo -> (String) oo)
+                    .map(value -> {
+                        if (!SHELL_SESSION_VALUES.contains(value)) {
+                            throw new SyntaxException(
+                                    job.getType().getValue() + " \"shell-session:\" value [" + value + "] is invalid");
+                        }
+                        return value;
+                    })
+                    .ifPresent(job::setShellSession);
+
+            MapSupport.ifPresent(jobMap, "strategy")
+                    .map(oo -> {
+                        if (!(oo instanceof Map)) {
+                            throw new SyntaxException(job.getType().getValue() + " \"strategy:\" is not a map");
+                        }
+                        return (Map<String, Object>) oo;
+                    })
+                    .ifPresent(m -> buildStrategy(m, job));
+
             result.add(job);
         }
 
+        // Validate the job dependencies
+        validateNeeds(result);
+
         pipeline.setJobs(result);
     }
 
     /**
-     * Method to process the steps list and populate the Job object with Step objects.
+     * Method to process the strategy map, populate the Job object, and expand the matrix into jobs.
+     *
+     * @param strategyMap the strategy map
+     * @param job the {@code Job} object to populate
+     * @throws SyntaxException if a syntax error occurs in the YAML file
+     */
+    private void buildStrategy(Map<String, Object> strategyMap, Job job) throws SyntaxException {
+        String prefix = job.getType().getValue() + " \"strategy:\"";
+
+        MapSupport.ifPresent(strategyMap, "matrix")
+                .map(o -> {
+                    if (!(o instanceof Map)) {
+                        throw new SyntaxException(prefix + " \"matrix:\" is not a map");
+                    }
+                    return (Map<String, Object>) o;
+                })
+                .ifPresent(m -> {
+                    Map<String, List<String>> matrix = new LinkedHashMap<>();
+
+                    for (Map.Entry<String, Object> entry : m.entrySet()) {
+                        String key = entry.getKey();
+                        Object value = entry.getValue();
+
+                        if (Variable.isInvalid(key)) {
+                            throw new SyntaxException(prefix + " \"matrix:\" variable name [" + key + "] is invalid");
+                        }
+
+                        List<String> values = new ArrayList<>();
+
+                        if (value instanceof String) {
+                            values.add((String) value);
+                        } else if (value instanceof List) {
+                            for (Object o : (List<Object>) value) {
+                                if (!(o instanceof String)) {
+                                    throw new SyntaxException(prefix + " \"matrix:\" variable [" + key + "] value [" + o
+                                            + "] is invalid");
+                                }
+                                values.add((String) o);
+                            }
+                        } else {
+                            throw new SyntaxException(prefix + " \"matrix:\" variable [" + key + "] is not a list");
+                        }
+
+                        if (values.isEmpty()) {
+                            throw new SyntaxException(prefix + " \"matrix:\" variable [" + key + "] is empty");
+                        }
+
+                        matrix.put(key, values);
+                    }
+
+                    job.setMatrix(matrix);
+                });
+
+        MapSupport.ifPresent(strategyMap, "max-parallel")
+                .map(o -> (String) o)
+                .map(value -> {
+                    try {
+                        int maxParallel = Integer.parseInt(value.trim());
+                        if (maxParallel < 1) {
+                            throw new NumberFormatException();
+                        }
+                        return maxParallel;
+                    } catch (NumberFormatException e) {
+                        throw new SyntaxException(prefix + " \"max-parallel:\" value [" + value + "] is invalid");
+                    }
+                })
+                .ifPresent(job::setMaxParallel);
+
+        MapSupport.ifPresent(strategyMap, "fail-fast")
+                .map(o -> (String) o)
+                .map(value -> {
+                    if (YAML_TRUE_VALUES.contains(value.toLowerCase())) {
+                        return true;
+                    } else if (YAML_FALSE_VALUES.contains(value.toLowerCase())) {
+                        return false;
+                    } else {
+                        throw new SyntaxException(prefix + " \"fail-fast:\" value [" + value + "] is invalid");
+                    }
+                })
+                .ifPresent(job::setFailFast);
+
+        if (job.getMatrix().isEmpty()) {
+            return;
+        }
+
+        // Expand the matrix into one job per combination
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+
+        for (Map.Entry<String, List<String>> entry : job.getMatrix().entrySet()) {
+            List<Map<String, String>> expanded = new ArrayList<>();
+
+            for (Map<String, String> combination : combinations) {
+                for (String value : entry.getValue()) {
+                    Map<String, String> cell = new LinkedHashMap<>(combination);
+                    cell.put(entry.getKey(), value);
+                    expanded.add(cell);
+                }
+            }
+
+            combinations = expanded;
+        }
+
+        List<Job> matrixJobs = new ArrayList<>();
+
+        for (Map<String, String> combination : combinations) {
+            matrixJobs.add(createMatrixJob(job, combination));
+        }
+
+        job.setMatrixJobs(matrixJobs);
+    }
+
+    /**
+     * Method to create a job for a matrix combination, with the combination's values injected as variables.
+     *
+     * @param job the {@code Job} object declaring the matrix
+     * @param combination the map of matrix variable names to values
+     * @return the {@code Job} object for the combination
+     */
+    private Job createMatrixJob(Job job, Map<String, String> combination) {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (Map.Entry<String, String> entry : combination.entrySet()) {
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(entry.getKey()).append("=").append(entry.getValue());
+        }
+
+        String name = "[" + stringBuilder + "]";
+        if (job.getName() != null) {
+            name = job.getName() + " " + name;
+        }
+
+        Job matrixJob = new Job();
+        matrixJob.setName(name);
+        matrixJob.setDescription(job.getDescription());
+        matrixJob.setEnabled(job.isEnabled());
+        matrixJob.setConditional(job.getConditional());
+        matrixJob.setWorkingDirectory(job.getWorkingDirectory());
+        matrixJob.setShell(job.getShell());
+        matrixJob.setTimeoutMinutes(job.getTimeoutMinutes());
+        matrixJob.setEnvironmentVariables(job.getEnvironmentVariables());
+        matrixJob.setVariables(job.getVariables());
+        matrixJob.getVariables().putAll(combination);
+        matrixJob.setSteps(job.getSteps());
+        matrixJob.setShellSession(job.getShellSession());
+
+        return matrixJob;
+    }
+
+    /**
+     * Method to validate the "needs:" dependency graph of the jobs.
+     *
+     * @param jobs the list of jobs
+     * @throws SyntaxException if a needed job does not exist, is ambiguous, or the dependencies contain a cycle
+     */
+    private void validateNeeds(List<Job> jobs) throws SyntaxException {
+        Map<String, Job> jobsByName = new LinkedHashMap<>();
+        Set<String> duplicateNames = new HashSet<>();
+
+        for (Job job : jobs) {
+            if (job.getName() != null && jobsByName.put(job.getName(), job) != null) {
+                duplicateNames.add(job.getName());
+            }
+        }
+
+        for (Job job : jobs) {
+            for (String need : job.getNeeds()) {
+                if (!jobsByName.containsKey(need)) {
+                    throw new SyntaxException("job \"needs:\" job [" + need + "] does not exist");
+                }
+
+                if (duplicateNames.contains(need)) {
+                    throw new SyntaxException("job \"needs:\" job [" + need + "] is not unique");
+                }
+            }
+        }
+
+        // Depth first search for cycles
+        Map<String, Boolean> visiting = new HashMap<>();
+        for (Job job : jobs) {
+            if (job.getName() != null) {
+                checkNeedsCycle(job, jobsByName, visiting, new ArrayDeque<>());
+            }
+        }
+    }
+
+    /**
+     * Method to check the "needs:" dependencies of a job for a cycle.
+     *
+     * @param job the job
+     * @param jobsByName the map of jobs by name
+     * @param visiting the map of job names to visiting state (true while on the current path, false when done)
+     * @param path the current dependency path
+     * @throws SyntaxException if the dependencies contain a cycle
+     */
+    private void checkNeedsCycle(
+            Job job, Map<String, Job> jobsByName, Map<String, Boolean> visiting, Deque<String> path)
+            throws SyntaxException {
+        Boolean state = visiting.get(job.getName());
+
+        if (Boolean.FALSE.equals(state)) {
+            return;
+        }
+
+        path.addLast(job.getName());
+
+        if (Boolean.TRUE.equals(state)) {
+            List<String> cycle = new ArrayList<>(path);
+            cycle = cycle.subList(cycle.indexOf(job.getName()), cycle.size());
+            throw new SyntaxException("job \"needs:\" cycle detected [" + String.join(" -> ", cycle) + "]");
+        }
+
+        visiting.put(job.getName(), true);
+
+        for (String need : job.getNeeds()) {
+            checkNeedsCycle(jobsByName.get(need), jobsByName, visiting, path);
+        }
+
+        visiting.put(job.getName(), false);
+        path.removeLast();
+    }
+
+    /**
+     * Method to process the steps list into a list of Step objects.
      *
      * @param steps the list of steps
-     * @param job the {@code Job} object to populate with steps
+     * @return the list of {@code Step} objects
      */
-    private void buildSteps(List<Object> steps, Job job) {
+    private List<Step> buildSteps(List<Object> steps) {
         List<Step> result = new ArrayList<>();
 
         for (Object o : steps) {
@@ -220,6 +507,22 @@ public class PipelineFactory {
             // Build common node properties
             buildNode(stepMap, step);
 
+            MapSupport.ifPresent(stepMap, "parallel")
+                    .map(oo -> {
+                        if (!(oo instanceof List)) {
+                            throw new SyntaxException(step.getType().getValue() + " \"parallel:\" is not a list");
+                        }
+                        return (List<Object>) oo;
+                    })
+                    .map(p -> {
+                        if (stepMap.containsKey("run")) {
+                            throw new SyntaxException(
+                                    step.getType().getValue() + " \"parallel:\" and \"run:\" cannot be used together");
+                        }
+                        return p;
+                    })
+                    .ifPresent(p -> step.setParallelSteps(buildSteps(p)));
+
             // Get the run text
             String run = (String) stepMap.get("run");
 
@@ -234,7 +537,7 @@ public class PipelineFactory {
             result.add(step);
         }
 
-        job.setSteps(result);
+        return result;
     }
 
     /**
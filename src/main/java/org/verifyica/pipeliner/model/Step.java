@@ -24,6 +24,8 @@ public class Step extends Node {
 
     private List<String> commands;
 
+    private final List<Step> parallelSteps;
+
     /**
      * Constructor
      */
@@ -31,6 +33,7 @@ public class Step extends Node {
         super(Type.STEP);
 
         this.commands = new ArrayList<>();
+        this.parallelSteps = new ArrayList<>();
     }
 
     /**
@@ -41,4 +44,25 @@ public class Step extends Node {
     public List<String> getCommands() {
         return commands;
     }
+
+    /**
+     * Method to set the list of steps to execute in parallel
+     *
+     * @param parallelSteps the list of steps
+     */
+    public void setParallelSteps(List<Step> parallelSteps) {
+        if (parallelSteps != null) {
+            this.parallelSteps.clear();
+            this.parallelSteps.addAll(parallelSteps);
+        }
+    }
+
+    /**
+     * Method to get the list of steps to execute in parallel
+     *
+     * @return the list of steps
+     */
+    public List<Step> getParallelSteps() {
+        return parallelSteps;
+    }
 }
@@ -16,7 +16,6 @@
 
 package org.verifyica.pipeliner.model.support;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -28,8 +27,6 @@ public class Variable {
 
     private static final Pattern PATTERN = Pattern.compile(REGEX);
 
-    private static final Matcher MATCHER = PATTERN.matcher("");
-
     /**
      * Constructor
      */
@@ -44,7 +41,7 @@ public class Variable {
      * @return true if the variable name is valid, false otherwise
      */
     public static boolean isValid(String name) {
-        return MATCHER.reset(name).matches();
+        return PATTERN.matcher(name).matches();
     }
 
     /**
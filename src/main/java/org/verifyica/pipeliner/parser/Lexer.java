@@ -18,102 +18,156 @@ package org.verifyica.pipeliner.parser;
 
 /**
  * Lexer class for processing input strings and extracting tokens.
+ * <p>
+ * The lexer works on offsets into the input. {@link #advance()} moves to the next token without
+ * allocating, exposing the token's type and offsets, and {@link #next()} returns the token as an object,
+ * whose text is only created when requested.
  */
 public class Lexer {
 
-    private final String input;
+    private final CharSequence input;
+    private final int length;
     private int position;
     private Token peekedToken = null;
+    private Token.Type type;
+    private int start;
+    private int end;
 
     /**
      * Constructor
      *
      * @param input the input string
      */
-    public Lexer(String input) {
+    public Lexer(CharSequence input) {
         this.input = input;
+        this.length = input.length();
         this.position = 0;
     }
 
     /**
-     * Returns the next token from the input string or null if the end of the input is reached.
+     * Advances to the next token, without allocating a token object.
      *
-     * @return the next token or null if the end of input is reached
+     * @return true if there is a next token, false if the end of input is reached
      */
-    public Token next() {
+    public boolean advance() {
         if (peekedToken != null) {
-            Token token = peekedToken;
+            type = peekedToken.getType();
+            start = peekedToken.getStart();
+            end = peekedToken.getEnd();
             peekedToken = null;
-            return token;
+            return true;
         }
 
-        if (position >= input.length()) {
-            return null;
+        if (position >= length) {
+            return false;
         }
 
-        // Handle escaped dollar \
-        if (input.charAt(position) == '\\' && position + 1 < input.length() && input.charAt(position + 1) == '$') {
-            int start = position;
+        start = position;
+
+        // Handle escaped dollar \$
+        if (input.charAt(position) == '\\' && position + 1 < length && input.charAt(position + 1) == '$') {
             position += 2;
-            return new Token(Token.Type.TEXT, input.substring(start, position), start, position);
+            return token(Token.Type.TEXT);
         }
 
-        char current = input.charAt(position);
-
-        if (current == '$') {
+        if (input.charAt(position) == '$') {
             // Handle ${{ ... }}
-            if (match("${{")) {
-                int start = position - 3;
-                int end = input.indexOf("}}", position);
-                if (end == -1) {
+            if (startsWith("${{", position)) {
+                int close = indexOf("}}", position + 3);
+                if (close == -1) {
                     // Unclosed VARIABLE; consume entire rest of string
-                    position = input.length();
-                    return new Token(Token.Type.TEXT, input.substring(start), start, input.length());
+                    position = length;
+                    return token(Token.Type.TEXT);
                 }
-                end += 2;
-                String text = input.substring(start, end);
-                position = end;
-                return new Token(Token.Type.VARIABLE, text, start, end);
+                position = close + 2;
+                return token(Token.Type.VARIABLE);
             }
 
             // Handle ${...}
-            if (match("${")) {
-                int start = position - 2;
-                int end = input.indexOf('}', position);
-                if (end == -1) {
+            if (startsWith("${", position)) {
+                int close = indexOf("}", position + 2);
+                if (close == -1) {
                     // Unclosed variable; consume entire rest of string as TEXT
-                    position = input.length();
-                    return new Token(Token.Type.TEXT, input.substring(start), start, input.length());
+                    position = length;
+                    return token(Token.Type.TEXT);
                 }
-                end++;
-                String text = input.substring(start, end);
-                position = end;
-                return new Token(Token.Type.ENVIRONMENT_VARIABLE, text, start, end);
+                position = close + 1;
+                return token(Token.Type.ENVIRONMENT_VARIABLE);
             }
 
             // Handle $NAME
-            int start = position;
             position++; // skip $
-            while (position < input.length()
+            while (position < length
                     && (Character.isLetterOrDigit(input.charAt(position)) || input.charAt(position) == '_')) {
                 position++;
             }
-            String text = input.substring(start, position);
-            return new Token(Token.Type.ENVIRONMENT_VARIABLE, text, start, position);
+            return token(Token.Type.ENVIRONMENT_VARIABLE);
         }
 
         // Handle TEXT
-        int start = position;
-        while (position < input.length()) {
+        while (position < length) {
             if (input.charAt(position) == '$'
-                    || (input.charAt(position) == '\\'
-                            && position + 1 < input.length()
-                            && input.charAt(position + 1) == '$')) {
+                    || (input.charAt(position) == '\\' && position + 1 < length && input.charAt(position + 1) == '$')) {
                 break;
             }
             position++;
         }
-        return new Token(Token.Type.TEXT, input.substring(start, position), start, position);
+        return token(Token.Type.TEXT);
+    }
+
+    /**
+     * Returns the type of the current token.
+     *
+     * @return the type of the current token
+     */
+    public Token.Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the start index of the current token in the input.
+     *
+     * @return the start index of the current token
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end index of the current token in the input.
+     *
+     * @return the end index of the current token
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the input.
+     *
+     * @return the input
+     */
+    public CharSequence getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the next token from the input string or null if the end of the input is reached.
+     *
+     * @return the next token or null if the end of input is reached
+     */
+    public Token next() {
+        if (peekedToken != null) {
+            Token token = peekedToken;
+            peekedToken = null;
+            return token;
+        }
+
+        if (!advance()) {
+            return null;
+        }
+
+        return Token.of(type, input, start, end);
     }
 
     /**
@@ -129,17 +183,50 @@ public class Lexer {
     }
 
     /**
-     * Checks if the input starts with the given prefix at the current position and advances the position if it does.
+     * Sets the current token, ending at the current position.
+     *
+     * @param type the type of the token
+     * @return true
+     */
+    private boolean token(Token.Type type) {
+        this.type = type;
+        this.end = position;
+        return true;
+    }
+
+    /**
+     * Checks if the input starts with the given prefix at the given index.
      *
      * @param prefix the prefix to match
+     * @param index the index
      * @return true if the input starts with the prefix, false otherwise
      */
-    private boolean match(String prefix) {
-        if (input.startsWith(prefix, position)) {
-            position += prefix.length();
-            return true;
+    private boolean startsWith(String prefix, int index) {
+        if (index + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (input.charAt(index + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the string in the input, starting at the given index.
+     *
+     * @param string the string to find
+     * @param fromIndex the index to start from
+     * @return the index of the string, or -1 if not found
+     */
+    private int indexOf(String string, int fromIndex) {
+        for (int i = fromIndex; i <= length - string.length(); i++) {
+            if (startsWith(string, i)) {
+                return i;
+            }
         }
-        return false;
+        return -1;
     }
 
     /**
@@ -169,9 +256,10 @@ public class Lexer {
         }
 
         private final Type type;
-        private final String text;
+        private final CharSequence input;
         private final int start;
         private final int end;
+        private String text;
 
         /**
          * Constructor
@@ -192,7 +280,21 @@ public class Lexer {
          * @param end   the end index of the token in the input string
          */
         public Token(Type type, String text, int start, int end) {
+            this(type, null, text, start, end);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param type  the type of the token
+         * @param input the input, or null if the text is set
+         * @param text  the text of the token, or null to create it from the input when requested
+         * @param start the start index of the token in the input string
+         * @param end   the end index of the token in the input string
+         */
+        private Token(Type type, CharSequence input, String text, int start, int end) {
             this.type = type;
+            this.input = input;
             this.text = text;
             this.start = start;
             this.end = end;
@@ -213,6 +315,9 @@ public class Lexer {
          * @return the text of the token
          */
         public String getText() {
+            if (text == null) {
+                text = input.subSequence(start, end).toString();
+            }
             return text;
         }
 
@@ -246,7 +351,20 @@ public class Lexer {
         @Override
         public String toString() {
             return "Token { type=[" + type + "] start=[" + start + "] end=[" + end + "] length=[" + getLength()
-                    + "] text=[" + text + "] }";
+                    + "] text=[" + getText() + "] }";
+        }
+
+        /**
+         * Factory method to create a token whose text is created from the input when requested.
+         *
+         * @param type  the type of the token
+         * @param input the input
+         * @param start the start index of the token in the input
+         * @param end   the end index of the token in the input
+         * @return a new Token instance
+         */
+        static Token of(Type type, CharSequence input, int start, int end) {
+            return new Token(type, input, null, start, end);
         }
     }
 }
@@ -21,19 +21,146 @@ import java.util.List;
 
 /**
  * Parser class for processing input strings and extracting tokens.
+ * <p>
+ * Like the {@link Lexer}, the parser works on offsets into the input. {@link #advance()} moves to the next
+ * token without allocating, exposing the token's type, offsets, and value offsets, and {@link #next()} returns
+ * the token as an object, whose text and value are only created when requested.
  */
 public class Parser {
 
     private final Lexer lexer;
+    private final CharSequence input;
     private Parser.Token peekedToken;
+    private Token.Type type;
+    private int start;
+    private int end;
+    private int valueStart;
+    private int valueEnd;
 
     /**
      * Constructor
      *
      * @param input the input string to be parsed
      */
-    public Parser(String input) {
+    public Parser(CharSequence input) {
         this.lexer = new Lexer(input);
+        this.input = input;
+    }
+
+    /**
+     * Advances to the next token, without allocating a token object.
+     *
+     * @return true if there is a next token, false if the end of input is reached
+     */
+    public boolean advance() {
+        if (peekedToken != null) {
+            Token token = peekedToken;
+            peekedToken = null;
+            type = token.getType();
+            start = token.getStart();
+            end = token.getEnd();
+            valueStart = token.valueStart;
+            valueEnd = token.valueEnd;
+            return true;
+        }
+
+        if (!lexer.advance()) {
+            return false;
+        }
+
+        start = lexer.getStart();
+        end = lexer.getEnd();
+
+        switch (lexer.getType()) {
+            case VARIABLE: {
+                // ${{ name }}, where the name is trimmed
+                valueStart = start + 3;
+                valueEnd = end - 2;
+                if (isWhitespace(valueStart, valueEnd)) {
+                    type = Token.Type.TEXT;
+                } else {
+                    type = Token.Type.VARIABLE;
+                    while (valueStart < valueEnd && input.charAt(valueStart) <= ' ') {
+                        valueStart++;
+                    }
+                    while (valueEnd > valueStart && input.charAt(valueEnd - 1) <= ' ') {
+                        valueEnd--;
+                    }
+                }
+                break;
+            }
+            case ENVIRONMENT_VARIABLE: {
+                if (end - start > 1 && input.charAt(start + 1) == '{') {
+                    // ${NAME}
+                    valueStart = start + 2;
+                    valueEnd = end - 1;
+                    type = isWhitespace(valueStart, valueEnd) ? Token.Type.TEXT : Token.Type.ENVIRONMENT_VARIABLE;
+                } else {
+                    // $NAME
+                    valueStart = start + 1;
+                    valueEnd = end;
+                    type = Token.Type.ENVIRONMENT_VARIABLE;
+                }
+                break;
+            }
+            case TEXT:
+            default: {
+                type = Token.Type.TEXT;
+                break;
+            }
+        }
+
+        if (type == Token.Type.TEXT) {
+            valueStart = start;
+            valueEnd = end;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the type of the current token.
+     *
+     * @return the type of the current token
+     */
+    public Token.Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the start index of the current token in the input.
+     *
+     * @return the start index of the current token
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end index of the current token in the input.
+     *
+     * @return the end index of the current token
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the start index of the current token's value in the input.
+     *
+     * @return the start index of the current token's value
+     */
+    public int getValueStart() {
+        return valueStart;
+    }
+
+    /**
+     * Returns the end index of the current token's value in the input.
+     *
+     * @return the end index of the current token's value
+     */
+    public int getValueEnd() {
+        return valueEnd;
     }
 
     /**
@@ -84,39 +211,37 @@ public class Parser {
      * @return the next token or null if the end of input is reached
      */
     private Token readToken() {
-        Lexer.Token lexerToken = lexer.next();
-        if (lexerToken == null) {
+        if (!advance()) {
             return null;
         }
 
-        String text = lexerToken.getText();
-        Token.Type type;
+        return Token.of(type, input, start, end, valueStart, valueEnd);
+    }
 
-        switch (lexerToken.getType()) {
-            case VARIABLE: {
-                if (text.matches("\\$\\{\\{\\s*}}")) {
-                    type = Token.Type.TEXT;
-                } else {
-                    type = Token.Type.VARIABLE;
+    /**
+     * Checks if the input only contains whitespace between the given indexes.
+     *
+     * @param from the start index, inclusive
+     * @param to the end index, exclusive
+     * @return true if the input only contains whitespace, otherwise false
+     */
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            switch (input.charAt(i)) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\r': {
+                    break;
                 }
-                break;
-            }
-            case ENVIRONMENT_VARIABLE: {
-                if (text.matches("\\$\\{\\s*}")) {
-                    type = Token.Type.TEXT;
-                } else {
-                    type = Token.Type.ENVIRONMENT_VARIABLE;
+                default: {
+                    return false;
                 }
-                break;
-            }
-            case TEXT:
-            default: {
-                type = Token.Type.TEXT;
-                break;
             }
         }
-
-        return new Token(type, text, lexerToken.getStart(), lexerToken.getEnd());
+        return true;
     }
 
     /**
@@ -146,10 +271,13 @@ public class Parser {
         }
 
         private final Type type;
-        private final String text;
+        private final CharSequence input;
         private final int start;
         private final int end;
-        private final String value;
+        private final int valueStart;
+        private final int valueEnd;
+        private String text;
+        private String value;
 
         /**
          * Constructor
@@ -171,9 +299,12 @@ public class Parser {
          */
         public Token(Type type, String text, int start, int end) {
             this.type = type;
+            this.input = null;
             this.text = text;
             this.start = start;
             this.end = end;
+            this.valueStart = -1;
+            this.valueEnd = -1;
 
             switch (type) {
                 case VARIABLE: {
@@ -196,6 +327,25 @@ public class Parser {
             }
         }
 
+        /**
+         * Constructor
+         *
+         * @param type the type of the token
+         * @param input the input
+         * @param start the start index of the token in the input
+         * @param end the end index of the token in the input
+         * @param valueStart the start index of the token's value in the input
+         * @param valueEnd the end index of the token's value in the input
+         */
+        private Token(Type type, CharSequence input, int start, int end, int valueStart, int valueEnd) {
+            this.type = type;
+            this.input = input;
+            this.start = start;
+            this.end = end;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+
         /**
          * Returns the type of the token.
          *
@@ -211,6 +361,9 @@ public class Parser {
          * @return the text of the token
          */
         public String getText() {
+            if (text == null) {
+                text = input.subSequence(start, end).toString();
+            }
             return text;
         }
 
@@ -220,6 +373,9 @@ public class Parser {
          * @return the value of the token, which is the content of the variable or environment variable
          */
         public String getValue() {
+            if (value == null) {
+                value = input.subSequence(valueStart, valueEnd).toString();
+            }
             return value;
         }
 
@@ -252,8 +408,23 @@ public class Parser {
 
         @Override
         public String toString() {
-            return "Token { type=[" + type + "] text=[" + text + "] start=[" + start + "] end=[" + end + "] length=["
-                    + getLength() + "] value=[" + value + "] }";
+            return "Token { type=[" + type + "] text=[" + getText() + "] start=[" + start + "] end=[" + end
+                    + "] length=[" + getLength() + "] value=[" + getValue() + "] }";
+        }
+
+        /**
+         * Factory method to create a token whose text and value are created from the input when requested.
+         *
+         * @param type the type of the token
+         * @param input the input
+         * @param start the start index of the token in the input
+         * @param end the end index of the token in the input
+         * @param valueStart the start index of the token's value in the input
+         * @param valueEnd the end index of the token's value in the input
+         * @return a new Token instance
+         */
+        static Token of(Type type, CharSequence input, int start, int end, int valueStart, int valueEnd) {
+            return new Token(type, input, start, end, valueStart, valueEnd);
         }
     }
 }
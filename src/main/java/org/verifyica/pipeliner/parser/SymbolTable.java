@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.parser;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table interning variable and environment variable names as integer symbols.
+ * <p>
+ * Names referenced by a {@link Template} are interned when the template is compiled, so resolving the
+ * template looks up variables by symbol, without comparing names. Symbols are assigned in order from zero
+ * and are never reused, so a symbol is valid for the lifetime of the process.
+ * <p>
+ * Only names referenced by templates and instructions are interned. Names only set at runtime, such as
+ * the names of variables read from IPC files or of inherited environment variables, are looked up without
+ * being interned, so the table doesn't grow with the number of executions of a long-lived process.
+ */
+public final class SymbolTable {
+
+    /**
+     * The value returned when a name is not interned.
+     */
+    public static final int UNDEFINED = -1;
+
+    /**
+     * The symbols, by name.
+     */
+    private final ConcurrentHashMap<String, Integer> symbols;
+
+    /**
+     * The names, by symbol.
+     */
+    private volatile String[] names;
+
+    /**
+     * The number of symbols.
+     */
+    private volatile int size;
+
+    /**
+     * Constructor
+     */
+    private SymbolTable() {
+        this.symbols = new ConcurrentHashMap<>();
+        this.names = new String[64];
+    }
+
+    /**
+     * Interns a name, assigning a new symbol if the name is not interned.
+     *
+     * @param name the name
+     * @return the symbol of the name
+     */
+    public int intern(String name) {
+        Integer symbol = symbols.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+
+        synchronized (this) {
+            // Another thread may have interned the name
+            symbol = symbols.get(name);
+            if (symbol != null) {
+                return symbol;
+            }
+
+            if (size == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+
+            // Publish the name before the symbol, so a published symbol always has a name
+            names[size] = name;
+            symbol = size;
+            size = size + 1;
+            symbols.put(name, symbol);
+
+            return symbol;
+        }
+    }
+
+    /**
+     * Get the symbol of a name, without interning the name.
+     *
+     * @param name the name
+     * @return the symbol of the name, or {@link #UNDEFINED} if the name is not interned
+     */
+    public int lookup(Object name) {
+        if (!(name instanceof String)) {
+            return UNDEFINED;
+        }
+
+        Integer symbol = symbols.get(name);
+        return symbol != null ? symbol : UNDEFINED;
+    }
+
+    /**
+     * Get the name of a symbol.
+     *
+     * @param symbol the symbol
+     * @return the name of the symbol
+     */
+    public String getName(int symbol) {
+        return names[symbol];
+    }
+
+    /**
+     * Get the number of symbols.
+     *
+     * @return the number of symbols
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the singleton instance of SymbolTable.
+     *
+     * @return the singleton instance
+     */
+    public static SymbolTable getInstance() {
+        return SingletonHolder.SINGLETON;
+    }
+
+    /**
+     * Class to hold the singleton instance
+     */
+    private static final class SingletonHolder {
+
+        /** The singleton instance */
+        private static final SymbolTable SINGLETON = new SymbolTable();
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.parser;
+
+/**
+ * Template class representing an input string compiled into literal text, variable, and environment
+ * variable segments.
+ * <p>
+ * A template is compiled once, when the instructions are generated, so resolving the template doesn't
+ * tokenize the input string again. Segments are stored as offsets into the input string, so text segments
+ * are appended from the input string without creating substrings. Variable and environment variable names are
+ * interned in the {@link SymbolTable}, so they are looked up by symbol.
+ */
+public final class Template {
+
+    /**
+     * The input string.
+     */
+    private final String input;
+
+    /**
+     * The type of each segment.
+     */
+    private final Parser.Token.Type[] types;
+
+    /**
+     * The start index of each segment in the input string.
+     */
+    private final int[] starts;
+
+    /**
+     * The end index of each segment in the input string.
+     */
+    private final int[] ends;
+
+    /**
+     * The value of each segment, which is the name of a variable or environment variable,
+     * or null for a text segment.
+     */
+    private final String[] values;
+
+    /**
+     * The symbol of each segment, which is the interned value of a variable or environment variable,
+     * or {@link SymbolTable#UNDEFINED} for a text segment.
+     */
+    private final int[] symbols;
+
+    /**
+     * Flag to indicate whether the template has variable segments.
+     */
+    private final boolean hasVariables;
+
+    /**
+     * Flag to indicate whether the template has environment variable segments.
+     */
+    private final boolean hasEnvironmentVariables;
+
+    /**
+     * Constructor
+     *
+     * @param input the input string
+     * @param types the type of each segment
+     * @param starts the start index of each segment
+     * @param ends the end index of each segment
+     * @param values the value of each segment
+     * @param symbols the symbol of each segment
+     */
+    private Template(
+            String input, Parser.Token.Type[] types, int[] starts, int[] ends, String[] values, int[] symbols) {
+        this.input = input;
+        this.types = types;
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+        this.symbols = symbols;
+
+        boolean hasVariables = false;
+        boolean hasEnvironmentVariables = false;
+
+        for (Parser.Token.Type type : types) {
+            hasVariables |= type == Parser.Token.Type.VARIABLE;
+            hasEnvironmentVariables |= type == Parser.Token.Type.ENVIRONMENT_VARIABLE;
+        }
+
+        this.hasVariables = hasVariables;
+        this.hasEnvironmentVariables = hasEnvironmentVariables;
+    }
+
+    /**
+     * Returns the input string.
+     *
+     * @return the input string
+     */
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the number of segments.
+     *
+     * @return the number of segments
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the type of a segment.
+     *
+     * @param index the index of the segment
+     * @return the type of the segment
+     */
+    public Parser.Token.Type getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the text of a segment.
+     *
+     * @param index the index of the segment
+     * @return the text of the segment
+     */
+    public String getText(int index) {
+        return input.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Appends the text of a segment, without creating a substring.
+     *
+     * @param index the index of the segment
+     * @param stringBuilder the builder to append to
+     */
+    public void appendText(int index, StringBuilder stringBuilder) {
+        stringBuilder.append(input, starts[index], ends[index]);
+    }
+
+    /**
+     * Returns the start index of a segment in the input string.
+     *
+     * @param index the index of the segment
+     * @return the start index of the segment
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the end index of a segment in the input string.
+     *
+     * @param index the index of the segment
+     * @return the end index of the segment
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the value of a segment, which is the name of a variable or environment variable.
+     *
+     * @param index the index of the segment
+     * @return the value of the segment, or the text of a text segment
+     */
+    public String getValue(int index) {
+        return values[index] != null ? values[index] : getText(index);
+    }
+
+    /**
+     * Returns the symbol of a segment, which is the interned name of a variable or environment variable.
+     *
+     * @param index the index of the segment
+     * @return the symbol of the segment, or {@link SymbolTable#UNDEFINED} for a text segment
+     */
+    public int getSymbol(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * Returns true if the template has variable segments.
+     *
+     * @return true if the template has variable segments, otherwise false
+     */
+    public boolean hasVariables() {
+        return hasVariables;
+    }
+
+    /**
+     * Returns true if the template has environment variable segments.
+     *
+     * @return true if the template has environment variable segments, otherwise false
+     */
+    public boolean hasEnvironmentVariables() {
+        return hasEnvironmentVariables;
+    }
+
+    @Override
+    public String toString() {
+        return input;
+    }
+
+    /**
+     * Compiles an input string into a template.
+     *
+     * @param input the input string
+     * @return the template
+     */
+    public static Template compile(String input) {
+        // Count the segments, so the arrays are allocated once
+        int size = 0;
+        Parser parser = new Parser(input);
+        while (parser.advance()) {
+            size++;
+        }
+
+        Parser.Token.Type[] types = new Parser.Token.Type[size];
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        String[] values = new String[size];
+        int[] symbols = new int[size];
+
+        SymbolTable symbolTable = SymbolTable.getInstance();
+
+        parser = new Parser(input);
+        for (int i = 0; parser.advance(); i++) {
+            Parser.Token.Type type = parser.getType();
+
+            types[i] = type;
+            starts[i] = parser.getStart();
+            ends[i] = parser.getEnd();
+
+            if (type != Parser.Token.Type.TEXT) {
+                values[i] = input.substring(parser.getValueStart(), parser.getValueEnd());
+                symbols[i] = symbolTable.intern(values[i]);
+            } else {
+                symbols[i] = SymbolTable.UNDEFINED;
+            }
+        }
+
+        return new Template(input, types, starts, ends, values, symbols);
+    }
+
+    /**
+     * Creates a template for a literal string, which is a single text segment, so references in the
+     * string are not resolved.
+     *
+     * @param input the literal string
+     * @return the template
+     */
+    public static Template literal(String input) {
+        int size = input.isEmpty() ? 0 : 1;
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        int[] symbols = new int[size];
+        Parser.Token.Type[] types = new Parser.Token.Type[size];
+
+        if (size == 1) {
+            types[0] = Parser.Token.Type.TEXT;
+            ends[0] = input.length();
+            symbols[0] = SymbolTable.UNDEFINED;
+        }
+
+        return new Template(input, types, starts, ends, new String[size], symbols);
+    }
+}
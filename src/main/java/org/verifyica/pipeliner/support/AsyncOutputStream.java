@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class to implement AsyncOutputStream
+ * <p>
+ * Each write is copied into a record, which is queued in a bounded lock-free ring. A dedicated writer thread
+ * drains the ring, and writes the queued records to the underlying output stream in batches, so a slow
+ * underlying output stream, such as a pipe to a log collector, doesn't stall the threads writing. When the
+ * ring is full, a write either waits for space, or drops the record and counts it, depending on the
+ * {@link Backpressure}. The number of dropped records is reported in the output.
+ * <p>
+ * Flushing doesn't wait for the writer thread. {@link #close()} waits until all queued records are written.
+ * A write after the output stream is closed, or queued while it is closed, waits for the writer thread to stop,
+ * then writes any records still queued before its own bytes, so no record is lost or reordered.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    /** The default capacity of the ring, in records */
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    /** The size of a batch written to the underlying output stream */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    /** The time the writer thread waits for a record before checking again */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** The time a blocked write waits for space before checking again */
+    private static final long BLOCKED_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** The time to wait for the writer thread to write the queued records when closed */
+    private static final long CLOSE_TIMEOUT_MILLISECONDS = 10000;
+
+    /** Enum of the backpressure policies when the ring is full */
+    public enum Backpressure {
+
+        /** Wait for space in the ring */
+        BLOCK,
+
+        /** Drop the record, and count it */
+        DROP;
+
+        /**
+         * Method to get the backpressure policy for a value
+         *
+         * @param value the value (e.g. "block", "drop", "true")
+         * @return the backpressure policy, or null if the value doesn't enable asynchronous writes
+         */
+        public static Backpressure of(String value) {
+            if (value == null) {
+                return null;
+            }
+
+            String trimmedValue = value.trim();
+
+            if ("block".equalsIgnoreCase(trimmedValue)
+                    || "true".equalsIgnoreCase(trimmedValue)
+                    || "1".equals(trimmedValue)) {
+                return BLOCK;
+            } else if ("drop".equalsIgnoreCase(trimmedValue)) {
+                return DROP;
+            }
+
+            return null;
+        }
+    }
+
+    /** The underlying output stream */
+    private final OutputStream outputStream;
+
+    /** The backpressure policy when the ring is full */
+    private final Backpressure backpressure;
+
+    /** The mask of a position to get the index of its slot */
+    private final int mask;
+
+    /** The records of the ring */
+    private final AtomicReferenceArray<byte[]> records;
+
+    /** The sequence of each slot, as in Dmitry Vyukov's bounded queue */
+    private final AtomicLongArray sequences;
+
+    /** The position of the next record to queue */
+    private final AtomicLong tail;
+
+    /** The position of the next record to write, only used by the writer thread until it stops */
+    private long head;
+
+    /** The number of dropped records not reported yet */
+    private final AtomicLong dropped;
+
+    /** The total number of dropped records */
+    private final AtomicLong totalDropped;
+
+    /** The writer thread */
+    private final Thread writerThread;
+
+    /** Flag to indicate whether the writer thread is waiting for a record */
+    private volatile boolean waiting;
+
+    /** Flag to indicate whether the output stream is closed */
+    private volatile boolean closed;
+
+    /**
+     * Constructor
+     *
+     * @param outputStream the underlying output stream
+     * @param capacity the capacity of the ring, in records, rounded up to a power of two
+     * @param backpressure the backpressure policy when the ring is full
+     */
+    public AsyncOutputStream(OutputStream outputStream, int capacity, Backpressure backpressure) {
+        Precondition.notNull(outputStream, "outputStream is null");
+        Precondition.notNull(backpressure, "backpressure is null");
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+        this.outputStream = outputStream;
+        this.backpressure = backpressure;
+        this.mask = size - 1;
+        this.records = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.totalDropped = new AtomicLong();
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        this.writerThread = new Thread(this::drain, "pipeliner-async-console");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+
+        // If closed, the writer thread is stopping, so write directly
+        if (closed) {
+            writeDirectly(bytes, offset, length);
+            return;
+        }
+
+        byte[] record = Arrays.copyOfRange(bytes, offset, offset + length);
+
+        while (!offer(record)) {
+            // If closed while waiting, the writer thread is stopping, so write directly
+            if (closed) {
+                writeDirectly(record, 0, record.length);
+                return;
+            }
+
+            if (backpressure == Backpressure.DROP) {
+                dropped.incrementAndGet();
+                totalDropped.incrementAndGet();
+                return;
+            }
+
+            // Wait for the writer thread to make space
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, BLOCKED_NANOS);
+        }
+
+        // If closed while queuing, the writer thread may have stopped before the record was queued
+        if (closed) {
+            writeDirectly(null, 0, 0);
+            return;
+        }
+
+        // Wake the writer thread if it is waiting for a record
+        if (waiting) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Doesn't wait for the queued records to be written, so flushing after each write doesn't stall
+     * the thread writing.
+     */
+    @Override
+    public void flush() {
+        // INTENTIONALLY BLANK
+    }
+
+    /**
+     * Writes all queued records to the underlying output stream, and stops the writer thread.
+     * The underlying output stream is flushed, but not closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        LockSupport.unpark(writerThread);
+
+        try {
+            // Write any records queued after the writer thread stopped
+            writeDirectly(null, 0, 0);
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+    }
+
+    /**
+     * Method to get the total number of dropped records
+     *
+     * @return the total number of dropped records
+     */
+    public long getDropped() {
+        return totalDropped.get();
+    }
+
+    /**
+     * Writes bytes directly to the underlying output stream, once closed. Waits for the writer thread
+     * to stop, then writes any records still queued, so the bytes are written after them.
+     *
+     * @param bytes the bytes, or null to only write the queued records
+     * @param offset the offset of the bytes
+     * @param length the number of bytes
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeDirectly(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (outputStream) {
+            // The ring has a single consumer, so it is only drained once the writer thread has stopped
+            if (!writerThread.isAlive()) {
+                byte[] record;
+                while ((record = poll()) != null) {
+                    outputStream.write(record);
+                }
+            }
+
+            if (length > 0) {
+                outputStream.write(bytes, offset, length);
+            }
+
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Queues a record.
+     *
+     * @param record the record
+     * @return true if the record was queued, false if the ring is full
+     */
+    private boolean offer(byte[] record) {
+        long position;
+        int index;
+
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                // The slot is free, so claim it
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // The slot still holds a record that is not written
+                return false;
+            }
+        }
+
+        records.set(index, record);
+
+        // Publish the record
+        sequences.set(index, position + 1);
+
+        return true;
+    }
+
+    /**
+     * Removes the next record.
+     *
+     * @return the next record, or null if the ring is empty
+     */
+    private byte[] poll() {
+        int index = (int) (head & mask);
+
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        byte[] record = records.get(index);
+        records.set(index, null);
+
+        // Release the slot
+        sequences.set(index, head + mask + 1);
+        head++;
+
+        return record;
+    }
+
+    /**
+     * Writes the queued records in batches, until closed and the ring is empty.
+     */
+    private void drain() {
+        byte[] batch = new byte[BATCH_SIZE];
+        int count = 0;
+
+        while (true) {
+            byte[] record = poll();
+
+            if (record == null) {
+                // Write the batch when no more records are immediately available
+                if (count > 0) {
+                    write(batch, count);
+                    count = 0;
+                    continue;
+                }
+
+                if (closed && isEmpty()) {
+                    break;
+                }
+
+                // Wait for a record
+                waiting = true;
+                if (isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+                waiting = false;
+
+                continue;
+            }
+
+            // If the record doesn't fit in the batch, write the batch first
+            if (count + record.length > batch.length) {
+                write(batch, count);
+                count = 0;
+            }
+
+            if (record.length > batch.length) {
+                write(record, record.length);
+            } else {
+                System.arraycopy(record, 0, batch, count, record.length);
+                count += record.length;
+            }
+        }
+
+        write(batch, count);
+    }
+
+    /**
+     * Returns true if the ring is empty.
+     *
+     * @return true if the ring is empty, otherwise false
+     */
+    private boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Writes bytes, and any dropped record count, to the underlying output stream.
+     *
+     * @param bytes the bytes
+     * @param length the number of bytes
+     */
+    private void write(byte[] bytes, int length) {
+        try {
+            synchronized (outputStream) {
+                if (length > 0) {
+                    outputStream.write(bytes, 0, length);
+                }
+
+                long droppedRecords = dropped.getAndSet(0);
+                if (droppedRecords > 0) {
+                    outputStream.write(String.format("@warning console dropped [%d] record(s)%n", droppedRecords)
+                            .getBytes(StandardCharsets.UTF_8));
+                }
+
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+    }
+}
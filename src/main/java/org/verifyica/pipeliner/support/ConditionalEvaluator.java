@@ -18,13 +18,24 @@ package org.verifyica.pipeliner.support;
 
 import static java.lang.String.format;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.jexl3.*;
 import org.apache.commons.jexl3.introspection.JexlSandbox;
 import org.verifyica.pipeliner.model.SyntaxException;
 
-/** Class to implement ConditionalEvaluator */
+/**
+ * Class to implement ConditionalEvaluator
+ * <p>
+ * Compiled expressions are kept in a bounded LRU cache keyed by the expression text, so an expression
+ * evaluated repeatedly, for example in a matrix, is only parsed once.
+ */
 public class ConditionalEvaluator {
 
+    /** The maximum number of compiled expressions to cache */
+    public static final int CACHE_CAPACITY = 256;
+
     private static final JexlEngine JEXL;
 
     static {
@@ -43,9 +54,25 @@ public class ConditionalEvaluator {
                 .create();
     }
 
+    /** The compiled expressions, least recently used first */
+    private final Map<String, JexlExpression> cache;
+
+    /** The number of cache hits */
+    private final AtomicLong cacheHits;
+
+    /** The number of cache misses */
+    private final AtomicLong cacheMisses;
+
     /** Constructor */
     private ConditionalEvaluator() {
-        // INTENTIONALLY BLANK
+        this.cache = new LinkedHashMap<String, JexlExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JexlExpression> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        };
+        this.cacheHits = new AtomicLong();
+        this.cacheMisses = new AtomicLong();
     }
 
     /**
@@ -56,9 +83,21 @@ public class ConditionalEvaluator {
      * @throws SyntaxException if the expression is invalid
      */
     public boolean evaluate(String expression) throws SyntaxException {
+        return evaluate(expression, null);
+    }
+
+    /**
+     * Evaluates a boolean expression composed of string literals and variables bound to string values.
+     *
+     * @param expression the expression to evaluate (e.g., "foo == \"bar\"")
+     * @param variables the variables referenced by the expression, or null
+     * @return true if the expression evaluates to true; false otherwise
+     * @throws SyntaxException if the expression is invalid
+     */
+    public boolean evaluate(String expression, Map<String, Object> variables) throws SyntaxException {
         try {
-            JexlExpression expr = JEXL.createExpression(expression);
-            Object result = expr.evaluate(null);
+            JexlExpression expr = getExpression(expression);
+            Object result = expr.evaluate(variables != null ? new MapContext(variables) : null);
 
             if (result instanceof Boolean) {
                 return (Boolean) result;
@@ -70,6 +109,51 @@ public class ConditionalEvaluator {
         }
     }
 
+    /**
+     * Get the number of evaluations that used a cached compiled expression.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Get the number of evaluations that compiled the expression.
+     *
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Get the compiled expression, compiling and caching the expression if not cached.
+     *
+     * @param expression the expression
+     * @return the compiled expression
+     */
+    private JexlExpression getExpression(String expression) {
+        synchronized (cache) {
+            JexlExpression expr = cache.get(expression);
+            if (expr != null) {
+                cacheHits.incrementAndGet();
+                return expr;
+            }
+        }
+
+        cacheMisses.incrementAndGet();
+
+        // Compile outside the lock, so a slow compilation doesn't block other evaluations
+        JexlExpression expr = JEXL.createExpression(expression);
+
+        synchronized (cache) {
+            cache.put(expression, expr);
+        }
+
+        return expr;
+    }
+
     /**
      * Method to get the singleton instance of ConditionalEvaluator.
      *
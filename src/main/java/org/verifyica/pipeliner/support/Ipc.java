@@ -16,12 +16,13 @@
 
 package org.verifyica.pipeliner.support;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.attribute.PosixFilePermission;
@@ -50,6 +51,8 @@ public class Ipc {
 
     private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
 
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
     private static final List<String> EMPTY_LIST = new ArrayList<>();
 
     private static final Set<PosixFilePermission> PERMISSIONS = PosixFilePermissions.fromString("rw-------");
@@ -142,6 +145,9 @@ public class Ipc {
 
     /**
      * Write the properties
+     * <p>
+     * A value that is a {@link SpillFile} reference is encoded from the spill file as it is written,
+     * so the value is not read into memory.
      *
      * @param ipcFile the IPC file
      * @param variables the variables
@@ -150,26 +156,40 @@ public class Ipc {
     public static void write(File ipcFile, Map<String, String> variables) throws IpcException {
         LOGGER.trace("write IPC file [%s]", ipcFile);
 
-        // Create the IPC file writer
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(Files.newOutputStream(ipcFile.toPath()), StandardCharsets.UTF_8),
-                BUFFER_SIZE_BYTES)) {
+        // Create the IPC file output stream
+        try (OutputStream outputStream =
+                new BufferedOutputStream(Files.newOutputStream(ipcFile.toPath()), BUFFER_SIZE_BYTES)) {
 
             // Write the variables
             for (Map.Entry<String, String> entry : variables.entrySet()) {
                 // Base64 encode the name
-                String name = BASE64_ENCODER.encodeToString(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                outputStream.write(BASE64_ENCODER.encode(entry.getKey().getBytes(StandardCharsets.UTF_8)));
 
-                // Base64 encode the value
-                String value = entry.getValue() != null
-                        ? BASE64_ENCODER.encodeToString(entry.getValue().getBytes(StandardCharsets.UTF_8))
-                        : EMPTY_STRING;
+                // Write the separator
+                outputStream.write(' ');
 
-                // Write the name and value
-                writer.write(name + " " + value);
+                // Base64 encode the value
+                if (SpillFile.isReference(entry.getValue())) {
+                    // Stream the spilled value, without closing the IPC file output stream
+                    OutputStream encodingOutputStream = BASE64_ENCODER.wrap(new FilterOutputStream(outputStream) {
+                        @Override
+                        public void write(byte[] bytes, int offset, int length) throws IOException {
+                            out.write(bytes, offset, length);
+                        }
+
+                        @Override
+                        public void close() {
+                            // INTENTIONALLY BLANK
+                        }
+                    });
+                    SpillFile.copy(entry.getValue(), encodingOutputStream);
+                    encodingOutputStream.close();
+                } else if (entry.getValue() != null) {
+                    outputStream.write(BASE64_ENCODER.encode(entry.getValue().getBytes(StandardCharsets.UTF_8)));
+                }
 
                 // Write a new line
-                writer.newLine();
+                outputStream.write(LINE_SEPARATOR);
             }
         } catch (IOException e) {
             throw new IpcException("failed to write IPC file", e);
@@ -183,7 +203,7 @@ public class Ipc {
      */
     public static void delete(File ipcFile) {
         if (ipcFile != null) {
-            ipcFile.delete();
+            ShutdownHooks.delete(ipcFile.toPath());
         }
     }
 
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.support;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Class to mask secret values in lines of output.
+ * <p>
+ * The secrets are compiled into an Aho-Corasick automaton over bytes, so a line is masked in a single pass,
+ * regardless of the number of secrets. The automaton is a deterministic transition table, where the bytes
+ * that don't occur in any secret share a single column, so each byte of a line costs one table lookup.
+ * <p>
+ * Each line of a secret is masked separately, since output is masked line by line. Overlapping and
+ * adjacent secrets are masked as a single mask. A masker is immutable, so it can be shared between threads.
+ */
+public final class SecretMasker {
+
+    /**
+     * The mask printed in place of a secret.
+     */
+    public static final String MASK = "*****";
+
+    /**
+     * The masker without secrets.
+     */
+    private static final SecretMasker EMPTY =
+            new SecretMasker(Charset.defaultCharset(), new int[256], 1, new int[1], new int[1]);
+
+    /**
+     * The charset used to encode the secrets.
+     */
+    private final Charset charset;
+
+    /**
+     * The column of each byte value in the transition table.
+     */
+    private final int[] columns;
+
+    /**
+     * The number of columns of the transition table.
+     */
+    private final int width;
+
+    /**
+     * The transition table, indexed by state times the width plus the column of the next byte.
+     */
+    private final int[] transitions;
+
+    /**
+     * The length of the longest secret ending in each state, or 0 if no secret ends in the state.
+     */
+    private final int[] lengths;
+
+    /**
+     * The bytes of the mask.
+     */
+    private final byte[] maskBytes;
+
+    /**
+     * Constructor
+     *
+     * @param charset the charset used to encode the secrets
+     * @param columns the column of each byte value in the transition table
+     * @param width the number of columns of the transition table
+     * @param transitions the transition table
+     * @param lengths the length of the longest secret ending in each state
+     */
+    private SecretMasker(Charset charset, int[] columns, int width, int[] transitions, int[] lengths) {
+        this.charset = charset;
+        this.columns = columns;
+        this.width = width;
+        this.transitions = transitions;
+        this.lengths = lengths;
+        this.maskBytes = MASK.getBytes(charset);
+    }
+
+    /**
+     * Method to return if the masker has no secrets
+     *
+     * @return true if the masker has no secrets, false otherwise
+     */
+    public boolean isEmpty() {
+        return transitions.length == 1;
+    }
+
+    /**
+     * Masks the secrets in a line.
+     *
+     * @param bytes the buffer containing the line
+     * @param offset the offset of the line
+     * @param length the length of the line
+     * @return the masked line, or null if the line doesn't contain a secret
+     */
+    public byte[] mask(byte[] bytes, int offset, int length) {
+        // The ranges to mask, as pairs of start (inclusive) and end (exclusive) indexes, or null if none
+        int[] ranges = null;
+        int count = 0;
+
+        int state = 0;
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            state = transitions[state * width + columns[bytes[i] & 0xFF]];
+
+            int secretLength = lengths[state];
+
+            if (secretLength > 0) {
+                int rangeStart = i + 1 - secretLength;
+                int rangeEnd = i + 1;
+
+                // Merge the ranges the secret overlaps or adjoins, which end before the secret ends
+                while (count > 0 && ranges[count - 1] >= rangeStart) {
+                    rangeStart = Math.min(rangeStart, ranges[count - 2]);
+                    count -= 2;
+                }
+
+                if (ranges == null) {
+                    ranges = new int[8];
+                } else if (count == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, count * 2);
+                }
+
+                ranges[count++] = rangeStart;
+                ranges[count++] = rangeEnd;
+            }
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        // Copy the line, replacing each range with the mask
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length);
+        int position = offset;
+
+        for (int i = 0; i < count; i += 2) {
+            byteArrayOutputStream.write(bytes, position, ranges[i] - position);
+            byteArrayOutputStream.write(maskBytes, 0, maskBytes.length);
+            position = ranges[i + 1];
+        }
+
+        byteArrayOutputStream.write(bytes, position, end - position);
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Masks the secrets in a string.
+     *
+     * @param string the string
+     * @return the masked string, or the string if it doesn't contain a secret
+     */
+    public String mask(String string) {
+        if (isEmpty()) {
+            return string;
+        }
+
+        byte[] bytes = string.getBytes(charset);
+        byte[] maskedBytes = mask(bytes, 0, bytes.length);
+
+        return maskedBytes != null ? new String(maskedBytes, charset) : string;
+    }
+
+    /**
+     * Factory method to create a new instance of SecretMasker.
+     *
+     * @param secrets the secrets, where empty secrets are ignored
+     * @param charset the charset used to encode the secrets
+     * @return a new SecretMasker instance
+     */
+    public static SecretMasker of(Collection<String> secrets, Charset charset) {
+        // Split the secrets into lines, removing duplicates
+        Set<String> lines = new LinkedHashSet<>();
+
+        for (String secret : secrets) {
+            for (String line : secret.split("\r\n|\r|\n")) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        if (lines.isEmpty()) {
+            return EMPTY;
+        }
+
+        // Encode the secrets, assigning a column to each byte value used by a secret
+        byte[][] patterns = new byte[lines.size()][];
+        int[] columns = new int[256];
+        int width = 1;
+        int maximumStates = 1;
+        int index = 0;
+
+        for (String line : lines) {
+            byte[] pattern = line.getBytes(charset);
+
+            for (byte b : pattern) {
+                if (columns[b & 0xFF] == 0) {
+                    columns[b & 0xFF] = width++;
+                }
+            }
+
+            patterns[index++] = pattern;
+            maximumStates += pattern.length;
+        }
+
+        // Build the trie of the secrets, where -1 is a missing transition
+        int[] transitions = new int[maximumStates * width];
+        int[] lengths = new int[maximumStates];
+        int states = 1;
+
+        Arrays.fill(transitions, -1);
+
+        for (byte[] pattern : patterns) {
+            int state = 0;
+
+            for (byte b : pattern) {
+                int slot = state * width + columns[b & 0xFF];
+
+                if (transitions[slot] == -1) {
+                    transitions[slot] = states++;
+                }
+
+                state = transitions[slot];
+            }
+
+            lengths[state] = pattern.length;
+        }
+
+        // Complete the transitions breadth first, following the failure link of each state
+        int[] failures = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        for (int column = 0; column < width; column++) {
+            int child = transitions[column];
+
+            if (child == -1) {
+                transitions[column] = 0;
+            } else {
+                failures[child] = 0;
+                queue.add(child);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            int failure = failures[state];
+
+            // A secret ending in the state's failure also ends in the state
+            lengths[state] = Math.max(lengths[state], lengths[failure]);
+
+            for (int column = 0; column < width; column++) {
+                int slot = state * width + column;
+                int child = transitions[slot];
+
+                if (child == -1) {
+                    transitions[slot] = transitions[failure * width + column];
+                } else {
+                    failures[child] = transitions[failure * width + column];
+                    queue.add(child);
+                }
+            }
+        }
+
+        return new SecretMasker(
+                charset, columns, width, Arrays.copyOf(transitions, states * width), Arrays.copyOf(lengths, states));
+    }
+}
@@ -22,6 +22,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.verifyica.pipeliner.Constants;
 import org.verifyica.pipeliner.logger.Logger;
 import org.verifyica.pipeliner.logger.LoggerFactory;
@@ -34,6 +36,8 @@ public class ShutdownHooks {
 
     private static final boolean enabled;
 
+    private static final Set<Path> DELETE_ON_EXIT_PATHS = ConcurrentHashMap.newKeySet();
+
     static {
         String value = System.getenv(Constants.PIPELINER_SHUTDOWN_HOOKS_ENABLED);
 
@@ -42,6 +46,19 @@ public class ShutdownHooks {
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("shutdown hooks enabled [%b]", enabled);
         }
+
+        // A single shutdown hook deletes the paths that were not deleted
+        if (enabled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                for (Path path : DELETE_ON_EXIT_PATHS) {
+                    try {
+                        deleteRecursively(path);
+                    } catch (IOException e) {
+                        // INTENTIONALLY BLANK
+                    }
+                }
+            }));
+        }
     }
 
     /**
@@ -61,19 +78,40 @@ public class ShutdownHooks {
     }
 
     /**
-     * Method to register a shutdown hook to delete a path and all sub paths
+     * Method to delete a path and all sub paths on exit, unless the path is deleted before with
+     * {@link #delete(Path)}
      *
      * @param path the path
      */
     public static void deleteOnExit(Path path) {
         if (enabled) {
-            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                try {
-                    deleteRecursively(path);
-                } catch (IOException e) {
-                    // INTENTIONALLY BLANK
-                }
-            }));
+            DELETE_ON_EXIT_PATHS.add(path);
+        }
+    }
+
+    /**
+     * Method to delete a file registered to be deleted on exit, and unregister it
+     *
+     * @param path the path
+     */
+    public static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // INTENTIONALLY BLANK
+        }
+
+        DELETE_ON_EXIT_PATHS.remove(path);
+    }
+
+    /**
+     * Method to register a shutdown hook to run a task
+     *
+     * @param runnable the task
+     */
+    public static void runOnExit(Runnable runnable) {
+        if (enabled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(runnable));
         }
     }
 
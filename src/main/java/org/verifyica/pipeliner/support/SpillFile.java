@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.support;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to implement SpillFile
+ * <p>
+ * A large variable value is spilled to a file, and the variable is set to a reference to the file,
+ * so the value is not held in memory. The reference is resolved to the value when the variable is resolved,
+ * and the value is copied from the file when the variables are written to an IPC file. Spill files are never
+ * modified after they are written, so a reference can be shared by forked contexts.
+ * <p>
+ * A reference is an opaque, random handle that is mapped to the file in memory, so a value written by a command,
+ * passed on the command line, or captured from output can't refer to a file, even if it has the reference prefix.
+ */
+public class SpillFile {
+
+    /**
+     * The default threshold, in characters, above which a value is spilled to a file.
+     */
+    public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The maximum size, in bytes, of a spilled value that is read into memory when the variable is resolved.
+     * A larger value can only be read by commands from the IPC file.
+     */
+    public static final long MAXIMUM_RESOLVED_SIZE = 16 * 1024 * 1024;
+
+    private static final String REFERENCE_PREFIX = "\u0000pipeliner-spill-file:";
+
+    private static final String FILE_PREFIX = "pipeliner-spill-";
+
+    private static final String FILE_SUFFIX = "";
+
+    private static final int BUFFER_SIZE_BYTES = 16384;
+
+    private static final Set<PosixFilePermission> PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private static final Map<String, File> FILES = new ConcurrentHashMap<>();
+
+    private static final Map<File, String> REFERENCES = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     */
+    private SpillFile() {
+        // INTENTIONALLY BLANK
+    }
+
+    /**
+     * Method to create a new spill file
+     *
+     * @param directory the directory, or null to use the system's temporary directory
+     * @return a new spill file
+     * @throws IOException If an error occurs
+     */
+    public static File createFile(File directory) throws IOException {
+        // Create a temporary file
+        File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+
+        // Set the file permissions
+        Files.setPosixFilePermissions(file.toPath(), PERMISSIONS);
+
+        // Add the file to the shutdown hook for cleanup
+        ShutdownHooks.deleteOnExit(file.toPath());
+
+        // Return the file
+        return file;
+    }
+
+    /**
+     * Method to get the reference to a spill file, creating a new random handle for the file if it has none
+     *
+     * @param file the spill file
+     * @return the reference
+     */
+    public static String reference(File file) {
+        return REFERENCES.computeIfAbsent(file.getAbsoluteFile(), absoluteFile -> {
+            String reference = REFERENCE_PREFIX + UUID.randomUUID();
+            FILES.put(reference, absoluteFile);
+            return reference;
+        });
+    }
+
+    /**
+     * Method to check if a value is a reference to a spill file
+     *
+     * @param value the value
+     * @return true if the value is a reference returned by {@link #reference(File)} for a file that is not
+     *     deleted, otherwise false
+     */
+    public static boolean isReference(String value) {
+        return value != null && value.startsWith(REFERENCE_PREFIX) && FILES.containsKey(value);
+    }
+
+    /**
+     * Method to get the spill file of a reference
+     *
+     * @param reference the reference
+     * @return the spill file
+     * @throws IllegalArgumentException If the value is not a reference to a spill file
+     */
+    public static File getFile(String reference) {
+        File file = reference != null ? FILES.get(reference) : null;
+
+        if (file == null) {
+            throw new IllegalArgumentException("not a spill file reference");
+        }
+
+        return file;
+    }
+
+    /**
+     * Method to delete a spill file, invalidating its reference
+     *
+     * @param file the spill file
+     */
+    public static void delete(File file) {
+        String reference = REFERENCES.remove(file.getAbsoluteFile());
+
+        if (reference != null) {
+            FILES.remove(reference);
+        }
+
+        ShutdownHooks.delete(file.toPath());
+    }
+
+    /**
+     * Method to get the size of the spill file of a reference
+     *
+     * @param reference the reference
+     * @return the size of the spill file, in bytes
+     */
+    public static long size(String reference) {
+        return getFile(reference).length();
+    }
+
+    /**
+     * Method to resolve a value, reading the spill file if the value is a reference
+     *
+     * @param value the value
+     * @return the value, or the content of the spill file if the value is a reference
+     * @throws UncheckedIOException If an error occurs reading the spill file
+     */
+    public static String resolve(String value) {
+        if (!isReference(value)) {
+            return value;
+        }
+
+        try {
+            return new String(Files.readAllBytes(getFile(value).toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read spill file [" + getFile(value) + "]", e);
+        }
+    }
+
+    /**
+     * Method to copy the value as UTF-8 bytes, streaming the spill file if the value is a reference
+     *
+     * @param value the value
+     * @param outputStream the output stream
+     * @throws IOException If an error occurs
+     */
+    public static void copy(String value, OutputStream outputStream) throws IOException {
+        if (!isReference(value)) {
+            outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        try (InputStream inputStream = Files.newInputStream(getFile(value).toPath())) {
+            inputStream.transferTo(outputStream);
+        }
+    }
+
+    /**
+     * Method to copy the value, streaming the spill file if the value is a reference
+     *
+     * @param value the value
+     * @param writer the writer
+     * @throws IOException If an error occurs
+     */
+    public static void copy(String value, Writer writer) throws IOException {
+        if (!isReference(value)) {
+            writer.write(value);
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(getFile(value).toPath(), StandardCharsets.UTF_8)) {
+            reader.transferTo(writer);
+        }
+    }
+
+    /**
+     * Method to open a writer for a spill file
+     *
+     * @param file the spill file
+     * @return the writer
+     * @throws IOException If an error occurs
+     */
+    public static Writer newWriter(File file) throws IOException {
+        return new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8),
+                BUFFER_SIZE_BYTES);
+    }
+}
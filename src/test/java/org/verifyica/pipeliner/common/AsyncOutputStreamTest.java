@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.support.AsyncOutputStream;
+
+/** Class to implement AsyncOutputStreamTest */
+public class AsyncOutputStreamTest {
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        AsyncOutputStream asyncOutputStream =
+                new AsyncOutputStream(byteArrayOutputStream, 4, AsyncOutputStream.Backpressure.BLOCK);
+
+        int threadCount = 4;
+        int lineCount = 1000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < lineCount; j++) {
+                    byte[] bytes = (thread + " " + j + "\n").getBytes(StandardCharsets.UTF_8);
+                    try {
+                        asyncOutputStream.write(bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Closing writes all queued records
+        asyncOutputStream.close();
+
+        String[] lines = byteArrayOutputStream.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertThat(lines).hasSize(threadCount * lineCount);
+        assertThat(asyncOutputStream.getDropped()).isZero();
+
+        // The records of each thread are written in order
+        int[] next = new int[threadCount];
+        for (String line : lines) {
+            String[] tokens = line.split(" ");
+            int thread = Integer.parseInt(tokens[0]);
+            assertThat(Integer.parseInt(tokens[1])).isEqualTo(next[thread]++);
+        }
+    }
+
+    @Test
+    public void testCloseWhileWriting() throws InterruptedException {
+        int threadCount = 4;
+        int lineCount = 2000;
+
+        for (int iteration = 0; iteration < 10; iteration++) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            AsyncOutputStream asyncOutputStream =
+                    new AsyncOutputStream(byteArrayOutputStream, 16, AsyncOutputStream.Backpressure.BLOCK);
+            CountDownLatch started = new CountDownLatch(threadCount);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                int thread = i;
+                threads.add(new Thread(() -> {
+                    started.countDown();
+                    for (int j = 0; j < lineCount; j++) {
+                        byte[] bytes = (thread + " " + j + "\n").getBytes(StandardCharsets.UTF_8);
+                        try {
+                            asyncOutputStream.write(bytes, 0, bytes.length);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            // Close while the threads are writing
+            started.await();
+            asyncOutputStream.close();
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            String[] lines =
+                    byteArrayOutputStream.toString(StandardCharsets.UTF_8).split("\n");
+
+            // No record is lost, and the records of each thread are written in order
+            assertThat(lines).hasSize(threadCount * lineCount);
+
+            int[] next = new int[threadCount];
+            for (String line : lines) {
+                String[] tokens = line.split(" ");
+                int thread = Integer.parseInt(tokens[0]);
+                assertThat(Integer.parseInt(tokens[1])).isEqualTo(next[thread]++);
+            }
+        }
+    }
+
+    @Test
+    public void testDrop() throws IOException, InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        // An output stream that blocks the first write until released
+        OutputStream slowOutputStream = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byteArrayOutputStream.write(bytes, offset, length);
+            }
+        };
+
+        AsyncOutputStream asyncOutputStream =
+                new AsyncOutputStream(slowOutputStream, 4, AsyncOutputStream.Backpressure.DROP);
+
+        asyncOutputStream.write("first\n".getBytes(StandardCharsets.UTF_8));
+        blocked.await();
+
+        // The ring fills while the writer thread is blocked, and the rest of the records are dropped
+        for (int i = 0; i < 10; i++) {
+            asyncOutputStream.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        release.countDown();
+        asyncOutputStream.close();
+
+        // The dropped record count is reported after the write that was in progress
+        assertThat(asyncOutputStream.getDropped()).isEqualTo(6);
+        assertThat(byteArrayOutputStream.toString(StandardCharsets.UTF_8))
+                .isEqualTo("first\n"
+                        + String.format("@warning console dropped [%d] record(s)%n", 6)
+                        + "line 0\nline 1\nline 2\nline 3\n");
+    }
+}
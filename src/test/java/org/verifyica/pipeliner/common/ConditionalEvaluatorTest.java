@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.engine.instructions.EvaluateConditional;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.support.ConditionalEvaluator;
+
+/** Class to implement ConditionalEvaluatorTest */
+public class ConditionalEvaluatorTest {
+
+    @Test
+    public void testEvaluate() {
+        ConditionalEvaluator conditionalEvaluator = ConditionalEvaluator.getInstance();
+
+        assertThat(conditionalEvaluator.evaluate("\"a\" == \"a\" && 'b' != 'c'"))
+                .isTrue();
+        assertThat(conditionalEvaluator.evaluate("jdk == \"21\"", Map.of("jdk", "21")))
+                .isTrue();
+        assertThat(conditionalEvaluator.evaluate("jdk == \"21\"", Map.of("jdk", "17")))
+                .isFalse();
+
+        assertThatExceptionOfType(SyntaxException.class)
+                .isThrownBy(() -> conditionalEvaluator.evaluate("\"a\" + \"b\""))
+                .withMessage("invalid expression [\"a\" + \"b\"]");
+    }
+
+    @Test
+    public void testCache() {
+        ConditionalEvaluator conditionalEvaluator = ConditionalEvaluator.getInstance();
+
+        String expression = "\"testCache\" == \"testCache\"";
+
+        conditionalEvaluator.evaluate(expression);
+
+        long hits = conditionalEvaluator.getCacheHits();
+        long misses = conditionalEvaluator.getCacheMisses();
+
+        conditionalEvaluator.evaluate(expression);
+
+        assertThat(conditionalEvaluator.getCacheHits()).isEqualTo(hits + 1);
+        assertThat(conditionalEvaluator.getCacheMisses()).isEqualTo(misses);
+    }
+
+    @Test
+    public void testBoundVariables() {
+        ConditionalEvaluator conditionalEvaluator = ConditionalEvaluator.getInstance();
+
+        EvaluateConditional conditional = EvaluateConditional.of("\"${{ jdk }}\" == '21' && \"$OS\" != \"\\\"\"");
+
+        Map<String, String> values = Map.of("${{ jdk }}", "21", "$OS", "alpine \" linux");
+
+        assertThat(conditional.evaluate(template -> values.get(template.toString())))
+                .isTrue();
+
+        // The expression is compiled once, whatever the values of the variables
+        long misses = conditionalEvaluator.getCacheMisses();
+
+        Map<String, String> otherValues = Map.of("${{ jdk }}", "17", "$OS", "ubuntu");
+
+        assertThat(conditional.evaluate(template -> otherValues.get(template.toString())))
+                .isFalse();
+        assertThat(conditionalEvaluator.getCacheMisses()).isEqualTo(misses);
+
+        // A reference that is not a complete string literal is resolved into the expression text
+        EvaluateConditional partial = EvaluateConditional.of("\"${{ jdk }}-x\" == '21-x'");
+
+        assertThat(partial.evaluate(template -> template.toString().replace("${{ jdk }}", "21")))
+                .isTrue();
+    }
+}
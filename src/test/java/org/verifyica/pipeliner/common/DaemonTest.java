@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.verifyica.pipeliner.Console;
+import org.verifyica.pipeliner.Daemon;
+
+/** Class to implement DaemonTest */
+public class DaemonTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testConcurrentSessions() throws Throwable {
+        Path alphaDirectory = Files.createDirectories(directory.resolve("alpha"));
+        Path betaDirectory = Files.createDirectories(directory.resolve("beta"));
+
+        // Each pipeline prints its environment variable, variable and working directory, sleeps so the
+        // sessions overlap, and fails unless the result variable is pass
+        String pipeline = "pipeline:\n"
+                + "  name: test\n"
+                + "  jobs:\n"
+                + "    - name: job\n"
+                + "      steps:\n"
+                + "        - name: step\n"
+                + "          run: |\n"
+                + "            echo \"session=$SESSION name=${{ name }} pwd=$(pwd)\"\n"
+                + "            sleep 1\n"
+                + "            test \"${{ result }}\" = pass\n";
+
+        Files.write(alphaDirectory.resolve("alpha.yaml"), pipeline.getBytes(StandardCharsets.UTF_8));
+        Files.write(betaDirectory.resolve("beta.yaml"), pipeline.getBytes(StandardCharsets.UTF_8));
+
+        Path daemonDirectory = directory.resolve("daemon");
+        Daemon daemon = new Daemon(new Console(new PrintStream(new ByteArrayOutputStream())), daemonDirectory);
+        ExecutorService executorService = Executors.newCachedThreadPool();
+
+        try {
+            Future<Integer> daemonExitCode = executorService.submit(daemon::execute);
+            String[] state = awaitState(daemonDirectory.resolve("daemon"));
+
+            Future<Response> alpha = executorService.submit(() -> request(
+                    state, alphaDirectory, "SESSION=alpha", "-V", "name=first", "-V", "result=pass", "alpha.yaml"));
+            Future<Response> beta = executorService.submit(() -> request(
+                    state, betaDirectory, "SESSION=beta", "-V", "name=second", "-V", "result=fail", "beta.yaml"));
+
+            Response alphaResponse = alpha.get(60, TimeUnit.SECONDS);
+            Response betaResponse = beta.get(60, TimeUnit.SECONDS);
+
+            assertThat(alphaResponse.exitCode).as(alphaResponse.output).isEqualTo(0);
+            assertThat(alphaResponse.output)
+                    .contains("session=alpha name=first pwd=" + alphaDirectory.toRealPath())
+                    .doesNotContain("beta")
+                    .doesNotContain("second");
+
+            assertThat(betaResponse.exitCode).isEqualTo(1);
+            assertThat(betaResponse.output)
+                    .contains("session=beta name=second pwd=" + betaDirectory.toRealPath())
+                    .doesNotContain("alpha")
+                    .doesNotContain("first");
+
+            // A token longer than a valid token is rejected without reading the rest of the request
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state[0]))) {
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write(new byte[1024]);
+                outputStream.write("x".repeat(1024).getBytes(StandardCharsets.UTF_8));
+                outputStream.flush();
+
+                assertThat(socket.getInputStream().read()).isEqualTo(-1);
+            } catch (IOException e) {
+                // The daemon closed the connection while the request was written
+            }
+
+            // Stop the daemon with an authenticated request
+            assertThat(request(state, directory, null, Daemon.STOP_ARGUMENT).exitCode)
+                    .isEqualTo(0);
+            assertThat(daemonExitCode.get(60, TimeUnit.SECONDS)).isEqualTo(0);
+            assertThat(daemonDirectory.resolve("daemon")).doesNotExist();
+        } finally {
+            daemon.stop();
+            executorService.shutdownNow();
+        }
+    }
+
+    private static String[] awaitState(Path stateFile) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+        while (System.nanoTime() < deadline) {
+            if (Files.exists(stateFile)) {
+                String[] state = new String(Files.readAllBytes(stateFile), StandardCharsets.UTF_8)
+                        .trim()
+                        .split(" ");
+
+                if (state.length == 3) {
+                    return state;
+                }
+            }
+
+            Thread.sleep(10);
+        }
+
+        throw new IllegalStateException("daemon not started");
+    }
+
+    private static Response request(
+            String[] state, Path workingDirectory, String environmentVariable, String... arguments) throws IOException {
+        String token = state[1];
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state[0]))) {
+            List<String> fields = new ArrayList<>();
+            fields.add(token);
+            fields.add(workingDirectory.toString());
+            fields.add(String.valueOf(arguments.length));
+            fields.addAll(List.of(arguments));
+            fields.add("PATH=" + System.getenv("PATH"));
+            if (environmentVariable != null) {
+                fields.add(environmentVariable);
+            }
+            fields.add("");
+
+            OutputStream outputStream = socket.getOutputStream();
+            for (String field : fields) {
+                outputStream.write(field.getBytes(StandardCharsets.UTF_8));
+                outputStream.write(0);
+            }
+            outputStream.flush();
+
+            String output;
+            try (InputStream inputStream = socket.getInputStream()) {
+                output = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            // The response ends with the token followed by the exit code
+            int index = output.lastIndexOf(token + " ");
+            assertThat(index).isNotNegative();
+
+            return new Response(
+                    output.substring(0, index),
+                    Integer.parseInt(
+                            output.substring(index + token.length() + 1).trim()));
+        }
+    }
+
+    private static final class Response {
+
+        private final String output;
+
+        private final int exitCode;
+
+        private Response(String output, int exitCode) {
+            this.output = output;
+            this.exitCode = exitCode;
+        }
+    }
+}
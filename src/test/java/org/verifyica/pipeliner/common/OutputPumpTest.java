@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.Console;
+import org.verifyica.pipeliner.engine.instructions.support.OutputConsumer;
+import org.verifyica.pipeliner.engine.instructions.support.OutputPump;
+
+/** Class to implement OutputPumpTest */
+public class OutputPumpTest {
+
+    @Test
+    public void testPump() throws IOException {
+        String output = "line 1\nline 2\r\n\nline 4\rline 5";
+
+        List<String> expectedLines = List.of("line 1", "line 2", "", "line 4", "line 5");
+
+        assertThat(pump(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8))))
+                .isEqualTo(expectedLines);
+
+        // Lines, and carriage return line feed pairs, that span reads
+        assertThat(pump(new SingleByteInputStream(output.getBytes(StandardCharsets.UTF_8))))
+                .isEqualTo(expectedLines);
+
+        // A terminated last line doesn't produce an empty line
+        assertThat(pump(new ByteArrayInputStream("line 1\r\n".getBytes(StandardCharsets.UTF_8))))
+                .containsExactly("line 1");
+    }
+
+    @Test
+    public void testIndexOf() {
+        byte[] bytes = "__marker__ 12".getBytes(StandardCharsets.US_ASCII);
+        byte[] pattern = "marker".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(OutputPump.indexOf(bytes, 0, bytes.length, pattern)).isEqualTo(2);
+        assertThat(OutputPump.indexOf(bytes, 3, bytes.length - 3, pattern)).isEqualTo(-1);
+        assertThat(OutputPump.indexOf(bytes, 0, 7, pattern)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testLineWriter() {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Console console = new Console(new PrintStream(byteArrayOutputStream, true, StandardCharsets.UTF_8));
+
+        Console.LineWriter lineWriter = console.createPrefixedConsole("[file] ").createLineWriter("@output ");
+
+        byte[] bytes = "xline 1line 2".getBytes(StandardCharsets.UTF_8);
+        lineWriter.println(bytes, 1, 6);
+        lineWriter.println(bytes, 7, 6);
+
+        // Nothing is written until the line writer is flushed
+        assertThat(byteArrayOutputStream.size()).isZero();
+
+        lineWriter.flush();
+
+        String separator = System.lineSeparator();
+
+        assertThat(byteArrayOutputStream.toString(StandardCharsets.UTF_8))
+                .isEqualTo("[file] @output line 1" + separator + "[file] @output line 2" + separator);
+    }
+
+    private static List<String> pump(InputStream inputStream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        OutputPump.pump(inputStream, (OutputConsumer)
+                (bytes, offset, length) -> lines.add(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+        return lines;
+    }
+
+    /** Class to implement an input stream returning a single byte per read */
+    private static class SingleByteInputStream extends ByteArrayInputStream {
+
+        public SingleByteInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int length) {
+            return super.read(bytes, offset, Math.min(length, 1));
+        }
+    }
+}
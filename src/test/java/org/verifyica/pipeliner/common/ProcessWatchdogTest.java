@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.engine.instructions.support.ProcessWatchdog;
+
+/** Class to implement ProcessWatchdogTest */
+public class ProcessWatchdogTest {
+
+    @Test
+    public void testExpired() throws Throwable {
+        // The background process inherits the output, so the output stays open until it is destroyed
+        Process process = new ProcessBuilder("sh", "-c", "sleep 60 & wait")
+                .redirectErrorStream(true)
+                .start();
+
+        List<ProcessHandle> descendants;
+
+        try (ProcessWatchdog.Watch watch =
+                ProcessWatchdog.getInstance().watch(process.toHandle(), TimeUnit.MILLISECONDS.toNanos(500))) {
+            // Wait for the background process to start
+            do {
+                Thread.sleep(10);
+                descendants = process.toHandle().descendants().collect(Collectors.toList());
+            } while (descendants.isEmpty());
+
+            // Reading the output returns once the process tree is destroyed
+            try (InputStream inputStream = process.getInputStream()) {
+                inputStream.readAllBytes();
+            }
+
+            assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(watch.isExpired()).isTrue();
+        }
+
+        for (ProcessHandle descendant : descendants) {
+            assertThat(descendant.onExit().get(10, TimeUnit.SECONDS).isAlive()).isFalse();
+        }
+    }
+
+    @Test
+    public void testCompleted() throws Throwable {
+        Process process = new ProcessBuilder("sh", "-c", "exit 3").start();
+
+        try (ProcessWatchdog.Watch watch =
+                ProcessWatchdog.getInstance().watch(process.toHandle(), TimeUnit.SECONDS.toNanos(60))) {
+            assertThat(process.waitFor()).isEqualTo(3);
+            assertThat(watch.isExpired()).isFalse();
+        }
+    }
+}
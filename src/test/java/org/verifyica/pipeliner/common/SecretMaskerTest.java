@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.support.SecretMasker;
+
+/** Class to implement SecretMaskerTest */
+public class SecretMaskerTest {
+
+    @Test
+    public void testMask() {
+        SecretMasker secretMasker = SecretMasker.of(Arrays.asList("s3cr3t", "token", ""), StandardCharsets.UTF_8);
+
+        assertThat(secretMasker.isEmpty()).isFalse();
+        assertThat(secretMasker.mask("password s3cr3t")).isEqualTo("password *****");
+        assertThat(secretMasker.mask("token=s3cr3t, token")).isEqualTo("*****=*****, *****");
+        assertThat(secretMasker.mask("s3cr3 tok en")).isEqualTo("s3cr3 tok en");
+    }
+
+    @Test
+    public void testOverlappingSecrets() {
+        SecretMasker secretMasker =
+                SecretMasker.of(Arrays.asList("abc", "bcd", "cdefg", "e", "xyz"), StandardCharsets.UTF_8);
+
+        // Overlapping and adjacent secrets are masked as a single mask
+        assertThat(secretMasker.mask("-abcdefg-")).isEqualTo("-*****-");
+        assertThat(secretMasker.mask("abcxyz")).isEqualTo("*****");
+        assertThat(secretMasker.mask("ab cd e")).isEqualTo("ab cd *****");
+
+        // A secret contained in a longer secret
+        secretMasker = SecretMasker.of(Arrays.asList("b", "abcde"), StandardCharsets.UTF_8);
+
+        assertThat(secretMasker.mask("abcde abcdx")).isEqualTo("***** a*****cdx");
+    }
+
+    @Test
+    public void testMaskBytes() {
+        SecretMasker secretMasker = SecretMasker.of(Collections.singletonList("clé"), StandardCharsets.UTF_8);
+
+        byte[] bytes = "##la clé##".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(new String(secretMasker.mask(bytes, 2, bytes.length - 4), StandardCharsets.UTF_8))
+                .isEqualTo("la *****");
+
+        // A line without a secret isn't copied
+        assertThat(secretMasker.mask(bytes, 0, 4)).isNull();
+    }
+
+    @Test
+    public void testMultiLineSecret() {
+        SecretMasker secretMasker =
+                SecretMasker.of(Collections.singletonList("line-1\nline-2\r\n"), StandardCharsets.UTF_8);
+
+        // Each line of a secret is masked separately
+        assertThat(secretMasker.mask("line-1")).isEqualTo("*****");
+        assertThat(secretMasker.mask("x line-2")).isEqualTo("x *****");
+    }
+
+    @Test
+    public void testEmpty() {
+        SecretMasker secretMasker = SecretMasker.of(Arrays.asList("", "\n"), StandardCharsets.UTF_8);
+
+        assertThat(secretMasker.isEmpty()).isTrue();
+        assertThat(secretMasker.mask("line")).isEqualTo("line");
+    }
+
+    @Test
+    public void testManySecrets() {
+        List<String> secrets = new ArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            secrets.add("secret-" + i + "-value");
+        }
+
+        SecretMasker secretMasker = SecretMasker.of(secrets, StandardCharsets.UTF_8);
+
+        assertThat(secretMasker.mask("a secret-0-value b secret-499-value c secret-500-value"))
+                .isEqualTo("a ***** b ***** c secret-500-value");
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.verifyica.pipeliner.engine.instructions.support.Shell;
+import org.verifyica.pipeliner.engine.instructions.support.ShellLauncher;
+
+/** Class to implement ShellLauncherTest */
+public class ShellLauncherTest {
+
+    @Test
+    public void testLaunch() throws Throwable {
+        Map<String, String> environmentVariables = new HashMap<>();
+        environmentVariables.put("PATH", System.getenv("PATH"));
+        environmentVariables.put("VALUE", "old");
+
+        Map<String, String> overlayEnvironmentVariables = Map.of("VALUE", "it's \"quoted\"\n$HOME");
+
+        String command = "echo \"$VALUE\"; pwd; echo \"${HOME-unset}\"; exit 3";
+
+        for (Shell shell : new Shell[] {Shell.BASH, Shell.SH}) {
+            awaitIdle(shell, 1);
+
+            Process process = ShellLauncher.getInstance()
+                    .launch(shell, 1, "/", environmentVariables, overlayEnvironmentVariables, command);
+
+            assertThat(process).isNotNull();
+            assertThat(read(process)).isEqualTo("it's \"quoted\"\n$HOME\n/\nunset\n");
+            assertThat(process.waitFor()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void testNotLaunched() throws Throwable {
+        Map<String, String> environmentVariables = Map.of("PATH", System.getenv("PATH"), "a.b", "value");
+
+        // Shells that are not POSIX compatible and missing directories use a new process
+        assertThat(ShellLauncher.getInstance().launch(Shell.FISH, 1, "/", environmentVariables, Map.of(), "true"))
+                .isNull();
+        assertThat(ShellLauncher.getInstance()
+                        .launch(Shell.SH, 1, "/does/not/exist", environmentVariables, Map.of(), "true"))
+                .isNull();
+
+        awaitIdle(Shell.SH, 1);
+
+        // An environment variable that can't be set by a script uses a new process
+        assertThat(ShellLauncher.getInstance().launch(Shell.SH, 1, "/", environmentVariables, Map.of(), "true"))
+                .isNull();
+        assertThat(ShellLauncher.getInstance().launch(Shell.SH, 1, "/", Map.of(), Map.of("c.d", "value"), "true"))
+                .isNull();
+
+        // The idle shell is still available
+        assertThat(ShellLauncher.getInstance().getIdleCount(Shell.SH)).isEqualTo(1);
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    public void testEmptyEnvironment() throws Throwable {
+        Map<String, String> environmentVariables = Map.of("PATH", System.getenv("PATH"), "SECRET", "s3cr3t");
+
+        awaitIdle(Shell.SH, 1);
+
+        Process process = ShellLauncher.getInstance()
+                .launch(Shell.SH, 1, "/", environmentVariables, Map.of(), "echo \"$SECRET\"");
+
+        assertThat(process).isNotNull();
+        assertThat(read(process)).isEqualTo("s3cr3t\n");
+        assertThat(process.waitFor()).isEqualTo(0);
+
+        awaitIdle(Shell.SH, 1);
+
+        // The idle shell's own environment doesn't contain the environment variables of another command
+        process = ShellLauncher.getInstance()
+                .launch(
+                        Shell.SH,
+                        1,
+                        "/",
+                        Map.of("PATH", System.getenv("PATH")),
+                        Map.of(),
+                        "tr '\\000' '\\n' < /proc/$$/environ; echo \"${SECRET-unset}\"");
+
+        assertThat(process).isNotNull();
+        assertThat(read(process)).isEqualTo("unset\n");
+        assertThat(process.waitFor()).isEqualTo(0);
+    }
+
+    /**
+     * Compares the latency of launching a command in an idle shell with starting a new process.
+     * Run with {@code ./mvnw test -Dtest=ShellLauncherTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkSpawnLatency() throws Throwable {
+        int iterations = 200;
+        Map<String, String> environmentVariables = new HashMap<>(System.getenv());
+
+        awaitIdle(Shell.BASH, 2);
+
+        long processNanos = 0;
+        long launcherNanos = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            // Measure the time until the command's first output, including the shell startup
+            long startNanoTime = System.nanoTime();
+            Process process = new ProcessBuilder(Shell.getProcessBuilderCommandArguments(Shell.BASH, "echo x"))
+                    .redirectErrorStream(true)
+                    .start();
+            process.getInputStream().read();
+            processNanos += System.nanoTime() - startNanoTime;
+            process.waitFor();
+
+            awaitIdle(Shell.BASH, 2);
+
+            startNanoTime = System.nanoTime();
+            process = ShellLauncher.getInstance().launch(Shell.BASH, 2, ".", environmentVariables, Map.of(), "echo x");
+            process.getInputStream().read();
+            launcherNanos += System.nanoTime() - startNanoTime;
+            process.waitFor();
+        }
+
+        System.out.printf(
+                "ProcessBuilder.start [%d] us ShellLauncher.launch [%d] us%n",
+                TimeUnit.NANOSECONDS.toMicros(processNanos / iterations),
+                TimeUnit.NANOSECONDS.toMicros(launcherNanos / iterations));
+    }
+
+    private static void awaitIdle(Shell shell, int poolSize) throws InterruptedException {
+        ShellLauncher.getInstance().refill(shell, poolSize);
+
+        while (ShellLauncher.getInstance().getIdleCount(shell) < poolSize) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static String read(Process process) throws IOException {
+        try (InputStream inputStream = process.getInputStream()) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
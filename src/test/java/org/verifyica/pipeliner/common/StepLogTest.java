@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.verifyica.pipeliner.engine.instructions.support.LogOptions;
+import org.verifyica.pipeliner.engine.instructions.support.StepLog;
+
+/** Class to implement StepLogTest */
+public class StepLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testLog() throws IOException {
+        StepLog stepLog = StepLog.of(LogOptions.of(directory.toFile(), false, 0, -1), "0001-step");
+
+        // A line longer than the buffer is written in its own buffer
+        String longLine = "x".repeat(100_000);
+
+        append(stepLog, "line 1");
+        append(stepLog, longLine);
+        append(stepLog, "line 3");
+        stepLog.close();
+
+        assertThat(stepLog.getFiles()).containsExactly(new File(directory.toFile(), "0001-step.log"));
+        assertThat(stepLog.getLines()).isEqualTo(3);
+        assertThat(stepLog.getBytes()).isEqualTo(7 + 100_001 + 7);
+        assertThat(stepLog.getTail()).isEmpty();
+        assertThat(Files.readString(directory.resolve("0001-step.log")))
+                .isEqualTo("line 1\n" + longLine + "\nline 3\n");
+    }
+
+    @Test
+    public void testGzipRollover() throws IOException {
+        StepLog stepLog = StepLog.of(LogOptions.of(directory.resolve("logs").toFile(), true, 14, 2), "0002-step");
+
+        for (int i = 1; i <= 5; i++) {
+            append(stepLog, "line " + i);
+        }
+
+        stepLog.close();
+
+        // Each file has at most two lines of 7 bytes
+        List<String> names = stepLog.getFiles().stream().map(File::getName).collect(Collectors.toList());
+
+        assertThat(names).containsExactly("0002-step.log.gz", "0002-step.1.log.gz", "0002-step.2.log.gz");
+        assertThat(gunzip(stepLog.getFiles().get(0))).isEqualTo("line 1\nline 2\n");
+        assertThat(gunzip(stepLog.getFiles().get(1))).isEqualTo("line 3\nline 4\n");
+        assertThat(gunzip(stepLog.getFiles().get(2))).isEqualTo("line 5\n");
+
+        // The last lines are kept
+        assertThat(stepLog.getTail().stream()
+                        .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                        .collect(Collectors.toList()))
+                .containsExactly("line 4", "line 5");
+    }
+
+    private static void append(StepLog stepLog, String line) throws IOException {
+        byte[] bytes = ("#" + line + "#").getBytes(StandardCharsets.UTF_8);
+        stepLog.append(bytes, 1, bytes.length - 2);
+    }
+
+    private static String gunzip(File file) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
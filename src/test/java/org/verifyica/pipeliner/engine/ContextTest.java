@@ -17,10 +17,25 @@
 package org.verifyica.pipeliner.engine;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.verifyica.pipeliner.Console;
 import org.verifyica.pipeliner.Constants;
+import org.verifyica.pipeliner.engine.instructions.support.Shell;
+import org.verifyica.pipeliner.model.SyntaxException;
+import org.verifyica.pipeliner.parser.SymbolTable;
+import org.verifyica.pipeliner.parser.Template;
+import org.verifyica.pipeliner.support.SecretMasker;
+import org.verifyica.pipeliner.support.SpillFile;
 
 public class ContextTest {
 
@@ -74,6 +89,392 @@ public class ContextTest {
         assertThat(actual).isEqualTo(expected);
     }
 
+    @Test
+    public void testResolveNestedVariables() {
+        Context context = createContext();
+
+        context.getVariables().put("directory", "${{ home }}/src");
+        context.getVariables().put("home", "$PIPELINER_HOME");
+
+        String input = "cd ${{ directory }}";
+        Template template = Template.compile(input);
+
+        assertThat(context.resolveVariables(template)).isEqualTo("cd $PIPELINER_HOME/src");
+        assertThat(context.resolveAllVariables(template)).isEqualTo("cd /home/verifyica/pipeliner/src");
+
+        // Resolving the same template again uses the current variables
+        context.getVariables().put("home", "/opt");
+
+        assertThat(context.resolveVariables(template)).isEqualTo("cd /opt/src");
+    }
+
+    @Test
+    public void testResolveVariableCycle() {
+        Context context = createContext();
+
+        context.getVariables().put("a", "x${{ b }}");
+        context.getVariables().put("b", "${{ c }}");
+        context.getVariables().put("c", "${{ a }}");
+
+        assertThatExceptionOfType(SyntaxException.class)
+                .isThrownBy(() -> context.resolveVariables("${{ a }}"))
+                .withMessageContaining("${{ a }} -> ${{ b }} -> ${{ c }} -> ${{ a }}");
+
+        // Breaking the cycle resolves the variable
+        context.getVariables().put("c", "y");
+
+        assertThat(context.resolveVariables("${{ a }}")).isEqualTo("xy");
+    }
+
+    @Test
+    public void testResolveEnvironmentVariableCycle() {
+        Context context = createContext();
+
+        context.getEnvironmentVariables().put("SELF", "$SELF:/bin");
+
+        assertThat(context.resolveVariables("$SELF")).isEqualTo("$SELF");
+        assertThatExceptionOfType(SyntaxException.class)
+                .isThrownBy(() -> context.resolveAllVariables("$SELF"))
+                .withMessageContaining("$SELF -> $SELF");
+    }
+
+    @Test
+    public void testScopedVariables() {
+        Context context = createContext();
+
+        context.pushFrame(new Frame(Frame.Type.PIPELINE));
+        context.declareVariable("name", "pipeline");
+
+        context.pushFrame(new Frame(Frame.Type.JOB));
+        context.declareVariable("name", "job");
+        context.declareEnvironmentVariable("JOB", "job");
+        context.getVariables().put("name", "updated");
+        context.getVariables().put("captured", "value");
+
+        assertThat(context.getVariables()).containsEntry("name", "updated");
+        assertThat(context.getEnvironmentVariables()).containsEntry("JOB", "job");
+
+        context.popFrame();
+
+        assertThat(context.getVariables()).containsEntry("name", "pipeline");
+        assertThat(context.getVariables()).containsEntry("captured", "value");
+        assertThat(context.getEnvironmentVariables()).doesNotContainKey("JOB");
+    }
+
+    @Test
+    public void testForkedVariables() {
+        Context context = createContext();
+
+        context.pushFrame(new Frame(Frame.Type.PIPELINE));
+        context.declareVariable("name", "pipeline");
+
+        Context forkedContext = context.fork(context.getConsole());
+
+        forkedContext.getVariables().put("name", "forked");
+        forkedContext.getEnvironmentVariables().put(Constants.PIPELINER_TMP, "/forked");
+
+        context.getVariables().put("other", "value");
+
+        assertThat(forkedContext.getVariables()).containsEntry("name", "forked");
+        assertThat(forkedContext.getVariables()).doesNotContainKey("other");
+        assertThat(forkedContext.getEnvironmentVariables()).containsEntry(Constants.PIPELINER_TMP, "/forked");
+        assertThat(context.getVariables()).containsEntry("name", "pipeline");
+        assertThat(context.getEnvironmentVariables()).containsEntry(Constants.PIPELINER_TMP, "/tmp");
+    }
+
+    @Test
+    public void testEnvironmentVariablesSnapshot() {
+        Context context = createContext();
+
+        Map<String, String> snapshot = context.getEnvironmentVariablesSnapshot();
+        long version = context.getEnvironmentVariablesVersion();
+
+        // Setting an environment variable to its current value doesn't change the snapshot
+        context.getEnvironmentVariables().put(Constants.PIPELINER_TMP, "/tmp");
+        context.pushFrame(new Frame(Frame.Type.STEP));
+
+        assertThat(context.getEnvironmentVariablesVersion()).isEqualTo(version);
+        assertThat(context.getEnvironmentVariablesSnapshot()).isSameAs(snapshot);
+
+        context.declareEnvironmentVariable("STEP", "step");
+
+        assertThat(context.getEnvironmentVariablesVersion()).isNotEqualTo(version);
+        assertThat(context.getEnvironmentVariablesSnapshot()).containsEntry("STEP", "step");
+        assertThat(snapshot).doesNotContainKey("STEP");
+
+        context.popFrame();
+
+        assertThat(context.getEnvironmentVariablesSnapshot()).isEqualTo(snapshot);
+    }
+
+    @Test
+    public void testFrameSettings() {
+        Context context = createContext();
+
+        assertThat(context.getShell()).isEqualTo(Shell.BASH);
+        assertThat(context.getTimeoutMinutes()).isEqualTo("360");
+
+        Frame job = new Frame(Frame.Type.JOB);
+        context.pushFrame(job);
+        job.setShell(Template.compile("sh"));
+        job.setTimeoutMinutes(Template.compile("${{ timeout }}"));
+        context.getVariables().put("timeout", "10");
+
+        // The innermost frame's settings are used, and the other settings are inherited
+        Frame step = new Frame(Frame.Type.STEP);
+        context.pushFrame(step);
+        step.setShell(Template.compile("default"));
+
+        assertThat(context.getShell()).isEqualTo(Shell.BASH);
+        assertThat(context.getTimeoutMinutes()).isEqualTo("10");
+
+        // A referenced variable change is reflected
+        context.getVariables().put("timeout", "20");
+
+        assertThat(context.getTimeoutMinutes()).isEqualTo("20");
+
+        context.popFrame();
+
+        assertThat(context.getShell()).isEqualTo(Shell.SH);
+    }
+
+    @Test
+    public void testFrameSettingDependencies() {
+        Context context = createContext();
+        context.setDirectory(new File("/work"));
+
+        Frame step = new Frame(Frame.Type.STEP);
+        context.pushFrame(step);
+        step.setWorkingDirectory(Template.compile("${{ directory }}"));
+        context.getVariables().put("directory", "${{ base }}/src");
+        context.getVariables().put("base", "project");
+
+        String workingDirectory = context.getWorkingDirectory();
+
+        assertThat(workingDirectory).isEqualTo(new File("/work/project/src").getPath());
+
+        // A change to a variable that isn't referenced doesn't resolve the setting again
+        context.getVariables().put("captured", "value");
+        context.getEnvironmentVariables().put("CAPTURED", "value");
+
+        assertThat(context.getWorkingDirectory()).isSameAs(workingDirectory);
+
+        // A change to a variable referenced through another variable resolves the setting again
+        context.getVariables().put("base", "other");
+
+        assertThat(context.getWorkingDirectory()).isEqualTo(new File("/work/other/src").getPath());
+    }
+
+    @Test
+    public void testDeadline() {
+        Context context = createContext();
+
+        Frame pipeline = new Frame(Frame.Type.PIPELINE);
+        context.pushFrame(pipeline);
+
+        // Without a timeout, the default timeout applies from now
+        assertThat(context.getDeadline().getFrame()).isSameAs(pipeline);
+        assertThat(context.getDeadline().getTimeoutMinutes()).isEqualTo(360);
+
+        Frame job = new Frame(Frame.Type.JOB);
+        context.pushFrame(job);
+        job.setTimeoutMinutes(Template.compile("5"));
+
+        // The step inherits the job's timeout, so the job's deadline applies
+        Frame step = new Frame(Frame.Type.STEP);
+        context.pushFrame(step);
+
+        assertThat(context.getDeadline().getFrame()).isSameAs(job);
+        assertThat(context.getDeadline().getTimeoutMinutes()).isEqualTo(5);
+
+        // A longer step timeout doesn't extend the job's deadline
+        step.setTimeoutMinutes(Template.compile("10"));
+
+        assertThat(context.getDeadline().getFrame()).isSameAs(job);
+
+        // A shorter step timeout applies
+        step.setTimeoutMinutes(Template.compile("1"));
+
+        Deadline deadline = context.getDeadline();
+
+        assertThat(deadline.getFrame()).isSameAs(step);
+        assertThat(deadline.getTimeoutMinutes()).isEqualTo(1);
+        assertThat(deadline.getRemainingNanos()).isPositive().isLessThanOrEqualTo(60_000_000_000L);
+    }
+
+    @Test
+    public void testDeadlineVariables() {
+        Context context = createContext();
+
+        Frame job = new Frame(Frame.Type.JOB);
+        job.setName("test-job");
+        job.setTimeoutMinutes(Template.compile("${{ minutes }}"));
+        context.pushFrame(job);
+        context.getVariables().put("minutes", "5");
+
+        assertThat(context.getDeadline().getTimeoutMinutes()).isEqualTo(5);
+
+        // The cached timeout is resolved again when a referenced variable changes
+        context.getVariables().put("minutes", "2");
+
+        assertThat(context.getDeadline().getTimeoutMinutes()).isEqualTo(2);
+
+        // An invalid timeout names the frame
+        context.getVariables().put("minutes", "invalid");
+
+        assertThatExceptionOfType(SyntaxException.class)
+                .isThrownBy(context::getDeadline)
+                .withMessage("job name=[test-job] \"timeout-minutes:\" value [invalid] is invalid");
+    }
+
+    @Test
+    public void testUninternedVariables() {
+        Context context = createContext();
+
+        // Names that are not referenced by a template are not interned
+        context.getVariables().put("uninterned.a", "a");
+        context.getEnvironmentVariables().put("UNINTERNED_B", "b");
+
+        assertThat(SymbolTable.getInstance().lookup("uninterned.a")).isEqualTo(SymbolTable.UNDEFINED);
+        assertThat(SymbolTable.getInstance().lookup("UNINTERNED_B")).isEqualTo(SymbolTable.UNDEFINED);
+        assertThat(context.getVariables()).containsEntry("uninterned.a", "a");
+        assertThat(context.getEnvironmentVariables()).containsEntry("UNINTERNED_B", "b");
+
+        // A value set before the name was interned is resolved by symbol
+        Template template = Template.compile("${{ uninterned.a }} $UNINTERNED_B");
+
+        assertThat(context.resolveAllVariables(template)).isEqualTo("a b");
+
+        context.getVariables().put("uninterned.a", "c");
+        context.getEnvironmentVariables().remove("UNINTERNED_B");
+
+        assertThat(context.resolveAllVariables(template)).isEqualTo("c ");
+        assertThat(context.getVariables()).containsEntry("uninterned.a", "c");
+        assertThat(context.getEnvironmentVariables()).doesNotContainKey("UNINTERNED_B");
+    }
+
+    @Test
+    public void testVariableSymbols() {
+        Context context = createContext();
+
+        Template template = Template.compile("${{ symbol.b }}${{ symbol.a }}");
+        int symbol = template.getSymbol(0);
+
+        assertThat(symbol).isEqualTo(SymbolTable.getInstance().intern("symbol.b"));
+        assertThat(SymbolTable.getInstance().getName(symbol)).isEqualTo("symbol.b");
+
+        context.pushFrame(new Frame(Frame.Type.PIPELINE));
+        context.declareVariable(symbol, "b");
+        context.getVariables().put("symbol.a", "a");
+
+        assertThat(context.getVariables()).containsEntry("symbol.b", "b");
+        assertThat(context.resolveVariables(template)).isEqualTo("ba");
+
+        // Iteration is ordered by name
+        assertThat(context.getVariables().keySet()).containsExactly("symbol.a", "symbol.b");
+
+        context.popFrame();
+
+        assertThat(context.getVariables()).doesNotContainKey("symbol.b");
+        assertThat(context.resolveVariables(template)).isEqualTo("a");
+    }
+
+    @Test
+    public void testSecretMasker() {
+        Context context = createContext();
+
+        context.pushFrame(new Frame(Frame.Type.PIPELINE));
+        context.getVariables().put("token", "s3cr3t");
+        context.getEnvironmentVariables().put("API_KEY", "k3y");
+
+        assertThat(context.getSecretMasker().isEmpty()).isTrue();
+
+        context.declareVariable(Constants.PIPELINER_MASK_VARIABLES, "token, API_KEY undefined");
+
+        SecretMasker secretMasker = context.getSecretMasker();
+
+        assertThat(secretMasker.mask("s3cr3t k3y")).isEqualTo("***** *****");
+        assertThat(context.maskCommand("echo s3cr3t")).isEqualTo("echo *****");
+
+        // The secret masker is only rebuilt if a secret changes
+        context.getVariables().put("other", "value");
+
+        assertThat(context.getSecretMasker()).isSameAs(secretMasker);
+
+        context.getVariables().put("token", "changed");
+
+        assertThat(context.getSecretMasker()).isNotSameAs(secretMasker);
+        assertThat(context.getSecretMasker().mask("s3cr3t changed")).isEqualTo("s3cr3t *****");
+
+        // A secret referencing another variable is masked again when the referenced variable changes
+        context.getVariables().put("token", "${{ base }}-token");
+        context.getVariables().put("base", "first");
+
+        assertThat(context.getSecretMasker().mask("first-token")).isEqualTo("*****");
+
+        secretMasker = context.getSecretMasker();
+        context.getVariables().put("other", "changed");
+
+        assertThat(context.getSecretMasker()).isSameAs(secretMasker);
+
+        context.getVariables().put("base", "second");
+
+        assertThat(context.getSecretMasker().mask("first-token second-token")).isEqualTo("first-token *****");
+
+        // The whole command is masked
+        context.declareVariable(Constants.PIPELINER_MASK_COMMANDS, "true");
+
+        assertThat(context.maskCommand("echo value")).isEqualTo(SecretMasker.MASK);
+    }
+
+    @Test
+    public void testSpilledVariable(@TempDir Path directory) throws IOException {
+        Context context = createContext();
+
+        File file = directory.resolve("spill").toFile();
+        Files.write(file.toPath(), "s3cr3t ${{ user }}".getBytes(StandardCharsets.UTF_8));
+
+        context.pushFrame(new Frame(Frame.Type.PIPELINE));
+        context.getVariables().put("user", "test-user");
+        context.getVariables().put("spilled", SpillFile.reference(file));
+
+        assertThat(context.getVariable("spilled")).isEqualTo("s3cr3t ${{ user }}");
+        assertThat(context.resolveVariables("${{ spilled }}")).isEqualTo("s3cr3t test-user");
+
+        // The secret masker reads the spilled value
+        context.declareVariable(Constants.PIPELINER_MASK_VARIABLES, "spilled");
+
+        assertThat(context.getSecretMasker().mask("s3cr3t test-user")).isEqualTo("*****");
+
+        // A value with the reference prefix that is not a reference returned by SpillFile is not read
+        String reference = SpillFile.reference(file);
+        String forged = reference.substring(0, reference.indexOf(':') + 1) + file.getAbsolutePath();
+
+        context.getVariables().put("forged", forged);
+
+        assertThat(SpillFile.isReference(forged)).isFalse();
+        assertThat(context.getVariable("forged")).isEqualTo(forged);
+
+        // A deleted spill file's reference is no longer a reference
+        SpillFile.delete(file);
+
+        assertThat(SpillFile.isReference(reference)).isFalse();
+
+        // A spilled value larger than the maximum size is not read into memory
+        File largeFile = directory.resolve("large").toFile();
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(largeFile, "rw")) {
+            randomAccessFile.setLength(SpillFile.MAXIMUM_RESOLVED_SIZE + 1);
+        }
+
+        context.getVariables().put("large", SpillFile.reference(largeFile));
+
+        assertThatExceptionOfType(SyntaxException.class)
+                .isThrownBy(() -> context.resolveVariables("${{ large }}"))
+                .withMessageContaining("variable [large]");
+        assertThatExceptionOfType(SyntaxException.class).isThrownBy(() -> context.getVariable("large"));
+    }
+
     private static Context createContext() {
         Console console = new Console();
         Context context = new Context(console);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.engine.instructions.EvaluateConditional;
+import org.verifyica.pipeliner.engine.instructions.EvaluateEnabled;
+import org.verifyica.pipeliner.engine.instructions.ExecuteBatch;
+import org.verifyica.pipeliner.engine.instructions.ExecuteCommand;
+import org.verifyica.pipeliner.engine.instructions.PopFrame;
+import org.verifyica.pipeliner.engine.instructions.PrintDisabledFrames;
+import org.verifyica.pipeliner.engine.instructions.PrintFrameStatus;
+import org.verifyica.pipeliner.engine.instructions.PushFrame;
+import org.verifyica.pipeliner.engine.instructions.SetEnvironmentVariable;
+import org.verifyica.pipeliner.engine.instructions.SetVariable;
+
+public class OptimizerTest {
+
+    @Test
+    public void testOptimize() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-1", null)); // 0
+        instructions.add(ExecuteCommand.of("echo 1")); // 1
+        instructions.add(ExecuteCommand.of("echo 2"));
+        instructions.add(ExecuteCommand.of("echo ${{ value }}")); // 2
+        instructions.add(ExecuteCommand.of("echo 3"));
+        instructions.add(ExecuteCommand.of("--capture ${{ value }} echo 4")); // 3
+        instructions.add(ExecuteCommand.of("echo 5")); // 4
+        instructions.add(PopFrame.of()); // 5
+
+        List<Instruction> optimized = new Optimizer().optimize(instructions);
+
+        assertThat(optimized).hasSize(6);
+        assertThat(optimized.get(1)).isInstanceOf(ExecuteBatch.class);
+        assertThat(((ExecuteBatch) optimized.get(1)).getCommands()).hasSize(2);
+        assertThat(optimized.get(2)).isInstanceOf(ExecuteBatch.class);
+        assertThat(((ExecuteBatch) optimized.get(2)).getCommands().get(0).getLine())
+                .isEqualTo("echo ${{ value }}");
+        assertThat(optimized.get(3)).isInstanceOf(ExecuteCommand.class);
+        assertThat(optimized.get(4)).isInstanceOf(ExecuteCommand.class);
+        assertThat(optimized.get(5)).isInstanceOf(PopFrame.class);
+    }
+
+    @Test
+    public void testFoldConditional() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-1", null)); // 0
+        instructions.add(SetVariable.of("mode", "${{ base }}-$MODE"));
+        instructions.add(SetVariable.of("base", "release"));
+        instructions.add(SetEnvironmentVariable.of("MODE", "fast"));
+        instructions.add(EvaluateConditional.of("'${{ mode }}' == 'release-fast'"));
+        instructions.add(PrintFrameStatus.of("running")); // 1
+        instructions.add(ExecuteCommand.of("echo ${{ mode }}")); // 2
+        instructions.add(EvaluateConditional.of("'${{ mode }}' == 'release-fast'")); // 3
+        instructions.add(PopFrame.of()); // 4
+
+        List<Instruction> optimized = new Optimizer().optimize(instructions);
+
+        // The first conditional is known to be true, and the command is resolved
+        assertThat(optimized).hasSize(8);
+        assertThat(optimized.get(4)).isInstanceOf(PrintFrameStatus.class);
+        assertThat(optimized.get(5)).isInstanceOf(ExecuteCommand.class);
+        assertThat(((ExecuteCommand) optimized.get(5)).getLine()).isEqualTo("echo ${{ mode }}");
+        assertThat(((ExecuteCommand) optimized.get(5)).getCommand().hasVariables())
+                .isFalse();
+        assertThat(((ExecuteCommand) optimized.get(5)).getCommand().toString()).isEqualTo("echo release-$MODE");
+
+        // The command may set variables, so the second conditional is evaluated at runtime
+        assertThat(optimized.get(6)).isInstanceOf(EvaluateConditional.class);
+    }
+
+    @Test
+    public void testFoldUnknownConditional() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-1", null));
+        instructions.add(EvaluateConditional.of("'${{ undeclared }}' == ''"));
+        instructions.add(ExecuteCommand.of("echo ${{ undeclared }}"));
+        instructions.add(PopFrame.of());
+
+        List<Instruction> optimized = new Optimizer().optimize(instructions);
+
+        // An undeclared variable may be set on the command line, so nothing is folded
+        assertThat(optimized).hasSize(4);
+        assertThat(optimized.get(1)).isInstanceOf(EvaluateConditional.class);
+        assertThat(((ExecuteCommand) optimized.get(2)).getCommand().hasVariables())
+                .isTrue();
+    }
+
+    @Test
+    public void testFoldDisabledFrames() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.JOB, "job-1", null));
+        instructions.add(SetVariable.of("enabled", "false"));
+        instructions.add(EvaluateConditional.of("${{ enabled }}"));
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-1", null));
+        instructions.add(ExecuteCommand.of("echo 1"));
+        instructions.add(PopFrame.of());
+        instructions.add(PopFrame.of());
+        instructions.add(PushFrame.of(Frame.Type.JOB, "job-2", null)); // 1
+        instructions.add(PrintFrameStatus.of("running")); // 2
+        instructions.add(EvaluateEnabled.of(false)); // 3
+        instructions.add(PopFrame.of()); // 4
+
+        List<Instruction> optimized = new Optimizer().optimize(instructions);
+
+        // The first job and its step are replaced, the second job printed its status, so it's skipped at runtime
+        assertThat(optimized).hasSize(5);
+        assertThat(optimized.get(0)).isInstanceOf(PrintDisabledFrames.class);
+        assertThat(((PrintDisabledFrames) optimized.get(0)).getConsoleStrings())
+                .containsExactly(
+                        PushFrame.of(Frame.Type.JOB, "job-1", null).toConsoleString(),
+                        PushFrame.of(Frame.Type.STEP, "step-1", null).toConsoleString());
+        assertThat(optimized.get(1)).isInstanceOf(PushFrame.class);
+        assertThat(optimized.get(3)).isInstanceOf(EvaluateEnabled.class);
+        assertThat(optimized.get(4)).isInstanceOf(PopFrame.class);
+    }
+}
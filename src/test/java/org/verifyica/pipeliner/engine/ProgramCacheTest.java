@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProgramCacheTest {
+
+    @Test
+    public void testCache(@TempDir Path directory) throws Throwable {
+        File file = directory.resolve("pipeline.yaml").toFile();
+
+        write(file, "pipeline-1");
+
+        ProgramCache.CachedPipeline cachedPipeline = ProgramCache.getInstance().get(file);
+
+        assertThat(cachedPipeline.getPipeline().getName()).isEqualTo("pipeline-1");
+        assertThat(cachedPipeline.getProgram()).isSameAs(cachedPipeline.getProgram());
+        assertThat(ProgramCache.getInstance().get(file)).isSameAs(cachedPipeline);
+
+        write(file, "pipeline-2");
+
+        ProgramCache.CachedPipeline changedCachedPipeline =
+                ProgramCache.getInstance().get(file);
+
+        assertThat(changedCachedPipeline).isNotSameAs(cachedPipeline);
+        assertThat(changedCachedPipeline.getPipeline().getName()).isEqualTo("pipeline-2");
+    }
+
+    private static void write(File file, String name) throws Throwable {
+        String yaml =
+                "pipeline:\n  name: " + name + "\n  jobs:\n    - name: job-1\n      steps:\n        - run: echo\n";
+        Files.write(file.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+    }
+}
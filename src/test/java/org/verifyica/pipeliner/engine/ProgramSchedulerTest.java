@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.Console;
+import org.verifyica.pipeliner.engine.instructions.ExecuteParallel;
+
+public class ProgramSchedulerTest {
+
+    @Test
+    public void testNestedMaxParallel() throws Throwable {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+
+        // An instruction that records the number of instructions running at once
+        Instruction instruction = (context, programCounter) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            executed.incrementAndGet();
+        };
+
+        // Each job executes a group of parallel steps
+        List<ScheduledProgram> jobs = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            List<ScheduledProgram> steps = new ArrayList<>();
+
+            for (int j = 0; j < 4; j++) {
+                steps.add(ScheduledProgram.of("step-" + j, Program.compile(List.of(instruction)), List.of()));
+            }
+
+            Program job = Program.compile(List.of(ExecuteParallel.of(steps, null, true)));
+            jobs.add(ScheduledProgram.of("job-" + i, job, List.of()));
+        }
+
+        Context context = new Context(new Console());
+        context.setMaxParallel(3);
+
+        new ProgramScheduler(context.getMaxParallel()).execute(context, jobs);
+
+        // The maximum applies to the jobs and their steps together
+        assertThat(executed.get()).isEqualTo(16);
+        assertThat(maxRunning.get()).isBetween(1, 3);
+        assertThat(context.getParallelPermits().availablePermits()).isEqualTo(2);
+    }
+}
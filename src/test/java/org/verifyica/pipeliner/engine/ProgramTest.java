@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.verifyica.pipeliner.engine.instructions.EvaluateEnabled;
+import org.verifyica.pipeliner.engine.instructions.PopFrame;
+import org.verifyica.pipeliner.engine.instructions.PrintFrameStatus;
+import org.verifyica.pipeliner.engine.instructions.PushFrame;
+
+public class ProgramTest {
+
+    @Test
+    public void testSkipFrame() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.JOB, "job-1", null)); // 0
+        instructions.add(EvaluateEnabled.of(false)); // 1
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-1", null)); // 2
+        instructions.add(PrintFrameStatus.of("running")); // 3
+        instructions.add(PopFrame.of()); // 4
+        instructions.add(PushFrame.of(Frame.Type.STEP, "step-2", null)); // 5
+        instructions.add(PopFrame.of()); // 6
+        instructions.add(PopFrame.of()); // 7
+        instructions.add(PushFrame.of(Frame.Type.JOB, "job-2", null)); // 8
+        instructions.add(PopFrame.of()); // 9
+
+        Program program = Program.compile(instructions);
+
+        assertThat(program.size()).isEqualTo(10);
+        assertThat(program.getFrameEnd(0)).isEqualTo(7);
+        assertThat(program.getFrameEnd(1)).isEqualTo(7);
+        assertThat(program.getFrameEnd(3)).isEqualTo(4);
+        assertThat(program.getFrameEnd(8)).isEqualTo(9);
+
+        ProgramCounter programCounter = new ProgramCounter(program);
+        programCounter.next();
+        programCounter.next();
+
+        List<PushFrame> pushFrames = programCounter.skipFrame();
+
+        assertThat(pushFrames).hasSize(2);
+        assertThat(pushFrames.get(0).getName()).isEqualTo("step-1");
+        assertThat(pushFrames.get(1).getName()).isEqualTo("step-2");
+        assertThat(programCounter.getIndex()).isEqualTo(7);
+        assertThat(programCounter.next()).isInstanceOf(PopFrame.class);
+    }
+
+    @Test
+    public void testUnbalancedFrames() {
+        List<Instruction> instructions = new ArrayList<>();
+        instructions.add(PushFrame.of(Frame.Type.JOB, "job-1", null));
+
+        assertThatExceptionOfType(GeneratorException.class).isThrownBy(() -> Program.compile(instructions));
+
+        instructions.add(PopFrame.of());
+        instructions.add(PopFrame.of());
+
+        assertThatExceptionOfType(GeneratorException.class).isThrownBy(() -> Program.compile(instructions));
+    }
+}
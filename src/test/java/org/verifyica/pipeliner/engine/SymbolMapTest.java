@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) Pipeliner project authors and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.verifyica.pipeliner.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class SymbolMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        SymbolMap<String> symbolMap = new SymbolMap<>();
+
+        assertThat(symbolMap.get(1)).isNull();
+        assertThat(symbolMap.remove(1)).isNull();
+        assertThat(symbolMap.capacity()).isZero();
+
+        assertThat(symbolMap.put(1_000_000, "a")).isNull();
+        assertThat(symbolMap.put(1_000_000, "b")).isEqualTo("a");
+        assertThat(symbolMap.get(1_000_000)).isEqualTo("b");
+
+        // The capacity depends on the number of symbols, not on their values
+        assertThat(symbolMap.size()).isEqualTo(1);
+        assertThat(symbolMap.capacity()).isEqualTo(8);
+
+        SymbolMap<String> copy = symbolMap.copy();
+
+        assertThat(symbolMap.put(1_000_000, null)).isEqualTo("b");
+        assertThat(symbolMap.get(1_000_000)).isNull();
+        assertThat(symbolMap.size()).isZero();
+        assertThat(copy.get(1_000_000)).isEqualTo("b");
+    }
+
+    @Test
+    public void testRandomOperations() {
+        SymbolMap<Integer> symbolMap = new SymbolMap<>();
+        Map<Integer, Integer> map = new HashMap<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100_000; i++) {
+            int symbol = random.nextInt(512);
+
+            if (random.nextInt(3) == 0) {
+                assertThat(symbolMap.remove(symbol)).isEqualTo(map.remove(symbol));
+            } else {
+                assertThat(symbolMap.put(symbol, i)).isEqualTo(map.put(symbol, i));
+            }
+        }
+
+        assertThat(symbolMap.size()).isEqualTo(map.size());
+
+        for (int symbol = 0; symbol < 512; symbol++) {
+            assertThat(symbolMap.get(symbol)).isEqualTo(map.get(symbol));
+        }
+
+        // Iterating the slots returns the symbols of the map
+        Map<Integer, Integer> iterated = new HashMap<>();
+
+        for (int slot = 0; slot < symbolMap.capacity(); slot++) {
+            if (symbolMap.getValue(slot) != null) {
+                iterated.put(symbolMap.getSymbol(slot), symbolMap.getValue(slot));
+            }
+        }
+
+        assertThat(iterated).isEqualTo(map);
+    }
+}
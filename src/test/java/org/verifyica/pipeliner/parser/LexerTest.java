@@ -91,6 +91,36 @@ public class LexerTest {
         validate(input, expectedTokens);
     }
 
+    @Test
+    public void testAdvance() {
+        StringBuilder input = new StringBuilder("cd ${{ dir }}/$HOME \\$x");
+
+        Lexer lexer = new Lexer(input);
+
+        assertThat(lexer.advance()).isTrue();
+        assertThat(lexer.getType()).isEqualTo(Lexer.Token.Type.TEXT);
+        assertThat(input.substring(lexer.getStart(), lexer.getEnd())).isEqualTo("cd ");
+
+        assertThat(lexer.advance()).isTrue();
+        assertThat(lexer.getType()).isEqualTo(Lexer.Token.Type.VARIABLE);
+        assertThat(input.substring(lexer.getStart(), lexer.getEnd())).isEqualTo("${{ dir }}");
+
+        assertThat(lexer.advance()).isTrue();
+        assertThat(lexer.getType()).isEqualTo(Lexer.Token.Type.TEXT);
+        assertThat(input.substring(lexer.getStart(), lexer.getEnd())).isEqualTo("/");
+
+        // A peeked token is consumed by advance
+        assertThat(lexer.peek().getText()).isEqualTo("$HOME");
+        assertThat(lexer.advance()).isTrue();
+        assertThat(lexer.getType()).isEqualTo(Lexer.Token.Type.ENVIRONMENT_VARIABLE);
+        assertThat(input.substring(lexer.getStart(), lexer.getEnd())).isEqualTo("$HOME");
+
+        assertThat(lexer.next().getText()).isEqualTo(" ");
+        assertThat(lexer.next().getText()).isEqualTo("\\$");
+        assertThat(lexer.next().getText()).isEqualTo("x");
+        assertThat(lexer.advance()).isFalse();
+    }
+
     private static void validate(String string, List<Lexer.Token> expectedTokens) {
         List<Lexer.Token> actualTokens = new ArrayList<>();
 